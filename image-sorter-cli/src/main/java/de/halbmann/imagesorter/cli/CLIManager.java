@@ -23,6 +23,26 @@ public class CLIManager {
 	public static final String SUFFIX = "suf";
 	public static final String OFFSET = "offset";
 	public static final String RECURSIVE = "r";
+	public static final String CACHE_FILE = "cache";
+	public static final String STREAMING = "stream";
+	public static final String PARALLEL_WALK = "pwalk";
+	public static final String IO_MODE = "io";
+	public static final String MAX_OPEN_FILES = "maxfiles";
+	public static final String LOCALITY = "locality";
+	public static final String PER_DEVICE = "perdevice";
+	public static final String ADAPTIVE = "adaptive";
+	public static final String CONCURRENT_WRITES = "cwrite";
+	public static final String UNORDERED_WRITES = "unordered";
+	public static final String HARD_LINKS = "link";
+	public static final String REFLINKS = "reflink";
+	public static final String INCLUDE = "include";
+	public static final String EXCLUDE = "exclude";
+	public static final String PRUNE = "prune";
+	public static final String FINGERPRINTS = "fingerprints";
+	public static final String SORT_MEMORY = "sortmem";
+	public static final String SORT_DIR = "sortdir";
+	public static final String PATTERN = "pattern";
+	public static final String NUMBERING_GAP = "gap";
 
 	protected Options options;
 
@@ -50,6 +70,68 @@ public class CLIManager {
 		options.addOption(OptionBuilder.withLongOpt("recursive")
 				.withDescription("Process the directory recursivly").withType(Boolean.class)
 				.hasArg().create(RECURSIVE));
+		options.addOption(OptionBuilder.withLongOpt("metadata-cache")
+				.withDescription("Set the file for caching the metadata of the images").hasArg()
+				.create(CACHE_FILE));
+		options.addOption(OptionBuilder.withLongOpt("streaming")
+				.withDescription("Read the images while walking through the directories")
+				.create(STREAMING));
+		options.addOption(OptionBuilder.withLongOpt("parallel-walk")
+				.withDescription("List the directories with multiple threads")
+				.create(PARALLEL_WALK));
+		options.addOption(OptionBuilder.withLongOpt("io-mode")
+				.withDescription("Read the images with one thread per open file (network mounts)")
+				.create(IO_MODE));
+		options.addOption(OptionBuilder.withLongOpt("max-open-files")
+				.withDescription("Set the maximum number of files read at the same time in I/O mode")
+				.withType(Number.class).hasArg().create(MAX_OPEN_FILES));
+		options.addOption(OptionBuilder.withLongOpt("locality-scheduling")
+				.withDescription("Read the images in the order of their location on disk")
+				.create(LOCALITY));
+		options.addOption(OptionBuilder.withLongOpt("per-device-reads")
+				.withDescription("Set the maximum number of concurrent reads per device")
+				.withType(Number.class).hasArg().create(PER_DEVICE));
+		options.addOption(OptionBuilder.withLongOpt("adaptive-concurrency")
+				.withDescription("Adapt the number of concurrent reads and copies to the storage")
+				.create(ADAPTIVE));
+		options.addOption(OptionBuilder.withLongOpt("concurrent-writes")
+				.withDescription("Copy or rename the images on a pool of workers (the number of "
+						+ "workers)").withType(Number.class).hasArg().create(CONCURRENT_WRITES));
+		options.addOption(OptionBuilder.withLongOpt("unordered-writes")
+				.withDescription("Copy the images concurrently in any order (not in the order of "
+						+ "the images for the same target file)").create(UNORDERED_WRITES));
+		options.addOption(OptionBuilder.withLongOpt("hard-links")
+				.withDescription("Hard link the copies on the same file system instead of copying")
+				.create(HARD_LINKS));
+		options.addOption(OptionBuilder.withLongOpt("reflinks")
+				.withDescription("Clone the copies copy-on-write, if the file system supports it")
+				.create(REFLINKS));
+		options.addOption(OptionBuilder.withLongOpt("include")
+				.withDescription("Only read the images matching the glob (or regex:...)")
+				.hasArgs().create(INCLUDE));
+		options.addOption(OptionBuilder.withLongOpt("exclude")
+				.withDescription("Skip the images matching the glob (or regex:...)").hasArgs()
+				.create(EXCLUDE));
+		options.addOption(OptionBuilder.withLongOpt("prune")
+				.withDescription("Skip the directories with the name (glob or regex:...)")
+				.hasArgs().create(PRUNE));
+		options.addOption(OptionBuilder.withLongOpt("fingerprints")
+				.withDescription("Set the file for the directory fingerprints (incremental rescan)")
+				.hasArg().create(FINGERPRINTS));
+		options.addOption(OptionBuilder.withLongOpt("sort-memory")
+				.withDescription("Sort the images externally, buffering at most the given memory "
+						+ "(in MB) of images; not with --numbering-gap")
+				.withType(Number.class).hasArg().create(SORT_MEMORY));
+		options.addOption(OptionBuilder.withLongOpt("sort-directory")
+				.withDescription("Set the directory for the temporary files of the external sort")
+				.hasArg().create(SORT_DIR));
+		options.addOption(OptionBuilder.withLongOpt("filename-pattern")
+				.withDescription("Set the pattern of the new filenames, i.e. "
+						+ "{prefix}{date:yyyyMMdd}_{seq:05}{suffix}").hasArg().create(PATTERN));
+		options.addOption(OptionBuilder.withLongOpt("numbering-gap")
+				.withDescription("Leave gaps between the numbers, so new images don't shift "
+						+ "the numbers of the existing ones").withType(Number.class).hasArg()
+				.create(NUMBERING_GAP));
 
 		// TODO: add additional options for the settings?
 	}
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.ParseException;
@@ -13,6 +14,7 @@ import com.typesafe.config.ConfigFactory;
 
 import de.halbmann.imagesorter.ImageSorterExecution;
 import de.halbmann.imagesorter.ImageSorterSettings;
+import de.halbmann.imagesorter.files.ImageMetadataReader.ExecutionMode;
 
 /**
  * The ImageSorterCli is the main entry point to start the image sorter from the console.
@@ -121,6 +123,110 @@ public class ImageSorterCli {
 				e.printStackTrace();
 			}
 		}
+		if (cmd.hasOption(CLIManager.CACHE_FILE)) {
+			settings.getMetadataReaderSettings().setCacheFile(
+					cmd.getOptionValue(CLIManager.CACHE_FILE));
+		}
+		if (cmd.hasOption(CLIManager.STREAMING)) {
+			settings.getMetadataReaderSettings().setStreaming(true);
+		}
+		if (cmd.hasOption(CLIManager.PARALLEL_WALK)) {
+			settings.getMetadataReaderSettings().setParallelWalk(true);
+		}
+		if (cmd.hasOption(CLIManager.IO_MODE)) {
+			settings.getMetadataReaderSettings().setExecutionMode(ExecutionMode.IO);
+		}
+		if (cmd.hasOption(CLIManager.MAX_OPEN_FILES)) {
+			try {
+				Object maxOpenFiles = cmd.getParsedOptionValue(CLIManager.MAX_OPEN_FILES);
+				if (maxOpenFiles != null) {
+					settings.getMetadataReaderSettings().setMaxOpenFiles(
+							((Long) maxOpenFiles).intValue());
+				}
+			} catch (ParseException e) {
+				e.printStackTrace();
+			}
+		}
+		if (cmd.hasOption(CLIManager.LOCALITY)) {
+			settings.getMetadataReaderSettings().setLocalityScheduling(true);
+		}
+		if (cmd.hasOption(CLIManager.PER_DEVICE)) {
+			try {
+				Object perDevice = cmd.getParsedOptionValue(CLIManager.PER_DEVICE);
+				if (perDevice != null) {
+					settings.getMetadataReaderSettings().setPerDeviceConcurrency(
+							((Long) perDevice).intValue());
+				}
+			} catch (ParseException e) {
+				e.printStackTrace();
+			}
+		}
+		if (cmd.hasOption(CLIManager.INCLUDE)) {
+			settings.getMetadataReaderSettings().getIncludes()
+					.addAll(Arrays.asList(cmd.getOptionValues(CLIManager.INCLUDE)));
+		}
+		if (cmd.hasOption(CLIManager.EXCLUDE)) {
+			settings.getMetadataReaderSettings().getExcludes()
+					.addAll(Arrays.asList(cmd.getOptionValues(CLIManager.EXCLUDE)));
+		}
+		if (cmd.hasOption(CLIManager.PRUNE)) {
+			settings.getMetadataReaderSettings().getPrunedDirectories()
+					.addAll(Arrays.asList(cmd.getOptionValues(CLIManager.PRUNE)));
+		}
+		if (cmd.hasOption(CLIManager.FINGERPRINTS)) {
+			settings.getMetadataReaderSettings().setFingerprintFile(
+					cmd.getOptionValue(CLIManager.FINGERPRINTS));
+		}
+		if (cmd.hasOption(CLIManager.ADAPTIVE)) {
+			settings.getMetadataReaderSettings().setAdaptiveConcurrency(true);
+			settings.getFileWriterSettings().setAdaptiveConcurrency(true);
+		}
+		if (cmd.hasOption(CLIManager.CONCURRENT_WRITES)) {
+			try {
+				Object workers = cmd.getParsedOptionValue(CLIManager.CONCURRENT_WRITES);
+				settings.getFileWriterSettings().setConcurrent(true);
+				if (workers != null) {
+					settings.getFileWriterSettings().setMaxConcurrency(((Long) workers).intValue());
+				}
+			} catch (ParseException e) {
+				e.printStackTrace();
+			}
+		}
+		if (cmd.hasOption(CLIManager.UNORDERED_WRITES)) {
+			settings.getFileWriterSettings().setPreserveOrder(false);
+		}
+		if (cmd.hasOption(CLIManager.HARD_LINKS)) {
+			settings.getFileWriterSettings().setHardLinks(true);
+		}
+		if (cmd.hasOption(CLIManager.REFLINKS)) {
+			settings.getFileWriterSettings().setReflinks(true);
+		}
+		if (cmd.hasOption(CLIManager.SORT_MEMORY)) {
+			try {
+				Object sortMemory = cmd.getParsedOptionValue(CLIManager.SORT_MEMORY);
+				if (sortMemory != null) {
+					settings.setSortMemory(((Long) sortMemory).longValue() * 1024 * 1024);
+				}
+			} catch (ParseException e) {
+				e.printStackTrace();
+			}
+		}
+		if (cmd.hasOption(CLIManager.SORT_DIR)) {
+			settings.setSortDirectory(cmd.getOptionValue(CLIManager.SORT_DIR));
+		}
+		if (cmd.hasOption(CLIManager.PATTERN)) {
+			settings.setFilenamePattern(cmd.getOptionValue(CLIManager.PATTERN));
+		}
+		if (cmd.hasOption(CLIManager.NUMBERING_GAP)) {
+			try {
+				Object gap = cmd.getParsedOptionValue(CLIManager.NUMBERING_GAP);
+				if (gap != null) {
+					settings.setNumberingGap(((Long) gap).intValue());
+				}
+			} catch (ParseException e) {
+				e.printStackTrace();
+			}
+		}
 
 		return settings;
 	}
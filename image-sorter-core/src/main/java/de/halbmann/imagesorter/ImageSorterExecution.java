@@ -1,23 +1,28 @@
 package de.halbmann.imagesorter;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import de.halbmann.imagesorter.ImageSorterSettings.CameraSettings;
 import de.halbmann.imagesorter.files.DefaultFilenameCalculator;
 import de.halbmann.imagesorter.files.FilenameCalculator;
 import de.halbmann.imagesorter.files.ImageFileWriter;
 import de.halbmann.imagesorter.files.ImageMetadataReader;
 import de.halbmann.imagesorter.model.ImageFile;
-import de.halbmann.imagesorter.modifier.AbsorptionTimeModifier;
+import de.halbmann.imagesorter.modifier.AbsorptionTimeCorrection;
 import de.halbmann.imagesorter.modifier.ImageModifier;
-import de.halbmann.imagesorter.sorting.GenericComparator;
+import de.halbmann.imagesorter.modifier.ImageModifierExecutor;
+import de.halbmann.imagesorter.modifier.SingleImageModifier;
+import de.halbmann.imagesorter.sorting.ExternalImageSorter;
 import de.halbmann.imagesorter.sorting.ImageAbsorptionTimeComparator;
+import de.halbmann.imagesorter.sorting.RunMergeSorter;
 
 /**
  * This is the main entry point for executing the image sorter. You only have to set the base
@@ -36,6 +41,8 @@ public class ImageSorterExecution {
 
 	private List<ImageFile> images;
 
+	private ImageModifierExecutor modifierExecutor = new ImageModifierExecutor();
+
 	public ImageSorterExecution(String baseDir, ImageSorterSettings settings) {
 		this.baseDir = baseDir;
 		this.settings = settings;
@@ -46,7 +53,7 @@ public class ImageSorterExecution {
 	 * This will execute the following steps:
 	 * <ul>
 	 * <li>read the image files from the base directory</li>
-	 * <li>get the camera settings and modify the images</li>
+	 * <li>get the camera settings and modify the images (while reading, if possible)</li>
 	 * <li>order (sort) the images</li>
 	 * <li>calculate the (new) filenames</li>
 	 * <li>write the image files</li>
@@ -63,7 +70,7 @@ public class ImageSorterExecution {
 	 * This will execute the following steps:
 	 * <ul>
 	 * <li>read the image files from the base directory</li>
-	 * <li>get the camera settings and modify the images</li>
+	 * <li>get the camera settings and modify the images (while reading, if possible)</li>
 	 * <li>order (sort) the images</li>
 	 * <li>calculate the (new) filenames</li>
 	 * <li>write the image files</li>
@@ -76,18 +83,25 @@ public class ImageSorterExecution {
 	 */
 	@SuppressWarnings("unchecked")
 	public void run(boolean simulate) throws IOException {
-		// read the images from the given base directory
-		readImageFiles(baseDir, settings.isRecursive());
-
-		// get the camera settings and modify the images
+		// get the camera settings (all camera models are corrected in one pass)
+		List<ImageModifier> modifiers = new ArrayList<>();
 		if (settings.getCameraSettings() != null && !settings.getCameraSettings().isEmpty()) {
-			List<ImageModifier> modifiers = new ArrayList<>();
-			for (CameraSettings cs : settings.getCameraSettings()) {
-				modifiers.add(new AbsorptionTimeModifier(cs));
-			}
-			modifyImages(modifiers.toArray(new ImageModifier[] {}));
+			modifiers.add(new AbsorptionTimeCorrection(settings.getCameraSettings()));
 		}
 
+		if (settings.getSortMemory() > 0) {
+			// read the images into the external sort and stream them into the calculation and
+			// writing
+			runExternal(modifiers, new ImageAbsorptionTimeComparator(),
+					new DefaultFilenameCalculator(settings), simulate);
+			return;
+		}
+
+		// read the images from the given base directory (the per-image modifiers are run while
+		// reading) and modify the images with the remaining modifiers
+		modifiers = readImageFiles(baseDir, settings.isRecursive(), modifiers);
+		modifyImages(modifiers.toArray(new ImageModifier[modifiers.size()]));
+
 		// order the images
 		orderImages(new ImageAbsorptionTimeComparator());
 
@@ -110,9 +124,57 @@ public class ImageSorterExecution {
 	 * @throws IOException
 	 */
 	protected void readImageFiles(String baseDir, boolean recursive) throws IOException {
+		readImageFiles(baseDir, recursive, new ArrayList<ImageModifier>());
+	}
+
+	/**
+	 * Read the image files including the meta (exif) informations from the given base directory.
+	 * The leading {@link SingleImageModifier}s are fused into the read stage: they modify each
+	 * image right after its metadata was read.
+	 * 
+	 * @param baseDir
+	 *            the base directory reading the image files from
+	 * @param recursive
+	 *            recursive read the directory
+	 * @param modifiers
+	 *            the modifiers to run (in this order)
+	 * @return the modifiers, that still have to be run on the list of images
+	 * @throws IOException
+	 */
+	protected List<ImageModifier> readImageFiles(String baseDir, boolean recursive,
+			List<ImageModifier> modifiers) throws IOException {
+		return readImageFiles(baseDir, recursive, modifiers, null);
+	}
+
+	/**
+	 * Read the image files including the meta (exif) informations from the given base directory
+	 * and hand each image over to the sink (if given) instead of collecting them in the list of
+	 * images. The leading {@link SingleImageModifier}s are fused into the read stage.
+	 * 
+	 * @param baseDir
+	 *            the base directory reading the image files from
+	 * @param recursive
+	 *            recursive read the directory
+	 * @param modifiers
+	 *            the modifiers to run (in this order)
+	 * @param sink
+	 *            the receiver of the images (or null)
+	 * @return the modifiers, that still have to be run on the list of images
+	 * @throws IOException
+	 */
+	protected List<ImageModifier> readImageFiles(String baseDir, boolean recursive,
+			List<ImageModifier> modifiers, ImageMetadataReader.ImageSink sink) throws IOException {
 		// read the images from the given base directory
-		ImageMetadataReader imr = new ImageMetadataReader(recursive);
-		images = imr.readImageFiles(baseDir);
+		ImageMetadataReader imr = new ImageMetadataReader(recursive,
+				settings.getMetadataReaderSettings());
+		int fused = 0;
+		while (fused < modifiers.size() && modifiers.get(fused) instanceof SingleImageModifier) {
+			imr.addImageModifier((SingleImageModifier) modifiers.get(fused));
+			fused++;
+		}
+		LOG.log(Level.FINE, "modifiers run while reading: {0}", fused);
+		images = imr.readImageFiles(baseDir, sink);
+		return modifiers.subList(fused, modifiers.size());
 	}
 
 	/**
@@ -128,9 +190,8 @@ public class ImageSorterExecution {
 		LOG.log(Level.INFO, "modify images");
 		LOG.log(Level.FINE, "image modifiers: {0}", modifiers);
 		long startTime = System.currentTimeMillis();
-		for (ImageModifier m : modifiers) {
-			m.modify(images);
-		}
+		// the partitioned modifiers are run in parallel
+		modifierExecutor.execute(images, modifiers);
 		long endTime = System.currentTimeMillis();
 		LOG.log(Level.FINE, "modifying took {0} ms", (endTime - startTime));
 	}
@@ -149,10 +210,107 @@ public class ImageSorterExecution {
 		LOG.log(Level.INFO, "order images");
 		LOG.log(Level.FINE, "comparators: {0}", comparators);
 		long startTime = System.currentTimeMillis();
-		GenericComparator<ImageFile> c = new GenericComparator<>(comparators);
-		Collections.sort(images, c);
+		// merge the runs already in order (per directory and camera), sort only the remainder
+		RunMergeSorter sorter = new RunMergeSorter(Arrays.asList(comparators));
+		sorter.sort(images);
+		long endTime = System.currentTimeMillis();
+		LOG.log(Level.FINE, "ordering took {0} ms (merged {1} runs, sorted {2} images)",
+				new Object[] { endTime - startTime, sorter.getRuns(), sorter.getRemainder() });
+	}
+
+	/**
+	 * Read the ImageFiles into an external merge sort within the memory budget of the settings and
+	 * stream the sorted images into the calculation of the filenames and the writing. The images
+	 * are handed over to the sorter while reading, so the list of images is never built: only the
+	 * buffer of the sorter (bounded by the budget) and the images waiting for the images found
+	 * before them are held. Only the per-image modifiers are supported (they are run while
+	 * reading) and the images are numbered densely (the sparse numbering needs the current
+	 * numbers of all the images).
+	 * 
+	 * @param modifiers
+	 *            the modifiers to run (only {@link SingleImageModifier}s)
+	 * @param comparator
+	 *            Comparator for the ImageFiles
+	 * @param calculator
+	 *            the calculator for the filenames
+	 * @param simulate
+	 *            only calculate the filenames without writing the files
+	 * @throws IOException
+	 * @throws IllegalArgumentException
+	 *             if a modifier or the numbering gap isn't supported by the external sort
+	 */
+	protected void runExternal(List<ImageModifier> modifiers, Comparator<ImageFile> comparator,
+			final DefaultFilenameCalculator calculator, boolean simulate) throws IOException {
+		for (ImageModifier modifier : modifiers) {
+			if (!(modifier instanceof SingleImageModifier)) {
+				throw new IllegalArgumentException("modifier not supported by the external sort: "
+						+ modifier);
+			}
+		}
+		if (calculator.getNumberingGap() > 0) {
+			throw new IllegalArgumentException("numbering gap not supported by the external sort");
+		}
+		LOG.log(Level.INFO, "read and order images (external)");
+		long startTime = System.currentTimeMillis();
+		Path sortDirectory = settings.getSortDirectory() == null ? null : Paths.get(settings
+				.getSortDirectory());
+		try (final ExternalImageSorter sorter = new ExternalImageSorter(comparator,
+				settings.getSortMemory(), sortDirectory)) {
+			readImageFiles(baseDir, settings.isRecursive(), modifiers,
+					new ImageMetadataReader.ImageSink() {
+
+						@Override
+						public void accept(ImageFile image) throws IOException {
+							sorter.add(image);
+						}
+					});
+			LOG.log(Level.FINE, "spilled {0} runs in {1} ms", new Object[] { sorter.getRuns(),
+					System.currentTimeMillis() - startTime });
+
+			calculator.prepare(sorter.size());
+			// the filenames are calculated while iterating over the sorted images
+			Iterable<ImageFile> calculated = new Iterable<ImageFile>() {
+
+				@Override
+				public Iterator<ImageFile> iterator() {
+					final Iterator<ImageFile> sorted = sorter.iterator();
+					return new Iterator<ImageFile>() {
+
+						private int index;
+
+						@Override
+						public boolean hasNext() {
+							return sorted.hasNext();
+						}
+
+						@Override
+						public ImageFile next() {
+							ImageFile image = sorted.next();
+							calculator.calculate(image, index++);
+							return image;
+						}
+
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+			};
+			if (simulate) {
+				Iterator<ImageFile> iterator = calculated.iterator();
+				while (iterator.hasNext()) {
+					iterator.next();
+				}
+			} else {
+				ImageFileWriter ifw = new ImageFileWriter(baseDir, settings);
+				ifw.runImageFileOperations(calculated, sorter.size(),
+						settings.getFileWriterSettings());
+			}
+		}
 		long endTime = System.currentTimeMillis();
-		LOG.log(Level.FINE, "ordering took {0} ms", (endTime - startTime));
+		LOG.log(Level.FINE, "external reading, ordering, calculation and writing took {0} ms",
+				(endTime - startTime));
 	}
 
 	/**
@@ -202,4 +360,12 @@ public class ImageSorterExecution {
 		return images;
 	}
 
+	public ImageModifierExecutor getModifierExecutor() {
+		return modifierExecutor;
+	}
+
+	public void setModifierExecutor(ImageModifierExecutor modifierExecutor) {
+		this.modifierExecutor = modifierExecutor;
+	}
+
 }
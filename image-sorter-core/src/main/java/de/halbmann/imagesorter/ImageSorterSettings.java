@@ -4,7 +4,9 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
+import de.halbmann.imagesorter.files.FilenameTemplate;
 import de.halbmann.imagesorter.files.ImageFileWriter.Settings;
+import de.halbmann.imagesorter.files.ImageMetadataReader;
 
 /**
  * Container object for the settings.
@@ -27,6 +29,35 @@ public class ImageSorterSettings implements Serializable {
 
 	private boolean recursive = true;
 
+	/**
+	 * the memory budget for sorting the images (in bytes); if set, the images are handed over to
+	 * an external sort while reading (spilled to temporary files) and streamed into the
+	 * calculation and writing. The budget bounds the (estimated) size of the images buffered by
+	 * the sort; not covered are the images read out of order waiting for their predecessors, the
+	 * list of files of the walk in batch mode, the images of the directory fingerprints and the
+	 * metadata cache. Not supported with a numbering gap.
+	 */
+	private long sortMemory = 0;
+
+	/**
+	 * the directory for the temporary files of the external sort (null for the default)
+	 */
+	private String sortDirectory;
+
+	/**
+	 * the pattern of the new filenames (see {@link FilenameTemplate}); null for prefix + number +
+	 * suffix
+	 */
+	private String filenamePattern;
+
+	/**
+	 * the gap between the numbers of the new filenames (0 for dense numbers); with a gap, the
+	 * images keep their numbers and new images are numbered in the gaps
+	 */
+	private int numberingGap = 0;
+
+	private ImageMetadataReader.Settings metadataReaderSettings = new ImageMetadataReader.Settings();
+
 	private Settings fileWriterSettings = new Settings();
 
 	private List<CameraSettings> cameraSettings = new ArrayList<>();
@@ -89,6 +120,46 @@ public class ImageSorterSettings implements Serializable {
 		this.recursive = recursive;
 	}
 
+	public long getSortMemory() {
+		return sortMemory;
+	}
+
+	public void setSortMemory(long sortMemory) {
+		this.sortMemory = sortMemory;
+	}
+
+	public String getSortDirectory() {
+		return sortDirectory;
+	}
+
+	public void setSortDirectory(String sortDirectory) {
+		this.sortDirectory = sortDirectory;
+	}
+
+	public String getFilenamePattern() {
+		return filenamePattern;
+	}
+
+	public void setFilenamePattern(String filenamePattern) {
+		this.filenamePattern = filenamePattern;
+	}
+
+	public int getNumberingGap() {
+		return numberingGap;
+	}
+
+	public void setNumberingGap(int numberingGap) {
+		this.numberingGap = numberingGap;
+	}
+
+	public ImageMetadataReader.Settings getMetadataReaderSettings() {
+		return metadataReaderSettings;
+	}
+
+	public void setMetadataReaderSettings(ImageMetadataReader.Settings metadataReaderSettings) {
+		this.metadataReaderSettings = metadataReaderSettings;
+	}
+
 	public Settings getFileWriterSettings() {
 		return fileWriterSettings;
 	}
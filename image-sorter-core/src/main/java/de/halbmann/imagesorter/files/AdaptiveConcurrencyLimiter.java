@@ -0,0 +1,207 @@
+package de.halbmann.imagesorter.files;
+
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Limiter for the number of concurrent (I/O) operations, that adapts the limit to the storage
+ * the operations run against. The limiter measures the throughput (completed operations per
+ * second) and the 95th percentile of the latency in short windows and adjusts the limit in the
+ * style of AIMD (additive increase, multiplicative decrease):
+ * <ul>
+ * <li>if the p95 latency grew beyond the tolerance of the best (baseline) latency seen and the
+ * throughput didn't improve, the storage is congested: the limit is decreased multiplicatively</li>
+ * <li>if the limit was reached in the window (there is more work waiting), the limit is increased
+ * by one</li>
+ * <li>otherwise the limit is kept</li>
+ * </ul>
+ * So the limit grows as long as more concurrency only adds throughput (SSDs, network mounts) and
+ * shrinks, as soon as more concurrency only adds latency (i.e. seeks on a rotational disk).
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * long start = limiter.acquire();
+ * try {
+ * 	// the operation
+ * } finally {
+ * 	limiter.release(start);
+ * }
+ * </pre>
+ *
+ * </p>
+ *
+ * @author fabian
+ *
+ */
+public class AdaptiveConcurrencyLimiter {
+
+	private static final Logger LOG = Logger.getLogger(AdaptiveConcurrencyLimiter.class.getName());
+
+	/**
+	 * the minimum duration of a measurement window
+	 */
+	private static final long WINDOW_NANOS = 100L * 1000 * 1000;
+
+	/**
+	 * the minimum number of samples of a measurement window
+	 */
+	private static final int MIN_SAMPLES = 8;
+
+	/**
+	 * factor for the multiplicative decrease
+	 */
+	private static final double DECREASE_FACTOR = 0.75;
+
+	/**
+	 * the p95 latency may grow to this factor of the baseline latency before the limit is
+	 * decreased
+	 */
+	private static final double LATENCY_TOLERANCE = 1.5;
+
+	/**
+	 * the baseline latency drifts up by this factor per window, so it adapts to changed conditions
+	 */
+	private static final double BASELINE_DRIFT = 1.01;
+
+	/**
+	 * the throughput has to grow by this factor to count as improvement
+	 */
+	private static final double THROUGHPUT_GAIN = 1.05;
+
+	private final String name;
+	private final int minLimit;
+	private final int maxLimit;
+
+	private int limit;
+	private int inFlight;
+
+	// measurement of the current window
+	private long windowStart;
+	private long[] latencies = new long[64];
+	private int samples;
+	private boolean limitReached;
+
+	// results of the previous windows
+	private double lastThroughput;
+	private long baselineLatency = Long.MAX_VALUE;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name
+	 *            the name of the limiter (for logging)
+	 * @param initialLimit
+	 *            the initial limit
+	 * @param minLimit
+	 *            the minimum limit
+	 * @param maxLimit
+	 *            the maximum limit
+	 */
+	public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit) {
+		if (minLimit < 1 || maxLimit < minLimit) {
+			throw new IllegalArgumentException("invalid limits: " + minLimit + " - " + maxLimit);
+		}
+		this.name = name;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.limit = Math.min(maxLimit, Math.max(minLimit, initialLimit));
+	}
+
+	/**
+	 * Wait until the number of operations in flight is below the limit and start a new operation.
+	 *
+	 * @return the start time of the operation (for {@link #release(long)})
+	 * @throws InterruptedException
+	 */
+	public synchronized long acquire() throws InterruptedException {
+		while (inFlight >= limit) {
+			limitReached = true;
+			wait();
+		}
+		inFlight++;
+		if (inFlight == limit) {
+			limitReached = true;
+		}
+		long now = System.nanoTime();
+		if (windowStart == 0) {
+			windowStart = now;
+		}
+		return now;
+	}
+
+	/**
+	 * Finish the operation, that was started at the given time.
+	 *
+	 * @param start
+	 *            the start time returned by {@link #acquire()}
+	 */
+	public synchronized void release(long start) {
+		long now = System.nanoTime();
+		inFlight--;
+		if (samples == latencies.length) {
+			latencies = Arrays.copyOf(latencies, samples * 2);
+		}
+		latencies[samples++] = now - start;
+		if (samples >= MIN_SAMPLES && now - windowStart >= WINDOW_NANOS) {
+			adjust(now);
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Adjust the limit by the measurement of the current window and start a new window.
+	 */
+	private void adjust(long now) {
+		double throughput = samples * 1e9 / (now - windowStart);
+		Arrays.sort(latencies, 0, samples);
+		long p95 = latencies[(int) (samples * 0.95)];
+
+		int oldLimit = limit;
+		if (p95 > baselineLatency * LATENCY_TOLERANCE
+				&& throughput < lastThroughput * THROUGHPUT_GAIN) {
+			limit = Math.max(minLimit, Math.min(limit - 1, (int) (limit * DECREASE_FACTOR)));
+		} else if (limitReached) {
+			limit = Math.min(maxLimit, limit + 1);
+		}
+		if (limit != oldLimit) {
+			LOG.log(Level.FINE, "{0}: limit {1} -> {2} (throughput: {3}/s, p95: {4} ms)",
+					new Object[] { name, oldLimit, limit, (int) throughput, p95 / 1000000.0 });
+		}
+
+		baselineLatency = Math.min(p95, baselineLatency == Long.MAX_VALUE ? p95
+				: (long) (baselineLatency * BASELINE_DRIFT));
+		lastThroughput = throughput;
+		windowStart = now;
+		samples = 0;
+		limitReached = inFlight >= limit;
+	}
+
+	/**
+	 * @return the current limit
+	 */
+	public synchronized int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @return the number of operations in flight
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	public int getMinLimit() {
+		return minLimit;
+	}
+
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+	@Override
+	public String toString() {
+		return name + " [limit=" + getLimit() + "]";
+	}
+}
@@ -0,0 +1,201 @@
+package de.halbmann.imagesorter.files;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs file operations on a bounded pool of workers. The operations of the same lane (i.e. the
+ * renames in one directory or the copies into one target directory) are run one after another
+ * in the order they were submitted, the lanes and the operations without lane run concurrently.
+ * <p>
+ * The number of submitted, but not yet finished operations is bounded, so submitting blocks, if
+ * the workers fall behind (the operations of millions of images are never queued at once). A
+ * failed operation doesn't stop the others: the errors are collected and thrown together by
+ * {@link #await()}. The progress is counted by a {@link WriteProgress}. Optionally the number of
+ * operations in flight is adapted to the storage by an {@link AdaptiveConcurrencyLimiter}.
+ * </p>
+ *
+ * @author fabian
+ *
+ */
+public class ConcurrentFileOperations {
+
+	/**
+	 * A file operation.
+	 */
+	public interface FileOperation {
+
+		/**
+		 * Run the operation.
+		 *
+		 * @return the number of bytes written
+		 * @throws IOException
+		 */
+		long run() throws IOException;
+	}
+
+	private final ExecutorService workers;
+
+	/**
+	 * the permits for the submitted operations (bounds the queue)
+	 */
+	private final Semaphore pending;
+
+	private final int capacity;
+
+	private final AdaptiveConcurrencyLimiter limiter;
+
+	private final WriteProgress progress;
+
+	/**
+	 * the queued operations of the lanes, that have a running operation
+	 */
+	private final Map<Object, Queue<FileOperation>> lanes = new HashMap<>();
+
+	/**
+	 * the first error (the others are added as suppressed exceptions)
+	 */
+	private IOException error;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param threads
+	 *            the number of workers
+	 * @param limiter
+	 *            the limiter of the operations in flight (or null)
+	 * @param progress
+	 *            the progress to count the operations
+	 */
+	public ConcurrentFileOperations(int threads, AdaptiveConcurrencyLimiter limiter,
+			WriteProgress progress) {
+		this.workers = Executors.newFixedThreadPool(Math.max(1, threads));
+		this.capacity = Math.max(1, threads) * 4;
+		this.pending = new Semaphore(capacity);
+		this.limiter = limiter;
+		this.progress = progress;
+	}
+
+	/**
+	 * Submit the operation. Blocks, if too many operations are pending.
+	 *
+	 * @param lane
+	 *            the lane of the operation (or null for an operation without order)
+	 * @param operation
+	 *            the operation
+	 * @throws InterruptedIOException
+	 *             if interrupted while waiting
+	 */
+	public void submit(final Object lane, final FileOperation operation)
+			throws InterruptedIOException {
+		try {
+			pending.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while submitting the file operations");
+		}
+		if (lane != null) {
+			synchronized (lanes) {
+				Queue<FileOperation> queue = lanes.get(lane);
+				if (queue != null) {
+					// run by the worker of the lane after the running operation
+					queue.add(operation);
+					return;
+				}
+				lanes.put(lane, new ArrayDeque<FileOperation>());
+			}
+		}
+		workers.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				FileOperation next = operation;
+				while (next != null) {
+					execute(next);
+					next = lane == null ? null : nextOfLane(lane);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Wait for all the operations and shut the workers down.
+	 *
+	 * @throws IOException
+	 *             the first error of the operations (the others are added as suppressed
+	 *             exceptions)
+	 */
+	public void await() throws IOException {
+		try {
+			pending.acquire(capacity);
+			pending.release(capacity);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for the file operations");
+		} finally {
+			workers.shutdownNow();
+		}
+		try {
+			workers.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			if (error != null) {
+				throw error;
+			}
+		}
+	}
+
+	/**
+	 * Get the next operation of the lane or remove the lane, if it's empty.
+	 */
+	private FileOperation nextOfLane(Object lane) {
+		synchronized (lanes) {
+			Queue<FileOperation> queue = lanes.get(lane);
+			FileOperation next = queue.poll();
+			if (next == null) {
+				lanes.remove(lane);
+			}
+			return next;
+		}
+	}
+
+	private void execute(FileOperation operation) {
+		try {
+			long start = limiter == null ? 0 : limiter.acquire();
+			try {
+				progress.completed(operation.run());
+			} finally {
+				if (limiter != null) {
+					limiter.release(start);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			progress.failed();
+			addError(e instanceof IOException ? (IOException) e : new IOException(e));
+		} catch (InterruptedException e) {
+			progress.failed();
+			addError(new InterruptedIOException("interrupted while running a file operation"));
+			Thread.currentThread().interrupt();
+		} finally {
+			pending.release();
+		}
+	}
+
+	private synchronized void addError(IOException e) {
+		if (error == null) {
+			error = e;
+		} else {
+			error.addSuppressed(e);
+		}
+	}
+}
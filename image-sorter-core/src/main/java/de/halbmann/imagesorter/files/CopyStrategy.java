@@ -0,0 +1,44 @@
+package de.halbmann.imagesorter.files;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A way to copy a file, i.e. a hard link, a copy-on-write clone or a copy of the data. The
+ * strategies are tried by the {@link FileCopier} one after another until one succeeds.
+ *
+ * @author fabian
+ *
+ */
+public interface CopyStrategy {
+
+	/**
+	 * @return the name of the strategy (for logging)
+	 */
+	String getName();
+
+	/**
+	 * Check (cheaply), if the strategy can copy the source to the target at all.
+	 *
+	 * @param source
+	 *            the source file
+	 * @param target
+	 *            the target file
+	 * @return true, if the copy should be tried with this strategy
+	 * @throws IOException
+	 */
+	boolean isApplicable(Path source, Path target) throws IOException;
+
+	/**
+	 * Copy the source to the target. If the copy fails, the target may be left partially
+	 * written (it is deleted by the {@link FileCopier} before the next strategy is tried).
+	 *
+	 * @param source
+	 *            the source file
+	 * @param target
+	 *            the target file (overwritten, if it exists)
+	 * @return the number of bytes written (0, if no data was duplicated)
+	 * @throws IOException
+	 */
+	long copy(Path source, Path target) throws IOException;
+}
@@ -1,9 +1,16 @@
 package de.halbmann.imagesorter.files;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import de.halbmann.imagesorter.ImageSorterSettings;
 import de.halbmann.imagesorter.model.ImageFile;
+import de.halbmann.imagesorter.modifier.ImageModifierExecutor;
+import de.halbmann.imagesorter.modifier.PartitionedImageModifier;
+import de.halbmann.imagesorter.sorting.TimelineIndex;
 
 /**
  * Default filename calculator implementation. This will calculate the filenames based on the
@@ -13,6 +20,10 @@ import de.halbmann.imagesorter.model.ImageFile;
  * The pattern for the new filenames is the following:<br/>
  * prefix + (index + offset) + suffix
  * </p>
+ * <p>
+ * Another pattern can be set as {@link FilenameTemplate}; the template is compiled once and the
+ * filenames of large lists are calculated in parallel.
+ * </p>
  * 
  * @author fabian
  *
@@ -44,11 +55,35 @@ public class DefaultFilenameCalculator implements FilenameCalculator {
 	 */
 	private int minNumberOfDigits = 1;
 
+	/**
+	 * the pattern of the filenames (see {@link FilenameTemplate})
+	 */
+	private String pattern = FilenameTemplate.DEFAULT_PATTERN;
+
+	/**
+	 * the compiled template (compiled again, if the pattern, the prefix or the suffix changes)
+	 */
+	private volatile FilenameTemplate template;
+
+	/**
+	 * the gap between the numbers of the images (0 for dense numbers, see {@link SparseNumbering})
+	 */
+	private int numberingGap;
+
+	/**
+	 * the executor for calculating the filenames of large lists in parallel
+	 */
+	private ImageModifierExecutor executor = new ImageModifierExecutor();
+
 	public DefaultFilenameCalculator(ImageSorterSettings settings) {
 		this.prefix = settings.getPrefix() == null ? "" : settings.getPrefix();
 		this.suffix = settings.getSuffix() == null ? "" : settings.getSuffix();
 		this.offset = settings.getOffset();
 		this.minNumberOfDigits = settings.getNumberOfDigits();
+		if (settings.getFilenamePattern() != null) {
+			this.pattern = settings.getFilenamePattern();
+		}
+		this.numberingGap = settings.getNumberingGap();
 	}
 
 	/*
@@ -58,16 +93,142 @@ public class DefaultFilenameCalculator implements FilenameCalculator {
 	 */
 	@Override
 	public void calculate(List<ImageFile> images) {
+		if (numberingGap > 0) {
+			calculateSparse(images);
+			return;
+		}
 		numberOfDigits = calculateNumberOfDigits(images);
+		template();
 
-		for (int i = 0; i < images.size(); i++) {
-			ImageFile imageFile = images.get(i);
+		// the filenames of the partitions are independent of each other
+		executor.execute(images, new PartitionedImageModifier() {
 
-			if (imageFile != null) {
-				imageFile.setCalculatedFilename(calculateFilename(i,
-						imageFile.getOriginalFilename()));
+			@Override
+			public void modify(List<ImageFile> images) {
+				modify(images, 0, images.size());
 			}
+
+			@Override
+			public void modify(List<ImageFile> images, int from, int to) {
+				for (int i = from; i < to; i++) {
+					ImageFile imageFile = images.get(i);
+					if (imageFile != null) {
+						imageFile.setCalculatedFilename(calculateFilename(imageFile, i));
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Calculate the filenames with sparse numbers (see {@link SparseNumbering}): the images keep
+	 * the numbers of their current filenames, as long as they are still in order, and the new
+	 * images are numbered in the gaps. The number of digits should be set (see
+	 * {@link #setMinNumberOfDigits(int)}), otherwise all filenames change with the number of
+	 * digits.
+	 * 
+	 * @param images
+	 *            the sorted images
+	 */
+	protected void calculateSparse(List<ImageFile> images) {
+		List<ImageFile> numbered = new ArrayList<>(images.size());
+		for (ImageFile image : images) {
+			if (image != null) {
+				numbered.add(image);
+			}
+		}
+		int[] current = new int[numbered.size()];
+		for (int i = 0; i < current.length; i++) {
+			current[i] = currentNumber(numbered.get(i));
+		}
+		int[] numbers = new SparseNumbering(numberingGap).number(current, offset);
+		numberOfDigits = calculateNumberOfDigits(numbers.length == 0 ? 0
+				: numbers[numbers.length - 1] - offset);
+		FilenameTemplate t = template();
+		for (int i = 0; i < numbers.length; i++) {
+			ImageFile image = numbered.get(i);
+			image.setCalculatedFilename(t.render(image, numbers[i], numberOfDigits));
+		}
+	}
+
+	/**
+	 * Get the number of the current filename of the image, if it is named by the default pattern
+	 * (prefix + number + suffix).
+	 * 
+	 * @param image
+	 *            the image
+	 * @return the number or {@link SparseNumbering#NO_NUMBER}
+	 */
+	protected int currentNumber(ImageFile image) {
+		String name = image.getOriginalFilename();
+		if (name == null || !FilenameTemplate.DEFAULT_PATTERN.equals(pattern)) {
+			return SparseNumbering.NO_NUMBER;
+		}
+		String extension = "." + image.getFileExtension();
+		int end = name.endsWith(extension) ? name.length() - extension.length() : name.length();
+		if (end - prefix.length() - suffix.length() < 1 || !name.startsWith(prefix)
+				|| !name.startsWith(suffix, end - suffix.length())) {
+			return SparseNumbering.NO_NUMBER;
+		}
+		int start = prefix.length();
+		end -= suffix.length();
+		if (end - start > 9) {
+			return SparseNumbering.NO_NUMBER;
+		}
+		int number = 0;
+		for (int i = start; i < end; i++) {
+			char c = name.charAt(i);
+			if (c < '0' || c > '9') {
+				return SparseNumbering.NO_NUMBER;
+			}
+			number = number * 10 + (c - '0');
+		}
+		return number;
+	}
+
+	/**
+	 * Prepare the calculation of the filenames one by one (i.e. while streaming the sorted images,
+	 * see {@link #calculate(ImageFile, int)}).
+	 * 
+	 * @param count
+	 *            the number of images to process
+	 */
+	public void prepare(int count) {
+		numberOfDigits = calculateNumberOfDigits(count);
+	}
+
+	/**
+	 * Calculate the filename of the image at the given index of the sorted images. The calculator
+	 * has to be prepared with the number of images first (see {@link #prepare(int)}).
+	 * 
+	 * @param image
+	 *            the image
+	 * @param index
+	 *            index of the image in the sorted images
+	 */
+	public void calculate(ImageFile image, int index) {
+		image.setCalculatedFilename(calculateFilename(image, index));
+	}
+
+	/**
+	 * Calculate the filenames of the images in the timeline index incrementally: only the images
+	 * from the first position changed since the last calculation are renumbered (all of them, if
+	 * the number of digits changed). The changes of the index are cleared afterwards.
+	 * 
+	 * @param index
+	 *            the ordered images
+	 * @return the number of images renumbered
+	 */
+	public int calculate(TimelineIndex index) {
+		int previousNumberOfDigits = numberOfDigits;
+		numberOfDigits = calculateNumberOfDigits(index.size());
+		int from = numberOfDigits == previousNumberOfDigits ? index.getFirstChange() : 0;
+		int position = from;
+		for (Iterator<ImageFile> it = index.iterator(from); it.hasNext();) {
+			calculate(it.next(), position++);
 		}
+		index.clearChanges();
+		return position - from;
 	}
 
 	/**
@@ -80,8 +241,19 @@ public class DefaultFilenameCalculator implements FilenameCalculator {
 	 * @return the calculated number of digits to use for naming the files
 	 */
 	protected int calculateNumberOfDigits(List<ImageFile> images) {
+		return calculateNumberOfDigits(images.size());
+	}
+
+	/**
+	 * Calculate the number of digits to use for the (new) filename for the given number of images.
+	 * 
+	 * @param count
+	 *            the number of images to process
+	 * @return the calculated number of digits to use for naming the files
+	 */
+	protected int calculateNumberOfDigits(int count) {
 		numberOfDigits = 1;
-		int numberOfImages = images.size() + offset;
+		int numberOfImages = count + offset;
 		int factor = 10;
 		while ((numberOfImages / factor) > 1) {
 			factor *= 10;
@@ -113,12 +285,40 @@ public class DefaultFilenameCalculator implements FilenameCalculator {
 	 * @return the name of the new filename
 	 */
 	protected String calculateFilename(int index, String originalFilename) {
-		StringBuilder pattern = new StringBuilder("%s%0");
-		pattern.append(numberOfDigits);
-		pattern.append("d%s");
-		// TODO: add multiple options for the filenames (possibility to include the original
-		// filename?, ...)
-		return String.format(pattern.toString(), prefix, index + offset, suffix);
+		ImageFile image = null;
+		if (originalFilename != null) {
+			image = new ImageFile();
+			image.setOriginalFilename(originalFilename);
+		}
+		return template().render(image, index + offset, numberOfDigits);
+	}
+
+	/**
+	 * Calculate the new filename for the image at the given index by rendering the template.
+	 * 
+	 * @param image
+	 *            the image
+	 * @param index
+	 *            index of the image in the sorted list
+	 * @return the name of the new filename
+	 */
+	protected String calculateFilename(ImageFile image, int index) {
+		return template().render(image, index + offset, numberOfDigits);
+	}
+
+	/**
+	 * Get the compiled template (the template is compiled on the first use).
+	 */
+	private FilenameTemplate template() {
+		FilenameTemplate t = template;
+		if (t == null) {
+			Map<String, String> variables = new HashMap<>();
+			variables.put("prefix", prefix);
+			variables.put("suffix", suffix);
+			t = FilenameTemplate.compile(pattern, variables);
+			template = t;
+		}
+		return t;
 	}
 
 	// getters and setters
@@ -129,6 +329,7 @@ public class DefaultFilenameCalculator implements FilenameCalculator {
 
 	public void setPrefix(String prefix) {
 		this.prefix = prefix;
+		this.template = null;
 	}
 
 	public String getSuffix() {
@@ -137,6 +338,7 @@ public class DefaultFilenameCalculator implements FilenameCalculator {
 
 	public void setSuffix(String suffix) {
 		this.suffix = suffix;
+		this.template = null;
 	}
 
 	public int getOffset() {
@@ -155,6 +357,31 @@ public class DefaultFilenameCalculator implements FilenameCalculator {
 		this.numberOfDigits = numberOfDigits;
 	}
 
+	public String getPattern() {
+		return pattern;
+	}
+
+	public void setPattern(String pattern) {
+		this.pattern = pattern;
+		this.template = null;
+	}
+
+	public int getNumberingGap() {
+		return numberingGap;
+	}
+
+	public void setNumberingGap(int numberingGap) {
+		this.numberingGap = numberingGap;
+	}
+
+	public ImageModifierExecutor getExecutor() {
+		return executor;
+	}
+
+	public void setExecutor(ImageModifierExecutor executor) {
+		this.executor = executor;
+	}
+
 	public int getMinNumberOfDigits() {
 		return minNumberOfDigits;
 	}
@@ -0,0 +1,394 @@
+package de.halbmann.imagesorter.files;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+/**
+ * Persistent store of the fingerprints of the directories of the last run. The fingerprint of a
+ * directory consists of its last modified time, the number of entries and a hash of the sorted
+ * names of the entries. Together with the fingerprint the entries (the images with their
+ * metadata and the sub-directories, in the order of the listing) are stored, so the images of an
+ * unchanged directory can be reused without listing the directory or reading a file (see
+ * {@link IncrementalImageFileWalker}).
+ * <p>
+ * The fingerprints are only valid for the same configuration of the walk (recursive flag,
+ * extensions and filter rules): if the configuration key differs, the stored fingerprints are
+ * ignored. On saving, the fingerprints of the directories within the walk, that weren't used since
+ * loading, are dropped (deleted directories); the fingerprints of the directories outside the walk
+ * are kept.
+ * </p>
+ *
+ * @author fabian
+ *
+ */
+public class DirectoryFingerprints {
+
+	private static final Logger LOG = Logger.getLogger(DirectoryFingerprints.class.getName());
+
+	private static final int MAGIC = 0x49444631; // "IDF1"
+	private static final int VERSION = 1;
+
+	/**
+	 * marker for a missing absorption time
+	 */
+	private static final long NO_TIME = Long.MIN_VALUE;
+
+	private static final byte TYPE_IMAGE = 0;
+	private static final byte TYPE_DIRECTORY = 1;
+
+	private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+	/**
+	 * the file the fingerprints are stored in
+	 */
+	private final Path file;
+
+	/**
+	 * the key of the configuration of the walk
+	 */
+	private final String configuration;
+
+	/**
+	 * the fingerprints by the absolute path of the directories
+	 */
+	private final Map<String, Fingerprint> fingerprints = new HashMap<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file
+	 *            the file the fingerprints are stored in
+	 * @param configuration
+	 *            the key of the configuration of the walk (the stored fingerprints are only used,
+	 *            if the key is the same)
+	 */
+	public DirectoryFingerprints(Path file, String configuration) {
+		this.file = file;
+		this.configuration = configuration;
+	}
+
+	/**
+	 * Load the fingerprints from the file. If the file doesn't exist (yet), was written with
+	 * another configuration or is corrupt, there will be no fingerprints.
+	 *
+	 * @throws IOException
+	 */
+	public void load() throws IOException {
+		fingerprints.clear();
+		if (!Files.exists(file)) {
+			return;
+		}
+		long startTime = System.currentTimeMillis();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				LOG.log(Level.WARNING, "ignoring fingerprints with unknown format: {0}", file);
+				return;
+			}
+			byte[] bytes = new byte[256];
+			if (!configuration.equals(readString(buffer, bytes))) {
+				LOG.log(Level.INFO, "ignoring fingerprints of another configuration: {0}", file);
+				return;
+			}
+			String[] models = new String[readCount(buffer)];
+			for (int i = 0; i < models.length; i++) {
+				models[i] = readString(buffer, bytes);
+			}
+			int count = buffer.getInt();
+			for (int i = 0; i < count; i++) {
+				String path = readString(buffer, bytes);
+				Fingerprint fingerprint = new Fingerprint(buffer.getLong(), buffer.getInt(),
+						buffer.getLong());
+				int entries = buffer.getInt();
+				for (int j = 0; j < entries; j++) {
+					String name = readString(buffer, bytes);
+					Entry entry = new Entry(name, buffer.get() == TYPE_DIRECTORY);
+					if (!entry.directory) {
+						entry.orientation = buffer.getInt();
+						entry.absorptionTime = buffer.getLong();
+						int model = buffer.getInt();
+						entry.cameraModel = model < 0 ? null : models[model];
+					}
+					fingerprint.entries.add(entry);
+				}
+				fingerprints.put(path, fingerprint);
+			}
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			LOG.log(Level.WARNING, "ignoring corrupt fingerprints: {0}", file);
+			fingerprints.clear();
+		}
+		long endTime = System.currentTimeMillis();
+		LOG.log(Level.FINE, "loaded {0} directory fingerprints in {1} ms", new Object[] {
+				fingerprints.size(), endTime - startTime });
+	}
+
+	/**
+	 * Save the used (and valid) fingerprints to the file (the unused ones are dropped). The file
+	 * will be written to a temporary file first and then moved to the final location.
+	 *
+	 * @throws IOException
+	 */
+	public void save() throws IOException {
+		save(null, true);
+	}
+
+	/**
+	 * Save the valid fingerprints to the file: the unused fingerprints of the directories within
+	 * the walk are dropped, the ones of the directories outside the walk are kept. The file will
+	 * be written to a temporary file first and then moved to the final location.
+	 *
+	 * @param root
+	 *            the root of the walk (null for all the directories)
+	 * @param recursive
+	 *            flag whether the walk included the subdirectories of the root
+	 * @throws IOException
+	 */
+	public void save(Path root, boolean recursive) throws IOException {
+		// the directories are keyed by their absolute paths
+		Path start = root == null ? null : root.toAbsolutePath();
+		List<String> paths = new ArrayList<>();
+		List<Fingerprint> kept = new ArrayList<>();
+		List<String> models = new ArrayList<>();
+		Map<String, Integer> modelIndex = new HashMap<>();
+		for (Map.Entry<String, Fingerprint> e : fingerprints.entrySet()) {
+			Fingerprint fingerprint = e.getValue();
+			if (!fingerprint.valid || !fingerprint.used && isWalked(e.getKey(), start, recursive)) {
+				continue;
+			}
+			paths.add(e.getKey());
+			kept.add(fingerprint);
+			for (Entry entry : fingerprint.entries) {
+				if (entry.cameraModel != null && !modelIndex.containsKey(entry.cameraModel)) {
+					modelIndex.put(entry.cameraModel, models.size());
+					models.add(entry.cameraModel);
+				}
+			}
+		}
+
+		Path dir = file.toAbsolutePath().getParent();
+		if (dir != null && !Files.exists(dir)) {
+			Files.createDirectories(dir);
+		}
+		Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(tmp), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, configuration);
+			out.writeInt(models.size());
+			for (String model : models) {
+				writeString(out, model);
+			}
+			out.writeInt(kept.size());
+			for (int i = 0; i < kept.size(); i++) {
+				Fingerprint fingerprint = kept.get(i);
+				writeString(out, paths.get(i));
+				out.writeLong(fingerprint.lastModified);
+				out.writeInt(fingerprint.entryCount);
+				out.writeLong(fingerprint.nameHash);
+				out.writeInt(fingerprint.entries.size());
+				for (Entry entry : fingerprint.entries) {
+					writeString(out, entry.name);
+					out.writeByte(entry.directory ? TYPE_DIRECTORY : TYPE_IMAGE);
+					if (!entry.directory) {
+						out.writeInt(entry.orientation);
+						out.writeLong(entry.absorptionTime);
+						out.writeInt(entry.cameraModel == null ? -1 : modelIndex
+								.get(entry.cameraModel));
+					}
+				}
+			}
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+		LOG.log(Level.FINE, "saved {0} of {1} directory fingerprints", new Object[] { kept.size(),
+				fingerprints.size() });
+	}
+
+	/**
+	 * Get the fingerprint of the directory from the last run and mark it as used.
+	 *
+	 * @param dir
+	 *            the absolute path of the directory
+	 * @return the fingerprint or null, if the directory is unknown
+	 */
+	Fingerprint get(String dir) {
+		Fingerprint fingerprint = fingerprints.get(dir);
+		if (fingerprint != null) {
+			fingerprint.used = true;
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Add (or replace) the fingerprint of the directory.
+	 *
+	 * @param dir
+	 *            the absolute path of the directory
+	 * @param fingerprint
+	 *            the (new) fingerprint
+	 */
+	void put(String dir, Fingerprint fingerprint) {
+		fingerprint.used = true;
+		fingerprints.put(dir, fingerprint);
+	}
+
+	public int size() {
+		return fingerprints.size();
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Check, if the directory was within the walk (the directories are keyed like the walk found
+	 * them).
+	 */
+	private static boolean isWalked(String dir, Path root, boolean recursive) {
+		if (root == null) {
+			return true;
+		}
+		Path p = Paths.get(dir);
+		return recursive ? p.startsWith(root) : p.equals(root);
+	}
+
+	/**
+	 * Read the number of strings and check it against the remaining bytes (a corrupt count would
+	 * allocate a huge array).
+	 */
+	private static int readCount(MappedByteBuffer buffer) {
+		int count = buffer.getInt();
+		// each string needs its length at least
+		if (count < 0 || count > buffer.remaining() / 4) {
+			throw new BufferUnderflowException();
+		}
+		return count;
+	}
+
+	private static String readString(MappedByteBuffer buffer, byte[] bytes) {
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		if (length > bytes.length) {
+			bytes = new byte[length];
+		}
+		buffer.get(bytes, 0, length);
+		return new String(bytes, 0, length, CHARSET);
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(CHARSET);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Calculate the hash of the (sorted) names of the entries of a directory (64 bit FNV-1a).
+	 *
+	 * @param sortedNames
+	 *            the sorted names
+	 * @return the hash
+	 */
+	static long hash(List<String> sortedNames) {
+		long hash = 0xcbf29ce484222325L;
+		for (String name : sortedNames) {
+			for (int i = 0; i < name.length(); i++) {
+				hash = (hash ^ name.charAt(i)) * 0x100000001b3L;
+			}
+			// separator
+			hash = (hash ^ 0xFFFF) * 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * The fingerprint of a directory with its entries.
+	 */
+	static class Fingerprint {
+
+		long lastModified;
+		final int entryCount;
+		final long nameHash;
+
+		/**
+		 * the images and sub-directories in the order of the listing
+		 */
+		final List<Entry> entries = new ArrayList<>();
+
+		/**
+		 * flag whether the fingerprint was used since loading (the unused fingerprints within the
+		 * walk will be dropped)
+		 */
+		boolean used;
+
+		/**
+		 * flag whether all the entries are complete (a fingerprint with an image, that couldn't be
+		 * read, won't be saved)
+		 */
+		volatile boolean valid = true;
+
+		Fingerprint(long lastModified, int entryCount, long nameHash) {
+			this.lastModified = lastModified;
+			this.entryCount = entryCount;
+			this.nameHash = nameHash;
+		}
+	}
+
+	/**
+	 * An entry of a directory: an image with its metadata or a sub-directory.
+	 */
+	static class Entry {
+
+		final String name;
+		final boolean directory;
+		int orientation;
+		long absorptionTime = NO_TIME;
+		String cameraModel;
+
+		Entry(String name, boolean directory) {
+			this.name = name;
+			this.directory = directory;
+		}
+
+		/**
+		 * Set the metadata to the given ImageFile.
+		 */
+		void copyTo(ImageFile image) {
+			image.setOrientation(orientation);
+			image.setCameraModel(cameraModel);
+			image.setOriginalAbsorptionTime(absorptionTime == NO_TIME ? null : new Date(
+					absorptionTime));
+		}
+
+		/**
+		 * Take the metadata from the given ImageFile.
+		 */
+		void copyFrom(ImageFile image) {
+			orientation = image.getOrientation();
+			cameraModel = image.getCameraModel();
+			Date time = image.getOriginalAbsorptionTime();
+			absorptionTime = time == null ? NO_TIME : time.getTime();
+		}
+	}
+}
@@ -0,0 +1,357 @@
+package de.halbmann.imagesorter.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Calendar;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+/**
+ * Fast reader for the few exif tags the image sorter needs (orientation, camera model and the
+ * original absorption time). Instead of parsing the whole JPEG header with all its directories,
+ * this reader only scans the segment markers up to the APP1 (exif) segment and decodes the
+ * required tags directly from the TIFF block.
+ * <p>
+ * If anything unusual is found (no exif segment, missing tags, unexpected formats, ...) the
+ * reader returns false and the caller should fall back to the metadata-extractor.
+ * </p>
+ *
+ * @author fabian
+ *
+ */
+public class ExifHeaderReader {
+
+	private static final int MARKER_PREFIX = 0xFF;
+	private static final int MARKER_SOI = 0xD8;
+	private static final int MARKER_EOI = 0xD9;
+	private static final int MARKER_SOS = 0xDA;
+	private static final int MARKER_APP1 = 0xE1;
+
+	private static final int TAG_MODEL = 0x0110;
+	private static final int TAG_ORIENTATION = 0x0112;
+	private static final int TAG_EXIF_SUB_IFD_OFFSET = 0x8769;
+	private static final int TAG_DATETIME_ORIGINAL = 0x9003;
+
+	private static final int FORMAT_STRING = 2;
+	private static final int FORMAT_USHORT = 3;
+	private static final int FORMAT_ULONG = 4;
+
+	/**
+	 * the preamble of the exif segment ("Exif\0\0")
+	 */
+	private static final byte[] EXIF_PREAMBLE = { 'E', 'x', 'i', 'f', 0, 0 };
+
+	/**
+	 * length of the (null terminated) date string "yyyy:MM:dd HH:mm:ss"
+	 */
+	private static final int DATE_LENGTH = 20;
+
+	/**
+	 * Buffer for the segment data. A JPEG segment can't be larger than 64 KB, so one buffer per
+	 * thread can be reused for all files.
+	 */
+	private static final ThreadLocal<ByteBuffer> BUFFER = new ThreadLocal<ByteBuffer>() {
+
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocate(0x10000);
+		}
+	};
+
+	/**
+	 * Calendar for building the absorption time (reused per thread).
+	 */
+	private static final ThreadLocal<Calendar> CALENDAR = new ThreadLocal<Calendar>() {
+
+		@Override
+		protected Calendar initialValue() {
+			return Calendar.getInstance();
+		}
+	};
+
+	/**
+	 * Read the orientation, the camera model and the original absorption time from the exif header
+	 * of the given file and set them to the ImageFile.
+	 *
+	 * @param file
+	 *            the JPEG file to read
+	 * @param image
+	 *            the ImageFile to set the metadata to
+	 * @return true, if all the metadata could be read; false, if the caller has to fall back to the
+	 *         full metadata parsing (the image won't be modified in that case)
+	 * @throws IOException
+	 */
+	public boolean read(File file, ImageFile image) throws IOException {
+		ByteBuffer buffer = BUFFER.get();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			int length = readExifSegment(channel, buffer);
+			if (length < 0) {
+				return false;
+			}
+			return decodeTiff(buffer, EXIF_PREAMBLE.length, length, image);
+		} finally {
+			buffer.clear();
+			buffer.order(ByteOrder.BIG_ENDIAN);
+		}
+	}
+
+	/**
+	 * Scan the segment markers and read the content of the exif (APP1) segment into the buffer.
+	 *
+	 * @param channel
+	 *            the channel of the JPEG file
+	 * @param buffer
+	 *            the buffer to read the segment into
+	 * @return the length of the segment content in the buffer or -1, if there is no exif segment
+	 * @throws IOException
+	 */
+	private int readExifSegment(FileChannel channel, ByteBuffer buffer) throws IOException {
+		if (!readFully(channel, buffer, 0, 2) || (buffer.get(0) & 0xFF) != MARKER_PREFIX
+				|| (buffer.get(1) & 0xFF) != MARKER_SOI) {
+			return -1;
+		}
+
+		long position = 2;
+		while (readFully(channel, buffer, position, 4)) {
+			if ((buffer.get(0) & 0xFF) != MARKER_PREFIX) {
+				return -1;
+			}
+			int marker = buffer.get(1) & 0xFF;
+			if (marker == MARKER_PREFIX) {
+				// fill byte
+				position++;
+				continue;
+			}
+			if (marker == MARKER_SOS || marker == MARKER_EOI) {
+				// the image data starts here, there won't be any (more) metadata
+				return -1;
+			}
+			int segmentLength = (buffer.getShort(2) & 0xFFFF) - 2;
+			if (segmentLength < 0) {
+				return -1;
+			}
+			if (marker == MARKER_APP1 && segmentLength > EXIF_PREAMBLE.length) {
+				if (!readFully(channel, buffer, position + 4, segmentLength)) {
+					return -1;
+				}
+				if (isExifSegment(buffer)) {
+					return segmentLength;
+				}
+				// another APP1 segment (i.e. XMP), skip it
+			}
+			position += 4 + segmentLength;
+		}
+		return -1;
+	}
+
+	private boolean isExifSegment(ByteBuffer buffer) {
+		for (int i = 0; i < EXIF_PREAMBLE.length; i++) {
+			if (buffer.get(i) != EXIF_PREAMBLE[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Decode the tags from the TIFF block in the buffer.
+	 *
+	 * @param buffer
+	 *            the buffer containing the exif segment
+	 * @param base
+	 *            start of the TIFF block in the buffer
+	 * @param length
+	 *            length of the exif segment in the buffer
+	 * @param image
+	 *            the ImageFile to set the metadata to
+	 * @return true, if all the required tags were found
+	 */
+	private boolean decodeTiff(ByteBuffer buffer, int base, int length, ImageFile image) {
+		if (length < base + 8) {
+			return false;
+		}
+		int byteOrder = buffer.getShort(base) & 0xFFFF;
+		if (byteOrder == 0x4949) {
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+		} else if (byteOrder == 0x4D4D) {
+			buffer.order(ByteOrder.BIG_ENDIAN);
+		} else {
+			return false;
+		}
+		if ((buffer.getShort(base + 2) & 0xFFFF) != 0x2A) {
+			return false;
+		}
+
+		// IFD0: orientation, model and the pointer to the exif sub IFD
+		int ifd0 = buffer.getInt(base + 4);
+		int entries = entryCount(buffer, base, length, ifd0);
+		if (entries < 0) {
+			return false;
+		}
+		int orientation = -1;
+		String model = null;
+		int subIfd = -1;
+		for (int i = 0; i < entries; i++) {
+			int entry = base + ifd0 + 2 + i * 12;
+			int tag = buffer.getShort(entry) & 0xFFFF;
+			int format = buffer.getShort(entry + 2) & 0xFFFF;
+			if (tag == TAG_ORIENTATION) {
+				orientation = intValue(buffer, entry, format);
+			} else if (tag == TAG_MODEL) {
+				int offset = valueOffset(buffer, base, length, entry);
+				if (format != FORMAT_STRING || offset < 0) {
+					return false;
+				}
+				model = string(buffer, offset, buffer.getInt(entry + 4));
+			} else if (tag == TAG_EXIF_SUB_IFD_OFFSET) {
+				subIfd = intValue(buffer, entry, format);
+			}
+		}
+		if (orientation < 0 || subIfd < 0) {
+			return false;
+		}
+
+		// exif sub IFD: original absorption time
+		entries = entryCount(buffer, base, length, subIfd);
+		if (entries < 0) {
+			return false;
+		}
+		for (int i = 0; i < entries; i++) {
+			int entry = base + subIfd + 2 + i * 12;
+			int tag = buffer.getShort(entry) & 0xFFFF;
+			if (tag == TAG_DATETIME_ORIGINAL) {
+				int format = buffer.getShort(entry + 2) & 0xFFFF;
+				int offset = valueOffset(buffer, base, length, entry);
+				if (format != FORMAT_STRING || offset < 0 || buffer.getInt(entry + 4) < DATE_LENGTH
+						|| !setAbsorptionTime(buffer, offset, image)) {
+					return false;
+				}
+				image.setOrientation(orientation);
+				image.setCameraModel(model);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the number of entries of the IFD at the given offset or -1, if the IFD doesn't fit
+	 *         into the segment
+	 */
+	private int entryCount(ByteBuffer buffer, int base, int length, int ifdOffset) {
+		if (ifdOffset < 8 || ifdOffset > length || base + ifdOffset + 2 > length) {
+			return -1;
+		}
+		int entries = buffer.getShort(base + ifdOffset) & 0xFFFF;
+		if (base + ifdOffset + 2 + entries * 12 > length) {
+			return -1;
+		}
+		return entries;
+	}
+
+	/**
+	 * @return the (unsigned short or long) value of the entry or -1 for other formats
+	 */
+	private int intValue(ByteBuffer buffer, int entry, int format) {
+		if (format == FORMAT_USHORT) {
+			return buffer.getShort(entry + 8) & 0xFFFF;
+		} else if (format == FORMAT_ULONG) {
+			return buffer.getInt(entry + 8);
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the position of the (string) value of the entry in the buffer or -1, if the value
+	 *         doesn't fit into the segment
+	 */
+	private int valueOffset(ByteBuffer buffer, int base, int length, int entry) {
+		int count = buffer.getInt(entry + 4);
+		if (count < 0) {
+			return -1;
+		}
+		if (count <= 4) {
+			return entry + 8;
+		}
+		int offset = buffer.getInt(entry + 8);
+		// compared by the remaining bytes, as the sum overflows for a corrupt count
+		if (offset < 0 || offset > length - base || count > length - base - offset) {
+			return -1;
+		}
+		return base + offset;
+	}
+
+	/**
+	 * Read the null terminated string (the same way the metadata-extractor does it).
+	 */
+	private String string(ByteBuffer buffer, int offset, int maxLength) {
+		int length = 0;
+		while (length < maxLength && buffer.get(offset + length) != 0) {
+			length++;
+		}
+		return new String(buffer.array(), offset, length);
+	}
+
+	/**
+	 * Parse the date string "yyyy:MM:dd HH:mm:ss" and set it as original absorption time.
+	 *
+	 * @return false, if the date has another format
+	 */
+	private boolean setAbsorptionTime(ByteBuffer buffer, int offset, ImageFile image) {
+		int year = number(buffer, offset, 4, ':');
+		int month = number(buffer, offset + 5, 2, ':');
+		int day = number(buffer, offset + 8, 2, ' ');
+		int hour = number(buffer, offset + 11, 2, ':');
+		int minute = number(buffer, offset + 14, 2, ':');
+		int second = number(buffer, offset + 17, 2, (char) 0);
+		if (year <= 0 || month <= 0 || day <= 0 || hour < 0 || minute < 0 || second < 0) {
+			return false;
+		}
+		Calendar cal = CALENDAR.get();
+		cal.clear();
+		cal.set(year, month - 1, day, hour, minute, second);
+		image.setOriginalAbsorptionTime(cal.getTime());
+		return true;
+	}
+
+	/**
+	 * @return the number with the given digits (followed by the separator) or -1
+	 */
+	private int number(ByteBuffer buffer, int offset, int digits, char separator) {
+		int value = 0;
+		for (int i = 0; i < digits; i++) {
+			int c = buffer.get(offset + i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+		}
+		if (buffer.get(offset + digits) != separator) {
+			return -1;
+		}
+		return value;
+	}
+
+	/**
+	 * Read the given number of bytes from the given position of the channel to the beginning of
+	 * the buffer.
+	 *
+	 * @return false, if the end of the file was reached
+	 */
+	private boolean readFully(FileChannel channel, ByteBuffer buffer, long position, int length)
+			throws IOException {
+		buffer.clear();
+		buffer.limit(length);
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+			if (read < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,370 @@
+package de.halbmann.imagesorter.files;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Copies files by the cheapest {@link CopyStrategy} that works for the source and the target.
+ * The strategies are tried in their order; if a strategy isn't applicable or fails, the next one
+ * is tried (a partially written target is deleted before). The built-in strategies are:
+ * <ul>
+ * <li>{@link HardLinkStrategy}: a hard link, if the source and the target are on the same
+ * {@link FileStore} (instant and no extra space, but the copy shares the data with the original,
+ * so it's only used, if enabled)</li>
+ * <li>{@link ReflinkStrategy}: a copy-on-write clone (btrfs, xfs, APFS, ...), no extra space
+ * until one of the files is modified, but a process per file (so it's only used, if enabled)</li>
+ * <li>{@link TransferStrategy}: a (zero-copy) copy of the data by {@link FileChannel#transferTo}
+ * in large chunks, that always works</li>
+ * </ul>
+ * The copier is thread-safe.
+ *
+ * @author fabian
+ *
+ */
+public class FileCopier {
+
+	private static final Logger LOG = Logger.getLogger(FileCopier.class.getName());
+
+	/**
+	 * the maximum number of directories, whose file store is cached
+	 */
+	private static final int MAX_CACHED_STORES = 1024;
+
+	/**
+	 * the file stores of the directories (looking the store up is expensive on some platforms)
+	 */
+	private static final Map<Path, FileStore> STORES = new ConcurrentHashMap<>();
+
+	private final List<CopyStrategy> strategies;
+
+	/**
+	 * the number of copies by the strategies
+	 */
+	private final AtomicInteger[] copies;
+
+	/**
+	 * the number of failed strategies, that were fallen back from
+	 */
+	private final AtomicInteger fallbacks = new AtomicInteger();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param strategies
+	 *            the strategies to try in this order
+	 */
+	public FileCopier(CopyStrategy... strategies) {
+		if (strategies.length == 0) {
+			throw new IllegalArgumentException("at least one strategy needed");
+		}
+		this.strategies = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(strategies)));
+		this.copies = new AtomicInteger[strategies.length];
+		for (int i = 0; i < copies.length; i++) {
+			copies[i] = new AtomicInteger();
+		}
+	}
+
+	/**
+	 * Create a copier with the built-in strategies.
+	 *
+	 * @param hardLinks
+	 *            link the files on the same file store (the copies share the data with the
+	 *            originals)
+	 * @param reflinks
+	 *            clone the files, if the file system supports it (a process per file)
+	 * @return the copier
+	 */
+	public static FileCopier create(boolean hardLinks, boolean reflinks) {
+		List<CopyStrategy> list = new ArrayList<>();
+		if (hardLinks) {
+			list.add(new HardLinkStrategy());
+		}
+		if (reflinks) {
+			list.add(new ReflinkStrategy());
+		}
+		list.add(new TransferStrategy());
+		return new FileCopier(list.toArray(new CopyStrategy[list.size()]));
+	}
+
+	/**
+	 * Copy the source file to the target file (the target is overwritten, if it exists).
+	 *
+	 * @param source
+	 *            the source file
+	 * @param target
+	 *            the target file
+	 * @return the number of bytes written (0, if the file was linked or cloned)
+	 * @throws IOException
+	 *             the error of the last strategy tried (the errors of the others are added as
+	 *             suppressed exceptions)
+	 */
+	public long copy(Path source, Path target) throws IOException {
+		boolean existed = Files.exists(target);
+		if (existed && Files.isSameFile(source, target)) {
+			// nothing to do (and the strategies would truncate the source)
+			return 0;
+		}
+		IOException error = null;
+		for (int i = 0; i < strategies.size(); i++) {
+			CopyStrategy strategy = strategies.get(i);
+			try {
+				if (!strategy.isApplicable(source, target)) {
+					continue;
+				}
+				long bytes = strategy.copy(source, target);
+				copies[i].incrementAndGet();
+				if (error != null) {
+					LOG.log(Level.FINE, "copied {0} by {1} after: {2}", new Object[] { source,
+							strategy.getName(), error.getMessage() });
+				}
+				return bytes;
+			} catch (IOException e) {
+				fallbacks.incrementAndGet();
+				if (error == null) {
+					error = e;
+				} else {
+					error.addSuppressed(e);
+				}
+				if (!existed) {
+					Files.deleteIfExists(target);
+				}
+			}
+		}
+		if (error == null) {
+			throw new IOException("no copy strategy applicable for: " + source + " -> " + target);
+		}
+		throw error;
+	}
+
+	/**
+	 * @return the strategies in the order they are tried
+	 */
+	public List<CopyStrategy> getStrategies() {
+		return strategies;
+	}
+
+	/**
+	 * @param strategy
+	 *            one of the strategies of the copier
+	 * @return the number of files copied by the strategy
+	 */
+	public int getCopies(CopyStrategy strategy) {
+		int index = strategies.indexOf(strategy);
+		return index < 0 ? 0 : copies[index].get();
+	}
+
+	/**
+	 * @return the number of times a strategy failed and the next one was tried
+	 */
+	public int getFallbacks() {
+		return fallbacks.get();
+	}
+
+	/**
+	 * Check, if the file and the directory are on the same file store.
+	 *
+	 * @param file
+	 *            the file
+	 * @param directory
+	 *            the directory
+	 * @return true, if both are on the same file store
+	 * @throws IOException
+	 */
+	static boolean isSameFileStore(Path file, Path directory) throws IOException {
+		Path parent = file.toAbsolutePath().getParent();
+		return directory != null && parent != null
+				&& getFileStore(parent).equals(getFileStore(directory.toAbsolutePath()));
+	}
+
+	private static FileStore getFileStore(Path directory) throws IOException {
+		FileStore store = STORES.get(directory);
+		if (store == null) {
+			store = Files.getFileStore(directory);
+			if (STORES.size() >= MAX_CACHED_STORES) {
+				STORES.clear();
+			}
+			STORES.put(directory, store);
+		}
+		return store;
+	}
+
+	/**
+	 * Hard links the target to the source, if both are on the same file store and the target
+	 * doesn't exist yet.
+	 */
+	public static class HardLinkStrategy implements CopyStrategy {
+
+		@Override
+		public String getName() {
+			return "hard link";
+		}
+
+		@Override
+		public boolean isApplicable(Path source, Path target) throws IOException {
+			return !Files.exists(target) && isSameFileStore(source, target.getParent());
+		}
+
+		@Override
+		public long copy(Path source, Path target) throws IOException {
+			Files.createLink(target, source);
+			return 0;
+		}
+	}
+
+	/**
+	 * Clones the source by a copy-on-write clone (reflink) of the file system. As there is no
+	 * portable API for it, the clone is made by <code>cp --reflink=always</code>, which costs a
+	 * process per file (a few milliseconds, so it pays off for large files only). A file store,
+	 * that doesn't support it, isn't tried again.
+	 */
+	public static class ReflinkStrategy implements CopyStrategy {
+
+		/**
+		 * the file stores without reflinks (the support doesn't change while running)
+		 */
+		private static final Set<FileStore> UNSUPPORTED = Collections
+				.newSetFromMap(new ConcurrentHashMap<FileStore, Boolean>());
+
+		/**
+		 * false, if there is no cp with reflinks at all
+		 */
+		private static volatile boolean available = !System.getProperty("os.name", "")
+				.startsWith("Windows");
+
+		@Override
+		public String getName() {
+			return "reflink";
+		}
+
+		@Override
+		public boolean isApplicable(Path source, Path target) throws IOException {
+			Path directory = target.toAbsolutePath().getParent();
+			return available && directory != null
+					&& !UNSUPPORTED.contains(getFileStore(directory))
+					&& isSameFileStore(source, directory);
+		}
+
+		@Override
+		public long copy(Path source, Path target) throws IOException {
+			Process process;
+			try {
+				process = new ProcessBuilder("cp", "--reflink=always", "--", source.toString(),
+						target.toString()).redirectErrorStream(true).start();
+			} catch (IOException e) {
+				available = false;
+				throw e;
+			}
+			String output = drain(process.getInputStream());
+			int exitCode;
+			try {
+				exitCode = process.waitFor();
+			} catch (InterruptedException e) {
+				process.destroy();
+				Thread.currentThread().interrupt();
+				throw new IOException("interrupted while cloning: " + source, e);
+			}
+			if (exitCode != 0) {
+				UNSUPPORTED.add(getFileStore(target.toAbsolutePath().getParent()));
+				throw new IOException("clone failed (" + exitCode + "): " + output.trim());
+			}
+			return 0;
+		}
+
+		private static String drain(InputStream in) throws IOException {
+			StringBuilder sb = new StringBuilder();
+			try {
+				byte[] buffer = new byte[1024];
+				int n;
+				while ((n = in.read(buffer)) > 0) {
+					if (sb.length() < 1024) {
+						sb.append(new String(buffer, 0, n));
+					}
+				}
+			} finally {
+				in.close();
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Copies the data by {@link FileChannel#transferTo} in large chunks (the kernel copies the data
+	 * without a user space buffer, where possible). The transfer is repeated until all the data is
+	 * copied, as a single transfer may copy less than requested.
+	 */
+	public static class TransferStrategy implements CopyStrategy {
+
+		/**
+		 * the default size of the chunks transferred at once
+		 */
+		public static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+
+		private final long chunkSize;
+
+		public TransferStrategy() {
+			this(DEFAULT_CHUNK_SIZE);
+		}
+
+		/**
+		 * Constructor.
+		 *
+		 * @param chunkSize
+		 *            the size of the chunks transferred at once
+		 */
+		public TransferStrategy(long chunkSize) {
+			if (chunkSize <= 0) {
+				throw new IllegalArgumentException("chunk size must be positive: " + chunkSize);
+			}
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		public String getName() {
+			return "transfer";
+		}
+
+		@Override
+		public boolean isApplicable(Path source, Path target) {
+			return true;
+		}
+
+		@Override
+		public long copy(Path source, Path target) throws IOException {
+			try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+					FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE,
+							StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				long size = in.size();
+				long position = 0;
+				while (position < size) {
+					long n = in.transferTo(position, Math.min(chunkSize, size - position), out);
+					if (n <= 0) {
+						// the source was truncated while copying
+						throw new IOException("unexpected end of file at " + position + " of "
+								+ size + ": " + source);
+					}
+					position += n;
+				}
+				return position;
+			}
+		}
+
+		public long getChunkSize() {
+			return chunkSize;
+		}
+	}
+}
@@ -0,0 +1,356 @@
+package de.halbmann.imagesorter.files;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+/**
+ * Template for the new filenames, that is compiled once into a list of tokens and then rendered
+ * for every image without parsing a format string (like {@link String#format(String, Object...)}
+ * would). The numbers and dates are formatted by hand into a reused StringBuilder per thread, so
+ * rendering a filename only allocates the resulting String. The template is immutable and can be
+ * rendered by several threads in parallel.
+ * <p>
+ * The placeholders of the template are:
+ * <ul>
+ * <li><code>{seq}</code>: the number of the image with the leading zeros of the calculator,
+ * <code>{seq:05}</code> with (at least) the given number of digits</li>
+ * <li><code>{date:yyyyMMdd}</code>: the (effective) absorption time with the pattern letters
+ * <code>yyyy</code>, <code>yy</code>, <code>MM</code>, <code>dd</code>, <code>HH</code>,
+ * <code>mm</code> and <code>ss</code> in the default time zone (other characters are copied);
+ * empty for an image without absorption time</li>
+ * <li><code>{camera}</code>: the camera model (the characters, that aren't letters, digits, '-'
+ * or '.', are replaced by '_')</li>
+ * <li><code>{name}</code>: the original filename</li>
+ * <li>any other name: the value of the variable of that name (i.e. <code>{prefix}</code> and
+ * <code>{suffix}</code>)</li>
+ * </ul>
+ * </p>
+ *
+ * @author fabian
+ *
+ */
+public class FilenameTemplate {
+
+	/**
+	 * the template of the default filenames: prefix + number + suffix
+	 */
+	public static final String DEFAULT_PATTERN = "{prefix}{seq}{suffix}";
+
+	private static final int LITERAL = 0;
+	private static final int SEQUENCE = 1;
+	private static final int DATE = 2;
+	private static final int CAMERA = 3;
+	private static final int NAME = 4;
+
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	private static final ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<StringBuilder>() {
+
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(64);
+		}
+	};
+
+	private final String pattern;
+
+	private final Token[] tokens;
+
+	private final TimeZone timeZone;
+
+	private FilenameTemplate(String pattern, List<Token> tokens, TimeZone timeZone) {
+		this.pattern = pattern;
+		this.tokens = tokens.toArray(new Token[tokens.size()]);
+		this.timeZone = timeZone;
+	}
+
+	/**
+	 * Compile the template with an empty prefix and suffix.
+	 *
+	 * @param pattern
+	 *            the pattern of the filenames
+	 * @return the compiled template
+	 */
+	public static FilenameTemplate compile(String pattern) {
+		Map<String, String> variables = new HashMap<>();
+		variables.put("prefix", "");
+		variables.put("suffix", "");
+		return compile(pattern, variables);
+	}
+
+	/**
+	 * Compile the template. The variables are resolved while compiling.
+	 *
+	 * @param pattern
+	 *            the pattern of the filenames
+	 * @param variables
+	 *            the values of the variables (i.e. "prefix" and "suffix")
+	 * @return the compiled template
+	 * @throws IllegalArgumentException
+	 *             if the pattern is invalid or uses an unknown variable
+	 */
+	public static FilenameTemplate compile(String pattern, Map<String, String> variables) {
+		List<Token> tokens = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		int i = 0;
+		while (i < pattern.length()) {
+			char c = pattern.charAt(i);
+			if (c != '{') {
+				literal.append(c);
+				i++;
+				continue;
+			}
+			int end = pattern.indexOf('}', i);
+			if (end < 0) {
+				throw new IllegalArgumentException("unclosed placeholder in pattern: " + pattern);
+			}
+			String placeholder = pattern.substring(i + 1, end);
+			int colon = placeholder.indexOf(':');
+			String name = colon < 0 ? placeholder : placeholder.substring(0, colon);
+			String argument = colon < 0 ? null : placeholder.substring(colon + 1);
+			i = end + 1;
+
+			if (variables.containsKey(name) && argument == null) {
+				String value = variables.get(name);
+				literal.append(value == null ? "" : value);
+				continue;
+			}
+			if (literal.length() > 0) {
+				tokens.add(new Token(LITERAL, literal.toString(), 0));
+				literal.setLength(0);
+			}
+			switch (name) {
+			case "seq":
+				tokens.add(new Token(SEQUENCE, null, argument == null ? -1 : parseWidth(argument,
+						pattern)));
+				break;
+			case "date":
+				if (argument == null || argument.isEmpty()) {
+					throw new IllegalArgumentException("missing date pattern: " + pattern);
+				}
+				tokens.add(new Token(DATE, argument, 0));
+				break;
+			case "camera":
+				tokens.add(new Token(CAMERA, null, 0));
+				break;
+			case "name":
+				tokens.add(new Token(NAME, null, 0));
+				break;
+			default:
+				throw new IllegalArgumentException("unknown placeholder {" + placeholder
+						+ "} in pattern: " + pattern);
+			}
+		}
+		if (literal.length() > 0) {
+			tokens.add(new Token(LITERAL, literal.toString(), 0));
+		}
+		return new FilenameTemplate(pattern, tokens, TimeZone.getDefault());
+	}
+
+	private static int parseWidth(String argument, String pattern) {
+		try {
+			return Integer.parseInt(argument);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("invalid width of {seq:" + argument
+					+ "} in pattern: " + pattern);
+		}
+	}
+
+	/**
+	 * Render the filename of the image.
+	 *
+	 * @param image
+	 *            the image (or null, then the date, camera and name are empty)
+	 * @param number
+	 *            the number of the image
+	 * @param digits
+	 *            the number of digits of <code>{seq}</code> (without width)
+	 * @return the filename
+	 */
+	public String render(ImageFile image, int number, int digits) {
+		StringBuilder builder = BUILDER.get();
+		builder.setLength(0);
+		render(image, number, digits, builder);
+		return builder.toString();
+	}
+
+	/**
+	 * Render the filename of the image into the given StringBuilder.
+	 *
+	 * @param image
+	 *            the image (or null, then the date, camera and name are empty)
+	 * @param number
+	 *            the number of the image
+	 * @param digits
+	 *            the number of digits of <code>{seq}</code> (without width)
+	 * @param out
+	 *            the builder to append the filename to
+	 */
+	public void render(ImageFile image, int number, int digits, StringBuilder out) {
+		for (Token token : tokens) {
+			switch (token.type) {
+			case LITERAL:
+				out.append(token.text);
+				break;
+			case SEQUENCE:
+				appendNumber(out, number, token.width < 0 ? digits : token.width);
+				break;
+			case DATE:
+				appendDate(out, image, token.text);
+				break;
+			case CAMERA:
+				appendCamera(out, image == null ? null : image.getCameraModel());
+				break;
+			case NAME:
+				if (image != null && image.getOriginalFilename() != null) {
+					out.append(image.getOriginalFilename());
+				}
+				break;
+			default:
+				throw new IllegalStateException();
+			}
+		}
+	}
+
+	/**
+	 * Append the number with leading zeros.
+	 *
+	 * @param out
+	 *            the builder
+	 * @param number
+	 *            the number
+	 * @param digits
+	 *            the minimum number of digits
+	 */
+	static void appendNumber(StringBuilder out, long number, int digits) {
+		if (number < 0) {
+			// the sign counts as digit (like String.format)
+			out.append('-');
+			number = -number;
+			digits--;
+		}
+		int length = 1;
+		for (long n = number / 10; n > 0; n /= 10) {
+			length++;
+		}
+		for (int i = length; i < digits; i++) {
+			out.append('0');
+		}
+		int start = out.length();
+		out.setLength(start + length);
+		for (int i = start + length - 1; i >= start; i--) {
+			out.setCharAt(i, (char) ('0' + number % 10));
+			number /= 10;
+		}
+	}
+
+	private void appendDate(StringBuilder out, ImageFile image, String format) {
+		if (image == null) {
+			return;
+		}
+		Date time = image.getModifiedAbsorptionTime();
+		if (time == null) {
+			time = image.getOriginalAbsorptionTime();
+		}
+		if (time == null) {
+			return;
+		}
+		long local = time.getTime() + timeZone.getOffset(time.getTime());
+		long days = floorDiv(local, MILLIS_PER_DAY);
+		int millisOfDay = (int) (local - days * MILLIS_PER_DAY);
+
+		// civil date of the days since 1970-01-01 (proleptic Gregorian calendar)
+		long z = days + 719468;
+		long era = floorDiv(z, 146097);
+		long dayOfEra = z - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long mp = (5 * dayOfYear + 2) / 153;
+		int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+		int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+		int seconds = millisOfDay / 1000;
+		for (int i = 0; i < format.length();) {
+			char c = format.charAt(i);
+			int count = 1;
+			while (i + count < format.length() && format.charAt(i + count) == c) {
+				count++;
+			}
+			switch (c) {
+			case 'y':
+				appendNumber(out, count == 2 ? year % 100 : year, count);
+				break;
+			case 'M':
+				appendNumber(out, month, count);
+				break;
+			case 'd':
+				appendNumber(out, day, count);
+				break;
+			case 'H':
+				appendNumber(out, seconds / 3600, count);
+				break;
+			case 'm':
+				appendNumber(out, seconds / 60 % 60, count);
+				break;
+			case 's':
+				appendNumber(out, seconds % 60, count);
+				break;
+			default:
+				for (int j = 0; j < count; j++) {
+					out.append(c);
+				}
+			}
+			i += count;
+		}
+	}
+
+	private static long floorDiv(long x, long y) {
+		long q = x / y;
+		return (x % y != 0 && (x ^ y) < 0) ? q - 1 : q;
+	}
+
+	private static void appendCamera(StringBuilder out, String model) {
+		if (model == null) {
+			return;
+		}
+		for (int i = 0; i < model.length(); i++) {
+			char c = model.charAt(i);
+			out.append(Character.isLetterOrDigit(c) || c == '-' || c == '.' ? c : '_');
+		}
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * A token of the compiled template.
+	 */
+	private static class Token {
+
+		private final int type;
+
+		/**
+		 * the literal text or the date pattern
+		 */
+		private final String text;
+
+		/**
+		 * the width of the number (-1 for the digits of the calculator)
+		 */
+		private final int width;
+
+		Token(int type, String text, int width) {
+			this.type = type;
+			this.text = text;
+			this.width = width;
+		}
+	}
+}
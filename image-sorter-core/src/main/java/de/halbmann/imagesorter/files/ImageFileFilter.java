@@ -0,0 +1,238 @@
+package de.halbmann.imagesorter.files;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Filter for the files and directories of the walk through the directory tree. The filter is
+ * compiled once and then used for every file visited:
+ * <ul>
+ * <li>the file-extensions are matched case-insensitive against the end of the path (without
+ * creating new strings)</li>
+ * <li>include and exclude rules (glob or regex, see
+ * {@link java.nio.file.FileSystem#getPathMatcher(String)}; glob is the default syntax) select
+ * the files with a matching extension; a rule containing a '/' is matched against the whole
+ * path, otherwise against the filename</li>
+ * <li>prune rules (names, globs or regexes) skip whole directories before descending, i.e. the
+ * thumbnail directories "@eaDir" or ".thumbnails"</li>
+ * </ul>
+ *
+ * @author fabian
+ *
+ */
+public class ImageFileFilter {
+
+	/**
+	 * the default file-extensions (JPEGs)
+	 */
+	public static final String[] DEFAULT_EXTENSIONS = { ".jpg", ".jpeg" };
+
+	/**
+	 * the thumbnail/metadata directories created by some NAS systems and file managers
+	 */
+	public static final String[] THUMBNAIL_DIRECTORIES = { "@eaDir", ".@__thumb", ".thumbnails" };
+
+	private static final String GLOB_SYNTAX = "glob:";
+	private static final String REGEX_SYNTAX = "regex:";
+
+	/**
+	 * the file-extensions (lower case)
+	 */
+	private final String[] extensions;
+
+	private final List<Rule> includes = new ArrayList<>();
+	private final List<Rule> excludes = new ArrayList<>();
+
+	/**
+	 * the names of the directories to prune (exact match)
+	 */
+	private final Set<String> prunedNames = new HashSet<>();
+
+	/**
+	 * the patterns of the directories to prune
+	 */
+	private final List<Rule> prunedPatterns = new ArrayList<>();
+
+	/**
+	 * Default constructor. Accepts the JPEGs.
+	 */
+	public ImageFileFilter() {
+		this(DEFAULT_EXTENSIONS);
+	}
+
+	/**
+	 * Constructor for setting the file-extensions accepted.
+	 *
+	 * @param extensions
+	 *            the file-extensions (i.e. ".jpg")
+	 */
+	public ImageFileFilter(String... extensions) {
+		this(Arrays.asList(extensions));
+	}
+
+	/**
+	 * Constructor for setting the file-extensions accepted.
+	 *
+	 * @param extensions
+	 *            the file-extensions (i.e. ".jpg")
+	 */
+	public ImageFileFilter(List<String> extensions) {
+		this.extensions = new String[extensions.size()];
+		for (int i = 0; i < this.extensions.length; i++) {
+			this.extensions[i] = extensions.get(i).toLowerCase(Locale.ENGLISH);
+		}
+	}
+
+	/**
+	 * Add an include rule. If there are include rules, only the files matching one of them are
+	 * accepted.
+	 *
+	 * @param pattern
+	 *            the glob or regex ("regex:" prefix)
+	 */
+	public void addInclude(String pattern) {
+		includes.add(compile(pattern));
+	}
+
+	/**
+	 * Add an exclude rule. The files matching one of the exclude rules are never accepted.
+	 *
+	 * @param pattern
+	 *            the glob or regex ("regex:" prefix)
+	 */
+	public void addExclude(String pattern) {
+		excludes.add(compile(pattern));
+	}
+
+	/**
+	 * Add a prune rule. The directories matching one of the prune rules are skipped with all their
+	 * sub-directories.
+	 *
+	 * @param pattern
+	 *            the directory name, glob or regex ("regex:" prefix)
+	 */
+	public void addPrunedDirectory(String pattern) {
+		if (pattern.startsWith(GLOB_SYNTAX) || pattern.startsWith(REGEX_SYNTAX)
+				|| hasGlobCharacters(pattern)) {
+			prunedPatterns.add(compile(pattern));
+		} else {
+			prunedNames.add(pattern);
+		}
+	}
+
+	/**
+	 * Checks if the file is accepted: the file-extension fits with one of the extensions and the
+	 * include and exclude rules select the file.
+	 *
+	 * @param file
+	 *            the file
+	 * @return true, if the file is accepted
+	 */
+	public boolean accept(Path file) {
+		if (!hasExtension(file.toString())) {
+			return false;
+		}
+		if (!includes.isEmpty() && !matches(includes, file)) {
+			return false;
+		}
+		return excludes.isEmpty() || !matches(excludes, file);
+	}
+
+	/**
+	 * Checks if the file-extension fits with one of the extensions.
+	 *
+	 * @param filename
+	 *            complete filename (incl. path)
+	 * @return true, if the file-extension fits with one of the extensions
+	 */
+	public boolean hasExtension(String filename) {
+		for (String ext : extensions) {
+			if (filename.regionMatches(true, filename.length() - ext.length(), ext, 0,
+					ext.length())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if the directory should be skipped (with all its sub-directories).
+	 *
+	 * @param dir
+	 *            the directory
+	 * @return true, if the directory matches one of the prune rules
+	 */
+	public boolean prune(Path dir) {
+		Path name = dir.getFileName();
+		if (name == null) {
+			return false;
+		}
+		if (!prunedNames.isEmpty() && prunedNames.contains(name.toString())) {
+			return true;
+		}
+		for (Rule rule : prunedPatterns) {
+			if (rule.matcher.matches(rule.wholePath ? dir : name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public List<String> getExtensions() {
+		return Arrays.asList(extensions);
+	}
+
+	private static boolean matches(List<Rule> rules, Path file) {
+		Path name = file.getFileName();
+		for (Rule rule : rules) {
+			if (rule.matcher.matches(rule.wholePath ? file : name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Rule compile(String pattern) {
+		String syntaxAndPattern = pattern;
+		if (!pattern.startsWith(GLOB_SYNTAX) && !pattern.startsWith(REGEX_SYNTAX)) {
+			syntaxAndPattern = GLOB_SYNTAX + pattern;
+		}
+		String p = syntaxAndPattern.substring(syntaxAndPattern.indexOf(':') + 1);
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher(syntaxAndPattern);
+		return new Rule(matcher, p.indexOf('/') >= 0);
+	}
+
+	private static boolean hasGlobCharacters(String pattern) {
+		for (int i = 0; i < pattern.length(); i++) {
+			if ("*?[{".indexOf(pattern.charAt(i)) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A compiled include, exclude or prune rule.
+	 */
+	private static class Rule {
+
+		private final PathMatcher matcher;
+
+		/**
+		 * flag whether the rule is matched against the whole path (or the filename only)
+		 */
+		private final boolean wholePath;
+
+		Rule(PathMatcher matcher, boolean wholePath) {
+			this.matcher = matcher;
+			this.wholePath = wholePath;
+		}
+	}
+}
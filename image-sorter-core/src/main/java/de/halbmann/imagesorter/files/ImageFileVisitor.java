@@ -2,6 +2,7 @@ package de.halbmann.imagesorter.files;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -9,9 +10,9 @@ import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
 
 /**
  * ImageFileVisitor. Implementation of a FileVisitor to get the list of images to order (or rename,
@@ -28,21 +29,41 @@ public class ImageFileVisitor extends SimpleFileVisitor<Path> {
 	private final List<File> fileList = new ArrayList<>();
 
 	/**
-	 * list of all file-extensions, that files will be listed
+	 * the file keys of the files found (see {@link BasicFileAttributes#fileKey()})
 	 */
-	private List<String> extensions = new ArrayList<>();
+	private final List<Object> fileKeys = new ArrayList<>();
+
+	/**
+	 * the filter for the files and directories
+	 */
+	private ImageFileFilter filter;
 
 	/**
 	 * search only the directory or additionally sub-directories
 	 */
 	private boolean recursive = false;
 
+	/**
+	 * queue for streaming the files found to the consumers; if set, the files will be put into
+	 * the queue instead of the list (blocking while the queue is full)
+	 */
+	private BlockingQueue<IndexedFile> queue;
+
+	/**
+	 * the number of files put into the queue (the index of the next file)
+	 */
+	private int queuedFiles;
+
+	/**
+	 * the depth of the current directory (0 before the start directory is visited)
+	 */
+	private int depth;
+
 	/**
 	 * Default constructor. Allows only JPEGs in the current directory (no sub-directories).
 	 */
 	public ImageFileVisitor() {
-		extensions.add(".jpg");
-		extensions.add(".jpeg");
+		filter = new ImageFileFilter();
 	}
 
 	/**
@@ -63,7 +84,7 @@ public class ImageFileVisitor extends SimpleFileVisitor<Path> {
 	 *            file-extensions
 	 */
 	public ImageFileVisitor(String... extensions) {
-		this.extensions = Arrays.asList(extensions);
+		filter = new ImageFileFilter(extensions);
 	}
 
 	/**
@@ -76,7 +97,7 @@ public class ImageFileVisitor extends SimpleFileVisitor<Path> {
 	 */
 	public ImageFileVisitor(boolean recursive, String... extensions) {
 		this.recursive = recursive;
-		this.extensions = Arrays.asList(extensions);
+		filter = new ImageFileFilter(extensions);
 	}
 
 	/**
@@ -89,6 +110,7 @@ public class ImageFileVisitor extends SimpleFileVisitor<Path> {
 	 * @throws IOException
 	 */
 	public List<File> walk(Path pathFile) throws IOException {
+		depth = 0;
 		if (recursive) {
 			Files.walkFileTree(pathFile, this);
 		} else {
@@ -112,37 +134,119 @@ public class ImageFileVisitor extends SimpleFileVisitor<Path> {
 		return walk(pathFile);
 	}
 
+	/**
+	 * Skip the sub-directories, if the walk isn't recursive, and the directories matching the prune
+	 * rules of the filter.
+	 */
 	@Override
-	public FileVisitResult visitFile(Path pathFile, BasicFileAttributes attrs) throws IOException {
-		if (fileAccessed(pathFile.toString())) {
-			fileList.add(pathFile.toFile());
-			return FileVisitResult.CONTINUE;
-		} else {
-			return recursive ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.TERMINATE;
+	public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+			throws IOException {
+		if (depth > 0 && (!recursive || filter.prune(dir))) {
+			return FileVisitResult.SKIP_SUBTREE;
 		}
+		depth++;
+		return FileVisitResult.CONTINUE;
 	}
 
-	/**
-	 * Checks if the file-extension fits with one of the extensions allowed.
-	 * 
-	 * @param filename
-	 *            complete filename (incl. path)
-	 * @return true, if the file-extension fits with one of the extensions in the list
-	 */
-	private boolean fileAccessed(String filename) {
-		for (String ext : extensions) {
-			if (filename.toLowerCase().endsWith(ext)) {
-				return true;
+	@Override
+	public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+		depth--;
+		return super.postVisitDirectory(dir, exc);
+	}
+
+	@Override
+	public FileVisitResult visitFile(Path pathFile, BasicFileAttributes attrs) throws IOException {
+		// with a limited depth the sub-directories are visited as files
+		if (!attrs.isDirectory() && filter.accept(pathFile)) {
+			if (queue != null) {
+				try {
+					queue.put(new IndexedFile(queuedFiles, pathFile.toFile()));
+					queuedFiles++;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("interrupted while walking the file tree");
+				}
+			} else {
+				fileList.add(pathFile.toFile());
+				fileKeys.add(attrs.fileKey());
 			}
 		}
-		return false;
+		return FileVisitResult.CONTINUE;
 	}
 
 	public List<File> getFiles() {
 		return fileList;
 	}
 
+	/**
+	 * @return the file keys of the files found in the same order (null, if the file system has no
+	 *         file keys)
+	 */
+	public List<Object> getFileKeys() {
+		return fileKeys;
+	}
+
+	public ImageFileFilter getFilter() {
+		return filter;
+	}
+
+	public void setFilter(ImageFileFilter filter) {
+		this.filter = filter;
+	}
+
+	public BlockingQueue<IndexedFile> getQueue() {
+		return queue;
+	}
+
+	/**
+	 * Set the queue for streaming the files found. If the queue is set, the files won't be
+	 * collected in the list, but put into the queue (blocking while the queue is full). Each file
+	 * is put into the queue with its index in the order of the walk (starting with 0 for each new
+	 * queue).
+	 * 
+	 * @param queue
+	 *            the queue to put the files into or null to collect the files in the list
+	 */
+	public void setQueue(BlockingQueue<IndexedFile> queue) {
+		this.queue = queue;
+		if (queue != null) {
+			this.queuedFiles = 0;
+		}
+	}
+
+	/**
+	 * @return the number of files put into the queue
+	 */
+	public int getQueuedFiles() {
+		return queuedFiles;
+	}
+
 	public void clear() {
 		fileList.clear();
+		fileKeys.clear();
+		queuedFiles = 0;
+		depth = 0;
+	}
+
+	/**
+	 * A file found by the visitor with its index in the order of the walk.
+	 */
+	public static class IndexedFile {
+
+		private final int index;
+		private final File file;
+
+		public IndexedFile(int index, File file) {
+			this.index = index;
+			this.file = file;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public File getFile() {
+			return file;
+		}
 	}
 }
@@ -2,13 +2,13 @@ package de.halbmann.imagesorter.files;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.channels.FileChannel;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Observable;
 import java.util.logging.Level;
@@ -40,6 +40,22 @@ public class ImageFileWriter extends Observable {
 	 */
 	private String subpath;
 
+	/**
+	 * the progress of the concurrent file operations
+	 */
+	private final WriteProgress progress = new WriteProgress();
+
+	/**
+	 * the copier of the current run (by the strategies of the settings)
+	 */
+	private volatile FileCopier copier = DEFAULT_COPIER;
+
+	/**
+	 * the copier for {@link #copyFile(File, File)}: always copies the data
+	 */
+	private static final FileCopier DEFAULT_COPIER = new FileCopier(
+			new FileCopier.TransferStrategy());
+
 	/**
 	 * Default constructor.
 	 */
@@ -125,87 +141,343 @@ public class ImageFileWriter extends Observable {
 			return;
 		}
 
-		// create subdirectory
+		createSubdirectory(settings);
+		copier = FileCopier.create(settings.isHardLinks(), settings.isReflinks());
+
+		if (!settings.isCopy() && !settings.isRotateImages()) {
+			renamePlanned(images, settings);
+			return;
+		}
+		if (settings.isConcurrent()) {
+			runConcurrent(images.iterator(), images.size(), settings);
+			return;
+		}
+
+		for (int i = 0; i < images.size(); i++) {
+			ImageFile imageFile = images.get(i);
+
+			if (imageFile != null) {
+				runImageFileOperation(imageFile, settings);
+				notifyObservers((double) i / images.size());
+				setChanged();
+			}
+		}
+	}
+
+	/**
+	 * Run the file operations for the streamed images (i.e. from an external sort), without
+	 * holding all the images in memory. The copies and rotations are run in the order of the
+	 * images. The renames are planned like the renames of a list (see
+	 * {@link #renamePlanned(Iterable, Settings)}), only the paths of the renamed images are held.
+	 * 
+	 * @param images
+	 *            the ImageFiles to process
+	 * @param count
+	 *            the number of images (for the progress)
+	 * @param settings
+	 *            the settings
+	 * @throws IOException
+	 */
+	public void runImageFileOperations(Iterable<ImageFile> images, int count, Settings settings)
+			throws IOException {
+		createSubdirectory(settings);
+		copier = FileCopier.create(settings.isHardLinks(), settings.isReflinks());
+		if (!settings.isCopy() && !settings.isRotateImages()) {
+			renamePlanned(images, settings);
+			return;
+		}
+		if (settings.isConcurrent()) {
+			runConcurrent(images.iterator(), count, settings);
+			return;
+		}
+		Iterator<ImageFile> iterator = images.iterator();
+		for (int i = 0; iterator.hasNext(); i++) {
+			ImageFile imageFile = iterator.next();
+
+			if (imageFile != null) {
+				runImageFileOperation(imageFile, settings);
+				notifyObservers((double) i / count);
+				setChanged();
+			}
+		}
+	}
+
+	/**
+	 * Create the subdirectory for the copies (if needed).
+	 */
+	private void createSubdirectory(Settings settings) throws IOException {
 		if (settings.isCopy() && subpath != null) {
 			Path p = FileSystems.getDefault().getPath(originalPath + subpath);
 			if (!Files.exists(p)) {
 				Files.createDirectory(p);
 			}
 		}
+	}
 
-		for (int i = 0; i < images.size(); i++) {
-			ImageFile imageFile = images.get(i);
-
-			if (imageFile != null) {
-				String filename = imageFile.getCalculatedFilename();
-				filename = String.format("%s.%s", filename, imageFile.getFileExtension());
-				log.log(Level.FINE, "Calculated filename: {0}", filename);
-
-				if (settings.isRotateImages()) {
-					BufferedImage orig = null;
-					try {
-						orig = ImageIO.read(imageFile.getFile());
-					} catch (IOException e) {
-						log.log(Level.WARNING, "Error while reading image file: {0}", imageFile
-								.getFile().getName());
-					}
-					BufferedImage image = ImageUtils.rotate(orig, imageFile.getOrientation());
-					// TODO: get the correct image format here!
-					String format = imageFile.getFile().getName().endsWith(".png") ? "png" : "jpg";
-					try {
-						if (subpath != null) {
-							filename = String.format("%s/%s", subpath, filename);
-						}
-						boolean success = ImageIO.write(image, format, new File(originalPath
-								+ filename));
-						log.log(Level.INFO, "Could write new image file: {0}", success);
-					} catch (IOException e) {
-						log.log(Level.WARNING, "Error while writing image file: {0}", filename);
-					}
+	/**
+	 * Rename the images in place by the plan of the {@link RenamePlanner}: the images, that already
+	 * have their calculated filename, aren't renamed and the renames are ordered (and cycles broken
+	 * by temporary names), so no rename fails on the current name of another image. Two images
+	 * with the same target are rejected before anything is renamed. In the concurrent mode the
+	 * renames of a directory are run in the order of the plan on the pool of workers.
+	 * <p>
+	 * The completed renames are journaled: if a rename fails, the completed ones are moved back in
+	 * the reverse order, so no image is left under a temporary name.
+	 * </p>
+	 * 
+	 * @param images
+	 *            the ImageFiles to rename (iterated once)
+	 * @param settings
+	 *            the settings
+	 * @throws IOException
+	 *             the first error occurred (the others and the errors of moving back are added as
+	 *             suppressed exceptions)
+	 */
+	private void renamePlanned(Iterable<ImageFile> images, Settings settings) throws IOException {
+		RenamePlanner planner = new RenamePlanner();
+		List<RenamePlanner.Rename> plan = planner.plan(images);
+		log.log(Level.FINE, "{0} renames planned ({1} images skipped, {2} temporary names)",
+				new Object[] { plan.size(), planner.getSkipped(), planner.getTemporaryNames() });
+		progress.reset(plan.size());
+		final List<RenamePlanner.Rename> journal = Collections
+				.synchronizedList(new ArrayList<RenamePlanner.Rename>(plan.size()));
+		IOException error = null;
+		if (settings.isConcurrent()) {
+			AdaptiveConcurrencyLimiter limiter = createLimiter(settings);
+			ConcurrentFileOperations operations = new ConcurrentFileOperations(Math.max(1,
+					settings.getMaxConcurrency()), limiter, progress);
+			try {
+				for (final RenamePlanner.Rename r : plan) {
+					operations.submit(r.getSource().getParent(),
+							new ConcurrentFileOperations.FileOperation() {
+
+								@Override
+								public long run() throws IOException {
+									Files.move(r.getSource(), r.getTarget());
+									journal.add(r);
+									return 0;
+								}
+							});
+				}
+			} catch (IOException e) {
+				error = e;
+			}
+			try {
+				operations.await();
+			} catch (IOException e) {
+				if (error == null) {
+					error = e;
 				} else {
-					if (settings.isCopy()) {
-						if (subpath != null) {
-							filename = String.format("%s/%s", subpath, filename);
-						}
-						copyFile(imageFile.getFile(), new File(originalPath + filename));
-					} else {
-						renameFile(imageFile.getFile(), filename);
-					}
+					error.addSuppressed(e);
 				}
-				notifyObservers((double) i / images.size());
+			}
+		} else {
+			for (int i = 0; i < plan.size(); i++) {
+				RenamePlanner.Rename rename = plan.get(i);
+				try {
+					Files.move(rename.getSource(), rename.getTarget());
+				} catch (IOException e) {
+					progress.failed();
+					error = e;
+					break;
+				}
+				journal.add(rename);
+				progress.completed(0);
+				notifyObservers((double) i / plan.size());
 				setChanged();
 			}
 		}
+		if (error != null) {
+			rollback(journal, error);
+			throw error;
+		}
+		log.log(Level.FINE, "file operations: {0}", progress);
 	}
 
 	/**
-	 * Fast copy the source file to the destination file.
+	 * Move the completed renames back in the reverse order (the renames of a directory are
+	 * completed in the order of the plan, so each source is free again, when it's moved back).
 	 * 
-	 * @param sourceFile
-	 *            the source file to copy
-	 * @param destFile
-	 *            the destination file to copy the source file to
-	 * @throws IOException
+	 * @param journal
+	 *            the completed renames in the order of their completion
+	 * @param error
+	 *            the error of the renames to add the errors of moving back to
 	 */
-	public static void copyFile(File sourceFile, File destFile) throws IOException {
-		if (!destFile.exists()) {
-			destFile.createNewFile();
+	private static void rollback(List<RenamePlanner.Rename> journal, IOException error) {
+		log.log(Level.WARNING, "renaming failed, moving {0} images back: {1}", new Object[] {
+				journal.size(), error.getMessage() });
+		for (int i = journal.size() - 1; i >= 0; i--) {
+			RenamePlanner.Rename rename = journal.get(i);
+			try {
+				Files.move(rename.getTarget(), rename.getSource());
+			} catch (IOException e) {
+				log.log(Level.SEVERE, "could not move {0} back to {1}", new Object[] {
+						rename.getTarget(), rename.getSource() });
+				error.addSuppressed(e);
+			}
 		}
+	}
 
-		FileChannel source = null;
-		FileChannel destination = null;
+	/**
+	 * Create the limiter for the adaptive concurrency (or null, if it's disabled).
+	 */
+	private static AdaptiveConcurrencyLimiter createLimiter(Settings settings) {
+		if (!settings.isAdaptiveConcurrency()) {
+			return null;
+		}
+		return new AdaptiveConcurrencyLimiter("file writer", Runtime.getRuntime()
+				.availableProcessors(), 1, Math.max(1, settings.getMaxConcurrency()));
+	}
+
+	/**
+	 * Run the file operations concurrently on a bounded pool of workers (see
+	 * {@link ConcurrentFileOperations}): the copies and rotations to
+	 * different target files run concurrently, only the ones to the same target file are run in the
+	 * order of the images (so the last one wins like in a sequential run), if the order has to be
+	 * preserved. With adaptive concurrency, the number of operations in flight is adapted to the
+	 * storage by an {@link AdaptiveConcurrencyLimiter}. A failed operation doesn't stop the others;
+	 * the progress is counted by the {@link WriteProgress} of the writer.
+	 * 
+	 * @param images
+	 *            the iterator over the ImageFiles to process
+	 * @param count
+	 *            the number of images
+	 * @param settings
+	 *            the settings
+	 * @throws IOException
+	 *             the first error occurred (the others are added as suppressed exceptions)
+	 */
+	private void runConcurrent(Iterator<ImageFile> images, int count, final Settings settings)
+			throws IOException {
+		AdaptiveConcurrencyLimiter limiter = createLimiter(settings);
+		ConcurrentFileOperations operations = new ConcurrentFileOperations(Math.max(1,
+				settings.getMaxConcurrency()), limiter, progress);
+		IOException error = null;
 		try {
-			source = new FileInputStream(sourceFile).getChannel();
-			destination = new FileOutputStream(destFile).getChannel();
-			destination.transferFrom(source, 0, source.size());
-		} finally {
-			if (source != null) {
-				source.close();
+			progress.reset(count);
+			while (images.hasNext()) {
+				final ImageFile imageFile = images.next();
+				if (imageFile == null) {
+					continue;
+				}
+				Object lane = null;
+				if (settings.isPreserveOrder()) {
+					// only the operations on the same target file depend on each other
+					lane = getTargetPath(imageFile);
+				}
+				operations.submit(lane, new ConcurrentFileOperations.FileOperation() {
+
+					@Override
+					public long run() throws IOException {
+						return runImageFileOperation(imageFile, settings);
+					}
+				});
 			}
-			if (destination != null) {
-				destination.close();
+		} catch (IOException e) {
+			error = e;
+		}
+		try {
+			operations.await();
+		} catch (IOException e) {
+			if (error == null) {
+				throw e;
 			}
+			error.addSuppressed(e);
+		}
+		if (error != null) {
+			throw error;
 		}
+		if (limiter != null) {
+			log.log(Level.FINE, "final concurrency: {0}", limiter.getLimit());
+		}
+		log.log(Level.FINE, "file operations: {0}", progress);
+	}
+
+	/**
+	 * Run the file operation (rotate, copy or rename) for the given image.
+	 * 
+	 * @param imageFile
+	 *            the image to process
+	 * @param settings
+	 *            the settings
+	 * @return the number of bytes copied
+	 * @throws IOException
+	 */
+	private long runImageFileOperation(ImageFile imageFile, Settings settings)
+			throws IOException {
+		String filename = getTargetFilename(imageFile);
+		log.log(Level.FINE, "Calculated filename: {0}", filename);
+
+		if (settings.isRotateImages()) {
+			BufferedImage orig = null;
+			try {
+				orig = ImageIO.read(imageFile.getFile());
+			} catch (IOException e) {
+				log.log(Level.WARNING, "Error while reading image file: {0}", imageFile.getFile()
+						.getName());
+			}
+			BufferedImage image = ImageUtils.rotate(orig, imageFile.getOrientation());
+			// TODO: get the correct image format here!
+			String format = imageFile.getFile().getName().endsWith(".png") ? "png" : "jpg";
+			try {
+				if (subpath != null) {
+					filename = String.format("%s/%s", subpath, filename);
+				}
+				boolean success = ImageIO.write(image, format, new File(originalPath + filename));
+				log.log(Level.INFO, "Could write new image file: {0}", success);
+			} catch (IOException e) {
+				log.log(Level.WARNING, "Error while writing image file: {0}", filename);
+			}
+		} else {
+			if (settings.isCopy()) {
+				return copier.copy(imageFile.getFile().toPath(), getTargetPath(imageFile));
+			} else {
+				renameFile(imageFile.getFile(), filename);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Get the target of the copy or rotation of the image: the new filename in the subpath (if set)
+	 * of the original path.
+	 * 
+	 * @param imageFile
+	 *            the image
+	 * @return the target path
+	 */
+	private Path getTargetPath(ImageFile imageFile) {
+		String filename = getTargetFilename(imageFile);
+		if (subpath != null) {
+			filename = String.format("%s/%s", subpath, filename);
+		}
+		return FileSystems.getDefault().getPath(originalPath + filename);
+	}
+
+	/**
+	 * Get the new filename of the image: the calculated filename with the file-extension.
+	 * 
+	 * @param imageFile
+	 *            the image
+	 * @return the new filename
+	 */
+	static String getTargetFilename(ImageFile imageFile) {
+		return imageFile.getCalculatedFilename() + "." + imageFile.getFileExtension();
+	}
+
+	/**
+	 * Fast copy the source file to the destination file (the data is always copied, see
+	 * {@link FileCopier.TransferStrategy}).
+	 * 
+	 * @param sourceFile
+	 *            the source file to copy
+	 * @param destFile
+	 *            the destination file to copy the source file to
+	 * @return the number of bytes copied
+	 * @throws IOException
+	 */
+	public static long copyFile(File sourceFile, File destFile) throws IOException {
+		return DEFAULT_COPIER.copy(sourceFile.toPath(), destFile.toPath());
 	}
 
 	/**
@@ -222,6 +494,13 @@ public class ImageFileWriter extends Observable {
 		Files.move(source, source.resolveSibling(newFilename));
 	}
 
+	/**
+	 * @return the progress of the concurrent file operations (thread-safe)
+	 */
+	public WriteProgress getProgress() {
+		return progress;
+	}
+
 	public String getSubpath() {
 		return subpath;
 	}
@@ -241,6 +520,41 @@ public class ImageFileWriter extends Observable {
 		private boolean rotateImages = false;
 		private boolean copy = false;
 
+		/**
+		 * run the file operations concurrently on a bounded pool of workers (the renames of a
+		 * directory are still run one after another)
+		 */
+		private boolean concurrent = false;
+
+		/**
+		 * run the file operations concurrently and adapt the concurrency to the storage
+		 */
+		private boolean adaptiveConcurrency = false;
+
+		/**
+		 * run the concurrent copies to the same target file in the order of the images (the copies
+		 * to different target files always run concurrently); if disabled, the copies run in any
+		 * order
+		 */
+		private boolean preserveOrder = true;
+
+		/**
+		 * the (maximum) number of concurrent file operations
+		 */
+		private int maxConcurrency = 16;
+
+		/**
+		 * hard link the copies on the same file store (the copies share the data with the
+		 * originals, so a modification of one modifies the other)
+		 */
+		private boolean hardLinks = false;
+
+		/**
+		 * clone the copies copy-on-write, if the file system supports it (starts a process per
+		 * copy)
+		 */
+		private boolean reflinks = false;
+
 		public Settings() {
 		}
 
@@ -269,5 +583,57 @@ public class ImageFileWriter extends Observable {
 			this.copy = copy;
 		}
 
+		/**
+		 * @return true, if the file operations are run concurrently (also with adaptive
+		 *         concurrency)
+		 */
+		public boolean isConcurrent() {
+			return concurrent || adaptiveConcurrency;
+		}
+
+		public void setConcurrent(boolean concurrent) {
+			this.concurrent = concurrent;
+		}
+
+		public boolean isPreserveOrder() {
+			return preserveOrder;
+		}
+
+		public void setPreserveOrder(boolean preserveOrder) {
+			this.preserveOrder = preserveOrder;
+		}
+
+		public boolean isAdaptiveConcurrency() {
+			return adaptiveConcurrency;
+		}
+
+		public void setAdaptiveConcurrency(boolean adaptiveConcurrency) {
+			this.adaptiveConcurrency = adaptiveConcurrency;
+		}
+
+		public int getMaxConcurrency() {
+			return maxConcurrency;
+		}
+
+		public void setMaxConcurrency(int maxConcurrency) {
+			this.maxConcurrency = maxConcurrency;
+		}
+
+		public boolean isHardLinks() {
+			return hardLinks;
+		}
+
+		public void setHardLinks(boolean hardLinks) {
+			this.hardLinks = hardLinks;
+		}
+
+		public boolean isReflinks() {
+			return reflinks;
+		}
+
+		public void setReflinks(boolean reflinks) {
+			this.reflinks = reflinks;
+		}
+
 	}
 }
@@ -0,0 +1,349 @@
+package de.halbmann.imagesorter.files;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+/**
+ * Persistent cache for the metadata of the image files. The entries are keyed by the absolute path
+ * of the file and are only valid as long as the size and the last modified time of the file are
+ * unchanged, so re-reading an unchanged archive only needs one stat per file instead of parsing
+ * the JPEG header.
+ * <p>
+ * The cache is stored in a compact binary file (string table for the camera models followed by
+ * the entries), which is memory-mapped for loading. On saving, the entries of the files within
+ * the walk, that weren't used (looked up or added) since loading, are dropped, so entries of
+ * deleted or changed files are dropped (compaction). The entries of the files outside the walk
+ * (i.e. of other trees sharing the cache file) are kept.
+ * </p>
+ *
+ * @author fabian
+ *
+ */
+public class ImageMetadataCache {
+
+	private static final Logger LOG = Logger.getLogger(ImageMetadataCache.class.getName());
+
+	private static final int MAGIC = 0x494D4331; // "IMC1"
+	private static final int VERSION = 1;
+
+	/**
+	 * marker for a missing absorption time
+	 */
+	private static final long NO_TIME = Long.MIN_VALUE;
+
+	/**
+	 * the minimum size of a string (the length) in the file
+	 */
+	private static final int MIN_STRING_SIZE = 4;
+
+	/**
+	 * the minimum size of an entry (path, size, last modified, orientation, time, model)
+	 */
+	private static final int MIN_ENTRY_SIZE = MIN_STRING_SIZE + 8 + 8 + 4 + 8 + 4;
+
+	private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+	/**
+	 * the file the cache is stored in
+	 */
+	private final Path file;
+
+	/**
+	 * the cached entries by the absolute path of the image files
+	 */
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file
+	 *            the file the cache is stored in
+	 */
+	public ImageMetadataCache(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Load the cache from the file. If the file doesn't exist (yet), the cache stays empty. A
+	 * corrupt cache file will be ignored.
+	 *
+	 * @throws IOException
+	 */
+	public void load() throws IOException {
+		entries.clear();
+		if (!Files.exists(file)) {
+			return;
+		}
+		long startTime = System.currentTimeMillis();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				LOG.log(Level.WARNING, "ignoring metadata cache with unknown format: {0}", file);
+				return;
+			}
+			byte[] bytes = new byte[256];
+			String[] models = new String[readCount(buffer, MIN_STRING_SIZE)];
+			for (int i = 0; i < models.length; i++) {
+				models[i] = readString(buffer, bytes);
+			}
+			int count = readCount(buffer, MIN_ENTRY_SIZE);
+			for (int i = 0; i < count; i++) {
+				String path = readString(buffer, bytes);
+				Entry entry = new Entry();
+				entry.size = buffer.getLong();
+				entry.lastModified = buffer.getLong();
+				entry.orientation = buffer.getInt();
+				entry.absorptionTime = buffer.getLong();
+				int model = buffer.getInt();
+				entry.cameraModel = model < 0 ? null : models[model];
+				entries.put(path, entry);
+			}
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			LOG.log(Level.WARNING, "ignoring corrupt metadata cache: {0}", file);
+			entries.clear();
+		}
+		long endTime = System.currentTimeMillis();
+		LOG.log(Level.FINE, "loaded {0} cache entries in {1} ms", new Object[] { entries.size(),
+				endTime - startTime });
+	}
+
+	/**
+	 * Save the used entries to the file (the unused entries are dropped). The file will be written
+	 * to a temporary file first and then moved to the final location.
+	 *
+	 * @throws IOException
+	 */
+	public void save() throws IOException {
+		save(null, true);
+	}
+
+	/**
+	 * Save the entries to the file: the unused entries of the files within the walk are dropped,
+	 * the entries of the files outside the walk are kept. The file will be written to a temporary
+	 * file first and then moved to the final location.
+	 *
+	 * @param root
+	 *            the root of the walk (null for all the files)
+	 * @param recursive
+	 *            flag whether the walk included the subdirectories of the root
+	 * @throws IOException
+	 */
+	public void save(Path root, boolean recursive) throws IOException {
+		Path start = root == null ? null : root.toAbsolutePath();
+		// collect the entries to keep and build the string table for the camera models
+		List<String> paths = new ArrayList<>();
+		List<Entry> kept = new ArrayList<>();
+		List<String> models = new ArrayList<>();
+		Map<String, Integer> modelIndex = new HashMap<>();
+		for (Map.Entry<String, Entry> e : entries.entrySet()) {
+			Entry entry = e.getValue();
+			if (!entry.used && isWalked(e.getKey(), start, recursive)) {
+				continue;
+			}
+			paths.add(e.getKey());
+			kept.add(entry);
+			if (entry.cameraModel != null && !modelIndex.containsKey(entry.cameraModel)) {
+				modelIndex.put(entry.cameraModel, models.size());
+				models.add(entry.cameraModel);
+			}
+		}
+
+		Path dir = file.toAbsolutePath().getParent();
+		if (dir != null && !Files.exists(dir)) {
+			Files.createDirectories(dir);
+		}
+		Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(tmp), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(models.size());
+			for (String model : models) {
+				writeString(out, model);
+			}
+			out.writeInt(kept.size());
+			for (int i = 0; i < kept.size(); i++) {
+				Entry entry = kept.get(i);
+				writeString(out, paths.get(i));
+				out.writeLong(entry.size);
+				out.writeLong(entry.lastModified);
+				out.writeInt(entry.orientation);
+				out.writeLong(entry.absorptionTime);
+				out.writeInt(entry.cameraModel == null ? -1 : modelIndex.get(entry.cameraModel));
+			}
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+		LOG.log(Level.FINE, "saved {0} of {1} cache entries (hits: {2}, misses: {3})",
+				new Object[] { kept.size(), entries.size(), hits.get(), misses.get() });
+	}
+
+	/**
+	 * Look up the metadata of the given file. If there is a valid entry (same size and last
+	 * modified time), the metadata is set to the ImageFile.
+	 *
+	 * @param f
+	 *            the image file
+	 * @param attrs
+	 *            the (current) attributes of the file
+	 * @param image
+	 *            the ImageFile to set the metadata to
+	 * @return true, if the metadata was found in the cache
+	 */
+	public boolean lookup(File f, BasicFileAttributes attrs, ImageFile image) {
+		Entry entry = entries.get(f.getAbsolutePath());
+		if (entry == null || entry.size != attrs.size()
+				|| entry.lastModified != attrs.lastModifiedTime().toMillis()) {
+			misses.incrementAndGet();
+			return false;
+		}
+		entry.used = true;
+		hits.incrementAndGet();
+		image.setOrientation(entry.orientation);
+		image.setCameraModel(entry.cameraModel);
+		image.setOriginalAbsorptionTime(entry.absorptionTime == NO_TIME ? null : new Date(
+				entry.absorptionTime));
+		return true;
+	}
+
+	/**
+	 * Add (or replace) the metadata of the given file.
+	 *
+	 * @param f
+	 *            the image file
+	 * @param attrs
+	 *            the attributes of the file the metadata was read from
+	 * @param image
+	 *            the ImageFile containing the metadata
+	 */
+	public void put(File f, BasicFileAttributes attrs, ImageFile image) {
+		Entry entry = new Entry();
+		entry.size = attrs.size();
+		entry.lastModified = attrs.lastModifiedTime().toMillis();
+		entry.orientation = image.getOrientation();
+		entry.cameraModel = image.getCameraModel();
+		Date time = image.getOriginalAbsorptionTime();
+		entry.absorptionTime = time == null ? NO_TIME : time.getTime();
+		entry.used = true;
+		entries.put(f.getAbsolutePath(), entry);
+	}
+
+	/**
+	 * Remove the entry of the given file.
+	 *
+	 * @param f
+	 *            the image file
+	 */
+	public void invalidate(File f) {
+		entries.remove(f.getAbsolutePath());
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public int getHits() {
+		return hits.get();
+	}
+
+	public int getMisses() {
+		return misses.get();
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Check, if the file was within the walk.
+	 */
+	private static boolean isWalked(String path, Path root, boolean recursive) {
+		if (root == null) {
+			return true;
+		}
+		Path p = Paths.get(path);
+		return recursive ? p.startsWith(root) : root.equals(p.getParent());
+	}
+
+	/**
+	 * Read a count of records and check it against the remaining bytes (a corrupt count would
+	 * allocate a huge array).
+	 */
+	private static int readCount(MappedByteBuffer buffer, int minRecordSize) {
+		int count = buffer.getInt();
+		if (count < 0 || count > buffer.remaining() / minRecordSize) {
+			throw new BufferUnderflowException();
+		}
+		return count;
+	}
+
+	private static String readString(MappedByteBuffer buffer, byte[] bytes) {
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		if (length > bytes.length) {
+			bytes = new byte[length];
+		}
+		buffer.get(bytes, 0, length);
+		return new String(bytes, 0, length, CHARSET);
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(CHARSET);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * A cache entry.
+	 */
+	private static class Entry {
+
+		long size;
+		long lastModified;
+		int orientation;
+		long absorptionTime;
+		String cameraModel;
+
+		/**
+		 * flag whether the entry was used since loading (the unused entries within the walk will
+		 * be dropped)
+		 */
+		volatile boolean used;
+	}
+}
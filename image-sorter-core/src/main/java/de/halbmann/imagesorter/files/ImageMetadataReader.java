@@ -2,21 +2,31 @@ package de.halbmann.imagesorter.files;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Observable;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,7 +38,11 @@ import com.drew.metadata.MetadataException;
 import com.drew.metadata.exif.ExifIFD0Directory;
 import com.drew.metadata.exif.ExifSubIFDDirectory;
 
+import de.halbmann.imagesorter.files.ImageFileVisitor.IndexedFile;
+import de.halbmann.imagesorter.files.LocalityReadScheduler.ScheduledRead;
+import de.halbmann.imagesorter.model.CameraModelRegistry;
 import de.halbmann.imagesorter.model.ImageFile;
+import de.halbmann.imagesorter.modifier.SingleImageModifier;
 
 /**
  * Main class for reading the image files with the metadata.
@@ -40,26 +54,74 @@ public class ImageMetadataReader extends Observable {
 
 	private static final Logger LOG = Logger.getLogger(ImageMetadataReader.class.getName());
 
+	/**
+	 * Marker for the end of the queue in streaming mode.
+	 */
+	private static final IndexedFile END_OF_FILES = new IndexedFile(-1, null);
+
 	/**
 	 * List of images found in the directory.
 	 */
 	private List<ImageFile> images = new ArrayList<>();
 
 	/**
-	 * List of different camera models found.
+	 * Statistics of the camera models found (number of images and range of the absorption times).
 	 */
-	private Set<String> cameraModels = new HashSet<>();
+	private final CameraModelRegistry.Statistics cameraModelStatistics = CameraModelRegistry
+			.getDefault().newStatistics();
 
 	/**
 	 * The ImageFileVisitor. FileVisitor-Implementation to get the list of image files.
 	 */
 	private ImageFileVisitor fileVisitor;
 
+	/**
+	 * read images from subdirectories
+	 */
+	private boolean recursive;
+
+	/**
+	 * Fast reader for the exif header (the metadata-extractor is only used as fallback).
+	 */
+	private ExifHeaderReader exifHeaderReader = new ExifHeaderReader();
+
+	/**
+	 * The settings for reading the images.
+	 */
+	private Settings settings;
+
+	/**
+	 * The metadata cache (only available while reading the image files, if configured).
+	 */
+	private ImageMetadataCache cache;
+
+	/**
+	 * The limiter for the concurrent reads (only available while reading the image files, if
+	 * adaptive concurrency is configured).
+	 */
+	private AdaptiveConcurrencyLimiter limiter;
+
+	/**
+	 * The fingerprints of the directories of the last run (only available while reading the image
+	 * files, if configured).
+	 */
+	private DirectoryFingerprints fingerprints;
+
+	/**
+	 * The modifiers run for each image right after reading its metadata (in the read workers).
+	 */
+	private List<SingleImageModifier> imageModifiers = new ArrayList<>();
+
+	/**
+	 * The receiver of the images (only available while reading the image files, if given).
+	 */
+	private OrderedSink sink;
+
 	/**
 	 * Default constructor.
 	 */
 	public ImageMetadataReader() {
-		fileVisitor = new ImageFileVisitor(true);
+		this(true);
 	}
 
 	/**
@@ -69,7 +131,21 @@ public class ImageMetadataReader extends Observable {
 	 *            read images from subdirectories
 	 */
 	public ImageMetadataReader(boolean recursive) {
+		this(recursive, new Settings());
+	}
+
+	/**
+	 * Constructor for setting the recursive flag and the settings for reading the images.
+	 * 
+	 * @param recursive
+	 *            read images from subdirectories
+	 * @param settings
+	 *            the settings for reading the images
+	 */
+	public ImageMetadataReader(boolean recursive, Settings settings) {
 		fileVisitor = new ImageFileVisitor(recursive);
+		this.recursive = recursive;
+		this.settings = settings == null ? new Settings() : settings;
 	}
 
 	/**
@@ -87,12 +163,27 @@ public class ImageMetadataReader extends Observable {
 	 * @return the set of the camera models
 	 */
 	public Set<String> getCameraModels() {
-		return cameraModels;
+		return cameraModelStatistics.getCameraModels();
+	}
+
+	/**
+	 * Get the statistics of the camera models (by the ids of the default
+	 * {@link CameraModelRegistry}).
+	 * 
+	 * @return the statistics
+	 */
+	public CameraModelRegistry.Statistics getCameraModelStatistics() {
+		return cameraModelStatistics;
 	}
 
 	/**
 	 * Process the given Path. All images in the given path will be read and the information stored
 	 * in the list.
+	 * <p>
+	 * By default the directory tree is walked completely first and the files found are read
+	 * afterwards. In streaming mode (see {@link Settings#setStreaming(boolean)}) the files are
+	 * read by the worker threads while the walk is still running.
+	 * </p>
 	 * 
 	 * @param path
 	 *            the path to read the images from
@@ -100,30 +191,286 @@ public class ImageMetadataReader extends Observable {
 	 * @throws IOException
 	 */
 	public List<ImageFile> readImageFiles(String path) throws IOException {
+		return readImageFiles(path, null);
+	}
+
+	/**
+	 * Process the given Path and hand each image over to the sink as soon as it's read, instead of
+	 * collecting the images in the list. The images are handed over one at a time in the order the
+	 * files were found (an image read early waits for the images found before it). So the reader
+	 * doesn't hold the images read, except the ones waiting for their predecessors and, with
+	 * directory fingerprints, all of them (they are stored with the fingerprints). In batch mode
+	 * the list of the files found is still built by the walk.
+	 * 
+	 * @param path
+	 *            the path to read the images from
+	 * @param imageSink
+	 *            the receiver of the images (or null to collect them in the list)
+	 * @return the list of image files read (empty, if the images are handed over to the sink)
+	 * @throws IOException
+	 *             also the first error of the sink
+	 */
+	public List<ImageFile> readImageFiles(String path, ImageSink imageSink) throws IOException {
 		Path start = FileSystems.getDefault().getPath(path);
-		Files.walkFileTree(start, fileVisitor);
 
-		int cores = Runtime.getRuntime().availableProcessors();
-		ExecutorService es = Executors.newFixedThreadPool(cores);
-		CompletionService<Object> service = new ExecutorCompletionService<Object>(es);
+		if (settings.getCacheFile() != null) {
+			cache = new ImageMetadataCache(Paths.get(settings.getCacheFile()));
+			cache.load();
+		}
+
+		fileVisitor.setFilter(createFilter());
+		if (settings.getFingerprintFile() != null) {
+			fingerprints = new DirectoryFingerprints(Paths.get(settings.getFingerprintFile()),
+					getWalkConfiguration());
+			fingerprints.load();
+		}
+
+		int threads = getNumberOfThreads();
+		ExecutorService es = createExecutorService(threads);
+		if (settings.isAdaptiveConcurrency()) {
+			limiter = new AdaptiveConcurrencyLimiter("metadata reader", Runtime.getRuntime()
+					.availableProcessors(), 1, threads);
+		}
 
 		LOG.log(Level.FINE, "reading image files - path: {0}", path);
 		long startTime = System.currentTimeMillis();
-		for (final File f : fileVisitor.getFiles()) {
-			service.submit(new Callable<Object>() {
+		ImageFile[] results;
+		// with fingerprints the images are handed over after the walk
+		OrderedSink ordered = imageSink == null || fingerprints != null ? null : new OrderedSink(
+				imageSink);
+		sink = ordered;
+		try {
+			if (settings.isStreaming() && fingerprints == null) {
+				results = readStreaming(start, es, threads);
+			} else {
+				results = readBatch(start, es);
+			}
+		} finally {
+			es.shutdown();
+			sink = null;
+			if (limiter != null) {
+				LOG.log(Level.FINE, "final concurrency: {0}", limiter.getLimit());
+				limiter = null;
+			}
+		}
+
+		// merge the results in the order the files were found (the failed ones are null)
+		for (int i = 0; i < results.length; i++) {
+			ImageFile image = results[i];
+			if (image != null) {
+				cameraModelStatistics.record(image);
+				if (imageSink == null) {
+					images.add(image);
+				} else {
+					imageSink.accept(image);
+					results[i] = null;
+				}
+			}
+		}
+		if (ordered != null) {
+			ordered.finish();
+		}
+
+		long endTime = System.currentTimeMillis();
+		clearChanged();
+		LOG.log(Level.INFO, "number of files: {0}", results.length);
+		LOG.log(Level.FINE, "duration: {0} ms", endTime - startTime);
+
+		if (cache != null) {
+			cache.save(start, recursive);
+			cache = null;
+		}
+		if (fingerprints != null) {
+			fingerprints.save(start, recursive);
+			fingerprints = null;
+		}
+
+		return images;
+	}
+
+	/**
+	 * Create the filter for the walk through the directory tree with the include, exclude and prune
+	 * rules of the settings.
+	 * 
+	 * @return the filter
+	 */
+	private ImageFileFilter createFilter() {
+		ImageFileFilter filter = new ImageFileFilter();
+		for (String pattern : settings.getIncludes()) {
+			filter.addInclude(pattern);
+		}
+		for (String pattern : settings.getExcludes()) {
+			filter.addExclude(pattern);
+		}
+		for (String pattern : settings.getPrunedDirectories()) {
+			filter.addPrunedDirectory(pattern);
+		}
+		return filter;
+	}
+
+	/**
+	 * Get the key of the configuration of the walk (the stored directory fingerprints are only
+	 * valid for the same configuration).
+	 * 
+	 * @return the key of the configuration
+	 */
+	private String getWalkConfiguration() {
+		return "recursive=" + recursive + ";extensions="
+				+ fileVisitor.getFilter().getExtensions() + ";includes=" + settings.getIncludes()
+				+ ";excludes=" + settings.getExcludes() + ";pruned="
+				+ settings.getPrunedDirectories();
+	}
+
+	/**
+	 * Get the number of threads for reading the metadata. In I/O mode (and with adaptive
+	 * concurrency) this is the maximum number of open files, otherwise the configured number of
+	 * threads (default: the number of cores).
+	 * 
+	 * @return the number of threads
+	 */
+	private int getNumberOfThreads() {
+		if (settings.getExecutionMode() == ExecutionMode.IO || settings.isAdaptiveConcurrency()) {
+			return Math.max(1, settings.getMaxOpenFiles());
+		}
+		return settings.getThreads() > 0 ? settings.getThreads() : Runtime.getRuntime()
+				.availableProcessors();
+	}
+
+	/**
+	 * Create the executor service for reading the metadata. In I/O mode (and with adaptive
+	 * concurrency) the threads are created with a small stack, because they spend most of the time
+	 * blocked on I/O and there can be a lot of them.
+	 * 
+	 * @param threads
+	 *            the number of threads
+	 * @return the executor service
+	 */
+	private ExecutorService createExecutorService(int threads) {
+		if (settings.getExecutionMode() == ExecutionMode.IO || settings.isAdaptiveConcurrency()) {
+			return Executors.newFixedThreadPool(threads, new IoThreadFactory());
+		}
+		return Executors.newFixedThreadPool(threads);
+	}
+
+	/**
+	 * Walk through the directory tree first and then read the metadata of all files found. The
+	 * walk is done by the {@link ImageFileVisitor} or (if configured) by the
+	 * {@link ParallelImageFileWalker}.
+	 * <p>
+	 * Each task writes its result to its own slot of the result array (the index of the file in
+	 * the list of files found), so there is no need for synchronizing the results.
+	 * </p>
+	 * <p>
+	 * With locality scheduling the reads are submitted in the order of the physical layout
+	 * (device and inode) and the number of concurrent reads per device is limited (see
+	 * {@link LocalityReadScheduler}). The order of the results isn't affected by this.
+	 * </p>
+	 * <p>
+	 * With directory fingerprints the walk is done by the {@link IncrementalImageFileWalker}: the
+	 * images of the unchanged directories are reused from the last run and only the files of the
+	 * new or changed directories are read.
+	 * </p>
+	 * 
+	 * @param start
+	 *            the path to read the images from
+	 * @param es
+	 *            the executor for reading the metadata
+	 * @return the images read in the order the files were found (null for failed files)
+	 * @throws IOException
+	 */
+	private ImageFile[] readBatch(Path start, ExecutorService es) throws IOException {
+		List<File> files;
+		// the file keys of the walk for the locality scheduling
+		List<Object> fileKeys;
+		IncrementalImageFileWalker incrementalWalker = null;
+		if (fingerprints != null) {
+			incrementalWalker = new IncrementalImageFileWalker(fingerprints, recursive,
+					fileVisitor.getFilter());
+			files = incrementalWalker.walk(start);
+			fileKeys = incrementalWalker.getFileKeys();
+			LOG.log(Level.FINE, "directories listed: {0}, reused: {1}", new Object[] {
+					incrementalWalker.getListedDirectories(),
+					incrementalWalker.getReusedDirectories() });
+		} else if (settings.isParallelWalk()) {
+			ParallelImageFileWalker walker = new ParallelImageFileWalker(recursive);
+			walker.setFilter(fileVisitor.getFilter());
+			files = walker.walk(start);
+			fileKeys = walker.getFileKeys();
+		} else {
+			Files.walkFileTree(start, fileVisitor);
+			files = fileVisitor.getFiles();
+			fileKeys = fileVisitor.getFileKeys();
+		}
 
-				public Object call() throws Exception {
-					readMetaData(f);
-					return null;
+		final ImageFile[] results = new ImageFile[files.size()];
+		// the files to read and their slots in the results (the reused images are already set)
+		List<File> filesToRead = files;
+		List<Object> keysToRead = fileKeys;
+		int[] identity = null;
+		if (incrementalWalker != null) {
+			filesToRead = new ArrayList<>();
+			keysToRead = new ArrayList<>();
+			identity = new int[files.size()];
+			List<ImageFile> reused = incrementalWalker.getReusedImages();
+			for (int i = 0; i < results.length; i++) {
+				results[i] = reused.get(i);
+				if (results[i] != null) {
+					modify(results[i]);
+				} else {
+					identity[filesToRead.size()] = i;
+					filesToRead.add(files.get(i));
+					keysToRead.add(fileKeys.get(i));
 				}
-			});
+			}
+		}
+		final int[] slots = identity;
+		final OrderedSink target = sink;
+
+		CompletionService<Object> service = new ExecutorCompletionService<Object>(es);
+		if (settings.isLocalityScheduling()) {
+			LocalityReadScheduler scheduler = new LocalityReadScheduler(
+					settings.getPerDeviceConcurrency());
+			for (final ScheduledRead read : scheduler.schedule(filesToRead, keysToRead)) {
+				final int slot = slots == null ? read.getIndex() : slots[read.getIndex()];
+				service.submit(new Callable<Object>() {
+
+					public Object call() throws Exception {
+						ImageFile image = null;
+						read.acquire();
+						try {
+							image = readLimited(read.getFile());
+						} finally {
+							read.release();
+							results[slot] = handOver(target, slot, image);
+						}
+						return null;
+					}
+				});
+			}
+		} else {
+			for (int i = 0; i < filesToRead.size(); i++) {
+				final int index = slots == null ? i : slots[i];
+				final File f = filesToRead.get(i);
+				service.submit(new Callable<Object>() {
+
+					public Object call() throws Exception {
+						ImageFile image = null;
+						try {
+							image = readLimited(f);
+						} finally {
+							results[index] = handOver(target, index, image);
+						}
+						return null;
+					}
+				});
+			}
 		}
 
-		int numberOfFiles = fileVisitor.getFiles().size();
-		for (int i = 0; i < numberOfFiles; i++) {
+		// Future.get() guarantees the visibility of the results written by the tasks
+		for (int i = 0; i < filesToRead.size(); i++) {
 			try {
 				service.take().get();
-				notifyObservers((double) i / numberOfFiles);
+				notifyObservers((double) i / filesToRead.size());
 				setChanged();
 			} catch (InterruptedException e) {
 				LOG.log(Level.SEVERE, e.getMessage(), e);
@@ -131,61 +478,593 @@ public class ImageMetadataReader extends Observable {
 				LOG.log(Level.SEVERE, e.getMessage(), e);
 			}
 		}
+		if (incrementalWalker != null) {
+			incrementalWalker.update(results);
+		}
+		return results;
+	}
 
-		long endTime = System.currentTimeMillis();
-		clearChanged();
-		LOG.log(Level.INFO, "number of files: {0}", numberOfFiles);
-		LOG.log(Level.FINE, "duration: {0} ms", endTime - startTime);
-		es.shutdown();
+	/**
+	 * Walk through the directory tree and read the metadata at the same time. The file visitor
+	 * puts the files found into a bounded queue, which is drained by the worker threads. If the
+	 * workers can't keep up, the walk blocks until there is space in the queue again.
+	 * <p>
+	 * Each worker collects its results in its own buffer (together with the index of the file in
+	 * the order of the walk). The buffers are merged by that index after all workers finished.
+	 * </p>
+	 * <p>
+	 * The total number of files isn't known before the walk is finished, so there will be no
+	 * progress notifications in streaming mode.
+	 * </p>
+	 * 
+	 * @param start
+	 *            the path to read the images from
+	 * @param es
+	 *            the executor for reading the metadata
+	 * @param workers
+	 *            the number of worker threads
+	 * @return the images read in the order the files were found (null for failed files)
+	 * @throws IOException
+	 */
+	private ImageFile[] readStreaming(Path start, ExecutorService es, int workers)
+			throws IOException {
+		final BlockingQueue<IndexedFile> queue = new ArrayBlockingQueue<>(
+				settings.getQueueCapacity());
+		final OrderedSink target = sink;
+		// the first failure of handing over an image (a worker must never die, as the walk would
+		// block on the full queue)
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
 
-		return images;
+		List<Future<List<IndexedImage>>> buffers = new ArrayList<>();
+		for (int i = 0; i < workers; i++) {
+			buffers.add(es.submit(new Callable<List<IndexedImage>>() {
+
+				public List<IndexedImage> call() throws InterruptedException {
+					List<IndexedImage> buffer = new ArrayList<>();
+					for (IndexedFile f = queue.take(); f != END_OF_FILES; f = queue.take()) {
+						ImageFile image = null;
+						try {
+							image = readLimited(f.getFile());
+						} catch (Throwable e) {
+							LOG.log(Level.SEVERE, e.getMessage(), e);
+						}
+						try {
+							image = handOver(target, f.getIndex(), image);
+							if (image != null) {
+								buffer.add(new IndexedImage(f.getIndex(), image));
+							}
+						} catch (Throwable e) {
+							// keep draining the queue
+							if (!failure.compareAndSet(null, e) && failure.get() != e) {
+								failure.get().addSuppressed(e);
+							}
+						}
+					}
+					return buffer;
+				}
+			}));
+		}
+
+		fileVisitor.setQueue(queue);
+		try {
+			Files.walkFileTree(start, fileVisitor);
+		} finally {
+			fileVisitor.setQueue(null);
+			// tell the workers, that there are no more files
+			try {
+				for (int i = 0; i < workers; i++) {
+					queue.put(END_OF_FILES);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				for (Future<List<IndexedImage>> buffer : buffers) {
+					buffer.cancel(true);
+				}
+				throw new InterruptedIOException("interrupted while reading the image files");
+			}
+		}
+
+		ImageFile[] results = new ImageFile[fileVisitor.getQueuedFiles()];
+		for (Future<List<IndexedImage>> buffer : buffers) {
+			try {
+				for (IndexedImage image : buffer.get()) {
+					results[image.index] = image.image;
+				}
+			} catch (InterruptedException e) {
+				LOG.log(Level.SEVERE, e.getMessage(), e);
+			} catch (ExecutionException e) {
+				LOG.log(Level.SEVERE, e.getMessage(), e);
+			}
+		}
+		if (failure.get() != null) {
+			throw new IOException("handing over the images failed", failure.get());
+		}
+		return results;
+	}
+
+	/**
+	 * Hand the image over to the sink (if given).
+	 * 
+	 * @param target
+	 *            the sink (or null)
+	 * @param index
+	 *            the index of the file in the order of the walk
+	 * @param image
+	 *            the image read (null, if reading failed)
+	 * @return the image to keep in the results (null, if handed over)
+	 */
+	private static ImageFile handOver(OrderedSink target, int index, ImageFile image) {
+		if (target == null) {
+			return image;
+		}
+		target.put(index, image);
+		return null;
+	}
+
+	/**
+	 * Read the metadata of the file and run the image modifiers. With adaptive concurrency the read
+	 * waits for a free slot of the {@link AdaptiveConcurrencyLimiter} first.
+	 * 
+	 * @param f
+	 *            the file to read the metadata from
+	 * @return the ImageFile read
+	 * @throws Exception
+	 */
+	private ImageFile readLimited(File f) throws Exception {
+		if (limiter == null) {
+			return modify(readMetaData(f));
+		}
+		long start = limiter.acquire();
+		try {
+			return modify(readMetaData(f));
+		} finally {
+			limiter.release(start);
+		}
+	}
+
+	/**
+	 * Run the image modifiers on the image (while its data is still in the cache of the worker).
+	 * 
+	 * @param image
+	 *            the image read (or null)
+	 * @return the image
+	 */
+	private ImageFile modify(ImageFile image) {
+		if (image == null) {
+			return null;
+		}
+		for (SingleImageModifier modifier : imageModifiers) {
+			modifier.modify(image);
+		}
+		return image;
 	}
 
 	/**
-	 * Read the metadata of the file, create a ImageFile-object and add it to the list of images.
+	 * Read the metadata of the file and create a ImageFile-object. If a metadata cache is
+	 * configured, it will be asked first. Otherwise the exif header is read by the fast
+	 * {@link ExifHeaderReader}; if it can't handle the file, the metadata-extractor will be used.
 	 * 
 	 * @param f
 	 *            the file to read the metadata from
+	 * @return the ImageFile read
 	 * @throws JpegProcessingException
 	 * @throws IOException
 	 * @throws MetadataException
 	 */
-	private void readMetaData(File f) throws JpegProcessingException, IOException,
+	protected ImageFile readMetaData(File f) throws JpegProcessingException, IOException,
 			MetadataException {
 		LOG.log(Level.FINER, "read metadata - file: {0}", f.getName());
-		// read the metadata
-		Metadata metadata = JpegMetadataReader.readMetadata(f);
-
-		Directory exifDirectory = metadata.getDirectory(ExifIFD0Directory.class);
-		int cameraOrientation = exifDirectory.getInt(ExifIFD0Directory.TAG_ORIENTATION);
-		LOG.log(Level.FINER, "camera orientation: {0}", cameraOrientation);
+		// create the ImageFile model
+		ImageFile image = createImageFile(f);
 
-		String camera = exifDirectory.getString(ExifIFD0Directory.TAG_MODEL);
-		LOG.log(Level.FINER, "camera model: {0}", camera);
+		// read the metadata
+		BasicFileAttributes attrs = null;
+		if (cache != null) {
+			attrs = Files.readAttributes(f.toPath(), BasicFileAttributes.class);
+		}
+		if (attrs == null || !cache.lookup(f, attrs, image)) {
+			if (!exifHeaderReader.read(f, image)) {
+				LOG.log(Level.FINER, "read metadata with the metadata-extractor - file: {0}",
+						f.getName());
+				readExifMetadata(f, image);
+			}
+			if (attrs != null) {
+				cache.put(f, attrs, image);
+			}
+		}
+		LOG.log(Level.FINER, "camera orientation: {0}", image.getOrientation());
+		LOG.log(Level.FINER, "camera model: {0}", image.getCameraModel());
+		LOG.log(Level.FINER, "absorption time: {0}", image.getOriginalAbsorptionTime());
 
-		Directory exifSubDirectory = metadata.getDirectory(ExifSubIFDDirectory.class);
-		Date originalAbsorptionTime = exifSubDirectory
-				.getDate(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL);
-		LOG.log(Level.FINER, "absorption time: {0}", originalAbsorptionTime);
+		return image;
+	}
 
-		// create the ImageFile model
+	/**
+	 * Create the ImageFile model (without the metadata) for the given file.
+	 * 
+	 * @param f
+	 *            the image file
+	 * @return the ImageFile
+	 */
+	static ImageFile createImageFile(File f) {
 		ImageFile image = new ImageFile();
 		image.setFile(f);
 		String filename = f.getName();
 		image.setOriginalFilename(filename);
 		image.setFileExtension(filename.substring(filename.lastIndexOf(".") + 1, filename.length()));
-		image.setOrientation(cameraOrientation);
-		image.setOriginalAbsorptionTime(originalAbsorptionTime);
-		image.setCameraModel(camera);
+		return image;
+	}
 
-		// add the information to the list(s)
-		images.add(image);
-		cameraModels.add(camera);
+	/**
+	 * Read the metadata of the file with the metadata-extractor (parsing the complete JPEG header).
+	 * 
+	 * @param f
+	 *            the file to read the metadata from
+	 * @param image
+	 *            the ImageFile to set the metadata to
+	 * @throws JpegProcessingException
+	 * @throws IOException
+	 * @throws MetadataException
+	 */
+	private void readExifMetadata(File f, ImageFile image) throws JpegProcessingException,
+			IOException, MetadataException {
+		Metadata metadata = JpegMetadataReader.readMetadata(f);
+
+		Directory exifDirectory = metadata.getDirectory(ExifIFD0Directory.class);
+		image.setOrientation(exifDirectory.getInt(ExifIFD0Directory.TAG_ORIENTATION));
+		image.setCameraModel(exifDirectory.getString(ExifIFD0Directory.TAG_MODEL));
+
+		Directory exifSubDirectory = metadata.getDirectory(ExifSubIFDDirectory.class);
+		image.setOriginalAbsorptionTime(exifSubDirectory
+				.getDate(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL));
 	}
 
 	public void clear() {
 		images.clear();
-		cameraModels.clear();
+		cameraModelStatistics.reset();
 		fileVisitor.clear();
 	}
+
+	public Settings getSettings() {
+		return settings;
+	}
+
+	/**
+	 * Add a modifier, that is run for each image right after reading its metadata (inside the
+	 * read workers, instead of a separate pass over the images).
+	 * 
+	 * @param modifier
+	 *            the modifier (thread-safe)
+	 */
+	public void addImageModifier(SingleImageModifier modifier) {
+		imageModifiers.add(modifier);
+	}
+
+	public List<SingleImageModifier> getImageModifiers() {
+		return imageModifiers;
+	}
+
+	/**
+	 * Receiver of the images read (see {@link ImageMetadataReader#readImageFiles(String, ImageSink)}
+	 * ).
+	 */
+	public interface ImageSink {
+
+		/**
+		 * Receive the image (called by one thread at a time).
+		 * 
+		 * @param image
+		 *            the image read
+		 * @throws IOException
+		 */
+		void accept(ImageFile image) throws IOException;
+	}
+
+	/**
+	 * The execution modes for reading the metadata.
+	 */
+	public enum ExecutionMode {
+		/**
+		 * one thread per core (for local disks, where reading is mostly CPU bound)
+		 */
+		CPU,
+		/**
+		 * one (small) thread per open file (for network mounts, where the threads are mostly
+		 * blocked on I/O)
+		 */
+		IO
+	}
+
+	/**
+	 * ThreadFactory for the I/O mode: daemon threads with a small stack.
+	 */
+	private static class IoThreadFactory implements ThreadFactory {
+
+		private static final long STACK_SIZE = 256 * 1024;
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(null, r, "image-reader-io-" + count.incrementAndGet(),
+					STACK_SIZE);
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+	/**
+	 * Hands the images over to the {@link ImageSink} in the order of the walk, no matter in which
+	 * order the workers read them: an image waits, until the images of all the files found before
+	 * it were handed over (or failed). After an error of the sink, the images are dropped.
+	 */
+	private class OrderedSink {
+
+		private final ImageSink target;
+
+		/**
+		 * the images waiting for their predecessors by their index (null for a failed file)
+		 */
+		private final Map<Integer, ImageFile> waiting = new HashMap<>();
+
+		/**
+		 * the index of the next image to hand over
+		 */
+		private int next;
+
+		private IOException error;
+
+		OrderedSink(ImageSink target) {
+			this.target = target;
+		}
+
+		synchronized void put(int index, ImageFile image) {
+			waiting.put(index, image);
+			while (waiting.containsKey(next)) {
+				ImageFile head = waiting.remove(next++);
+				if (head == null || error != null) {
+					continue;
+				}
+				cameraModelStatistics.record(head);
+				try {
+					target.accept(head);
+				} catch (IOException e) {
+					error = e;
+				} catch (RuntimeException e) {
+					error = new IOException("the image sink failed: " + head.getFile(), e);
+				}
+			}
+		}
+
+		/**
+		 * Check, that all the images were handed over.
+		 * 
+		 * @throws IOException
+		 *             the error of the sink
+		 */
+		synchronized void finish() throws IOException {
+			if (error != null) {
+				throw error;
+			}
+			if (!waiting.isEmpty()) {
+				throw new IOException(waiting.size() + " images not handed over (missing image "
+						+ next + ")");
+			}
+		}
+	}
+
+	/**
+	 * An image read by a worker with the index of its file in the order of the walk.
+	 */
+	private static class IndexedImage {
+
+		private final int index;
+		private final ImageFile image;
+
+		IndexedImage(int index, ImageFile image) {
+			this.index = index;
+			this.image = image;
+		}
+	}
+
+	/**
+	 * Container object for the settings.
+	 * 
+	 * @author fabian
+	 * 
+	 */
+	public static class Settings implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * the file of the metadata cache; no cache will be used, if this is null
+		 */
+		private String cacheFile;
+
+		/**
+		 * read the metadata while walking through the directory tree
+		 */
+		private boolean streaming = false;
+
+		/**
+		 * the capacity of the queue between the directory walk and the workers in streaming mode
+		 */
+		private int queueCapacity = 1024;
+
+		/**
+		 * list the directories in parallel (only in batch mode)
+		 */
+		private boolean parallelWalk = false;
+
+		/**
+		 * the number of threads reading the metadata (0 for the number of cores; not used in I/O
+		 * mode)
+		 */
+		private int threads = 0;
+
+		/**
+		 * the execution mode for reading the metadata
+		 */
+		private ExecutionMode executionMode = ExecutionMode.CPU;
+
+		/**
+		 * the maximum number of files read at the same time in I/O mode
+		 */
+		private int maxOpenFiles = 64;
+
+		/**
+		 * read the files in the order of their physical layout (only in batch mode; for rotational
+		 * disks)
+		 */
+		private boolean localityScheduling = false;
+
+		/**
+		 * the maximum number of concurrent reads per device with locality scheduling
+		 */
+		private int perDeviceConcurrency = 2;
+
+		/**
+		 * adapt the number of concurrent reads to the storage (up to the maximum number of open
+		 * files)
+		 */
+		private boolean adaptiveConcurrency = false;
+
+		/**
+		 * the include rules for the image files (globs or regexes, see {@link ImageFileFilter})
+		 */
+		private List<String> includes = new ArrayList<>();
+
+		/**
+		 * the exclude rules for the image files (globs or regexes, see {@link ImageFileFilter})
+		 */
+		private List<String> excludes = new ArrayList<>();
+
+		/**
+		 * the directories to skip (names, globs or regexes, see {@link ImageFileFilter})
+		 */
+		private List<String> prunedDirectories = new ArrayList<>();
+
+		/**
+		 * the file of the directory fingerprints for incremental rescans (only in batch mode); no
+		 * fingerprints will be used, if this is null
+		 */
+		private String fingerprintFile;
+
+		public Settings() {
+		}
+
+		public String getCacheFile() {
+			return cacheFile;
+		}
+
+		public void setCacheFile(String cacheFile) {
+			this.cacheFile = cacheFile;
+		}
+
+		public boolean isStreaming() {
+			return streaming;
+		}
+
+		public void setStreaming(boolean streaming) {
+			this.streaming = streaming;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public boolean isParallelWalk() {
+			return parallelWalk;
+		}
+
+		public void setParallelWalk(boolean parallelWalk) {
+			this.parallelWalk = parallelWalk;
+		}
+
+		public int getThreads() {
+			return threads;
+		}
+
+		public void setThreads(int threads) {
+			this.threads = threads;
+		}
+
+		public ExecutionMode getExecutionMode() {
+			return executionMode;
+		}
+
+		public void setExecutionMode(ExecutionMode executionMode) {
+			this.executionMode = executionMode;
+		}
+
+		public int getMaxOpenFiles() {
+			return maxOpenFiles;
+		}
+
+		public void setMaxOpenFiles(int maxOpenFiles) {
+			this.maxOpenFiles = maxOpenFiles;
+		}
+
+		public boolean isLocalityScheduling() {
+			return localityScheduling;
+		}
+
+		public void setLocalityScheduling(boolean localityScheduling) {
+			this.localityScheduling = localityScheduling;
+		}
+
+		public int getPerDeviceConcurrency() {
+			return perDeviceConcurrency;
+		}
+
+		public void setPerDeviceConcurrency(int perDeviceConcurrency) {
+			this.perDeviceConcurrency = perDeviceConcurrency;
+		}
+
+		public boolean isAdaptiveConcurrency() {
+			return adaptiveConcurrency;
+		}
+
+		public void setAdaptiveConcurrency(boolean adaptiveConcurrency) {
+			this.adaptiveConcurrency = adaptiveConcurrency;
+		}
+
+		public List<String> getIncludes() {
+			return includes;
+		}
+
+		public void setIncludes(List<String> includes) {
+			this.includes = includes;
+		}
+
+		public List<String> getExcludes() {
+			return excludes;
+		}
+
+		public void setExcludes(List<String> excludes) {
+			this.excludes = excludes;
+		}
+
+		public List<String> getPrunedDirectories() {
+			return prunedDirectories;
+		}
+
+		public void setPrunedDirectories(List<String> prunedDirectories) {
+			this.prunedDirectories = prunedDirectories;
+		}
+
+		public String getFingerprintFile() {
+			return fingerprintFile;
+		}
+
+		public void setFingerprintFile(String fingerprintFile) {
+			this.fingerprintFile = fingerprintFile;
+		}
+
+	}
 }
@@ -0,0 +1,273 @@
+package de.halbmann.imagesorter.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.halbmann.imagesorter.files.DirectoryFingerprints.Entry;
+import de.halbmann.imagesorter.files.DirectoryFingerprints.Fingerprint;
+import de.halbmann.imagesorter.model.ImageFile;
+
+/**
+ * Walk through the directory tree, that reuses the results of the last run for the unchanged
+ * directories (see {@link DirectoryFingerprints}):
+ * <ul>
+ * <li>if the last modified time of a directory is unchanged, the directory isn't listed and the
+ * stored images are reused (only the stored sub-directories are checked)</li>
+ * <li>if the last modified time changed, but the number of entries and the hash of the names are
+ * the same, the stored images are reused as well</li>
+ * <li>otherwise the directory is listed and its images have to be read</li>
+ * </ul>
+ * The files are in the same order as with the {@link ImageFileVisitor}. Only changes of the
+ * directories are detected: an image modified in place (without changing the directory) isn't
+ * read again.
+ *
+ * @author fabian
+ *
+ */
+public class IncrementalImageFileWalker {
+
+	/**
+	 * the (maximum) resolution of the last modified time of the directories
+	 */
+	private static final long TIMESTAMP_RESOLUTION = 2000;
+
+	/**
+	 * marker for an unknown last modified time
+	 */
+	private static final long UNKNOWN = -1;
+
+	private final DirectoryFingerprints fingerprints;
+
+	/**
+	 * search only the directory or additionally sub-directories
+	 */
+	private final boolean recursive;
+
+	/**
+	 * the filter for the files and directories
+	 */
+	private final ImageFileFilter filter;
+
+	/**
+	 * the files found
+	 */
+	private final List<File> files = new ArrayList<>();
+
+	/**
+	 * the images reused from the last run (null for the files, that have to be read)
+	 */
+	private final List<ImageFile> reusedImages = new ArrayList<>();
+
+	/**
+	 * the file keys of the files listed (null for the reused images, that aren't read)
+	 */
+	private final List<Object> fileKeys = new ArrayList<>();
+
+	/**
+	 * the new entries of the files, that have to be read (null for the reused images)
+	 */
+	private final List<Entry> newEntries = new ArrayList<>();
+
+	/**
+	 * the fingerprints of the directories of the new entries
+	 */
+	private final List<Fingerprint> newEntryDirectories = new ArrayList<>();
+
+	/**
+	 * the start time of the walk
+	 */
+	private long scanTime;
+
+	private int listedDirectories;
+	private int reusedDirectories;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param fingerprints
+	 *            the fingerprints of the last run (will be updated)
+	 * @param recursive
+	 *            search only the directory or additionally the sub-directories
+	 * @param filter
+	 *            the filter for the files and directories
+	 */
+	public IncrementalImageFileWalker(DirectoryFingerprints fingerprints, boolean recursive,
+			ImageFileFilter filter) {
+		this.fingerprints = fingerprints;
+		this.recursive = recursive;
+		this.filter = filter;
+	}
+
+	/**
+	 * Walk through the given path.
+	 *
+	 * @param pathFile
+	 *            the path to walk through
+	 * @return the list of image files found
+	 * @throws IOException
+	 */
+	public List<File> walk(Path pathFile) throws IOException {
+		if (pathFile == null) {
+			throw new IllegalArgumentException("Path cannot be null!");
+		}
+		scanTime = System.currentTimeMillis();
+		visit(pathFile.toAbsolutePath());
+		return files;
+	}
+
+	/**
+	 * Update the fingerprints with the images read for the changed directories.
+	 *
+	 * @param images
+	 *            the images in the order of the files found (null for the files, that couldn't be
+	 *            read)
+	 */
+	public void update(ImageFile[] images) {
+		for (int i = 0; i < images.length; i++) {
+			Entry entry = newEntries.get(i);
+			if (entry == null) {
+				continue;
+			}
+			if (images[i] != null) {
+				entry.copyFrom(images[i]);
+			} else {
+				// read it again next time
+				newEntryDirectories.get(i).valid = false;
+			}
+		}
+	}
+
+	/**
+	 * Visit the directory: reuse the stored entries, if the directory is unchanged, otherwise list
+	 * it.
+	 */
+	private void visit(Path dir) throws IOException {
+		BasicFileAttributes attrs = Files.readAttributes(dir, BasicFileAttributes.class,
+				LinkOption.NOFOLLOW_LINKS);
+		String key = dir.toString();
+		long lastModified = attrs.lastModifiedTime().toMillis();
+		Fingerprint fingerprint = fingerprints.get(key);
+		if (fingerprint != null && fingerprint.lastModified == lastModified) {
+			reuse(dir, fingerprint);
+			return;
+		}
+
+		List<Path> entries = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+			for (Path entry : stream) {
+				entries.add(entry);
+				names.add(entry.getFileName().toString());
+			}
+		}
+		Collections.sort(names);
+		long nameHash = DirectoryFingerprints.hash(names);
+		if (fingerprint != null && fingerprint.entryCount == names.size()
+				&& fingerprint.nameHash == nameHash) {
+			// only the last modified time changed (i.e. a temporary file)
+			fingerprint.lastModified = trusted(lastModified);
+			reuse(dir, fingerprint);
+			return;
+		}
+
+		listedDirectories++;
+		fingerprint = new Fingerprint(trusted(lastModified), names.size(), nameHash);
+		fingerprints.put(key, fingerprint);
+		for (Path entry : entries) {
+			BasicFileAttributes entryAttrs = Files.readAttributes(entry,
+					BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			String name = entry.getFileName().toString();
+			if (entryAttrs.isDirectory()) {
+				if (recursive && !filter.prune(entry)) {
+					fingerprint.entries.add(new Entry(name, true));
+					visit(entry);
+				}
+			} else if (filter.accept(entry)) {
+				Entry image = new Entry(name, false);
+				fingerprint.entries.add(image);
+				files.add(entry.toFile());
+				reusedImages.add(null);
+				fileKeys.add(entryAttrs.fileKey());
+				newEntries.add(image);
+				newEntryDirectories.add(fingerprint);
+			}
+		}
+	}
+
+	/**
+	 * A directory modified just before the scan could be modified again within the resolution of
+	 * the timestamps of the filesystem without changing its last modified time. So the time is only
+	 * stored, if it is old enough; otherwise the directory will be listed on the next run.
+	 */
+	private long trusted(long lastModified) {
+		return lastModified < scanTime - TIMESTAMP_RESOLUTION ? lastModified : UNKNOWN;
+	}
+
+	/**
+	 * Reuse the stored entries of the unchanged directory.
+	 */
+	private void reuse(Path dir, Fingerprint fingerprint) throws IOException {
+		reusedDirectories++;
+		for (Entry entry : fingerprint.entries) {
+			Path path = dir.resolve(entry.name);
+			if (entry.directory) {
+				try {
+					visit(path);
+				} catch (NoSuchFileException e) {
+					// deleted in the meantime
+				}
+			} else {
+				File f = path.toFile();
+				ImageFile image = ImageMetadataReader.createImageFile(f);
+				entry.copyTo(image);
+				files.add(f);
+				reusedImages.add(image);
+				fileKeys.add(null);
+				newEntries.add(null);
+				newEntryDirectories.add(null);
+			}
+		}
+	}
+
+	public List<File> getFiles() {
+		return files;
+	}
+
+	/**
+	 * @return the images reused from the last run in the order of the files found (null for the
+	 *         files, that have to be read)
+	 */
+	public List<ImageFile> getReusedImages() {
+		return reusedImages;
+	}
+
+	/**
+	 * @return the file keys of the files found in the same order (null for the reused images)
+	 */
+	public List<Object> getFileKeys() {
+		return fileKeys;
+	}
+
+	/**
+	 * @return the number of directories listed
+	 */
+	public int getListedDirectories() {
+		return listedDirectories;
+	}
+
+	/**
+	 * @return the number of directories reused from the last run
+	 */
+	public int getReusedDirectories() {
+		return reusedDirectories;
+	}
+}
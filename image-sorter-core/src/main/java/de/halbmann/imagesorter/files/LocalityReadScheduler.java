@@ -0,0 +1,224 @@
+package de.halbmann.imagesorter.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Scheduler for reading the image files in the order of their (probable) physical layout. On
+ * rotational disks reading the files in the order of the walk with many threads causes a lot of
+ * seeks; grouping the reads by device and directory and sorting them by inode keeps the reads of
+ * each device close together.
+ * <p>
+ * The device of a file is the {@link FileStore} of its directory (looked up once per directory).
+ * The file keys of the {@link BasicFileAttributes} taken by the walk are used as opaque keys: the
+ * reads of the files with the same key (hard links of the same file) are scheduled together. The
+ * reads of a directory are sorted by the inode number (the <code>unix:ino</code> attribute), which
+ * approximates the order of the files on disk on most Unix file systems; where the file system
+ * has no <code>unix</code> attribute view, they stay in the order of the walk. Each device gets a
+ * (fair) semaphore, that limits the number of concurrent reads per device; the reads of the
+ * different devices are interleaved, so all devices are busy at the same time.
+ * </p>
+ *
+ * @author fabian
+ *
+ */
+public class LocalityReadScheduler {
+
+	/**
+	 * the attribute view with the inode number
+	 */
+	private static final String UNIX_VIEW = "unix";
+
+	/**
+	 * Comparator for the groups of reads of one directory: by the inode of the file.
+	 */
+	private static final Comparator<List<ScheduledRead>> BY_INODE =
+			new Comparator<List<ScheduledRead>>() {
+
+				@Override
+				public int compare(List<ScheduledRead> o1, List<ScheduledRead> o2) {
+					return Long.compare(o1.get(0).inode, o2.get(0).inode);
+				}
+			};
+
+	/**
+	 * the maximum number of concurrent reads per device
+	 */
+	private int perDeviceConcurrency;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param perDeviceConcurrency
+	 *            the maximum number of concurrent reads per device
+	 */
+	public LocalityReadScheduler(int perDeviceConcurrency) {
+		this.perDeviceConcurrency = Math.max(1, perDeviceConcurrency);
+	}
+
+	/**
+	 * Create the schedule for reading the given files (without file keys).
+	 *
+	 * @param files
+	 *            the files in the order of the walk
+	 * @return the reads in the order they should be submitted
+	 * @throws IOException
+	 */
+	public List<ScheduledRead> schedule(List<File> files) throws IOException {
+		return schedule(files, null);
+	}
+
+	/**
+	 * Create the schedule for reading the given files.
+	 *
+	 * @param files
+	 *            the files in the order of the walk
+	 * @param fileKeys
+	 *            the file keys of the files taken by the walk (see
+	 *            {@link BasicFileAttributes#fileKey()}), null for an unknown key or no list at
+	 *            all
+	 * @return the reads in the order they should be submitted
+	 * @throws IOException
+	 */
+	public List<ScheduledRead> schedule(List<File> files, List<Object> fileKeys)
+			throws IOException {
+		// group the reads by device, directory and file key
+		Map<FileStore, Map<File, Map<Object, List<ScheduledRead>>>> devices = new LinkedHashMap<>();
+		Map<FileStore, Semaphore> limits = new HashMap<>();
+		Map<File, FileStore> stores = new HashMap<>();
+		for (int i = 0; i < files.size(); i++) {
+			File f = files.get(i);
+			File dir = f.getAbsoluteFile().getParentFile();
+			FileStore device = stores.get(dir);
+			if (device == null) {
+				device = Files.getFileStore(dir.toPath());
+				stores.put(dir, device);
+			}
+			Map<File, Map<Object, List<ScheduledRead>>> directories = devices.get(device);
+			if (directories == null) {
+				directories = new LinkedHashMap<>();
+				devices.put(device, directories);
+				limits.put(device, new Semaphore(perDeviceConcurrency, true));
+			}
+			Map<Object, List<ScheduledRead>> keys = directories.get(dir);
+			if (keys == null) {
+				keys = new LinkedHashMap<>();
+				directories.put(dir, keys);
+			}
+			ScheduledRead read = new ScheduledRead(i, f, limits.get(device));
+			Object key = fileKeys == null ? null : fileKeys.get(i);
+			// a read without key is a group of its own
+			List<ScheduledRead> reads = keys.get(key == null ? read : key);
+			if (reads == null) {
+				reads = new ArrayList<>(1);
+				keys.put(key == null ? read : key, reads);
+			}
+			reads.add(read);
+		}
+
+		// flatten the groups of each device (sorted by inode per directory)
+		List<List<ScheduledRead>> lists = new ArrayList<>();
+		for (Map<File, Map<Object, List<ScheduledRead>>> directories : devices.values()) {
+			List<ScheduledRead> list = new ArrayList<>();
+			for (Map.Entry<File, Map<Object, List<ScheduledRead>>> directory : directories
+					.entrySet()) {
+				List<List<ScheduledRead>> groups = new ArrayList<>(directory.getValue().values());
+				if (groups.size() > 1 && hasInodes(directory.getKey())) {
+					for (List<ScheduledRead> reads : groups) {
+						ScheduledRead read = reads.get(0);
+						read.inode = ((Number) Files.getAttribute(read.file.toPath(), UNIX_VIEW
+								+ ":ino", LinkOption.NOFOLLOW_LINKS)).longValue();
+					}
+					// stable: the files with the same inode stay in the order of the walk
+					Collections.sort(groups, BY_INODE);
+				}
+				for (List<ScheduledRead> reads : groups) {
+					list.addAll(reads);
+				}
+			}
+			lists.add(list);
+		}
+
+		// interleave the devices
+		List<ScheduledRead> schedule = new ArrayList<>(files.size());
+		for (int i = 0; schedule.size() < files.size(); i++) {
+			for (List<ScheduledRead> reads : lists) {
+				if (i < reads.size()) {
+					schedule.add(reads.get(i));
+				}
+			}
+		}
+		return schedule;
+	}
+
+	/**
+	 * Check, if the file system of the directory has inode numbers.
+	 */
+	private static boolean hasInodes(File dir) {
+		return dir.toPath().getFileSystem().supportedFileAttributeViews().contains(UNIX_VIEW);
+	}
+
+	public int getPerDeviceConcurrency() {
+		return perDeviceConcurrency;
+	}
+
+	/**
+	 * A scheduled read of a file.
+	 */
+	public static class ScheduledRead {
+
+		private final int index;
+		private final File file;
+		private final Semaphore deviceLimit;
+
+		/**
+		 * the inode of the file (only looked up, if the reads of the directory are sorted)
+		 */
+		private long inode;
+
+		ScheduledRead(int index, File file, Semaphore deviceLimit) {
+			this.index = index;
+			this.file = file;
+			this.deviceLimit = deviceLimit;
+		}
+
+		/**
+		 * @return the index of the file in the order of the walk
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * Wait for a free read slot of the device.
+		 *
+		 * @throws InterruptedException
+		 */
+		public void acquire() throws InterruptedException {
+			deviceLimit.acquire();
+		}
+
+		/**
+		 * Release the read slot of the device.
+		 */
+		public void release() {
+			deviceLimit.release();
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package de.halbmann.imagesorter.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parallel implementation of the directory walk to get the list of images. Each (sub-)directory
+ * is listed by its own fork/join task, so wide trees (i.e. thousands of folders per day on a
+ * network mount) are listed by multiple threads at the same time.
+ * <p>
+ * The tasks don't share a list: each task returns the entries of its directory (files and the
+ * tasks of the sub-directories) and the result is flattened once at the end. The order of the
+ * files is the same as the order of a {@link Files#walkFileTree(Path, java.nio.file.FileVisitor)
+ * walkFileTree} with the {@link ImageFileVisitor}.
+ * </p>
+ *
+ * @author fabian
+ *
+ */
+public class ParallelImageFileWalker {
+
+	/**
+	 * the filter for the files and directories
+	 */
+	private ImageFileFilter filter;
+
+	/**
+	 * search only the directory or additionally sub-directories
+	 */
+	private boolean recursive = false;
+
+	/**
+	 * the number of threads listing the directories (the walk is I/O bound, so by default there
+	 * are more threads than cores)
+	 */
+	private int parallelism = Runtime.getRuntime().availableProcessors() * 2;
+
+	/**
+	 * the file keys of the files found by the last walk
+	 */
+	private List<Object> fileKeys = new ArrayList<>();
+
+	/**
+	 * Default constructor. Allows only JPEGs in the current directory (no sub-directories).
+	 */
+	public ParallelImageFileWalker() {
+		filter = new ImageFileFilter();
+	}
+
+	/**
+	 * Constructor for setting the recursive parameter. The file-extensions are the defaults.
+	 *
+	 * @param recursive
+	 *            search only the directory or additionally the sub-directories
+	 */
+	public ParallelImageFileWalker(boolean recursive) {
+		this();
+		this.recursive = recursive;
+	}
+
+	/**
+	 * Constructor for setting the recursive parameter and the file-extensions.
+	 *
+	 * @param recursive
+	 *            search only the directory or additionally the sub-directories
+	 * @param extensions
+	 *            file-extensions
+	 */
+	public ParallelImageFileWalker(boolean recursive, String... extensions) {
+		this.recursive = recursive;
+		filter = new ImageFileFilter(extensions);
+	}
+
+	/**
+	 * Walk through the given path. If the recursive flag is set, also the sub-directories will be
+	 * searched for image files.
+	 *
+	 * @param pathFile
+	 *            the path to walk through
+	 * @return the list of image files found
+	 * @throws IOException
+	 */
+	public List<File> walk(Path pathFile) throws IOException {
+		if (pathFile == null) {
+			throw new IllegalArgumentException("Path cannot be null!");
+		}
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			DirectoryTask root = new DirectoryTask(pathFile);
+			pool.invoke(root);
+			List<File> files = new ArrayList<>(root.count);
+			fileKeys = new ArrayList<>(root.count);
+			root.flatten(files, fileKeys);
+			return files;
+		} catch (WalkException e) {
+			throw e.getCause();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	public boolean isRecursive() {
+		return recursive;
+	}
+
+	public void setRecursive(boolean recursive) {
+		this.recursive = recursive;
+	}
+
+	public ImageFileFilter getFilter() {
+		return filter;
+	}
+
+	public void setFilter(ImageFileFilter filter) {
+		this.filter = filter;
+	}
+
+	/**
+	 * @return the file keys of the files found by the last walk in the same order (see
+	 *         {@link BasicFileAttributes#fileKey()})
+	 */
+	public List<Object> getFileKeys() {
+		return fileKeys;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Task for listing one directory. The sub-directories are forked as new tasks.
+	 */
+	private class DirectoryTask extends RecursiveTask<List<Object>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Path dir;
+
+		/**
+		 * the number of files found in this directory and all its sub-directories
+		 */
+		private int count;
+
+		/**
+		 * the file keys of the files of this directory (without the sub-directories)
+		 */
+		private final List<Object> keys = new ArrayList<>();
+
+		DirectoryTask(Path dir) {
+			this.dir = dir;
+		}
+
+		@Override
+		protected List<Object> compute() {
+			// the entries are either files or the tasks of the sub-directories
+			List<Object> entries = new ArrayList<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				for (Path entry : stream) {
+					BasicFileAttributes attrs = Files.readAttributes(entry,
+							BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					if (attrs.isDirectory()) {
+						if (recursive && !filter.prune(entry)) {
+							DirectoryTask task = new DirectoryTask(entry);
+							task.fork();
+							entries.add(task);
+						}
+					} else if (filter.accept(entry)) {
+						entries.add(entry.toFile());
+						keys.add(attrs.fileKey());
+						count++;
+					}
+				}
+			} catch (IOException e) {
+				throw new WalkException(e);
+			}
+			for (Object entry : entries) {
+				if (entry instanceof DirectoryTask) {
+					DirectoryTask task = (DirectoryTask) entry;
+					task.join();
+					count += task.count;
+				}
+			}
+			return entries;
+		}
+
+		/**
+		 * Add the files of this directory and its sub-directories and their file keys to the given
+		 * lists.
+		 */
+		void flatten(List<File> files, List<Object> fileKeys) {
+			int file = 0;
+			for (Object entry : getRawResult()) {
+				if (entry instanceof DirectoryTask) {
+					((DirectoryTask) entry).flatten(files, fileKeys);
+				} else {
+					files.add((File) entry);
+					fileKeys.add(keys.get(file++));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Wrapper for the IOExceptions thrown in the tasks.
+	 */
+	private static class WalkException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		WalkException(IOException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized IOException getCause() {
+			return (IOException) super.getCause();
+		}
+	}
+}
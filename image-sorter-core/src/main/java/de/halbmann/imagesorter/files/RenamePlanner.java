@@ -0,0 +1,197 @@
+package de.halbmann.imagesorter.files;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+/**
+ * Plans the renames of the images in place with the fewest operations: the images, that already
+ * have their calculated filename, aren't renamed at all. The other renames depend on each other,
+ * if the target of a rename is the current name of another image (i.e. after adding a few images
+ * to a sorted directory, each image moves up by some numbers). As every name is the source and
+ * the target of at most one rename, the dependencies form chains and cycles:
+ * <ul>
+ * <li>a chain is renamed from its end (the rename to a free name) back to its start</li>
+ * <li>a cycle is broken by renaming one of its images to a temporary name first (one temporary
+ * name per cycle, the minimum), then the rest of the cycle is renamed like a chain and finally
+ * the image is renamed from the temporary name to its target</li>
+ * </ul>
+ * The planner doesn't access the filesystem; a target, that is occupied by a file not known to the
+ * planner, still fails on renaming.
+ *
+ * @author fabian
+ *
+ */
+public class RenamePlanner {
+
+	/**
+	 * the suffix of the temporary names
+	 */
+	static final String TEMPORARY_SUFFIX = ".imagesorter-tmp";
+
+	private int skipped;
+
+	private int temporaryNames;
+
+	/**
+	 * Plan the renames of the images to their calculated filenames (in their directories).
+	 *
+	 * @param images
+	 *            the images with their calculated filenames (null elements are ignored; iterated
+	 *            once and only the paths are kept, so the images may be streamed)
+	 * @return the renames in the order to run them
+	 * @throws IllegalArgumentException
+	 *             if two images have the same target
+	 */
+	public List<Rename> plan(Iterable<ImageFile> images) {
+		skipped = 0;
+		temporaryNames = 0;
+
+		// the names used by the images before and after the renames
+		Set<Path> names = new HashSet<>();
+		Set<Path> targets = new HashSet<>();
+		Map<Path, Move> bySource = new HashMap<>();
+		List<Move> moves = new ArrayList<>();
+		for (ImageFile image : images) {
+			if (image == null) {
+				continue;
+			}
+			Path source = image.getFile().toPath();
+			Path target = source.resolveSibling(ImageFileWriter.getTargetFilename(image));
+			if (!targets.add(target)) {
+				throw new IllegalArgumentException("two images cannot be renamed to " + target);
+			}
+			names.add(source);
+			names.add(target);
+			if (source.equals(target)) {
+				skipped++;
+				continue;
+			}
+			Move move = new Move(source, target);
+			bySource.put(source, move);
+			moves.add(move);
+		}
+
+		// link each move with the move, that has to vacate its target first
+		for (Move move : moves) {
+			Move blocker = bySource.get(move.target);
+			if (blocker != null) {
+				move.blocked = true;
+				blocker.dependent = move;
+			}
+		}
+
+		List<Rename> plan = new ArrayList<>(moves.size());
+		// the chains: start with the moves to a free name
+		for (Move move : moves) {
+			if (!move.blocked) {
+				for (Move m = move; m != null; m = m.dependent) {
+					plan.add(new Rename(m.source, m.target));
+					m.done = true;
+				}
+			}
+		}
+		// the remaining moves are cycles
+		for (Move move : moves) {
+			if (move.done) {
+				continue;
+			}
+			Path temporary = temporaryName(move.source, names);
+			temporaryNames++;
+			plan.add(new Rename(move.source, temporary));
+			move.done = true;
+			for (Move m = move.dependent; m != move; m = m.dependent) {
+				plan.add(new Rename(m.source, m.target));
+				m.done = true;
+			}
+			plan.add(new Rename(temporary, move.target));
+		}
+		return plan;
+	}
+
+	/**
+	 * Get a temporary name next to the file, that isn't used by any image.
+	 */
+	private static Path temporaryName(Path source, Set<Path> names) {
+		String name = "." + source.getFileName() + TEMPORARY_SUFFIX;
+		Path temporary = source.resolveSibling(name);
+		for (int i = 1; names.contains(temporary); i++) {
+			temporary = source.resolveSibling(name + i);
+		}
+		names.add(temporary);
+		return temporary;
+	}
+
+	/**
+	 * @return the number of images of the last plan, that already had their target name
+	 */
+	public int getSkipped() {
+		return skipped;
+	}
+
+	/**
+	 * @return the number of temporary names of the last plan (one per cycle)
+	 */
+	public int getTemporaryNames() {
+		return temporaryNames;
+	}
+
+	/**
+	 * A rename of the plan.
+	 */
+	public static class Rename {
+
+		private final Path source;
+		private final Path target;
+
+		Rename(Path source, Path target) {
+			this.source = source;
+			this.target = target;
+		}
+
+		public Path getSource() {
+			return source;
+		}
+
+		public Path getTarget() {
+			return target;
+		}
+
+		@Override
+		public String toString() {
+			return source + " -> " + target;
+		}
+	}
+
+	/**
+	 * A rename to plan with its dependencies.
+	 */
+	private static class Move {
+
+		private final Path source;
+		private final Path target;
+
+		/**
+		 * flag whether the target is the source of another move
+		 */
+		private boolean blocked;
+
+		/**
+		 * the move, that has the source of this move as target
+		 */
+		private Move dependent;
+
+		private boolean done;
+
+		Move(Path source, Path target) {
+			this.source = source;
+			this.target = target;
+		}
+	}
+}
@@ -0,0 +1,212 @@
+package de.halbmann.imagesorter.files;
+
+import java.util.Arrays;
+
+/**
+ * Numbering of the sorted images with gaps between the numbers, so an image inserted later gets a
+ * number between its neighbours without renumbering (and renaming) the following images:
+ * <ul>
+ * <li>the images keep their current numbers, as long as the numbers are still in the order of
+ * the images (the longest increasing subsequence of the current numbers is kept)</li>
+ * <li>the new images (and the ones, that lost their number) are numbered evenly between their
+ * numbered neighbours; the images at the end are numbered with the full gap</li>
+ * <li>if there is no free number between the neighbours, only a local window is renumbered: the
+ * window is widened by the neighbouring images until the numbers are at least half the gap
+ * apart</li>
+ * </ul>
+ * So an import into an append-heavy archive only renames the new images (and the images of the
+ * windows rebalanced).
+ *
+ * @author fabian
+ *
+ */
+public class SparseNumbering {
+
+	public static final int DEFAULT_GAP = 10;
+
+	/**
+	 * marker for an image without (current) number
+	 */
+	public static final int NO_NUMBER = -1;
+
+	/**
+	 * the gap between the numbers of the images numbered at the end
+	 */
+	private final int gap;
+
+	private int kept;
+
+	private int rebalanced;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param gap
+	 *            the gap between the numbers (1 for dense numbers)
+	 */
+	public SparseNumbering(int gap) {
+		if (gap < 1) {
+			throw new IllegalArgumentException("gap must be positive: " + gap);
+		}
+		this.gap = gap;
+	}
+
+	/**
+	 * Number the sorted images.
+	 *
+	 * @param current
+	 *            the current numbers of the sorted images ({@link #NO_NUMBER} for the new images)
+	 * @param offset
+	 *            the first (lowest) number
+	 * @return the numbers of the images (strictly increasing, at least the offset)
+	 */
+	public int[] number(int[] current, int offset) {
+		int n = current.length;
+		long[] numbers = keep(current, offset);
+		rebalanced = 0;
+		// the minimum spacing of the numbers of a rebalanced window
+		long spacing = Math.max(1, gap / 2);
+
+		int start = 0;
+		while (start < n) {
+			if (numbers[start] != NO_NUMBER) {
+				start++;
+				continue;
+			}
+			int end = start;
+			while (end < n && numbers[end] == NO_NUMBER) {
+				end++;
+			}
+			long low = start > 0 ? numbers[start - 1] : offset - 1L;
+			if (end == n) {
+				fillEnd(numbers, start, low, offset);
+				break;
+			}
+			if (numbers[end] - low - 1 >= end - start) {
+				fill(numbers, start, end, low, numbers[end]);
+				start = end;
+				continue;
+			}
+
+			// widen the window alternately to the right and to the left
+			boolean right = true;
+			while (true) {
+				if (right && end < n) {
+					rebalanced++;
+					numbers[end++] = NO_NUMBER;
+					while (end < n && numbers[end] == NO_NUMBER) {
+						end++;
+					}
+				} else if (!right && start > 0) {
+					rebalanced++;
+					numbers[--start] = NO_NUMBER;
+				}
+				right = !right;
+				low = start > 0 ? numbers[start - 1] : offset - 1L;
+				if (end == n) {
+					break;
+				}
+				if (numbers[end] - low >= (end - start + 1) * spacing) {
+					break;
+				}
+			}
+			if (end == n) {
+				fillEnd(numbers, start, low, offset);
+				break;
+			}
+			fill(numbers, start, end, low, numbers[end]);
+			start = end;
+		}
+
+		int[] result = new int[n];
+		for (int i = 0; i < n; i++) {
+			if (numbers[i] > Integer.MAX_VALUE) {
+				throw new IllegalStateException("number overflow: " + numbers[i]);
+			}
+			result[i] = (int) numbers[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Keep the longest increasing subsequence of the current numbers (at least the offset).
+	 *
+	 * @return the kept numbers ({@link #NO_NUMBER} for the others)
+	 */
+	private long[] keep(int[] current, int offset) {
+		int n = current.length;
+		// the index of the last element of the increasing subsequences by their length
+		int[] tails = new int[n];
+		int[] previous = new int[n];
+		int length = 0;
+		for (int i = 0; i < n; i++) {
+			if (current[i] < offset) {
+				continue;
+			}
+			// the first subsequence, that can't be extended by the number
+			int lo = 0;
+			int hi = length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (current[tails[mid]] < current[i]) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			previous[i] = lo > 0 ? tails[lo - 1] : -1;
+			tails[lo] = i;
+			if (lo == length) {
+				length++;
+			}
+		}
+		long[] numbers = new long[n];
+		Arrays.fill(numbers, NO_NUMBER);
+		for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+			numbers[i] = current[i];
+		}
+		kept = length;
+		return numbers;
+	}
+
+	/**
+	 * Number the images evenly between the (exclusive) bounds.
+	 */
+	private static void fill(long[] numbers, int start, int end, long low, long high) {
+		long count = end - start + 1;
+		for (int i = start; i < end; i++) {
+			numbers[i] = low + (i - start + 1) * (high - low) / count;
+		}
+	}
+
+	/**
+	 * Number the images at the end with the full gap.
+	 */
+	private void fillEnd(long[] numbers, int start, long low, int offset) {
+		long number = start > 0 ? low + gap : offset;
+		for (int i = start; i < numbers.length; i++) {
+			numbers[i] = number;
+			number += gap;
+		}
+	}
+
+	public int getGap() {
+		return gap;
+	}
+
+	/**
+	 * @return the number of images of the last numbering, that kept their current number (before
+	 *         the rebalancing)
+	 */
+	public int getKept() {
+		return kept;
+	}
+
+	/**
+	 * @return the number of numbered images of the last numbering, that were renumbered by the
+	 *         rebalancing of the windows
+	 */
+	public int getRebalanced() {
+		return rebalanced;
+	}
+}
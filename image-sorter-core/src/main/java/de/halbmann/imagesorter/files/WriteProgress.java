@@ -0,0 +1,84 @@
+package de.halbmann.imagesorter.files;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe progress of the file operations of the {@link ImageFileWriter}. The counters are
+ * updated by the workers and can be polled by any thread (i.e. for a progress bar) without
+ * synchronizing with the workers.
+ *
+ * @author fabian
+ *
+ */
+public class WriteProgress {
+
+	private final AtomicInteger total = new AtomicInteger();
+	private final AtomicInteger completed = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private final AtomicLong bytes = new AtomicLong();
+
+	/**
+	 * Reset the counters for a new run.
+	 *
+	 * @param total
+	 *            the number of operations to run (if known, otherwise 0)
+	 */
+	public void reset(int total) {
+		this.total.set(total);
+		completed.set(0);
+		failed.set(0);
+		bytes.set(0);
+	}
+
+	void completed(long bytesWritten) {
+		bytes.addAndGet(bytesWritten);
+		completed.incrementAndGet();
+	}
+
+	void failed() {
+		failed.incrementAndGet();
+	}
+
+	/**
+	 * @return the number of operations to run (0, if unknown)
+	 */
+	public int getTotal() {
+		return total.get();
+	}
+
+	/**
+	 * @return the number of operations completed successfully
+	 */
+	public int getCompleted() {
+		return completed.get();
+	}
+
+	/**
+	 * @return the number of operations failed
+	 */
+	public int getFailed() {
+		return failed.get();
+	}
+
+	/**
+	 * @return the number of bytes written by the completed operations
+	 */
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	/**
+	 * @return the ratio of the operations done (completed or failed); 0, if the total is unknown
+	 */
+	public double getRatio() {
+		int t = total.get();
+		return t == 0 ? 0 : (double) (completed.get() + failed.get()) / t;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d/%d completed, %d failed, %d bytes", getCompleted(), getTotal(),
+				getFailed(), getBytes());
+	}
+}
@@ -0,0 +1,258 @@
+package de.halbmann.imagesorter.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dictionary of the camera models. Each model is interned once and gets a dense int id, so the
+ * images only reference the (shared) model string and the modifiers and comparators can compare
+ * the ids instead of the strings. The lookup of known models and ids is lock-free; only adding a
+ * new model is synchronized.
+ * <p>
+ * The ids are only valid within the registry (and the JVM), they are not persisted. The
+ * {@link Statistics} count the images and the range of the absorption times per model.
+ * </p>
+ *
+ * @author fabian
+ *
+ */
+public class CameraModelRegistry {
+
+	/**
+	 * the id for a missing camera model
+	 */
+	public static final int NO_MODEL = -1;
+
+	/**
+	 * marker for a missing absorption time
+	 */
+	public static final long NO_TIME = Long.MIN_VALUE;
+
+	private static final CameraModelRegistry DEFAULT = new CameraModelRegistry();
+
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+	/**
+	 * the models by id (replaced on adding a model)
+	 */
+	private volatile String[] models = new String[0];
+
+	/**
+	 * @return the registry used by the {@link ImageFile}s
+	 */
+	public static CameraModelRegistry getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Get the id of the camera model; a new model is added to the registry.
+	 *
+	 * @param model
+	 *            the camera model (or null)
+	 * @return the id or {@link #NO_MODEL}, if the model is null
+	 */
+	public int intern(String model) {
+		if (model == null) {
+			return NO_MODEL;
+		}
+		Integer id = ids.get(model);
+		if (id != null) {
+			return id;
+		}
+		synchronized (this) {
+			id = ids.get(model);
+			if (id == null) {
+				id = models.length;
+				String[] newModels = Arrays.copyOf(models, id + 1);
+				newModels[id] = model;
+				// publish the model before the id
+				models = newModels;
+				ids.put(model, id);
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Get the id of the camera model without adding it.
+	 *
+	 * @param model
+	 *            the camera model
+	 * @return the id or {@link #NO_MODEL}, if the model is null or unknown
+	 */
+	public int getId(String model) {
+		Integer id = model == null ? null : ids.get(model);
+		return id == null ? NO_MODEL : id;
+	}
+
+	/**
+	 * Get the camera model for the id.
+	 *
+	 * @param id
+	 *            the id
+	 * @return the (interned) camera model or null for {@link #NO_MODEL}
+	 */
+	public String getModel(int id) {
+		return id == NO_MODEL ? null : models[id];
+	}
+
+	/**
+	 * @return the number of camera models
+	 */
+	public int size() {
+		return models.length;
+	}
+
+	/**
+	 * @return the camera models (the index is the id)
+	 */
+	public List<String> getModels() {
+		return Collections.unmodifiableList(Arrays.asList(models));
+	}
+
+	/**
+	 * Create new (empty) statistics for the models of this registry.
+	 *
+	 * @return the statistics
+	 */
+	public Statistics newStatistics() {
+		return new Statistics(this);
+	}
+
+	/**
+	 * Statistics per camera model: the number of images and the minimum and maximum absorption
+	 * time. The counters are updated lock-free, so the statistics can be recorded by the reading
+	 * threads.
+	 */
+	public static class Statistics {
+
+		private final CameraModelRegistry registry;
+
+		/**
+		 * the counters by id + 1 (index 0 for the images without model; replaced on growing, the
+		 * counters themselves are kept)
+		 */
+		private volatile Counter[] counters = new Counter[0];
+
+		Statistics(CameraModelRegistry registry) {
+			this.registry = registry;
+		}
+
+		/**
+		 * Record the image.
+		 *
+		 * @param image
+		 *            the image
+		 */
+		public void record(ImageFile image) {
+			Date time = image.getOriginalAbsorptionTime();
+			record(image.getCameraModelId(), time == null ? NO_TIME : time.getTime());
+		}
+
+		/**
+		 * Record an image of the model.
+		 *
+		 * @param id
+		 *            the id of the camera model (or {@link CameraModelRegistry#NO_MODEL})
+		 * @param time
+		 *            the absorption time (or {@link CameraModelRegistry#NO_TIME})
+		 */
+		public void record(int id, long time) {
+			Counter counter = counter(id);
+			counter.count.incrementAndGet();
+			if (time == NO_TIME) {
+				return;
+			}
+			long min = counter.min.get();
+			while (time < min && !counter.min.compareAndSet(min, time)) {
+				min = counter.min.get();
+			}
+			long max = counter.max.get();
+			while (time > max && !counter.max.compareAndSet(max, time)) {
+				max = counter.max.get();
+			}
+		}
+
+		private Counter counter(int id) {
+			int index = id + 1;
+			Counter[] current = counters;
+			if (index < current.length) {
+				return current[index];
+			}
+			synchronized (this) {
+				current = counters;
+				if (index >= current.length) {
+					Counter[] grown = Arrays.copyOf(current, Math.max(index + 1,
+							registry.size() + 1));
+					for (int i = current.length; i < grown.length; i++) {
+						grown[i] = new Counter();
+					}
+					counters = grown;
+					current = grown;
+				}
+				return current[index];
+			}
+		}
+
+		/**
+		 * @return the number of images of the model
+		 */
+		public long getImageCount(int id) {
+			Counter[] current = counters;
+			return id + 1 < current.length ? current[id + 1].count.get() : 0;
+		}
+
+		/**
+		 * @return the minimum absorption time of the model or {@link CameraModelRegistry#NO_TIME}
+		 */
+		public long getMinTime(int id) {
+			Counter[] current = counters;
+			if (id + 1 >= current.length || current[id + 1].min.get() == Long.MAX_VALUE) {
+				return NO_TIME;
+			}
+			return current[id + 1].min.get();
+		}
+
+		/**
+		 * @return the maximum absorption time of the model or {@link CameraModelRegistry#NO_TIME}
+		 */
+		public long getMaxTime(int id) {
+			Counter[] current = counters;
+			return id + 1 < current.length ? current[id + 1].max.get() : NO_TIME;
+		}
+
+		/**
+		 * @return the camera models with at least one image (null for the images without model)
+		 */
+		public Set<String> getCameraModels() {
+			Set<String> models = new HashSet<>();
+			Counter[] current = counters;
+			for (int i = 0; i < current.length; i++) {
+				if (current[i].count.get() > 0) {
+					models.add(registry.getModel(i - 1));
+				}
+			}
+			return models;
+		}
+
+		/**
+		 * Reset all the counters.
+		 */
+		public synchronized void reset() {
+			counters = new Counter[0];
+		}
+	}
+
+	private static class Counter {
+
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+		private final AtomicLong max = new AtomicLong(NO_TIME);
+	}
+}
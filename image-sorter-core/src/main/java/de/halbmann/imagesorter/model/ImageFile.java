@@ -51,6 +51,11 @@ public class ImageFile {
 	 */
 	private String cameraModel;
 
+	/**
+	 * the id of the camera-model in the {@link CameraModelRegistry}
+	 */
+	private int cameraModelId = CameraModelRegistry.NO_MODEL;
+
 	// getter and setter
 
 	public File getFile() {
@@ -117,8 +122,23 @@ public class ImageFile {
 		return cameraModel;
 	}
 
+	/**
+	 * Set the camera-model. The model is interned in the default {@link CameraModelRegistry}.
+	 * 
+	 * @param cameraModel
+	 *            the camera-model (or null)
+	 */
 	public void setCameraModel(String cameraModel) {
-		this.cameraModel = cameraModel;
+		CameraModelRegistry registry = CameraModelRegistry.getDefault();
+		this.cameraModelId = registry.intern(cameraModel);
+		this.cameraModel = registry.getModel(cameraModelId);
+	}
+
+	/**
+	 * @return the id of the camera-model in the default {@link CameraModelRegistry}
+	 */
+	public int getCameraModelId() {
+		return cameraModelId;
 	}
 
 	@Override
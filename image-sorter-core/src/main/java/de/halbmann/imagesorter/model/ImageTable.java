@@ -0,0 +1,579 @@
+package de.halbmann.imagesorter.model;
+
+import java.io.File;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar (struct-of-arrays) catalog of images for very large archives. Instead of one
+ * {@link ImageFile} object (with a File, Strings and Dates) per image, the table stores the
+ * attributes of all images in primitive arrays:
+ * <ul>
+ * <li>the absorption times as epoch millis ({@link #NO_TIME} for none)</li>
+ * <li>the orientations as int</li>
+ * <li>the camera models as ids of the {@link CameraModelRegistry}</li>
+ * <li>the directories as ids into a pool and the filenames as ranges of one shared char
+ * array</li>
+ * </ul>
+ * <p>
+ * The existing modifiers, comparators and filename calculators work on the table through
+ * {@link #asList()}: each element is a lightweight {@link Row} view (an ImageFile, that reads and
+ * writes the columns of its row). The list can't be sorted with
+ * {@link Collections#sort(List, Comparator)}; use {@link #sort(Comparator)}, which permutes the
+ * columns.
+ * </p>
+ *
+ * @author fabian
+ *
+ */
+public class ImageTable {
+
+	/**
+	 * marker for a missing absorption time
+	 */
+	public static final long NO_TIME = Long.MIN_VALUE;
+
+	/**
+	 * marker for a missing camera model
+	 */
+	public static final int NO_CAMERA_MODEL = CameraModelRegistry.NO_MODEL;
+
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	private int size;
+
+	// the columns
+	private int[] directories;
+	private int[] nameOffsets;
+	private int[] nameLengths;
+	private long[] originalTimes;
+	private long[] modifiedTimes;
+	private int[] orientations;
+	private int[] cameraModelIds;
+
+	/**
+	 * the calculated filenames (created with the other columns, so the filenames of different rows
+	 * can be set concurrently)
+	 */
+	private String[] calculatedFilenames;
+
+	/**
+	 * the shared pool of the filenames
+	 */
+	private char[] names;
+	private int namesLength;
+
+	/**
+	 * the pool of the directories
+	 */
+	private final List<String> directoryPool = new ArrayList<>();
+	private final Map<String, Integer> directoryIds = new HashMap<>();
+
+	/**
+	 * the dictionary of the camera models
+	 */
+	private final CameraModelRegistry cameraModels = CameraModelRegistry.getDefault();
+
+	/**
+	 * Default constructor.
+	 */
+	public ImageTable() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor for setting the initial capacity.
+	 *
+	 * @param capacity
+	 *            the initial number of images
+	 */
+	public ImageTable(int capacity) {
+		capacity = Math.max(capacity, 16);
+		directories = new int[capacity];
+		nameOffsets = new int[capacity];
+		nameLengths = new int[capacity];
+		originalTimes = new long[capacity];
+		modifiedTimes = new long[capacity];
+		orientations = new int[capacity];
+		cameraModelIds = new int[capacity];
+		calculatedFilenames = new String[capacity];
+		names = new char[capacity * 16];
+	}
+
+	/**
+	 * Create a table with the images of the given list.
+	 *
+	 * @param images
+	 *            the images
+	 * @return the table
+	 */
+	public static ImageTable fromImageFiles(List<ImageFile> images) {
+		ImageTable table = new ImageTable(images.size());
+		for (ImageFile image : images) {
+			table.add(image);
+		}
+		return table;
+	}
+
+	/**
+	 * Create ImageFile objects for all the rows of the table.
+	 *
+	 * @return the list of images
+	 */
+	public List<ImageFile> toImageFiles() {
+		List<ImageFile> images = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			ImageFile image = new ImageFile();
+			image.setFile(getFile(i));
+			image.setOriginalFilename(getFilename(i));
+			image.setFileExtension(getFileExtension(i));
+			image.setOrientation(orientations[i]);
+			image.setCameraModel(getCameraModel(i));
+			image.setOriginalAbsorptionTime(toDate(originalTimes[i]));
+			image.setModifiedAbsorptionTime(toDate(modifiedTimes[i]));
+			image.setCalculatedFilename(calculatedFilenames[i]);
+			images.add(image);
+		}
+		return images;
+	}
+
+	/**
+	 * Add the image to the table.
+	 *
+	 * @param image
+	 *            the image
+	 * @return the row of the image
+	 */
+	public int add(ImageFile image) {
+		File f = image.getFile();
+		int row = add(f.getParent(), f.getName(), image.getOrientation(), image.getCameraModel(),
+				toMillis(image.getOriginalAbsorptionTime()));
+		modifiedTimes[row] = toMillis(image.getModifiedAbsorptionTime());
+		return row;
+	}
+
+	/**
+	 * Add an image to the table.
+	 *
+	 * @param directory
+	 *            the directory of the image
+	 * @param filename
+	 *            the filename of the image
+	 * @param orientation
+	 *            the orientation
+	 * @param cameraModel
+	 *            the camera model (or null)
+	 * @param originalTime
+	 *            the original absorption time (or {@link #NO_TIME})
+	 * @return the row of the image
+	 */
+	public int add(String directory, String filename, int orientation, String cameraModel,
+			long originalTime) {
+		if (size == directories.length) {
+			grow();
+		}
+		int row = size++;
+		directories[row] = internDirectory(directory);
+		setFilename(row, filename);
+		orientations[row] = orientation;
+		cameraModelIds[row] = internCameraModel(cameraModel);
+		originalTimes[row] = originalTime;
+		modifiedTimes[row] = NO_TIME;
+		return row;
+	}
+
+	private void grow() {
+		int capacity = directories.length + (directories.length >> 1);
+		directories = Arrays.copyOf(directories, capacity);
+		nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+		nameLengths = Arrays.copyOf(nameLengths, capacity);
+		originalTimes = Arrays.copyOf(originalTimes, capacity);
+		modifiedTimes = Arrays.copyOf(modifiedTimes, capacity);
+		orientations = Arrays.copyOf(orientations, capacity);
+		cameraModelIds = Arrays.copyOf(cameraModelIds, capacity);
+		calculatedFilenames = Arrays.copyOf(calculatedFilenames, capacity);
+	}
+
+	private void setFilename(int row, String filename) {
+		int length = filename.length();
+		if (namesLength + length > names.length) {
+			names = Arrays.copyOf(names, Math.max(names.length * 2, namesLength + length));
+		}
+		filename.getChars(0, length, names, namesLength);
+		nameOffsets[row] = namesLength;
+		nameLengths[row] = length;
+		namesLength += length;
+	}
+
+	private int internDirectory(String directory) {
+		if (directory == null) {
+			directory = "";
+		}
+		Integer id = directoryIds.get(directory);
+		if (id == null) {
+			id = directoryPool.size();
+			directoryPool.add(directory);
+			directoryIds.put(directory, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Get the id of the camera model (adds the model to the registry, if it's new).
+	 *
+	 * @param cameraModel
+	 *            the camera model (or null)
+	 * @return the id of the camera model or {@link #NO_CAMERA_MODEL}
+	 */
+	public int internCameraModel(String cameraModel) {
+		return cameraModels.intern(cameraModel);
+	}
+
+	/**
+	 * Get the id of the camera model.
+	 *
+	 * @param cameraModel
+	 *            the camera model
+	 * @return the id or {@link #NO_CAMERA_MODEL}, if the model isn't in the registry
+	 */
+	public int getCameraModelId(String cameraModel) {
+		return cameraModels.getId(cameraModel);
+	}
+
+	/**
+	 * Calculate the statistics of the camera models of the rows.
+	 *
+	 * @return the statistics
+	 */
+	public CameraModelRegistry.Statistics getStatistics() {
+		CameraModelRegistry.Statistics statistics = cameraModels.newStatistics();
+		for (int i = 0; i < size; i++) {
+			statistics.record(cameraModelIds[i], originalTimes[i]);
+		}
+		return statistics;
+	}
+
+	/**
+	 * Sort the rows of the table with the given comparator (stable).
+	 *
+	 * @param comparator
+	 *            the comparator for the images
+	 */
+	public void sort(Comparator<? super ImageFile> comparator) {
+		Row[] rows = new Row[size];
+		for (int i = 0; i < size; i++) {
+			rows[i] = new Row(i);
+		}
+		Arrays.sort(rows, comparator);
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = rows[i].row;
+		}
+		permute(order);
+	}
+
+	/**
+	 * Reorder the rows of the table.
+	 *
+	 * @param order
+	 *            the old row of each new row (a permutation of 0..size-1)
+	 */
+	public void permute(int[] order) {
+		if (order.length != size) {
+			throw new IllegalArgumentException("the order has to contain all rows");
+		}
+		directories = permute(directories, order);
+		nameOffsets = permute(nameOffsets, order);
+		nameLengths = permute(nameLengths, order);
+		orientations = permute(orientations, order);
+		cameraModelIds = permute(cameraModelIds, order);
+		originalTimes = permute(originalTimes, order);
+		modifiedTimes = permute(modifiedTimes, order);
+		String[] permuted = new String[calculatedFilenames.length];
+		for (int i = 0; i < size; i++) {
+			permuted[i] = calculatedFilenames[order[i]];
+		}
+		calculatedFilenames = permuted;
+	}
+
+	private static int[] permute(int[] column, int[] order) {
+		int[] permuted = new int[column.length];
+		for (int i = 0; i < order.length; i++) {
+			permuted[i] = column[order[i]];
+		}
+		return permuted;
+	}
+
+	private static long[] permute(long[] column, int[] order) {
+		long[] permuted = new long[column.length];
+		for (int i = 0; i < order.length; i++) {
+			permuted[i] = column[order[i]];
+		}
+		return permuted;
+	}
+
+	/**
+	 * Get the view of the row as ImageFile.
+	 *
+	 * @param row
+	 *            the row
+	 * @return the view
+	 */
+	public Row row(int row) {
+		checkRow(row);
+		return new Row(row);
+	}
+
+	/**
+	 * Get the rows of the table as list of ImageFiles (views of the rows). The list can't be
+	 * modified (use {@link #sort(Comparator)} for sorting), but the elements can.
+	 *
+	 * @return the list view of the table
+	 */
+	public List<ImageFile> asList() {
+		return new AbstractList<ImageFile>() {
+
+			@Override
+			public ImageFile get(int index) {
+				return row(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private void checkRow(int row) {
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException("row: " + row + ", size: " + size);
+		}
+	}
+
+	// access to the columns
+
+	public String getDirectory(int row) {
+		return directoryPool.get(directories[row]);
+	}
+
+	public String getFilename(int row) {
+		return new String(names, nameOffsets[row], nameLengths[row]);
+	}
+
+	/**
+	 * @return the file-extension (the part of the filename after the last '.')
+	 */
+	public String getFileExtension(int row) {
+		int start = nameOffsets[row];
+		int end = start + nameLengths[row];
+		for (int i = end - 1; i >= start; i--) {
+			if (names[i] == '.') {
+				return new String(names, i + 1, end - i - 1);
+			}
+		}
+		return new String(names, start, end - start);
+	}
+
+	public File getFile(int row) {
+		String directory = getDirectory(row);
+		return directory.isEmpty() ? new File(getFilename(row)) : new File(directory,
+				getFilename(row));
+	}
+
+	public int getOrientation(int row) {
+		return orientations[row];
+	}
+
+	public void setOrientation(int row, int orientation) {
+		orientations[row] = orientation;
+	}
+
+	public int getCameraModelId(int row) {
+		return cameraModelIds[row];
+	}
+
+	public void setCameraModelId(int row, int cameraModelId) {
+		cameraModelIds[row] = cameraModelId;
+	}
+
+	public String getCameraModel(int row) {
+		return cameraModels.getModel(cameraModelIds[row]);
+	}
+
+	public long getOriginalTime(int row) {
+		return originalTimes[row];
+	}
+
+	public void setOriginalTime(int row, long time) {
+		originalTimes[row] = time;
+	}
+
+	public long getModifiedTime(int row) {
+		return modifiedTimes[row];
+	}
+
+	public void setModifiedTime(int row, long time) {
+		modifiedTimes[row] = time;
+	}
+
+	/**
+	 * @return the modified absorption time, if set, otherwise the original absorption time
+	 */
+	public long getAbsorptionTime(int row) {
+		long modified = modifiedTimes[row];
+		return modified != NO_TIME ? modified : originalTimes[row];
+	}
+
+	/**
+	 * @return the calculated filename or the original filename, if there is none
+	 */
+	public String getCalculatedFilename(int row) {
+		String calculated = calculatedFilenames[row];
+		return calculated != null && !calculated.isEmpty() ? calculated : getFilename(row);
+	}
+
+	public void setCalculatedFilename(int row, String calculatedFilename) {
+		calculatedFilenames[row] = calculatedFilename;
+	}
+
+	private static long toMillis(Date date) {
+		return date == null ? NO_TIME : date.getTime();
+	}
+
+	private static Date toDate(long millis) {
+		return millis == NO_TIME ? null : new Date(millis);
+	}
+
+	/**
+	 * View of a row of the table as ImageFile. The getters and setters read and write the columns
+	 * of the row; the Dates returned are copies. The original filename and the file-extension are
+	 * derived from the file.
+	 */
+	public class Row extends ImageFile {
+
+		private final int row;
+
+		Row(int row) {
+			this.row = row;
+		}
+
+		/**
+		 * @return the row in the table
+		 */
+		public int getRow() {
+			return row;
+		}
+
+		@Override
+		public File getFile() {
+			return ImageTable.this.getFile(row);
+		}
+
+		@Override
+		public void setFile(File file) {
+			directories[row] = internDirectory(file.getParent());
+			ImageTable.this.setFilename(row, file.getName());
+		}
+
+		@Override
+		public String getOriginalFilename() {
+			return getFilename(row);
+		}
+
+		@Override
+		public void setOriginalFilename(String originalFilename) {
+			if (!getFilename(row).equals(originalFilename)) {
+				throw new UnsupportedOperationException("the filename is taken from the file");
+			}
+		}
+
+		@Override
+		public String getFileExtension() {
+			return ImageTable.this.getFileExtension(row);
+		}
+
+		@Override
+		public void setFileExtension(String fileExtension) {
+			if (!ImageTable.this.getFileExtension(row).equals(fileExtension)) {
+				throw new UnsupportedOperationException("the extension is taken from the file");
+			}
+		}
+
+		@Override
+		public String getCalculatedFilename() {
+			return ImageTable.this.getCalculatedFilename(row);
+		}
+
+		@Override
+		public void setCalculatedFilename(String calculatedFilename) {
+			ImageTable.this.setCalculatedFilename(row, calculatedFilename);
+		}
+
+		@Override
+		public int getOrientation() {
+			return orientations[row];
+		}
+
+		@Override
+		public void setOrientation(int orientation) {
+			orientations[row] = orientation;
+		}
+
+		@Override
+		public Date getOriginalAbsorptionTime() {
+			return toDate(originalTimes[row]);
+		}
+
+		@Override
+		public void setOriginalAbsorptionTime(Date originalAbsorptionTime) {
+			originalTimes[row] = toMillis(originalAbsorptionTime);
+		}
+
+		@Override
+		public Date getModifiedAbsorptionTime() {
+			return toDate(modifiedTimes[row]);
+		}
+
+		@Override
+		public void setModifiedAbsorptionTime(Date modifiedAbsorptionTime) {
+			modifiedTimes[row] = toMillis(modifiedAbsorptionTime);
+		}
+
+		@Override
+		public String getCameraModel() {
+			return ImageTable.this.getCameraModel(row);
+		}
+
+		@Override
+		public void setCameraModel(String cameraModel) {
+			cameraModelIds[row] = internCameraModel(cameraModel);
+		}
+
+		@Override
+		public int getCameraModelId() {
+			return cameraModelIds[row];
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(getOriginalFilename());
+			sb.append(" - orig: ");
+			sb.append(getOriginalAbsorptionTime());
+			sb.append(" - orientation: ");
+			sb.append(getOrientation());
+			return sb.toString();
+		}
+	}
+}
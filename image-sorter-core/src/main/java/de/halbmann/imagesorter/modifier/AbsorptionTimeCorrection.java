@@ -0,0 +1,287 @@
+package de.halbmann.imagesorter.modifier;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import de.halbmann.imagesorter.ImageSorterSettings.CameraSettings;
+import de.halbmann.imagesorter.model.CameraModelRegistry;
+import de.halbmann.imagesorter.model.ImageFile;
+import de.halbmann.imagesorter.model.ImageTable;
+
+/**
+ * ImageModifier implementation, that corrects the absorption times of all the camera models in one
+ * pass (instead of one {@link AbsorptionTimeModifier} per camera model, each iterating all the
+ * images). The corrections are compiled into a lookup table by the id of the camera model (see
+ * {@link CameraModelRegistry}) and applied with precomputed arithmetic:
+ * <ul>
+ * <li>hours, minutes and seconds are a fixed duration</li>
+ * <li>days keep the wall-clock time (the difference of the offset of the time zone is added, like
+ * {@link Calendar#add(int, int)} does)</li>
+ * <li>only for years and months a {@link Calendar} (one per thread) is used</li>
+ * </ul>
+ * The result is the same as with the AbsorptionTimeModifiers (if a camera model is configured
+ * more than once, the last correction wins). Large lists are corrected in parallel (see
+ * {@link ImageModifierExecutor}). Images without absorption time are skipped.
+ *
+ * @author fabian
+ *
+ */
+public class AbsorptionTimeCorrection implements SingleImageModifier {
+
+	private static final long SECOND = 1000;
+	private static final long MINUTE = 60 * SECOND;
+	private static final long HOUR = 60 * MINUTE;
+	private static final long DAY = 24 * HOUR;
+
+	/**
+	 * the calendar for the corrections with years or months (per thread)
+	 */
+	private static final ThreadLocal<Calendar> CALENDAR = new ThreadLocal<Calendar>() {
+
+		@Override
+		protected Calendar initialValue() {
+			return Calendar.getInstance();
+		}
+	};
+
+	/**
+	 * the corrections by camera model
+	 */
+	private final Map<String, Correction> corrections = new HashMap<>();
+
+	/**
+	 * the corrections by the id of the camera model (compiled on first use)
+	 */
+	private volatile Correction[] table;
+
+	/**
+	 * the executor for correcting in parallel
+	 */
+	private final ImageModifierExecutor executor = new ImageModifierExecutor();
+
+	/**
+	 * Default constructor (without corrections).
+	 */
+	public AbsorptionTimeCorrection() {
+	}
+
+	/**
+	 * Constructor for setting the corrections via the CameraSettings.
+	 *
+	 * @param cameraSettings
+	 *            the camera settings including camera model, years, months, days, hours, minutes
+	 *            and seconds
+	 */
+	public AbsorptionTimeCorrection(List<CameraSettings> cameraSettings) {
+		for (CameraSettings cs : cameraSettings) {
+			addCorrection(cs.getCameraModel(), cs.getYears(), cs.getMonths(), cs.getDays(),
+					cs.getHours(), cs.getMinutes(), cs.getSeconds());
+		}
+	}
+
+	/**
+	 * Add (or replace) the correction for the camera model.
+	 *
+	 * @param cameraModel
+	 *            camera model, all images taken with this camera model will be corrected
+	 * @param years
+	 *            years to add to the absorption time (also negative values are allowed)
+	 * @param months
+	 *            months to add to the absorption time (also negative values are allowed)
+	 * @param days
+	 *            days to add to the absorption time (also negative values are allowed)
+	 * @param hours
+	 *            hours to add to the absorption time (also negative values are allowed)
+	 * @param minutes
+	 *            minutes to add to the absorption time (also negative values are allowed)
+	 * @param seconds
+	 *            seconds to add to the absorption time (also negative values are allowed)
+	 */
+	public void addCorrection(String cameraModel, int years, int months, int days, int hours,
+			int minutes, int seconds) {
+		if (cameraModel == null) {
+			throw new IllegalArgumentException("CameraModel cannot be null!");
+		}
+		corrections.put(cameraModel, new Correction(years, months, days, hours * HOUR + minutes
+				* MINUTE + seconds * SECOND));
+		table = null;
+	}
+
+	/**
+	 * Correct the absorption times of the images (the modified absorption time is set for the
+	 * images of the configured camera models).
+	 *
+	 * @param images
+	 *            list of the ImageFiles to modify
+	 */
+	@Override
+	public void modify(List<ImageFile> images) {
+		executor.execute(images, this);
+	}
+
+	/**
+	 * Correct the absorption times of the images of the range.
+	 *
+	 * @param images
+	 *            list of the ImageFiles to modify
+	 * @param from
+	 *            the index of the first image to modify (inclusive)
+	 * @param to
+	 *            the index of the last image to modify (exclusive)
+	 */
+	@Override
+	public void modify(List<ImageFile> images, int from, int to) {
+		if (corrections.isEmpty()) {
+			return;
+		}
+		for (int i = from; i < to; i++) {
+			ImageFile image = images.get(i);
+			if (image != null) {
+				modify(image);
+			}
+		}
+	}
+
+	/**
+	 * Correct the absorption time of the image.
+	 *
+	 * @param image
+	 *            the ImageFile to modify
+	 */
+	@Override
+	public void modify(ImageFile image) {
+		Correction correction = lookup(compile(), image.getCameraModelId());
+		Date time = correction == null ? null : image.getOriginalAbsorptionTime();
+		if (time != null) {
+			image.setModifiedAbsorptionTime(new Date(correction.apply(time.getTime())));
+		}
+	}
+
+	/**
+	 * Correct the absorption times of the rows of the table (working on the columns, without
+	 * creating ImageFiles or Dates).
+	 *
+	 * @param images
+	 *            the table of the images to modify
+	 */
+	public void modify(final ImageTable images) {
+		if (corrections.isEmpty() || images.size() == 0) {
+			return;
+		}
+		final Correction[] compiled = compile();
+		executor.run(images.size(), new ImageModifierExecutor.Range() {
+
+			@Override
+			public void apply(int from, int to) {
+				for (int i = from; i < to; i++) {
+					Correction correction = lookup(compiled, images.getCameraModelId(i));
+					long time = images.getOriginalTime(i);
+					if (correction != null && time != ImageTable.NO_TIME) {
+						images.setModifiedTime(i, correction.apply(time));
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Compile the corrections into a table by the id of the camera model. The models are interned,
+	 * so the ids of the table stay valid, even if other models are added to the registry later.
+	 */
+	private Correction[] compile() {
+		Correction[] compiled = table;
+		if (compiled != null) {
+			return compiled;
+		}
+		CameraModelRegistry registry = CameraModelRegistry.getDefault();
+		Map<Integer, Correction> byId = new HashMap<>();
+		int size = 0;
+		for (Map.Entry<String, Correction> e : corrections.entrySet()) {
+			int id = registry.intern(e.getKey());
+			byId.put(id, e.getValue());
+			size = Math.max(size, id + 1);
+		}
+		compiled = new Correction[size];
+		for (Map.Entry<Integer, Correction> e : byId.entrySet()) {
+			compiled[e.getKey()] = e.getValue();
+		}
+		table = compiled;
+		return compiled;
+	}
+
+	private static Correction lookup(Correction[] table, int id) {
+		return id >= 0 && id < table.length ? table[id] : null;
+	}
+
+	public int getParallelThreshold() {
+		return executor.getParallelThreshold();
+	}
+
+	public void setParallelThreshold(int parallelThreshold) {
+		executor.setParallelThreshold(parallelThreshold);
+	}
+
+	public int getParallelism() {
+		return executor.getParallelism();
+	}
+
+	public void setParallelism(int parallelism) {
+		executor.setParallelism(parallelism);
+	}
+
+	/**
+	 * The precomputed correction of a camera model.
+	 */
+	static class Correction {
+
+		private final int years;
+		private final int months;
+		private final int days;
+
+		/**
+		 * the hours, minutes and seconds in millis
+		 */
+		private final long duration;
+
+		Correction(int years, int months, int days, long duration) {
+			this.years = years;
+			this.months = months;
+			this.days = days;
+			this.duration = duration;
+		}
+
+		/**
+		 * Apply the correction to the time.
+		 *
+		 * @param time
+		 *            the absorption time in millis
+		 * @return the corrected time in millis
+		 */
+		long apply(long time) {
+			if (years != 0 || months != 0) {
+				Calendar cal = CALENDAR.get();
+				cal.setTimeInMillis(time);
+				if (years != 0) {
+					cal.add(Calendar.YEAR, years);
+				}
+				if (months != 0) {
+					cal.add(Calendar.MONTH, months);
+				}
+				if (days != 0) {
+					cal.add(Calendar.DAY_OF_MONTH, days);
+				}
+				time = cal.getTimeInMillis();
+			} else if (days != 0) {
+				// keep the wall-clock time over daylight saving changes
+				TimeZone zone = CALENDAR.get().getTimeZone();
+				long shifted = time + days * DAY;
+				time = shifted + zone.getOffset(time) - zone.getOffset(shifted);
+			}
+			return time + duration;
+		}
+	}
+}
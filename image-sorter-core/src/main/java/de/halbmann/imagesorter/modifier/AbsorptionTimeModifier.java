@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Properties;
 
 import de.halbmann.imagesorter.ImageSorterSettings.CameraSettings;
+import de.halbmann.imagesorter.model.CameraModelRegistry;
 import de.halbmann.imagesorter.model.ImageFile;
 
 /**
@@ -15,7 +16,7 @@ import de.halbmann.imagesorter.model.ImageFile;
  * @author fabian
  * 
  */
-public class AbsorptionTimeModifier implements ImageModifier {
+public class AbsorptionTimeModifier implements PartitionedImageModifier {
 
 	String cameraModel;
 	int years = 0;
@@ -103,8 +104,10 @@ public class AbsorptionTimeModifier implements ImageModifier {
 		if (cameraModel == null) {
 			throw new IllegalArgumentException("CameraModel cannot be null!");
 		}
+		// compare the ids of the models instead of the strings
+		int cameraModelId = CameraModelRegistry.getDefault().intern(cameraModel);
 		for (ImageFile image : images) {
-			if (cameraModel.equals(image.getCameraModel())) {
+			if (image.getCameraModelId() == cameraModelId) {
 				Date absorptionTime = image.getOriginalAbsorptionTime();
 				Calendar cal = Calendar.getInstance();
 				cal.setTime(absorptionTime);
@@ -131,6 +134,21 @@ public class AbsorptionTimeModifier implements ImageModifier {
 		}
 	}
 
+	/**
+	 * Modify the ImageFile-Attributes of the images of the range.
+	 * 
+	 * @param images
+	 *            list of the ImageFiles to modify
+	 * @param from
+	 *            the index of the first image to modify (inclusive)
+	 * @param to
+	 *            the index of the last image to modify (exclusive)
+	 */
+	@Override
+	public void modify(List<ImageFile> images, int from, int to) {
+		modify(images.subList(from, to));
+	}
+
 	public String getCameraModel() {
 		return cameraModel;
 	}
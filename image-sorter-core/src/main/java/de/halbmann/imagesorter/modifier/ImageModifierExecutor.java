@@ -0,0 +1,150 @@
+package de.halbmann.imagesorter.modifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+/**
+ * Executor for the ImageModifiers. The {@link PartitionedImageModifier}s are run over fork/join
+ * partitions of the images: consecutive partitioned modifiers are fused, so each partition is
+ * modified by all of them in one pass. Other modifiers (compatibility bridge) are run on the whole
+ * list on the calling thread, between the parallel passes. The order of the modifiers is kept for
+ * every image.
+ * 
+ * @author fabian
+ * 
+ */
+public class ImageModifierExecutor {
+
+	/**
+	 * the minimum number of images for modifying in parallel
+	 */
+	private int parallelThreshold = 10000;
+
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Run the modifiers (in the given order) on the images.
+	 * 
+	 * @param images
+	 *            the list of the image-files read
+	 * @param modifiers
+	 *            the modifiers
+	 */
+	public void execute(List<ImageFile> images, ImageModifier... modifiers) {
+		if (modifiers == null || modifiers.length == 0 || images.isEmpty()) {
+			return;
+		}
+		final List<ImageFile> list = images instanceof RandomAccess ? images
+				: new ArrayList<>(images);
+		final List<PartitionedImageModifier> pass = new ArrayList<>();
+		for (ImageModifier modifier : modifiers) {
+			if (modifier instanceof PartitionedImageModifier) {
+				pass.add((PartitionedImageModifier) modifier);
+				continue;
+			}
+			runPass(list, pass);
+			modifier.modify(list);
+		}
+		runPass(list, pass);
+	}
+
+	/**
+	 * Run the partitioned modifiers over the partitions of the images.
+	 */
+	private void runPass(final List<ImageFile> images, List<PartitionedImageModifier> pass) {
+		if (pass.isEmpty()) {
+			return;
+		}
+		final PartitionedImageModifier[] modifiers = pass.toArray(new PartitionedImageModifier[pass
+				.size()]);
+		pass.clear();
+		run(images.size(), new Range() {
+
+			@Override
+			public void apply(int from, int to) {
+				for (PartitionedImageModifier modifier : modifiers) {
+					modifier.modify(images, from, to);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Apply the range to all the indexes: in parallel, if there are enough.
+	 * 
+	 * @param size
+	 *            the number of indexes
+	 * @param range
+	 *            the range to apply
+	 */
+	void run(int size, Range range) {
+		if (size < parallelThreshold || parallelism < 2) {
+			range.apply(0, size);
+			return;
+		}
+		int threshold = Math.max(size / (parallelism * 4), 1024);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new RangeTask(range, 0, size, threshold));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	public void setParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * A range of indexes to process.
+	 */
+	interface Range {
+
+		void apply(int from, int to);
+	}
+
+	private static class RangeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Range range;
+		private final int from;
+		private final int to;
+		private final int threshold;
+
+		RangeTask(Range range, int from, int to, int threshold) {
+			this.range = range;
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= threshold) {
+				range.apply(from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new RangeTask(range, from, mid, threshold), new RangeTask(range, mid, to,
+					threshold));
+		}
+	}
+}
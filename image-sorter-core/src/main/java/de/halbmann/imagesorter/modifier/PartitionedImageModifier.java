@@ -0,0 +1,28 @@
+package de.halbmann.imagesorter.modifier;
+
+import java.util.List;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+/**
+ * ImageModifier, that can modify a partition (a range) of the images. The partitions are disjoint,
+ * so the {@link ImageModifierExecutor} can modify them in parallel: an implementation must only
+ * modify the images of the range and must be thread-safe otherwise.
+ * 
+ * @author fabian
+ * 
+ */
+public interface PartitionedImageModifier extends ImageModifier {
+
+	/**
+	 * Modify the {@link ImageFile}s of the range.
+	 * 
+	 * @param images
+	 *            the list of the image-files read
+	 * @param from
+	 *            the index of the first image to modify (inclusive)
+	 * @param to
+	 *            the index of the last image to modify (exclusive)
+	 */
+	void modify(List<ImageFile> images, int from, int to);
+}
@@ -0,0 +1,24 @@
+package de.halbmann.imagesorter.modifier;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+/**
+ * ImageModifier, that modifies each image on its own (without looking at the other images). Such
+ * a modifier can be run as hook inside the read workers of the
+ * {@link de.halbmann.imagesorter.files.ImageMetadataReader} right after the metadata of the image
+ * was read, so there is no extra pass over the list of images. The implementation must be
+ * thread-safe.
+ * 
+ * @author fabian
+ * 
+ */
+public interface SingleImageModifier extends PartitionedImageModifier {
+
+	/**
+	 * Modify the {@link ImageFile}.
+	 * 
+	 * @param image
+	 *            the image-file read
+	 */
+	void modify(ImageFile image);
+}
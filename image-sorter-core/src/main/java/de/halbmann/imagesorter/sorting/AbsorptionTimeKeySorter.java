@@ -0,0 +1,169 @@
+package de.halbmann.imagesorter.sorting;
+
+import java.util.Date;
+import java.util.List;
+import java.util.ListIterator;
+
+import de.halbmann.imagesorter.model.ImageFile;
+import de.halbmann.imagesorter.model.ImageTable;
+
+/**
+ * Sorts the images by the absorption time like the {@link ImageAbsorptionTimeComparator}, but
+ * without comparing Dates: first a primitive long key (the effective absorption time in millis)
+ * is extracted per image, then the keys are sorted together with the indexes of the images by a
+ * stable LSD radix sort and finally the images are permuted once.
+ * <p>
+ * The index of the image is the tie-breaker, so images with the same absorption time keep their
+ * order (like with {@link java.util.Collections#sort(List, java.util.Comparator)}). Images
+ * without absorption time are ordered after the images with absorption time, null images last.
+ * </p>
+ *
+ * @author fabian
+ *
+ */
+public class AbsorptionTimeKeySorter {
+
+	/**
+	 * the key of the images without absorption time
+	 */
+	static final long NO_TIME_KEY = Long.MAX_VALUE - 1;
+
+	/**
+	 * the key of the null images
+	 */
+	static final long NULL_KEY = Long.MAX_VALUE;
+
+	private static final int RADIX_BITS = 8;
+	private static final int RADIX = 1 << RADIX_BITS;
+	private static final int PASSES = Long.SIZE / RADIX_BITS;
+
+	/**
+	 * Get the sort key of the image.
+	 *
+	 * @param image
+	 *            the image (or null)
+	 * @return the modified absorption time, if set, otherwise the original absorption time (in
+	 *         millis)
+	 */
+	public static long key(ImageFile image) {
+		if (image == null) {
+			return NULL_KEY;
+		}
+		Date time = image.getModifiedAbsorptionTime();
+		if (time == null) {
+			time = image.getOriginalAbsorptionTime();
+		}
+		return time == null ? NO_TIME_KEY : time.getTime();
+	}
+
+	/**
+	 * Sort the images by the absorption time.
+	 *
+	 * @param images
+	 *            the images to sort
+	 */
+	public void sort(List<ImageFile> images) {
+		ImageFile[] array = images.toArray(new ImageFile[images.size()]);
+		long[] keys = new long[array.length];
+		for (int i = 0; i < array.length; i++) {
+			keys[i] = key(array[i]);
+		}
+		int[] order = sort(keys);
+		ListIterator<ImageFile> it = images.listIterator();
+		for (int i = 0; i < order.length; i++) {
+			it.next();
+			it.set(array[order[i]]);
+		}
+	}
+
+	/**
+	 * Sort the rows of the table by the absorption time (reading the time column directly).
+	 *
+	 * @param images
+	 *            the table to sort
+	 */
+	public void sort(ImageTable images) {
+		long[] keys = new long[images.size()];
+		for (int i = 0; i < keys.length; i++) {
+			long time = images.getAbsorptionTime(i);
+			keys[i] = time == ImageTable.NO_TIME ? NO_TIME_KEY : time;
+		}
+		images.permute(sort(keys));
+	}
+
+	/**
+	 * Sort the keys (stable).
+	 *
+	 * @param keys
+	 *            the keys (will be sorted)
+	 * @return the original index of each sorted key
+	 */
+	public static int[] sort(long[] keys) {
+		int[] order = new int[keys.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		sort(keys, order);
+		return order;
+	}
+
+	/**
+	 * Sort the keys together with the values by a LSD radix sort (stable). The passes over digits,
+	 * that are the same for all keys (i.e. the high bytes of timestamps), are skipped.
+	 *
+	 * @param keys
+	 *            the keys
+	 * @param values
+	 *            the values (i.e. the indexes), moved with their keys
+	 */
+	public static void sort(long[] keys, int[] values) {
+		int n = keys.length;
+		if (n < 2) {
+			return;
+		}
+		// the histograms of all the digits in one pass (sign flipped for unsigned order)
+		int[][] counts = new int[PASSES][RADIX];
+		for (int i = 0; i < n; i++) {
+			long key = keys[i] ^ Long.MIN_VALUE;
+			for (int pass = 0; pass < PASSES; pass++) {
+				counts[pass][(int) (key >>> (pass * RADIX_BITS)) & (RADIX - 1)]++;
+			}
+		}
+
+		long[] srcKeys = keys;
+		int[] srcValues = values;
+		long[] dstKeys = new long[n];
+		int[] dstValues = new int[n];
+		for (int pass = 0; pass < PASSES; pass++) {
+			int[] count = counts[pass];
+			int shift = pass * RADIX_BITS;
+			if (count[(int) ((srcKeys[0] ^ Long.MIN_VALUE) >>> shift) & (RADIX - 1)] == n) {
+				// all the keys have the same digit
+				continue;
+			}
+			int offset = 0;
+			for (int digit = 0; digit < RADIX; digit++) {
+				int c = count[digit];
+				count[digit] = offset;
+				offset += c;
+			}
+			for (int i = 0; i < n; i++) {
+				long key = srcKeys[i];
+				int digit = (int) ((key ^ Long.MIN_VALUE) >>> shift) & (RADIX - 1);
+				int target = count[digit]++;
+				dstKeys[target] = key;
+				dstValues[target] = srcValues[i];
+			}
+			long[] tmpKeys = srcKeys;
+			srcKeys = dstKeys;
+			dstKeys = tmpKeys;
+			int[] tmpValues = srcValues;
+			srcValues = dstValues;
+			dstValues = tmpValues;
+		}
+		if (srcKeys != keys) {
+			System.arraycopy(srcKeys, 0, keys, 0, n);
+			System.arraycopy(srcValues, 0, values, 0, n);
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package de.halbmann.imagesorter.sorting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+/**
+ * Sorts the images by a chain of comparators (like the {@link GenericComparator}) with composite
+ * binary keys: the leading comparators, that are {@link SortKeyEncoder}s, are encoded into one key
+ * per image before sorting, so a comparison is a single unsigned comparison of the keys instead of
+ * evaluating each comparator. The remaining comparators (the ones, that can't be encoded, and all
+ * after them) are only evaluated by a GenericComparator for images with equal keys.
+ * <p>
+ * The sort is stable and null images are ordered last.
+ * </p>
+ *
+ * @author fabian
+ *
+ */
+public class CompositeKeySorter {
+
+	private final List<SortKeyEncoder> encoders = new ArrayList<>();
+
+	/**
+	 * the comparator for the images with equal keys (or null)
+	 */
+	private final Comparator<ImageFile> fallback;
+
+	private final Comparator<Keyed> keyedComparator;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param comparators
+	 *            the comparators in the order of the criteria
+	 */
+	public CompositeKeySorter(List<Comparator<ImageFile>> comparators) {
+		int encoded = 0;
+		while (encoded < comparators.size() && comparators.get(encoded) instanceof SortKeyEncoder) {
+			encoders.add((SortKeyEncoder) comparators.get(encoded));
+			encoded++;
+		}
+		List<Comparator<ImageFile>> remaining = new ArrayList<>(comparators.subList(encoded,
+				comparators.size()));
+		fallback = remaining.isEmpty() ? null : new GenericComparator<>(remaining);
+		keyedComparator = new Comparator<Keyed>() {
+
+			@Override
+			public int compare(Keyed k0, Keyed k1) {
+				int c = SortKeyBuilder.compare(k0.key, k1.key);
+				if (c != 0 || fallback == null || k0.image == null) {
+					return c;
+				}
+				return fallback.compare(k0.image, k1.image);
+			}
+		};
+	}
+
+	/**
+	 * Sort the images.
+	 *
+	 * @param images
+	 *            the images to sort
+	 */
+	public void sort(List<ImageFile> images) {
+		if (encoders.isEmpty()) {
+			if (fallback != null) {
+				Collections.sort(images, fallback);
+			}
+			return;
+		}
+		Keyed[] keyed = keys(images);
+		Arrays.sort(keyed, keyedComparator);
+
+		ListIterator<ImageFile> it = images.listIterator();
+		for (Keyed k : keyed) {
+			it.next();
+			it.set(k.image);
+		}
+	}
+
+	/**
+	 * Encode the keys of the images.
+	 *
+	 * @param images
+	 *            the images
+	 * @return the images with their keys (in the order of the list)
+	 */
+	Keyed[] keys(List<ImageFile> images) {
+		SortKeyBuilder builder = new SortKeyBuilder();
+		Keyed[] keyed = new Keyed[images.size()];
+		int i = 0;
+		for (ImageFile image : images) {
+			builder.reset();
+			if (image == null) {
+				// after all the images
+				builder.writeNull();
+			} else {
+				builder.writePresent();
+				for (SortKeyEncoder encoder : encoders) {
+					encoder.encode(image, builder);
+				}
+			}
+			keyed[i++] = new Keyed(builder.toWords(), image);
+		}
+		return keyed;
+	}
+
+	/**
+	 * @return the comparator for the images with their keys (the keys first, then the remaining
+	 *         comparators)
+	 */
+	Comparator<Keyed> getKeyedComparator() {
+		return keyedComparator;
+	}
+
+	public List<SortKeyEncoder> getEncoders() {
+		return encoders;
+	}
+
+	/**
+	 * An image with its encoded key.
+	 */
+	static class Keyed {
+
+		final long[] key;
+		final ImageFile image;
+
+		Keyed(long[] key, ImageFile image) {
+			this.key = key;
+			this.image = image;
+		}
+	}
+}
@@ -0,0 +1,382 @@
+package de.halbmann.imagesorter.sorting;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+/**
+ * External merge sort for catalogs larger than the heap. The images are added one by one and
+ * collected in a buffer; when the (estimated) size of the buffer exceeds the memory budget, the
+ * buffer is sorted and spilled as a run of compact records to a temporary file. The sorted images
+ * are then streamed by a k-way merge of the runs (see {@link #iterator()}), so only the buffer and
+ * one image per run have to be in memory.
+ * <p>
+ * The sort is stable (equal images keep the order they were added in). The absorption time
+ * comparator sorts the runs by primitive keys (see {@link AbsorptionTimeKeySorter}). The
+ * calculated filename isn't stored in the runs.
+ * </p>
+ *
+ * @author fabian
+ *
+ */
+public class ExternalImageSorter implements Closeable, Iterable<ImageFile> {
+
+	private static final Logger LOG = Logger.getLogger(ExternalImageSorter.class.getName());
+
+	/**
+	 * the estimated size of an ImageFile (with its File, Dates and Strings) without the chars
+	 */
+	private static final long IMAGE_OVERHEAD = 320;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final long NO_TIME = Long.MIN_VALUE;
+
+	private final Comparator<ImageFile> comparator;
+
+	/**
+	 * the memory budget for the buffer (in bytes)
+	 */
+	private final long memoryBudget;
+
+	/**
+	 * the directory for the runs
+	 */
+	private final Path tempDirectory;
+
+	private List<ImageFile> buffer = new ArrayList<>();
+	private long bufferSize;
+
+	private final List<Path> runs = new ArrayList<>();
+	private int size;
+	private boolean merging;
+
+	/**
+	 * the open runs of the merge
+	 */
+	private final List<Run> openRuns = new ArrayList<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param comparator
+	 *            the comparator for the images
+	 * @param memoryBudget
+	 *            the memory budget for the buffered images (in bytes)
+	 * @param tempDirectory
+	 *            the directory for the runs (null for the default temporary directory)
+	 */
+	public ExternalImageSorter(Comparator<ImageFile> comparator, long memoryBudget,
+			Path tempDirectory) {
+		this.comparator = comparator;
+		this.memoryBudget = memoryBudget;
+		this.tempDirectory = tempDirectory;
+	}
+
+	/**
+	 * Add the image. If the buffer exceeds the memory budget, it's spilled as sorted run.
+	 *
+	 * @param image
+	 *            the image (not null)
+	 * @throws IOException
+	 */
+	public void add(ImageFile image) throws IOException {
+		if (merging) {
+			throw new IllegalStateException("the images are already merged");
+		}
+		buffer.add(image);
+		bufferSize += estimateSize(image);
+		size++;
+		if (bufferSize >= memoryBudget) {
+			spill();
+		}
+	}
+
+	/**
+	 * Add all the images.
+	 *
+	 * @param images
+	 *            the images
+	 * @throws IOException
+	 */
+	public void addAll(Iterable<ImageFile> images) throws IOException {
+		for (ImageFile image : images) {
+			if (image != null) {
+				add(image);
+			}
+		}
+	}
+
+	/**
+	 * Get the sorted images. The last buffer is sorted in memory and merged with the spilled runs.
+	 * No images can be added afterwards, but the iterator can be requested again for another pass
+	 * over the sorted images (the runs are kept until the sorter is closed). Reading a run might
+	 * fail with an {@link IllegalStateException} caused by an IOException.
+	 *
+	 * @return the iterator over the sorted images
+	 */
+	@Override
+	public Iterator<ImageFile> iterator() {
+		if (!merging) {
+			merging = true;
+			sortBuffer();
+		}
+		try {
+			return new MergeIterator();
+		} catch (IOException e) {
+			throw new IllegalStateException("could not open the runs", e);
+		}
+	}
+
+	/**
+	 * Delete the runs.
+	 */
+	@Override
+	public void close() throws IOException {
+		for (Run run : openRuns) {
+			run.close();
+		}
+		openRuns.clear();
+		for (Path run : runs) {
+			Files.deleteIfExists(run);
+		}
+		runs.clear();
+		buffer = new ArrayList<>();
+	}
+
+	/**
+	 * @return the number of images added
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of runs spilled to the disk
+	 */
+	public int getRuns() {
+		return runs.size();
+	}
+
+	/**
+	 * Compare the images with the comparator (the images without absorption time are ordered
+	 * last like by the {@link AbsorptionTimeKeySorter}).
+	 */
+	private int compare(ImageFile image0, ImageFile image1) {
+		if (comparator instanceof ImageAbsorptionTimeComparator) {
+			return Long.compare(AbsorptionTimeKeySorter.key(image0), AbsorptionTimeKeySorter
+					.key(image1));
+		}
+		return comparator.compare(image0, image1);
+	}
+
+	private void sortBuffer() {
+		if (comparator instanceof ImageAbsorptionTimeComparator) {
+			new AbsorptionTimeKeySorter().sort(buffer);
+		} else {
+			Collections.sort(buffer, comparator);
+		}
+	}
+
+	/**
+	 * Sort the buffer and write it as run.
+	 */
+	private void spill() throws IOException {
+		sortBuffer();
+		Path run = tempDirectory == null ? Files.createTempFile("imagesorter-run", ".tmp")
+				: Files.createTempFile(tempDirectory, "imagesorter-run", ".tmp");
+		runs.add(run);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(run), BUFFER_SIZE))) {
+			for (ImageFile image : buffer) {
+				write(out, image);
+			}
+		}
+		LOG.log(Level.FINE, "spilled run {0} with {1} images", new Object[] { runs.size(),
+				buffer.size() });
+		buffer = new ArrayList<>();
+		bufferSize = 0;
+	}
+
+	/**
+	 * Estimate the size of the image in the buffer (the strings of the image are counted, that
+	 * are written to the runs as well).
+	 */
+	static long estimateSize(ImageFile image) {
+		long chars = image.getFile().getPath().length();
+		chars += length(image.getOriginalFilename());
+		chars += length(image.getFileExtension());
+		chars += length(image.getCameraModel());
+		return IMAGE_OVERHEAD + chars * 2;
+	}
+
+	private static int length(String s) {
+		return s == null ? 0 : s.length();
+	}
+
+	private static void write(DataOutputStream out, ImageFile image) throws IOException {
+		out.writeUTF(image.getFile().getPath());
+		writeString(out, image.getOriginalFilename());
+		writeString(out, image.getFileExtension());
+		writeString(out, image.getCameraModel());
+		out.writeInt(image.getOrientation());
+		writeTime(out, image.getOriginalAbsorptionTime());
+		writeTime(out, image.getModifiedAbsorptionTime());
+	}
+
+	private static ImageFile read(DataInputStream in) throws IOException {
+		ImageFile image = new ImageFile();
+		image.setFile(new File(in.readUTF()));
+		image.setOriginalFilename(readString(in));
+		image.setFileExtension(readString(in));
+		image.setCameraModel(readString(in));
+		image.setOrientation(in.readInt());
+		image.setOriginalAbsorptionTime(readTime(in));
+		image.setModifiedAbsorptionTime(readTime(in));
+		return image;
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		out.writeBoolean(s != null);
+		if (s != null) {
+			out.writeUTF(s);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeTime(DataOutputStream out, Date time) throws IOException {
+		out.writeLong(time == null ? NO_TIME : time.getTime());
+	}
+
+	private static Date readTime(DataInputStream in) throws IOException {
+		long time = in.readLong();
+		return time == NO_TIME ? null : new Date(time);
+	}
+
+	/**
+	 * The head of a run (or of the last buffer) in the merge.
+	 */
+	private static class Run {
+
+		/**
+		 * the number of the run (the tie-breaker for a stable merge)
+		 */
+		private final int number;
+		private final DataInputStream in;
+		private final Iterator<ImageFile> buffered;
+		private ImageFile head;
+
+		Run(int number, DataInputStream in, Iterator<ImageFile> buffered) {
+			this.number = number;
+			this.in = in;
+			this.buffered = buffered;
+		}
+
+		/**
+		 * Read the next image of the run.
+		 *
+		 * @return false, if the run is exhausted
+		 */
+		boolean advance() throws IOException {
+			if (buffered != null) {
+				head = buffered.hasNext() ? buffered.next() : null;
+				return head != null;
+			}
+			try {
+				head = read(in);
+				return true;
+			} catch (EOFException e) {
+				head = null;
+				close();
+				return false;
+			}
+		}
+
+		void close() throws IOException {
+			if (in != null) {
+				in.close();
+			}
+		}
+	}
+
+	/**
+	 * k-way merge of the runs and the last buffer.
+	 */
+	private class MergeIterator implements Iterator<ImageFile> {
+
+		private final PriorityQueue<Run> queue;
+
+		MergeIterator() throws IOException {
+			queue = new PriorityQueue<>(runs.size() + 1, new Comparator<Run>() {
+
+				@Override
+				public int compare(Run r0, Run r1) {
+					int c = ExternalImageSorter.this.compare(r0.head, r1.head);
+					return c != 0 ? c : Integer.compare(r0.number, r1.number);
+				}
+			});
+			for (int i = 0; i < runs.size(); i++) {
+				Run run = new Run(i, new DataInputStream(new BufferedInputStream(Files
+						.newInputStream(runs.get(i)), BUFFER_SIZE)), null);
+				openRuns.add(run);
+				if (run.advance()) {
+					queue.add(run);
+				}
+			}
+			// the last buffer is the last run
+			Run last = new Run(runs.size(), null, buffer.iterator());
+			if (last.advance()) {
+				queue.add(last);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !queue.isEmpty();
+		}
+
+		@Override
+		public ImageFile next() {
+			Run run = queue.poll();
+			if (run == null) {
+				throw new NoSuchElementException();
+			}
+			ImageFile image = run.head;
+			try {
+				if (run.advance()) {
+					queue.add(run);
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("could not read run " + run.number, e);
+			}
+			return image;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -14,7 +14,7 @@ import de.halbmann.imagesorter.model.ImageFile;
  * @author fabian
  * 
  */
-public class ImageAbsorptionTimeComparator implements Comparator<ImageFile> {
+public class ImageAbsorptionTimeComparator implements Comparator<ImageFile>, SortKeyEncoder {
 
 	@Override
 	public int compare(ImageFile image0, ImageFile image1) {
@@ -44,4 +44,17 @@ public class ImageAbsorptionTimeComparator implements Comparator<ImageFile> {
 		return d0.compareTo(d1);
 	}
 
+	@Override
+	public void encode(ImageFile image, SortKeyBuilder key) {
+		Date d = image.getModifiedAbsorptionTime();
+		if (d == null) {
+			d = image.getOriginalAbsorptionTime();
+		}
+		if (d == null) {
+			key.writeNull();
+		} else {
+			key.writeLong(d.getTime());
+		}
+	}
+
 }
@@ -0,0 +1,50 @@
+package de.halbmann.imagesorter.sorting;
+
+import java.util.Comparator;
+
+import de.halbmann.imagesorter.model.CameraModelRegistry;
+import de.halbmann.imagesorter.model.ImageFile;
+
+/**
+ * Comparator implementation for comparing the camera models of the images (i.e. for grouping the
+ * images by camera in combination with the {@link ImageAbsorptionTimeComparator}). Images with the
+ * same model are detected by the ids of the {@link CameraModelRegistry}; only different models are
+ * compared by name. Images without camera model are ordered last.
+ * 
+ * @author fabian
+ * 
+ */
+public class ImageCameraModelComparator implements Comparator<ImageFile>, SortKeyEncoder {
+
+	@Override
+	public int compare(ImageFile image0, ImageFile image1) {
+		if (image0 == null && image1 == null) {
+			return 0;
+		}
+		if (image0 == null) {
+			return 1;
+		}
+		if (image1 == null) {
+			return -1;
+		}
+
+		int id0 = image0.getCameraModelId();
+		int id1 = image1.getCameraModelId();
+		if (id0 == id1) {
+			return 0;
+		}
+		if (id0 == CameraModelRegistry.NO_MODEL) {
+			return 1;
+		}
+		if (id1 == CameraModelRegistry.NO_MODEL) {
+			return -1;
+		}
+		return image0.getCameraModel().compareTo(image1.getCameraModel());
+	}
+
+	@Override
+	public void encode(ImageFile image, SortKeyBuilder key) {
+		key.writeString(image.getCameraModel());
+	}
+
+}
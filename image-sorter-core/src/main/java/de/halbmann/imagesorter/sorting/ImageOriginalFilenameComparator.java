@@ -0,0 +1,41 @@
+package de.halbmann.imagesorter.sorting;
+
+import java.util.Comparator;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+/**
+ * Comparator implementation for comparing the original filenames of the images (i.e. as last
+ * criterion for images with the same absorption time). Images without filename are ordered last.
+ * 
+ * @author fabian
+ * 
+ */
+public class ImageOriginalFilenameComparator implements Comparator<ImageFile>, SortKeyEncoder {
+
+	@Override
+	public int compare(ImageFile image0, ImageFile image1) {
+		if (image0 == null && image1 == null) {
+			return 0;
+		}
+		if (image0 == null) {
+			return 1;
+		}
+		if (image1 == null) {
+			return -1;
+		}
+
+		String name0 = image0.getOriginalFilename();
+		String name1 = image1.getOriginalFilename();
+		if (name0 == null || name1 == null) {
+			return name0 == null ? (name1 == null ? 0 : 1) : -1;
+		}
+		return name0.compareTo(name1);
+	}
+
+	@Override
+	public void encode(ImageFile image, SortKeyBuilder key) {
+		key.writeString(image.getOriginalFilename());
+	}
+
+}
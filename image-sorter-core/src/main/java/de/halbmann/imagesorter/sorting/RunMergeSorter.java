@@ -0,0 +1,434 @@
+package de.halbmann.imagesorter.sorting;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+import de.halbmann.imagesorter.model.ImageFile;
+import de.halbmann.imagesorter.sorting.CompositeKeySorter.Keyed;
+
+/**
+ * Sorts the images by exploiting their existing order: the images of a camera usually are already
+ * in the order of their absorption time within their directory (DSC_0001.JPG, DSC_0002.JPG ...).
+ * The images are grouped by their directory and camera model (keeping the order of the list), each
+ * group is split into its ascending runs and the runs are merged by a heap-based k-way merge. Only
+ * the images of runs shorter than the minimum run length are sorted completely and merged as one
+ * additional run. So a typical import is sorted in nearly linear time.
+ * <p>
+ * If the remainder exceeds the given ratio of the images, there is nothing to exploit and the
+ * images are sorted completely (see {@link AbsorptionTimeKeySorter} and
+ * {@link CompositeKeySorter}). The sort is stable, the result is the same as with the full sort.
+ * </p>
+ *
+ * @author fabian
+ *
+ */
+public class RunMergeSorter {
+
+	public static final int DEFAULT_MIN_RUN_LENGTH = 8;
+
+	public static final double DEFAULT_MAX_REMAINDER = 0.5;
+
+	/**
+	 * the minimum length of a run, that is merged (the shorter ones are sorted)
+	 */
+	private int minRunLength = DEFAULT_MIN_RUN_LENGTH;
+
+	/**
+	 * the maximum ratio of the images not in a run, before the images are sorted completely
+	 */
+	private double maxRemainder = DEFAULT_MAX_REMAINDER;
+
+	/**
+	 * flag whether the images are only sorted by their absorption time (by primitive keys)
+	 */
+	private final boolean absorptionTime;
+
+	/**
+	 * the sorter for the composite keys (if not only sorted by the absorption time)
+	 */
+	private final CompositeKeySorter compositeKeySorter;
+
+	/**
+	 * the number of runs merged by the last sort (0, if the images were sorted completely)
+	 */
+	private int runs;
+
+	/**
+	 * the number of images sorted as remainder by the last sort
+	 */
+	private int remainder;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param comparators
+	 *            the comparators in the order of the criteria
+	 */
+	public RunMergeSorter(List<Comparator<ImageFile>> comparators) {
+		absorptionTime = comparators.size() == 1
+				&& comparators.get(0) instanceof ImageAbsorptionTimeComparator;
+		compositeKeySorter = absorptionTime ? null : new CompositeKeySorter(comparators);
+	}
+
+	/**
+	 * Sort the images.
+	 *
+	 * @param images
+	 *            the images to sort
+	 */
+	public void sort(List<ImageFile> images) {
+		runs = 0;
+		remainder = 0;
+		if (images.size() < 2) {
+			return;
+		}
+		if (!absorptionTime && compositeKeySorter.getEncoders().isEmpty()) {
+			// nothing to encode
+			compositeKeySorter.sort(images);
+			return;
+		}
+		ImageFile[] array = images.toArray(new ImageFile[images.size()]);
+		Order order;
+		if (absorptionTime) {
+			order = new TimeOrder(array);
+		} else {
+			order = new KeyedOrder(compositeKeySorter.keys(images), compositeKeySorter
+					.getKeyedComparator());
+		}
+
+		int[] sorted = sort(array, order);
+
+		ListIterator<ImageFile> it = images.listIterator();
+		for (int i = 0; i < sorted.length; i++) {
+			it.next();
+			it.set(array[sorted[i]]);
+		}
+	}
+
+	/**
+	 * Sort the indices of the images.
+	 *
+	 * @return the original index of each sorted image
+	 */
+	private int[] sort(ImageFile[] images, final Order order) {
+		int n = images.length;
+		int[] grouped = new int[n];
+		int[] groupStarts = new int[n + 1];
+		int groups = group(images, grouped, groupStarts);
+
+		// split the groups into their ascending runs: the long runs are moved to the front of
+		// the indices, the short ones to the remainder at the end
+		int[] indices = new int[n];
+		int[] runStarts = new int[n + 1];
+		int runEnd = 0;
+		int remainderStart = n;
+		for (int g = 0; g < groups; g++) {
+			int start = groupStarts[g];
+			int end = groupStarts[g + 1];
+			for (int i = start + 1; i <= end; i++) {
+				if (i < end && order.compare(grouped[i - 1], grouped[i]) <= 0) {
+					continue;
+				}
+				int length = i - start;
+				if (length >= minRunLength) {
+					runStarts[runs++] = runEnd;
+					System.arraycopy(grouped, start, indices, runEnd, length);
+					runEnd += length;
+				} else {
+					remainderStart -= length;
+					System.arraycopy(grouped, start, indices, remainderStart, length);
+				}
+				start = i;
+			}
+		}
+		remainder = n - runEnd;
+
+		if (remainder > maxRemainder * n) {
+			runs = 0;
+			remainder = n;
+			return order.sort(n);
+		}
+
+		if (remainder > 0) {
+			Integer[] rest = new Integer[remainder];
+			for (int i = 0; i < remainder; i++) {
+				rest[i] = indices[runEnd + i];
+			}
+			Arrays.sort(rest, new Comparator<Integer>() {
+
+				@Override
+				public int compare(Integer i0, Integer i1) {
+					return compareStable(order, i0, i1);
+				}
+			});
+			for (int i = 0; i < remainder; i++) {
+				indices[runEnd + i] = rest[i];
+			}
+			runStarts[runs++] = runEnd;
+		}
+		runStarts[runs] = n;
+		if (runs == 1) {
+			return indices;
+		}
+		return merge(indices, runStarts, runs, order);
+	}
+
+	/**
+	 * Group the indices of the images by their directory and camera model (keeping their order
+	 * within each group).
+	 *
+	 * @param grouped
+	 *            the indices grouped (output)
+	 * @param groupStarts
+	 *            the start of each group and the end of the last group (output)
+	 * @return the number of groups
+	 */
+	private static int group(ImageFile[] images, int[] grouped, int[] groupStarts) {
+		Map<Group, int[]> groups = new HashMap<>();
+		int[] groupIds = new int[images.length];
+		for (int i = 0; i < images.length; i++) {
+			Group key = Group.of(images[i]);
+			int[] id = groups.get(key);
+			if (id == null) {
+				id = new int[] { groups.size() };
+				groups.put(key, id);
+			}
+			groupIds[i] = id[0];
+			// count the images per group
+			groupStarts[id[0] + 1]++;
+		}
+		int count = groups.size();
+		for (int g = 1; g <= count; g++) {
+			groupStarts[g] += groupStarts[g - 1];
+		}
+		int[] positions = Arrays.copyOf(groupStarts, count);
+		for (int i = 0; i < images.length; i++) {
+			grouped[positions[groupIds[i]]++] = i;
+		}
+		return count;
+	}
+
+	/**
+	 * Merge the sorted runs by a heap-based k-way merge.
+	 *
+	 * @param indices
+	 *            the runs of the indices
+	 * @param runStarts
+	 *            the start of each run (and the end of the last run)
+	 * @param count
+	 *            the number of runs
+	 * @return the merged indices
+	 */
+	private static int[] merge(int[] indices, int[] runStarts, int count, Order order) {
+		int[] positions = Arrays.copyOf(runStarts, count);
+		// binary min-heap of the runs by their heads
+		int[] heap = new int[count];
+		for (int r = 0; r < count; r++) {
+			heap[r] = r;
+		}
+		for (int i = count / 2 - 1; i >= 0; i--) {
+			siftDown(heap, count, i, indices, positions, order);
+		}
+		int[] merged = new int[indices.length];
+		int size = count;
+		for (int i = 0; i < merged.length; i++) {
+			int run = heap[0];
+			merged[i] = indices[positions[run]++];
+			if (positions[run] == runStarts[run + 1]) {
+				heap[0] = heap[--size];
+			}
+			if (size > 0) {
+				siftDown(heap, size, 0, indices, positions, order);
+			}
+		}
+		return merged;
+	}
+
+	private static void siftDown(int[] heap, int size, int i, int[] indices, int[] positions,
+			Order order) {
+		int run = heap[i];
+		int head = indices[positions[run]];
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				break;
+			}
+			int childHead = indices[positions[heap[child]]];
+			if (child + 1 < size) {
+				int rightHead = indices[positions[heap[child + 1]]];
+				if (compareStable(order, rightHead, childHead) < 0) {
+					child++;
+					childHead = rightHead;
+				}
+			}
+			if (compareStable(order, head, childHead) <= 0) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = run;
+	}
+
+	/**
+	 * Compare the images by the order and equal ones by their original index.
+	 */
+	private static int compareStable(Order order, int i0, int i1) {
+		int c = order.compare(i0, i1);
+		return c != 0 ? c : Integer.compare(i0, i1);
+	}
+
+	public int getMinRunLength() {
+		return minRunLength;
+	}
+
+	public void setMinRunLength(int minRunLength) {
+		this.minRunLength = Math.max(1, minRunLength);
+	}
+
+	public double getMaxRemainder() {
+		return maxRemainder;
+	}
+
+	public void setMaxRemainder(double maxRemainder) {
+		this.maxRemainder = maxRemainder;
+	}
+
+	/**
+	 * @return the number of runs merged by the last sort (0, if the images were sorted completely)
+	 */
+	public int getRuns() {
+		return runs;
+	}
+
+	/**
+	 * @return the number of images sorted completely by the last sort
+	 */
+	public int getRemainder() {
+		return remainder;
+	}
+
+	/**
+	 * The order of the images by their index.
+	 */
+	private interface Order {
+
+		int compare(int i0, int i1);
+
+		/**
+		 * Sort all the images (stable).
+		 *
+		 * @param count
+		 *            the number of images
+		 * @return the original index of each sorted image
+		 */
+		int[] sort(int count);
+	}
+
+	/**
+	 * The order by the absorption time keys.
+	 */
+	private static class TimeOrder implements Order {
+
+		private final long[] keys;
+
+		TimeOrder(ImageFile[] images) {
+			keys = new long[images.length];
+			for (int i = 0; i < images.length; i++) {
+				keys[i] = AbsorptionTimeKeySorter.key(images[i]);
+			}
+		}
+
+		@Override
+		public int compare(int i0, int i1) {
+			return Long.compare(keys[i0], keys[i1]);
+		}
+
+		@Override
+		public int[] sort(int count) {
+			return AbsorptionTimeKeySorter.sort(keys.clone());
+		}
+	}
+
+	/**
+	 * The order by the composite keys (see {@link CompositeKeySorter}).
+	 */
+	private static class KeyedOrder implements Order {
+
+		private final Keyed[] keyed;
+		private final Comparator<Keyed> comparator;
+
+		KeyedOrder(Keyed[] keyed, Comparator<Keyed> comparator) {
+			this.keyed = keyed;
+			this.comparator = comparator;
+		}
+
+		@Override
+		public int compare(int i0, int i1) {
+			return comparator.compare(keyed[i0], keyed[i1]);
+		}
+
+		@Override
+		public int[] sort(int count) {
+			Integer[] order = new Integer[count];
+			for (int i = 0; i < count; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+
+				@Override
+				public int compare(Integer i0, Integer i1) {
+					return comparator.compare(keyed[i0], keyed[i1]);
+				}
+			});
+			int[] sorted = new int[count];
+			for (int i = 0; i < count; i++) {
+				sorted[i] = order[i];
+			}
+			return sorted;
+		}
+	}
+
+	/**
+	 * The group of an image: its directory and camera model.
+	 */
+	private static final class Group {
+
+		private final String directory;
+		private final int cameraModelId;
+
+		private Group(String directory, int cameraModelId) {
+			this.directory = directory;
+			this.cameraModelId = cameraModelId;
+		}
+
+		static Group of(ImageFile image) {
+			if (image == null) {
+				return new Group(null, Integer.MIN_VALUE);
+			}
+			File file = image.getFile();
+			return new Group(file == null ? null : file.getParent(), image.getCameraModelId());
+		}
+
+		@Override
+		public int hashCode() {
+			return (directory == null ? 0 : directory.hashCode()) * 31 + cameraModelId;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Group)) {
+				return false;
+			}
+			Group other = (Group) obj;
+			return cameraModelId == other.cameraModelId
+					&& (directory == null ? other.directory == null : directory
+							.equals(other.directory));
+		}
+	}
+}
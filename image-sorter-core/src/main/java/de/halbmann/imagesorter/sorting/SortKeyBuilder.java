@@ -0,0 +1,135 @@
+package de.halbmann.imagesorter.sorting;
+
+import java.util.Arrays;
+
+/**
+ * Builder for the binary sort keys. All the values are written big-endian with order-preserving
+ * encodings, so the keys can be compared unsigned byte by byte (or 8 bytes at once, see
+ * {@link #toWords()}):
+ * <ul>
+ * <li>numbers with the sign bit flipped</li>
+ * <li>strings as UTF-16 code units with a terminator (the same order as
+ * {@link String#compareTo(String)}; the character '\0' is not supported and ordered like
+ * '\u0001')</li>
+ * <li>null values with a marker, that orders them last</li>
+ * </ul>
+ * 
+ * @author fabian
+ * 
+ */
+public class SortKeyBuilder {
+
+	private static final byte PRESENT = 0;
+	private static final byte ABSENT = 1;
+
+	private byte[] bytes = new byte[64];
+	private int length;
+
+	/**
+	 * Start a new key.
+	 */
+	public void reset() {
+		length = 0;
+	}
+
+	/**
+	 * Write the marker of a present value (without a value).
+	 */
+	public void writePresent() {
+		ensure(1);
+		bytes[length++] = PRESENT;
+	}
+
+	/**
+	 * Write the marker of a null value (ordered after all other values).
+	 */
+	public void writeNull() {
+		ensure(1);
+		bytes[length++] = ABSENT;
+	}
+
+	public void writeLong(long value) {
+		ensure(9);
+		bytes[length++] = PRESENT;
+		value ^= Long.MIN_VALUE;
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			bytes[length++] = (byte) (value >>> shift);
+		}
+	}
+
+	public void writeInt(int value) {
+		ensure(5);
+		bytes[length++] = PRESENT;
+		value ^= Integer.MIN_VALUE;
+		for (int shift = 24; shift >= 0; shift -= 8) {
+			bytes[length++] = (byte) (value >>> shift);
+		}
+	}
+
+	/**
+	 * Write the string (or the marker, if it's null).
+	 * 
+	 * @param value
+	 *            the string (or null)
+	 */
+	public void writeString(String value) {
+		if (value == null) {
+			writeNull();
+			return;
+		}
+		ensure(1 + value.length() * 2 + 2);
+		bytes[length++] = PRESENT;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == 0) {
+				c = 1;
+			}
+			bytes[length++] = (byte) (c >>> 8);
+			bytes[length++] = (byte) c;
+		}
+		// terminator (lower than every character, so a prefix is ordered first)
+		bytes[length++] = 0;
+		bytes[length++] = 0;
+	}
+
+	private void ensure(int n) {
+		if (length + n > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + n));
+		}
+	}
+
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * @return the key packed into longs (big-endian, padded with zeros)
+	 */
+	public long[] toWords() {
+		long[] words = new long[(length + 7) / 8];
+		for (int i = 0; i < length; i++) {
+			words[i >>> 3] |= (bytes[i] & 0xFFL) << (56 - ((i & 7) << 3));
+		}
+		return words;
+	}
+
+	/**
+	 * Compare two keys (packed into longs) unsigned.
+	 * 
+	 * @param key0
+	 *            the first key
+	 * @param key1
+	 *            the second key
+	 * @return a negative integer, zero, or a positive integer as the first key is less than, equal
+	 *         to, or greater than the second
+	 */
+	public static int compare(long[] key0, long[] key1) {
+		int n = Math.min(key0.length, key1.length);
+		for (int i = 0; i < n; i++) {
+			if (key0[i] != key1[i]) {
+				return (key0[i] ^ Long.MIN_VALUE) < (key1[i] ^ Long.MIN_VALUE) ? -1 : 1;
+			}
+		}
+		return key0.length - key1.length;
+	}
+}
@@ -0,0 +1,25 @@
+package de.halbmann.imagesorter.sorting;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+/**
+ * Sort criterion, that can be encoded into a binary sort key. The encoding must preserve the order
+ * of the criterion: the unsigned comparison of the encoded bytes has to give the same result as
+ * the comparator of the criterion. Then the keys of all the criteria can be concatenated into one
+ * composite key per image (see {@link CompositeKeySorter}).
+ * 
+ * @author fabian
+ * 
+ */
+public interface SortKeyEncoder {
+
+	/**
+	 * Write the order-preserving encoding of the criterion of the image to the key.
+	 * 
+	 * @param image
+	 *            the image (not null)
+	 * @param key
+	 *            the key to write to
+	 */
+	void encode(ImageFile image, SortKeyBuilder key);
+}
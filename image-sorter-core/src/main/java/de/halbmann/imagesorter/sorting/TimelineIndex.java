@@ -0,0 +1,407 @@
+package de.halbmann.imagesorter.sorting;
+
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+/**
+ * Ordered index of the images by their (effective) absorption time for the continuous operation:
+ * the newly arrived images are inserted into the already sorted images instead of sorting all
+ * images again. The index is an indexable skip list (every link knows the number of images it
+ * skips), so inserting, removing, the lookup of the position (rank) of an image and of the image
+ * at a position, and the start of an iteration over a time range take O(log n) on average.
+ * <p>
+ * The images are ordered like by the {@link AbsorptionTimeKeySorter}: the images without
+ * absorption time after all the others and the images with equal times in the order they were
+ * added. The key of an image is taken when it's added; if the time of an image is modified later,
+ * it has to be updated (see {@link #update(ImageFile)}).
+ * </p>
+ * <p>
+ * The index records the lowest position changed by the insertions and removals, so only the
+ * images from this position on have to be renumbered (see
+ * {@link de.halbmann.imagesorter.files.DefaultFilenameCalculator#calculate(TimelineIndex)}). The
+ * index isn't thread-safe.
+ * </p>
+ *
+ * @author fabian
+ *
+ */
+public class TimelineIndex implements Iterable<ImageFile> {
+
+	private static final int MAX_LEVEL = 32;
+
+	/**
+	 * the head of the skip list (before the first image)
+	 */
+	private final Node head = new Node(Long.MIN_VALUE, Long.MIN_VALUE, null, MAX_LEVEL);
+
+	/**
+	 * the nodes of the images (by identity)
+	 */
+	private final Map<ImageFile, Node> nodes = new IdentityHashMap<>();
+
+	/**
+	 * the random levels of the nodes (fixed seed for a reproducible structure)
+	 */
+	private final Random random = new Random(0x5eed);
+
+	/**
+	 * the number of levels used
+	 */
+	private int level = 1;
+
+	private int size;
+
+	/**
+	 * the sequence number of the next image (the tie-breaker for equal times)
+	 */
+	private long sequence;
+
+	/**
+	 * the lowest position changed since the changes were cleared
+	 */
+	private int firstChange = Integer.MAX_VALUE;
+
+	/**
+	 * Constructor.
+	 */
+	public TimelineIndex() {
+		for (int i = 0; i < MAX_LEVEL; i++) {
+			// the distance to the (virtual) end of the list
+			head.width[i] = 1;
+		}
+	}
+
+	/**
+	 * Add the image to the index.
+	 *
+	 * @param image
+	 *            the image
+	 * @return the position of the image in the index
+	 * @throws IllegalArgumentException
+	 *             if the image is null or already added
+	 */
+	public int add(ImageFile image) {
+		if (image == null) {
+			throw new IllegalArgumentException("image cannot be null!");
+		}
+		if (nodes.containsKey(image)) {
+			throw new IllegalArgumentException("image already added: " + image.getFile());
+		}
+		long key = AbsorptionTimeKeySorter.key(image);
+		long seq = sequence++;
+
+		Node[] update = new Node[MAX_LEVEL];
+		int[] positions = new int[MAX_LEVEL];
+		Node x = head;
+		int position = 0;
+		for (int i = level - 1; i >= 0; i--) {
+			while (x.next[i] != null && x.next[i].before(key, seq)) {
+				position += x.width[i];
+				x = x.next[i];
+			}
+			update[i] = x;
+			positions[i] = position;
+		}
+
+		int nodeLevel = randomLevel();
+		if (nodeLevel > level) {
+			for (int i = level; i < nodeLevel; i++) {
+				update[i] = head;
+				positions[i] = 0;
+				head.width[i] = size + 1;
+			}
+			level = nodeLevel;
+		}
+
+		Node node = new Node(key, seq, image, nodeLevel);
+		int nodePosition = positions[0] + 1;
+		for (int i = 0; i < nodeLevel; i++) {
+			int distance = nodePosition - positions[i];
+			node.next[i] = update[i].next[i];
+			node.width[i] = update[i].width[i] - distance + 1;
+			update[i].next[i] = node;
+			update[i].width[i] = distance;
+		}
+		for (int i = nodeLevel; i < level; i++) {
+			update[i].width[i]++;
+		}
+		nodes.put(image, node);
+		size++;
+		changed(nodePosition - 1);
+		return nodePosition - 1;
+	}
+
+	/**
+	 * Remove the image from the index.
+	 *
+	 * @param image
+	 *            the image
+	 * @return the position the image had or -1, if the image isn't in the index
+	 */
+	public int remove(ImageFile image) {
+		Node node = nodes.remove(image);
+		if (node == null) {
+			return -1;
+		}
+		Node[] update = new Node[level];
+		Node x = head;
+		int position = 0;
+		for (int i = level - 1; i >= 0; i--) {
+			while (x.next[i] != null && x.next[i].before(node.key, node.seq)) {
+				position += x.width[i];
+				x = x.next[i];
+			}
+			update[i] = x;
+		}
+		for (int i = 0; i < level; i++) {
+			if (update[i].next[i] == node) {
+				update[i].width[i] += node.width[i] - 1;
+				update[i].next[i] = node.next[i];
+			} else {
+				update[i].width[i]--;
+			}
+		}
+		while (level > 1 && head.next[level - 1] == null) {
+			level--;
+		}
+		size--;
+		changed(position);
+		return position;
+	}
+
+	/**
+	 * Update the position of the image after its absorption time was modified (the image is
+	 * added, if it isn't in the index yet).
+	 *
+	 * @param image
+	 *            the image
+	 * @return the (new) position of the image
+	 */
+	public int update(ImageFile image) {
+		remove(image);
+		return add(image);
+	}
+
+	/**
+	 * Get the image at the given position.
+	 *
+	 * @param position
+	 *            the position (0 to size - 1)
+	 * @return the image
+	 */
+	public ImageFile get(int position) {
+		return node(position).image;
+	}
+
+	/**
+	 * Get the position of the image.
+	 *
+	 * @param image
+	 *            the image
+	 * @return the position or -1, if the image isn't in the index
+	 */
+	public int rank(ImageFile image) {
+		Node node = nodes.get(image);
+		if (node == null) {
+			return -1;
+		}
+		Node x = head;
+		int position = 0;
+		for (int i = level - 1; i >= 0; i--) {
+			while (x.next[i] != null && x.next[i].before(node.key, node.seq)) {
+				position += x.width[i];
+				x = x.next[i];
+			}
+		}
+		return position;
+	}
+
+	/**
+	 * Get the position of the first image with an absorption time at or after the given time.
+	 *
+	 * @param time
+	 *            the time (in millis)
+	 * @return the number of images before the time
+	 */
+	public int rank(long time) {
+		Node x = head;
+		int position = 0;
+		for (int i = level - 1; i >= 0; i--) {
+			while (x.next[i] != null && x.next[i].key < time) {
+				position += x.width[i];
+				x = x.next[i];
+			}
+		}
+		return position;
+	}
+
+	/**
+	 * Get the images in the time range.
+	 *
+	 * @param from
+	 *            the start of the range (inclusive)
+	 * @param to
+	 *            the end of the range (exclusive)
+	 * @return the images with an absorption time in the range (in their order)
+	 */
+	public Iterable<ImageFile> range(Date from, Date to) {
+		final long fromKey = from.getTime();
+		final long toKey = to.getTime();
+		return new Iterable<ImageFile>() {
+
+			@Override
+			public Iterator<ImageFile> iterator() {
+				Node x = head;
+				for (int i = level - 1; i >= 0; i--) {
+					while (x.next[i] != null && x.next[i].key < fromKey) {
+						x = x.next[i];
+					}
+				}
+				return new NodeIterator(x.next[0], toKey);
+			}
+		};
+	}
+
+	/**
+	 * Get the images in their order.
+	 */
+	@Override
+	public Iterator<ImageFile> iterator() {
+		return new NodeIterator(head.next[0], AbsorptionTimeKeySorter.NULL_KEY);
+	}
+
+	/**
+	 * Get the images in their order starting at the given position.
+	 *
+	 * @param position
+	 *            the position of the first image
+	 * @return the iterator over the images
+	 */
+	public Iterator<ImageFile> iterator(int position) {
+		if (position == size) {
+			return new NodeIterator(null, AbsorptionTimeKeySorter.NULL_KEY);
+		}
+		return new NodeIterator(node(position), AbsorptionTimeKeySorter.NULL_KEY);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the lowest position changed by the insertions and removals since the changes were
+	 *         cleared (or the size, if nothing was changed)
+	 */
+	public int getFirstChange() {
+		return Math.min(firstChange, size);
+	}
+
+	/**
+	 * Clear the changes (i.e. after the images are renumbered).
+	 */
+	public void clearChanges() {
+		firstChange = Integer.MAX_VALUE;
+	}
+
+	private void changed(int position) {
+		firstChange = Math.min(firstChange, position);
+	}
+
+	private Node node(int position) {
+		if (position < 0 || position >= size) {
+			throw new IndexOutOfBoundsException("position: " + position + ", size: " + size);
+		}
+		int target = position + 1;
+		Node x = head;
+		int current = 0;
+		for (int i = level - 1; i >= 0; i--) {
+			while (x.next[i] != null && current + x.width[i] <= target) {
+				current += x.width[i];
+				x = x.next[i];
+			}
+		}
+		return x;
+	}
+
+	/**
+	 * Level of a new node: 1 + the number of successful coin flips (p = 1/4).
+	 */
+	private int randomLevel() {
+		int l = 1;
+		while (l < MAX_LEVEL && (random.nextInt() & 3) == 0) {
+			l++;
+		}
+		return l;
+	}
+
+	/**
+	 * A node of the skip list.
+	 */
+	private static class Node {
+
+		private final long key;
+		private final long seq;
+		private final ImageFile image;
+		private final Node[] next;
+
+		/**
+		 * the number of images skipped by the links (the distance to the next node)
+		 */
+		private final int[] width;
+
+		Node(long key, long seq, ImageFile image, int level) {
+			this.key = key;
+			this.seq = seq;
+			this.image = image;
+			this.next = new Node[level];
+			this.width = new int[level];
+		}
+
+		/**
+		 * Checks if the node is before the given key and sequence number.
+		 */
+		boolean before(long key, long seq) {
+			return this.key < key || (this.key == key && this.seq < seq);
+		}
+	}
+
+	/**
+	 * Iterator over the nodes up to (excluding) the given key.
+	 */
+	private static class NodeIterator implements Iterator<ImageFile> {
+
+		private Node next;
+		private final long toKey;
+
+		NodeIterator(Node first, long toKey) {
+			this.next = first;
+			this.toKey = toKey;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null && (next.key < toKey || toKey == AbsorptionTimeKeySorter.NULL_KEY);
+		}
+
+		@Override
+		public ImageFile next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			ImageFile image = next.image;
+			next = next.next[0];
+			return image;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
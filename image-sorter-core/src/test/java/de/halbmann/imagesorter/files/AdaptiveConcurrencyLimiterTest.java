@@ -0,0 +1,131 @@
+package de.halbmann.imagesorter.files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+	@Test
+	public void type() throws Exception {
+		assertThat(AdaptiveConcurrencyLimiter.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		AdaptiveConcurrencyLimiter target = new AdaptiveConcurrencyLimiter("test", 4, 1, 16);
+		assertThat(target, notNullValue());
+		assertThat(target.getLimit(), is(equalTo(4)));
+	}
+
+	@Test
+	public void instantiation_initialLimitOutOfRange() throws Exception {
+		assertThat(new AdaptiveConcurrencyLimiter("test", 0, 2, 16).getLimit(), is(equalTo(2)));
+		assertThat(new AdaptiveConcurrencyLimiter("test", 32, 2, 16).getLimit(), is(equalTo(16)));
+	}
+
+	@Test
+	public void instantiation_T$IllegalArgumentException() throws Exception {
+		try {
+			new AdaptiveConcurrencyLimiter("test", 4, 8, 4);
+			fail("Expected exception was not thrown!");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * The latency doesn't depend on the concurrency (i.e. network mount), so the limit should
+	 * grow.
+	 */
+	@Test
+	public void acquire_constantLatency() throws Exception {
+		AdaptiveConcurrencyLimiter target = new AdaptiveConcurrencyLimiter("test", 1, 1, 16);
+		int maxInFlight = run(target, 32, 600, new Latency() {
+
+			@Override
+			public long millis(int inFlight) {
+				return 5;
+			}
+		});
+		assertTrue("limit: " + target.getLimit(), target.getLimit() > 1);
+		assertTrue(maxInFlight <= 16);
+	}
+
+	/**
+	 * The latency grows with the concurrency, but the throughput doesn't (i.e. seeks of a
+	 * rotational disk), so the limit should shrink.
+	 */
+	@Test
+	public void acquire_congestion() throws Exception {
+		AdaptiveConcurrencyLimiter target = new AdaptiveConcurrencyLimiter("test", 4, 1, 16);
+		int maxInFlight = run(target, 32, 1000, new Latency() {
+
+			@Override
+			public long millis(int inFlight) {
+				return 2 * inFlight;
+			}
+		});
+		assertTrue("limit: " + target.getLimit(), target.getLimit() < 16);
+		assertTrue("max in flight: " + maxInFlight, maxInFlight < 16);
+	}
+
+	private interface Latency {
+
+		long millis(int inFlight);
+	}
+
+	/**
+	 * Run the operations with the given latency through the limiter.
+	 * 
+	 * @return the maximum number of operations in flight
+	 */
+	private int run(final AdaptiveConcurrencyLimiter target, int threads, int operations,
+			final Latency latency) throws Exception {
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		ExecutorService es = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Object>> futures = new ArrayList<>();
+			for (int i = 0; i < operations; i++) {
+				futures.add(es.submit(new Callable<Object>() {
+
+					public Object call() throws Exception {
+						long start = target.acquire();
+						try {
+							int current = inFlight.incrementAndGet();
+							int max = maxInFlight.get();
+							while (current > max && !maxInFlight.compareAndSet(max, current)) {
+								max = maxInFlight.get();
+							}
+							Thread.sleep(latency.millis(current));
+						} finally {
+							inFlight.decrementAndGet();
+							target.release(start);
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Object> future : futures) {
+				future.get();
+			}
+		} finally {
+			es.shutdown();
+		}
+		assertThat(target.getInFlight(), is(equalTo(0)));
+		return maxInFlight.get();
+	}
+}
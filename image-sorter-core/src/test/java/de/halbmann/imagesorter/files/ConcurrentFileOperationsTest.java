@@ -0,0 +1,105 @@
+package de.halbmann.imagesorter.files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ConcurrentFileOperationsTest {
+
+	@Test
+	public void type() throws Exception {
+		assertThat(ConcurrentFileOperations.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		ConcurrentFileOperations target = new ConcurrentFileOperations(2, null,
+				new WriteProgress());
+		assertThat(target, notNullValue());
+		target.await();
+	}
+
+	@Test
+	public void submit_A$Object$FileOperation_lanes() throws Exception {
+		final int lanes = 5;
+		final List<List<Integer>> order = new ArrayList<>();
+		for (int l = 0; l < lanes; l++) {
+			order.add(Collections.synchronizedList(new ArrayList<Integer>()));
+		}
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		WriteProgress progress = new WriteProgress();
+		progress.reset(500);
+		ConcurrentFileOperations target = new ConcurrentFileOperations(4, null, progress);
+		for (int i = 0; i < 500; i++) {
+			final int lane = i % lanes;
+			final int number = i;
+			target.submit("lane" + lane, new ConcurrentFileOperations.FileOperation() {
+
+				@Override
+				public long run() throws IOException {
+					int r = running.incrementAndGet();
+					synchronized (maxRunning) {
+						maxRunning.set(Math.max(maxRunning.get(), r));
+					}
+					order.get(lane).add(number);
+					Thread.yield();
+					running.decrementAndGet();
+					return 10;
+				}
+			});
+		}
+		target.await();
+
+		for (int l = 0; l < lanes; l++) {
+			List<Integer> actual = order.get(l);
+			assertThat(actual.size(), is(equalTo(100)));
+			for (int i = 0; i < actual.size(); i++) {
+				// in the order of the submission
+				assertThat(actual.get(i), is(equalTo(i * lanes + l)));
+			}
+		}
+		assertThat(maxRunning.get() <= 4, is(true));
+		assertThat(progress.getCompleted(), is(equalTo(500)));
+		assertThat(progress.getBytes(), is(equalTo(5000L)));
+		assertThat(progress.getRatio(), is(equalTo(1.0)));
+	}
+
+	@Test
+	public void await_A$_errors() throws Exception {
+		WriteProgress progress = new WriteProgress();
+		ConcurrentFileOperations target = new ConcurrentFileOperations(3, null, progress);
+		for (int i = 0; i < 100; i++) {
+			final int number = i;
+			target.submit(null, new ConcurrentFileOperations.FileOperation() {
+
+				@Override
+				public long run() throws IOException {
+					if (number % 10 == 0) {
+						throw new IOException("failed " + number);
+					}
+					return 0;
+				}
+			});
+		}
+		try {
+			target.await();
+			fail("expected an IOException");
+		} catch (IOException e) {
+			// all the errors are collected, the other operations are run
+			assertThat(e.getSuppressed().length, is(equalTo(9)));
+		}
+		assertThat(progress.getFailed(), is(equalTo(10)));
+		assertThat(progress.getCompleted(), is(equalTo(90)));
+	}
+}
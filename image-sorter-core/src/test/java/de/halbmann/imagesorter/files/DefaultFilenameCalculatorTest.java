@@ -5,13 +5,17 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.junit.Assert.assertThat;
 
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 import org.junit.Test;
 
 import de.halbmann.imagesorter.ImageSorterSettings;
 import de.halbmann.imagesorter.model.ImageFile;
+import de.halbmann.imagesorter.modifier.ImageModifierExecutor;
+import de.halbmann.imagesorter.sorting.TimelineIndex;
 
 public class DefaultFilenameCalculatorTest {
 
@@ -48,6 +52,89 @@ public class DefaultFilenameCalculatorTest {
 		assertThat(actual, is(equalTo(expected)));
 	}
 
+	@Test
+	public void calculate_A$List_pattern() throws Exception {
+		ImageSorterSettings settings = new ImageSorterSettings(null, "pre", "", 1);
+		settings.setFilenamePattern("{prefix}{date:yyyy}_{seq}");
+		DefaultFilenameCalculator target = new DefaultFilenameCalculator(settings);
+		ImageModifierExecutor executor = new ImageModifierExecutor();
+		executor.setParallelThreshold(10);
+		target.setExecutor(executor);
+		List<ImageFile> images = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			images.add(image(i));
+		}
+		images.add(null);
+		target.calculate(images);
+
+		String year = new SimpleDateFormat("yyyy").format(new Date(0));
+		for (int i = 0; i < 1000; i++) {
+			assertThat(images.get(i).getCalculatedFilename(), is(equalTo(String.format(
+					"pre%s_%03d", year, i + 1))));
+		}
+	}
+
+	@Test
+	public void calculate_A$List_numberingGap() throws Exception {
+		ImageSorterSettings settings = new ImageSorterSettings(null, "img_", "", 1);
+		settings.setNumberOfDigits(5);
+		settings.setNumberingGap(10);
+		DefaultFilenameCalculator target = new DefaultFilenameCalculator(settings);
+		List<ImageFile> images = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			ImageFile image = image(i * 10);
+			image.setOriginalFilename("DSC_" + i + ".jpg");
+			image.setFileExtension("jpg");
+			images.add(image);
+		}
+		target.calculate(images);
+		assertThat(images.get(4).getCalculatedFilename(), is(equalTo("img_00041")));
+
+		// the renamed images keep their numbers, the new one gets a number in the gap
+		for (ImageFile image : images) {
+			image.setOriginalFilename(image.getCalculatedFilename() + ".jpg");
+		}
+		ImageFile added = image(15);
+		added.setOriginalFilename("DSC_9.jpg");
+		added.setFileExtension("jpg");
+		images.add(2, added);
+		target.calculate(images);
+		assertThat(added.getCalculatedFilename(), is(equalTo("img_00016")));
+		for (ImageFile image : images) {
+			if (image != added) {
+				assertThat(image.getOriginalFilename(), is(equalTo(image.getCalculatedFilename()
+						+ ".jpg")));
+			}
+		}
+	}
+
+	@Test
+	public void calculate_A$TimelineIndex() throws Exception {
+		ImageSorterSettings settings = new ImageSorterSettings(null, "pre", "", 1);
+		DefaultFilenameCalculator target = new DefaultFilenameCalculator(settings);
+		TimelineIndex index = new TimelineIndex();
+		for (int i = 0; i < 20; i++) {
+			index.add(image(i * 2));
+		}
+		assertThat(target.calculate(index), is(equalTo(20)));
+		assertThat(index.get(19).getCalculatedFilename(), is(equalTo("pre20")));
+
+		// only the images after the new one are renumbered
+		ImageFile added = image(31);
+		index.add(added);
+		assertThat(target.calculate(index), is(equalTo(5)));
+		assertThat(added.getCalculatedFilename(), is(equalTo("pre17")));
+		assertThat(index.get(20).getCalculatedFilename(), is(equalTo("pre21")));
+		assertThat(target.calculate(index), is(equalTo(0)));
+
+		// all the images are renumbered, if the number of digits changes
+		for (int i = 0; i < 200; i++) {
+			index.add(image(100 + i));
+		}
+		assertThat(target.calculate(index), is(equalTo(221)));
+		assertThat(index.get(0).getCalculatedFilename(), is(equalTo("pre001")));
+	}
+
 	@Test
 	public void shouldCalculateNumberOfDigits() {
 		ImageSorterSettings settings = new ImageSorterSettings(null, "pre", "suf", 1);
@@ -89,4 +176,10 @@ public class DefaultFilenameCalculatorTest {
 		expected = 4;
 	}
 
+	private static ImageFile image(int seconds) {
+		ImageFile image = new ImageFile();
+		image.setOriginalAbsorptionTime(new Date(seconds * 1000L));
+		return image;
+	}
+
 }
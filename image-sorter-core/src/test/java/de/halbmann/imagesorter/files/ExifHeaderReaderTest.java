@@ -0,0 +1,115 @@
+package de.halbmann.imagesorter.files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.drew.imaging.jpeg.JpegMetadataReader;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+public class ExifHeaderReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void type() throws Exception {
+		assertThat(ExifHeaderReader.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		ExifHeaderReader target = new ExifHeaderReader();
+		assertThat(target, notNullValue());
+	}
+
+	@Test
+	public void read_bigEndian() throws Exception {
+		File f = folder.newFile("big.jpg");
+		TestJpeg.write(f, ByteOrder.BIG_ENDIAN, 6, "Canon EOS 5D", "2014:08:27 13:45:12");
+		assertSameAsMetadataExtractor(f);
+	}
+
+	@Test
+	public void read_littleEndian() throws Exception {
+		File f = folder.newFile("little.jpg");
+		TestJpeg.write(f, ByteOrder.LITTLE_ENDIAN, 1, "NIKON D90", "2013:12:31 23:59:59");
+		assertSameAsMetadataExtractor(f);
+	}
+
+	@Test
+	public void read_withoutModel() throws Exception {
+		File f = folder.newFile("nomodel.jpg");
+		TestJpeg.write(f, ByteOrder.LITTLE_ENDIAN, 3, null, "2012:01:01 00:00:00");
+		ImageFile image = new ImageFile();
+		assertThat(new ExifHeaderReader().read(f, image), is(true));
+		assertThat(image.getCameraModel(), is(nullValue()));
+		assertThat(image.getOrientation(), is(3));
+	}
+
+	@Test
+	public void read_withoutExifTags() throws Exception {
+		// the test image doesn't contain orientation and absorption time
+		File f = new File("src/test/resources/images/test.jpg");
+		ImageFile image = new ImageFile();
+		assertThat(new ExifHeaderReader().read(f, image), is(false));
+		assertThat(image.getOriginalAbsorptionTime(), is(nullValue()));
+	}
+
+	@Test
+	public void read_corruptCount() throws Exception {
+		File f = folder.newFile("corrupt.jpg");
+		TestJpeg.write(f, ByteOrder.BIG_ENDIAN, 6, "Canon EOS 5D", "2014:08:27 13:45:12");
+		// the count of the model entry overflows the bounds check
+		byte[] data = Files.readAllBytes(f.toPath());
+		byte[] modelEntry = { 0x01, 0x10, 0x00, 0x02 };
+		for (int i = 0; i < data.length - 8; i++) {
+			if (Arrays.equals(Arrays.copyOfRange(data, i, i + 4), modelEntry)) {
+				ByteBuffer.wrap(data, i + 4, 4).putInt(Integer.MAX_VALUE - 16);
+				break;
+			}
+		}
+		Files.write(f.toPath(), data);
+		ImageFile image = new ImageFile();
+		// falls back to the metadata-extractor
+		assertThat(new ExifHeaderReader().read(f, image), is(false));
+		assertThat(image.getCameraModel(), is(nullValue()));
+	}
+
+	@Test
+	public void read_noJpeg() throws Exception {
+		File f = folder.newFile("empty.jpg");
+		assertThat(new ExifHeaderReader().read(f, new ImageFile()), is(false));
+	}
+
+	private void assertSameAsMetadataExtractor(File f) throws Exception {
+		ImageFile image = new ImageFile();
+		assertThat(new ExifHeaderReader().read(f, image), is(true));
+
+		Metadata metadata = JpegMetadataReader.readMetadata(f);
+		ExifIFD0Directory ifd0 = metadata.getDirectory(ExifIFD0Directory.class);
+		ExifSubIFDDirectory subIfd = metadata.getDirectory(ExifSubIFDDirectory.class);
+		assertThat(image.getOrientation(),
+				is(equalTo(ifd0.getInt(ExifIFD0Directory.TAG_ORIENTATION))));
+		assertThat(image.getCameraModel(),
+				is(equalTo(ifd0.getString(ExifIFD0Directory.TAG_MODEL))));
+		assertThat(image.getOriginalAbsorptionTime(),
+				is(equalTo(subIfd.getDate(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL))));
+	}
+}
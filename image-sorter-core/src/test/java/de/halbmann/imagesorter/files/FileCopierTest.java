@@ -0,0 +1,135 @@
+package de.halbmann.imagesorter.files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileCopierTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void type() throws Exception {
+		assertThat(FileCopier.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		FileCopier target = FileCopier.create(false, false);
+		assertThat(target, notNullValue());
+		assertThat(target.getStrategies().size(), is(equalTo(1)));
+	}
+
+	@Test
+	public void copy_A$Path$Path_transferChunks() throws Exception {
+		Path source = createFile("source.jpg", 100000);
+		Path destination = folder.getRoot().toPath().resolve("target.jpg");
+		// the target is overwritten
+		Files.write(destination, new byte[200000]);
+		FileCopier.TransferStrategy strategy = new FileCopier.TransferStrategy(4096);
+		FileCopier target = new FileCopier(strategy);
+
+		long actual = target.copy(source, destination);
+
+		assertThat(actual, is(equalTo(100000L)));
+		assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(destination));
+		assertThat(target.getCopies(strategy), is(equalTo(1)));
+	}
+
+	@Test
+	public void copy_A$Path$Path_hardLink() throws Exception {
+		Path source = createFile("source.jpg", 1000);
+		Path destination = folder.newFolder("out").toPath().resolve("target.jpg");
+		FileCopier target = FileCopier.create(true, false);
+
+		long actual = target.copy(source, destination);
+
+		// linked on the same file store: no data written
+		assertThat(actual, is(equalTo(0L)));
+		assertThat(Files.isSameFile(source, destination), is(true));
+		assertThat(target.getCopies(target.getStrategies().get(0)), is(equalTo(1)));
+	}
+
+	@Test
+	public void copy_A$Path$Path_fallback() throws Exception {
+		Path source = createFile("source.jpg", 1000);
+		Path destination = folder.getRoot().toPath().resolve("target.jpg");
+		CopyStrategy failing = new CopyStrategy() {
+
+			@Override
+			public String getName() {
+				return "failing";
+			}
+
+			@Override
+			public boolean isApplicable(Path source, Path target) {
+				return true;
+			}
+
+			@Override
+			public long copy(Path source, Path target) throws IOException {
+				// leaves a partial target
+				Files.write(target, new byte[10]);
+				throw new IOException("not supported");
+			}
+		};
+		FileCopier.TransferStrategy transfer = new FileCopier.TransferStrategy();
+		FileCopier target = new FileCopier(failing, transfer);
+
+		long actual = target.copy(source, destination);
+
+		assertThat(actual, is(equalTo(1000L)));
+		assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(destination));
+		assertThat(target.getFallbacks(), is(equalTo(1)));
+		assertThat(target.getCopies(failing), is(equalTo(0)));
+		assertThat(target.getCopies(transfer), is(equalTo(1)));
+	}
+
+	@Test
+	public void copy_A$Path$Path_notApplicable() throws Exception {
+		Path source = createFile("source.jpg", 1000);
+		Path destination = folder.getRoot().toPath().resolve("target.jpg");
+		// the hard link isn't applicable for an existing target
+		Files.write(destination, new byte[10]);
+		FileCopier target = new FileCopier(new FileCopier.HardLinkStrategy());
+		try {
+			target.copy(source, destination);
+			fail("expected an IOException");
+		} catch (IOException e) {
+			assertThat(Files.size(destination), is(equalTo(10L)));
+		}
+	}
+
+	@Test
+	public void copy_A$Path$Path_sameFile() throws Exception {
+		Path source = createFile("source.jpg", 1000);
+		FileCopier target = FileCopier.create(false, false);
+
+		long actual = target.copy(source, source);
+
+		// the source isn't truncated
+		assertThat(actual, is(equalTo(0L)));
+		assertThat(Files.size(source), is(equalTo(1000L)));
+	}
+
+	private Path createFile(String name, int size) throws IOException {
+		byte[] data = new byte[size];
+		new Random(size).nextBytes(data);
+		Path path = folder.newFile(name).toPath();
+		Files.write(path, data);
+		return path;
+	}
+}
@@ -0,0 +1,89 @@
+package de.halbmann.imagesorter.files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+public class FilenameTemplateTest {
+
+	@Test
+	public void type() throws Exception {
+		assertThat(FilenameTemplate.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		FilenameTemplate target = FilenameTemplate.compile(FilenameTemplate.DEFAULT_PATTERN);
+		assertThat(target, notNullValue());
+		assertThat(target.getPattern(), is(equalTo(FilenameTemplate.DEFAULT_PATTERN)));
+	}
+
+	@Test
+	public void render_A$ImageFile$int$int_default() throws Exception {
+		Map<String, String> variables = new HashMap<>();
+		variables.put("prefix", "pre_");
+		variables.put("suffix", "_suf");
+		FilenameTemplate target = FilenameTemplate.compile(FilenameTemplate.DEFAULT_PATTERN,
+				variables);
+		int[] numbers = { 0, 1, 9, 10, 99, 12345, Integer.MAX_VALUE, -7 };
+		for (int number : numbers) {
+			for (int digits = 1; digits < 8; digits++) {
+				String expected = String.format("%s%0" + digits + "d%s", "pre_", number, "_suf");
+				assertThat(target.render(null, number, digits), is(equalTo(expected)));
+			}
+		}
+	}
+
+	@Test
+	public void render_A$ImageFile$int$int_date() throws Exception {
+		FilenameTemplate target = FilenameTemplate.compile("{date:yyyy-MM-dd_HHmmss}_{seq:05}");
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd_HHmmss");
+		Random random = new Random(1);
+		for (int i = 0; i < 10000; i++) {
+			// 1900 to 2100
+			long time = (long) ((random.nextDouble() * 200 - 70) * 365.25 * 24 * 3600 * 1000);
+			ImageFile image = new ImageFile();
+			image.setOriginalAbsorptionTime(new Date(time));
+			String expected = format.format(new Date(time)) + String.format("_%05d", i);
+			assertThat(target.render(image, i, 1), is(equalTo(expected)));
+		}
+
+		ImageFile image = new ImageFile();
+		image.setOriginalAbsorptionTime(new Date(0));
+		image.setModifiedAbsorptionTime(new Date(86400000L * 365));
+		assertThat(FilenameTemplate.compile("{date:yy}").render(image, 0, 1), is(equalTo(
+				new SimpleDateFormat("yy").format(image.getModifiedAbsorptionTime()))));
+		assertThat(FilenameTemplate.compile("{date:yyyyMMdd}x").render(new ImageFile(), 0, 1),
+				is(equalTo("x")));
+	}
+
+	@Test
+	public void render_A$ImageFile$int$int_cameraAndName() throws Exception {
+		ImageFile image = new ImageFile();
+		image.setCameraModel("Canon EOS 5D/Mark II");
+		image.setOriginalFilename("IMG_0001");
+		FilenameTemplate target = FilenameTemplate.compile("{seq}_{camera}_{name}");
+		assertThat(target.render(image, 42, 3), is(equalTo("042_Canon_EOS_5D_Mark_II_IMG_0001")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void compile_A$String_unknown() throws Exception {
+		FilenameTemplate.compile("{seq}{model}");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void compile_A$String_unclosed() throws Exception {
+		FilenameTemplate.compile("{seq");
+	}
+}
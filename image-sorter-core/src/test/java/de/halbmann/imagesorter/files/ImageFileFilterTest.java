@@ -0,0 +1,76 @@
+package de.halbmann.imagesorter.files;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+public class ImageFileFilterTest {
+
+	@Test
+	public void type() throws Exception {
+		assertThat(ImageFileFilter.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		ImageFileFilter target = new ImageFileFilter();
+		assertThat(target, notNullValue());
+	}
+
+	@Test
+	public void hasExtension_A$String() throws Exception {
+		ImageFileFilter target = new ImageFileFilter();
+		assertThat(target.hasExtension("/images/IMG_0001.jpg"), is(true));
+		assertThat(target.hasExtension("/images/IMG_0001.JPG"), is(true));
+		assertThat(target.hasExtension("/images/IMG_0001.JpEg"), is(true));
+		assertThat(target.hasExtension("/images/IMG_0001.jpg.xmp"), is(false));
+		assertThat(target.hasExtension("/images/IMG_0001.png"), is(false));
+		assertThat(target.hasExtension("jpg"), is(false));
+	}
+
+	@Test
+	public void hasExtension_A$String_upperCaseExtensions() throws Exception {
+		ImageFileFilter target = new ImageFileFilter(".PNG");
+		assertThat(target.hasExtension("/images/img.png"), is(true));
+		assertThat(target.hasExtension("/images/img.jpg"), is(false));
+	}
+
+	@Test
+	public void accept_A$Path_include() throws Exception {
+		ImageFileFilter target = new ImageFileFilter();
+		target.addInclude("IMG_*");
+		assertThat(target.accept(Paths.get("/images/IMG_0001.jpg")), is(true));
+		assertThat(target.accept(Paths.get("/images/DSC_0001.jpg")), is(false));
+		assertThat(target.accept(Paths.get("/images/IMG_0001.png")), is(false));
+	}
+
+	@Test
+	public void accept_A$Path_exclude() throws Exception {
+		ImageFileFilter target = new ImageFileFilter();
+		target.addExclude("regex:.*_edited\\..*");
+		target.addExclude("**/raw/**");
+		assertThat(target.accept(Paths.get("/images/IMG_0001.jpg")), is(true));
+		assertThat(target.accept(Paths.get("/images/IMG_0001_edited.jpg")), is(false));
+		assertThat(target.accept(Paths.get("/images/raw/IMG_0001.jpg")), is(false));
+	}
+
+	@Test
+	public void prune_A$Path() throws Exception {
+		ImageFileFilter target = new ImageFileFilter();
+		for (String dir : ImageFileFilter.THUMBNAIL_DIRECTORIES) {
+			target.addPrunedDirectory(dir);
+		}
+		target.addPrunedDirectory("tmp*");
+		assertThat(target.prune(Paths.get("/images/@eaDir")), is(true));
+		assertThat(target.prune(Paths.get("/images/.thumbnails")), is(true));
+		assertThat(target.prune(Paths.get("/images/tmp_2014")), is(true));
+		assertThat(target.prune(Paths.get("/images/2014")), is(false));
+		Path root = Paths.get("/");
+		assertThat(target.prune(root), is(false));
+	}
+}
@@ -8,13 +8,19 @@ import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class ImageFileToolTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Test
 	public void type() throws Exception {
 		assertThat(ImageFileVisitor.class, notNullValue());
@@ -56,4 +62,40 @@ public class ImageFileToolTest {
 		assertThat(actual.size(), is(equalTo(2)));
 	}
 
+	@Test
+	public void walk_A$Path_otherFiles() throws Exception {
+		// the other files must not stop the walk
+		for (int i = 0; i < 20; i++) {
+			folder.newFile("IMG_" + i + ".xmp");
+			folder.newFile("IMG_" + i + ".jpg");
+		}
+		ImageFileVisitor target = new ImageFileVisitor();
+		List<File> actual = target.walk(folder.getRoot().toPath());
+		assertThat(actual.size(), is(equalTo(20)));
+	}
+
+	@Test
+	public void walk_A$Path_notRecursive() throws Exception {
+		folder.newFile("IMG_0.jpg");
+		Files.createFile(folder.newFolder("sub").toPath().resolve("IMG_1.jpg"));
+		ImageFileVisitor target = new ImageFileVisitor(false);
+		Files.walkFileTree(folder.getRoot().toPath(), target);
+		assertThat(target.getFiles().size(), is(equalTo(1)));
+	}
+
+	@Test
+	public void walk_A$Path_prune() throws Exception {
+		folder.newFile("IMG_0.jpg");
+		Files.createFile(folder.newFolder("@eaDir").toPath().resolve("IMG_0.jpg"));
+		Files.createFile(folder.newFolder("2014").toPath().resolve("IMG_1.jpg"));
+		ImageFileVisitor target = new ImageFileVisitor(true);
+		target.getFilter().addPrunedDirectory("@eaDir");
+		List<File> actual = target.walk(folder.getRoot().toPath());
+		assertThat(actual.size(), is(equalTo(2)));
+
+		ParallelImageFileWalker walker = new ParallelImageFileWalker(true);
+		walker.setFilter(target.getFilter());
+		assertThat(walker.walk(folder.getRoot().toPath()).size(), is(equalTo(2)));
+	}
+
 }
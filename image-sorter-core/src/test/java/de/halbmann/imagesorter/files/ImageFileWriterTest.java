@@ -1,12 +1,32 @@
 package de.halbmann.imagesorter.files;
 
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.halbmann.imagesorter.model.ImageFile;
 
 public class ImageFileWriterTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Test
 	public void type() throws Exception {
 		assertThat(ImageFileWriter.class, notNullValue());
@@ -18,4 +38,254 @@ public class ImageFileWriterTest {
 		assertThat(target, notNullValue());
 	}
 
+	@Test
+	public void runImageFileOperations_A$List$Settings_adaptiveConcurrency() throws Exception {
+		List<ImageFile> images = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			File f = folder.newFile("IMG_" + i + ".jpg");
+			Files.write(f.toPath(), ("image " + i).getBytes(StandardCharsets.UTF_8));
+			ImageFile image = new ImageFile();
+			image.setFile(f);
+			image.setFileExtension("jpg");
+			image.setCalculatedFilename("img_" + i);
+			images.add(image);
+		}
+		ImageFileWriter target = new ImageFileWriter(folder.getRoot().getPath() + "/", "out",
+				null, null, 0);
+		ImageFileWriter.Settings settings = new ImageFileWriter.Settings(true);
+		settings.setAdaptiveConcurrency(true);
+		settings.setMaxConcurrency(8);
+		target.runImageFileOperations(images, settings);
+
+		File out = new File(folder.getRoot(), "out");
+		assertThat(out.list().length, is(equalTo(50)));
+		for (int i = 0; i < 50; i++) {
+			byte[] actual = Files.readAllBytes(new File(out, "img_" + i + ".jpg").toPath());
+			assertThat(new String(actual, StandardCharsets.UTF_8), is(equalTo("image " + i)));
+		}
+	}
+
+	@Test
+	public void runImageFileOperations_A$List$Settings_concurrentCopyOrder() throws Exception {
+		// the concurrent copies to the same target file run in the order of the images
+		List<ImageFile> images = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			File f = folder.newFile("IMG_" + i + ".jpg");
+			Files.write(f.toPath(), ("image " + i).getBytes(StandardCharsets.UTF_8));
+			ImageFile image = new ImageFile();
+			image.setFile(f);
+			image.setFileExtension("jpg");
+			image.setCalculatedFilename("img_" + i % 5);
+			images.add(image);
+		}
+		ImageFileWriter target = new ImageFileWriter(folder.getRoot().getPath() + "/", "out",
+				null, null, 0);
+		ImageFileWriter.Settings settings = new ImageFileWriter.Settings(true);
+		settings.setConcurrent(true);
+		settings.setMaxConcurrency(8);
+		target.runImageFileOperations(images, settings);
+
+		// the last image wins like in a sequential run
+		File out = new File(folder.getRoot(), "out");
+		assertThat(out.list().length, is(equalTo(5)));
+		for (int i = 0; i < 5; i++) {
+			byte[] actual = Files.readAllBytes(new File(out, "img_" + i + ".jpg").toPath());
+			assertThat(new String(actual, StandardCharsets.UTF_8), is(equalTo("image "
+					+ (45 + i))));
+		}
+	}
+
+	@Test
+	public void runImageFileOperations_A$List$Settings_concurrentCopies() throws Exception {
+		// with the default settings the copies to different target files run at the same time
+		final CountDownLatch inFlight = new CountDownLatch(2);
+		final AtomicBoolean concurrent = new AtomicBoolean();
+		List<ImageFile> images = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			File f = folder.newFile("IMG_" + i + ".jpg");
+			Files.write(f.toPath(), ("image " + i).getBytes(StandardCharsets.UTF_8));
+			ImageFile image = new ImageFile() {
+
+				@Override
+				public File getFile() {
+					// asked by the copy
+					inFlight.countDown();
+					try {
+						if (inFlight.await(5, TimeUnit.SECONDS)) {
+							concurrent.set(true);
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return super.getFile();
+				}
+			};
+			image.setFile(f);
+			image.setFileExtension("jpg");
+			image.setCalculatedFilename("img_" + i);
+			images.add(image);
+		}
+		ImageFileWriter target = new ImageFileWriter(folder.getRoot().getPath() + "/", "out",
+				null, null, 0);
+		ImageFileWriter.Settings settings = new ImageFileWriter.Settings(true);
+		settings.setConcurrent(true);
+		target.runImageFileOperations(images, settings);
+
+		assertThat(concurrent.get(), is(true));
+		assertThat(new File(folder.getRoot(), "out").list().length, is(equalTo(4)));
+	}
+
+	@Test
+	public void runImageFileOperations_A$List$Settings_rename() throws Exception {
+		// the images are renamed in a cycle
+		List<ImageFile> images = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			File f = folder.newFile("img_" + i + ".jpg");
+			Files.write(f.toPath(), ("image " + i).getBytes(StandardCharsets.UTF_8));
+			ImageFile image = new ImageFile();
+			image.setFile(f);
+			image.setFileExtension("jpg");
+			image.setCalculatedFilename("img_" + (i + 1) % 10);
+			images.add(image);
+		}
+		ImageFileWriter target = new ImageFileWriter(folder.getRoot().getPath() + "/", null,
+				null, null, 0);
+		target.runImageFileOperations(images, new ImageFileWriter.Settings(false));
+
+		assertRenamed(folder.getRoot(), 10);
+	}
+
+	@Test
+	public void runImageFileOperations_A$List$Settings_concurrentRename() throws Exception {
+		// the images of 4 directories are renamed in cycles
+		List<ImageFile> images = new ArrayList<>();
+		for (int d = 0; d < 4; d++) {
+			File dir = folder.newFolder("dir" + d);
+			for (int i = 0; i < 10; i++) {
+				File f = new File(dir, "img_" + i + ".jpg");
+				Files.write(f.toPath(), ("image " + i).getBytes(StandardCharsets.UTF_8));
+				ImageFile image = new ImageFile();
+				image.setFile(f);
+				image.setFileExtension("jpg");
+				image.setCalculatedFilename("img_" + (i + 1) % 10);
+				images.add(image);
+			}
+		}
+		ImageFileWriter target = new ImageFileWriter(folder.getRoot().getPath() + "/", null,
+				null, null, 0);
+		ImageFileWriter.Settings settings = new ImageFileWriter.Settings(false);
+		settings.setConcurrent(true);
+		settings.setMaxConcurrency(4);
+		target.runImageFileOperations(images, settings);
+
+		for (int d = 0; d < 4; d++) {
+			assertRenamed(new File(folder.getRoot(), "dir" + d), 10);
+		}
+		// one temporary name per directory
+		assertThat(target.getProgress().getCompleted(), is(equalTo(44)));
+		assertThat(target.getProgress().getFailed(), is(equalTo(0)));
+	}
+
+	@Test
+	public void runImageFileOperations_A$Iterable$int$Settings_rename() throws Exception {
+		// the streamed images are renamed in a cycle (without planning)
+		List<ImageFile> images = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			File f = folder.newFile("img_" + i + ".jpg");
+			Files.write(f.toPath(), ("image " + i).getBytes(StandardCharsets.UTF_8));
+			ImageFile image = new ImageFile();
+			image.setFile(f);
+			image.setFileExtension("jpg");
+			image.setCalculatedFilename("img_" + (i + 1) % 10);
+			images.add(image);
+		}
+		// one image keeps its name
+		images.get(9).setCalculatedFilename("img_9");
+		images.get(8).setCalculatedFilename("img_0");
+		ImageFileWriter target = new ImageFileWriter(folder.getRoot().getPath() + "/", null,
+				null, null, 0);
+		target.runImageFileOperations((Iterable<ImageFile>) images, images.size(),
+				new ImageFileWriter.Settings(false));
+
+		// no temporary names left
+		assertThat(folder.getRoot().list().length, is(equalTo(10)));
+		for (int i = 0; i < 10; i++) {
+			String name = images.get(i).getCalculatedFilename() + ".jpg";
+			byte[] actual = Files.readAllBytes(new File(folder.getRoot(), name).toPath());
+			assertThat(new String(actual, StandardCharsets.UTF_8), is(equalTo("image " + i)));
+		}
+	}
+
+	@Test
+	public void runImageFileOperations_A$Iterable$int$Settings_concurrentRename()
+			throws Exception {
+		List<ImageFile> images = new ArrayList<>();
+		for (int d = 0; d < 4; d++) {
+			File dir = folder.newFolder("dir" + d);
+			for (int i = 0; i < 10; i++) {
+				File f = new File(dir, "img_" + i + ".jpg");
+				Files.write(f.toPath(), ("image " + i).getBytes(StandardCharsets.UTF_8));
+				ImageFile image = new ImageFile();
+				image.setFile(f);
+				image.setFileExtension("jpg");
+				image.setCalculatedFilename("img_" + (i + 1) % 10);
+				images.add(image);
+			}
+		}
+		ImageFileWriter target = new ImageFileWriter(folder.getRoot().getPath() + "/", null,
+				null, null, 0);
+		ImageFileWriter.Settings settings = new ImageFileWriter.Settings(false);
+		settings.setConcurrent(true);
+		target.runImageFileOperations((Iterable<ImageFile>) images, images.size(), settings);
+
+		for (int d = 0; d < 4; d++) {
+			assertRenamed(new File(folder.getRoot(), "dir" + d), 10);
+		}
+		// one temporary name per directory
+		assertThat(target.getProgress().getCompleted(), is(equalTo(44)));
+	}
+
+	@Test
+	public void runImageFileOperations_A$Iterable$int$Settings_rollback() throws Exception {
+		// a cycle and a rename to a name occupied by an unknown file
+		List<ImageFile> images = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			File f = folder.newFile("img_" + i + ".jpg");
+			Files.write(f.toPath(), ("image " + i).getBytes(StandardCharsets.UTF_8));
+			ImageFile image = new ImageFile();
+			image.setFile(f);
+			image.setFileExtension("jpg");
+			image.setCalculatedFilename(i < 3 ? "img_" + (i + 1) % 3 : "other");
+			images.add(image);
+		}
+		folder.newFile("other.jpg");
+		ImageFileWriter target = new ImageFileWriter(folder.getRoot().getPath() + "/", null,
+				null, null, 0);
+		ImageFileWriter.Settings settings = new ImageFileWriter.Settings(false);
+		settings.setConcurrent(true);
+		try {
+			target.runImageFileOperations((Iterable<ImageFile>) images, images.size(), settings);
+			fail("Expected exception was not thrown!");
+		} catch (IOException e) {
+		}
+
+		// the completed renames are moved back (no temporary names left)
+		assertThat(folder.getRoot().list().length, is(equalTo(5)));
+		for (int i = 0; i < 4; i++) {
+			byte[] actual = Files.readAllBytes(new File(folder.getRoot(), "img_" + i + ".jpg")
+					.toPath());
+			assertThat(new String(actual, StandardCharsets.UTF_8), is(equalTo("image " + i)));
+		}
+		assertThat(target.getProgress().getFailed(), is(equalTo(1)));
+	}
+
+	private static void assertRenamed(File dir, int count) throws Exception {
+		assertThat(dir.list().length, is(equalTo(count)));
+		for (int i = 0; i < count; i++) {
+			byte[] actual = Files.readAllBytes(new File(dir, "img_" + (i + 1) % count + ".jpg")
+					.toPath());
+			assertThat(new String(actual, StandardCharsets.UTF_8), is(equalTo("image " + i)));
+		}
+	}
+
 }
@@ -0,0 +1,166 @@
+package de.halbmann.imagesorter.files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+public class ImageMetadataCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void type() throws Exception {
+		assertThat(ImageMetadataCache.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		ImageMetadataCache target = new ImageMetadataCache(folder.getRoot().toPath().resolve(
+				"cache"));
+		assertThat(target, notNullValue());
+	}
+
+	@Test
+	public void saveAndLoad() throws Exception {
+		Path cacheFile = folder.getRoot().toPath().resolve("cache");
+		File f = folder.newFile("image.jpg");
+		ImageFile image = new ImageFile();
+		image.setOrientation(6);
+		image.setCameraModel("Canon EOS 5D");
+		image.setOriginalAbsorptionTime(new Date(1409140000000L));
+
+		ImageMetadataCache target = new ImageMetadataCache(cacheFile);
+		target.load();
+		target.put(f, attributes(f), image);
+		target.save();
+
+		target = new ImageMetadataCache(cacheFile);
+		target.load();
+		ImageFile actual = new ImageFile();
+		assertThat(target.lookup(f, attributes(f), actual), is(true));
+		assertThat(actual.getOrientation(), is(6));
+		assertThat(actual.getCameraModel(), is(equalTo("Canon EOS 5D")));
+		assertThat(actual.getOriginalAbsorptionTime(), is(equalTo(new Date(1409140000000L))));
+	}
+
+	@Test
+	public void lookup_modifiedFile() throws Exception {
+		ImageMetadataCache target = new ImageMetadataCache(folder.getRoot().toPath().resolve(
+				"cache"));
+		File f = folder.newFile("image.jpg");
+		target.put(f, attributes(f), new ImageFile());
+		assertThat(target.lookup(f, attributes(f), new ImageFile()), is(true));
+
+		Files.setLastModifiedTime(f.toPath(), FileTime.fromMillis(1000L));
+		assertThat(target.lookup(f, attributes(f), new ImageFile()), is(false));
+		assertThat(target.getMisses(), is(1));
+	}
+
+	@Test
+	public void save_dropsUnusedEntries() throws Exception {
+		Path cacheFile = folder.getRoot().toPath().resolve("cache");
+		File f1 = folder.newFile("image1.jpg");
+		File f2 = folder.newFile("image2.jpg");
+		ImageMetadataCache target = new ImageMetadataCache(cacheFile);
+		target.put(f1, attributes(f1), new ImageFile());
+		target.put(f2, attributes(f2), new ImageFile());
+		target.save();
+
+		// only the first image is used in the second run
+		target = new ImageMetadataCache(cacheFile);
+		target.load();
+		assertThat(target.size(), is(2));
+		target.lookup(f1, attributes(f1), new ImageFile());
+		target.save();
+
+		target = new ImageMetadataCache(cacheFile);
+		target.load();
+		assertThat(target.size(), is(1));
+		assertThat(target.lookup(f1, attributes(f1), new ImageFile()), is(true));
+	}
+
+	@Test
+	public void load_corruptFile() throws Exception {
+		Path cacheFile = folder.newFile("cache").toPath();
+		Files.write(cacheFile, new byte[] { 0x49, 0x4D, 0x43, 0x31, 0, 0, 0, 1, 0, 0 });
+		ImageMetadataCache target = new ImageMetadataCache(cacheFile);
+		target.load();
+		assertThat(target.size(), is(0));
+	}
+
+	@Test
+	public void load_corruptCount() throws Exception {
+		Path cacheFile = folder.newFile("cache").toPath();
+		// a huge number of camera models
+		Files.write(cacheFile, new byte[] { 0x49, 0x4D, 0x43, 0x31, 0, 0, 0, 1, 0x7F, 0, 0, 0, 0,
+				0, 0, 0 });
+		ImageMetadataCache target = new ImageMetadataCache(cacheFile);
+		target.load();
+		assertThat(target.size(), is(0));
+
+		// a negative number of camera models
+		Files.write(cacheFile, new byte[] { 0x49, 0x4D, 0x43, 0x31, 0, 0, 0, 1, -1, -1, -1, -1 });
+		target.load();
+		assertThat(target.size(), is(0));
+
+		// one camera model with a negative length
+		Files.write(cacheFile, new byte[] { 0x49, 0x4D, 0x43, 0x31, 0, 0, 0, 1, 0, 0, 0, 1, -1,
+				-1, -1, -1, 0, 0, 0, 0 });
+		target.load();
+		assertThat(target.size(), is(0));
+	}
+
+	@Test
+	public void save_A$Path$boolean_keepsEntriesOutsideTheWalk() throws Exception {
+		Path cacheFile = folder.getRoot().toPath().resolve("cache");
+		File walked = folder.newFolder("walked");
+		File sub = folder.newFolder("walked", "sub");
+		File other = folder.newFolder("other");
+		File f1 = new File(walked, "image1.jpg");
+		File f2 = new File(sub, "image2.jpg");
+		File f3 = new File(other, "image3.jpg");
+		ImageMetadataCache target = new ImageMetadataCache(cacheFile);
+		for (File f : Arrays.asList(f1, f2, f3)) {
+			Files.write(f.toPath(), new byte[1]);
+			target.put(f, attributes(f), new ImageFile());
+		}
+		target.save();
+
+		// the second run doesn't walk the subdirectories: only the unused image1 is dropped
+		target = new ImageMetadataCache(cacheFile);
+		target.load();
+		target.save(walked.toPath(), false);
+		target.load();
+		assertThat(target.size(), is(2));
+		assertThat(target.lookup(f2, attributes(f2), new ImageFile()), is(true));
+		assertThat(target.lookup(f3, attributes(f3), new ImageFile()), is(true));
+
+		// a recursive walk drops the unused image2 as well
+		target = new ImageMetadataCache(cacheFile);
+		target.load();
+		target.save(walked.toPath(), true);
+		target.load();
+		assertThat(target.size(), is(1));
+		assertThat(target.lookup(f3, attributes(f3), new ImageFile()), is(true));
+	}
+
+	private BasicFileAttributes attributes(File f) throws Exception {
+		return Files.readAttributes(f.toPath(), BasicFileAttributes.class);
+	}
+}
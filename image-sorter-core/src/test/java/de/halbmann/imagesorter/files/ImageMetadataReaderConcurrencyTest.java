@@ -0,0 +1,218 @@
+package de.halbmann.imagesorter.files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.halbmann.imagesorter.model.ImageFile;
+import de.halbmann.imagesorter.modifier.AbsorptionTimeCorrection;
+
+/**
+ * Reads a generated tree of images with many threads and checks, that no image is lost and the
+ * images are always in the order of the walk.
+ * 
+ * @author fabian
+ * 
+ */
+public class ImageMetadataReaderConcurrencyTest {
+
+	private static final String[] MODELS = { "Canon EOS 5D", "NIKON D90", "DMC-FZ50", "E-M5" };
+	private static final int DIRECTORIES = 20;
+	private static final int IMAGES_PER_DIRECTORY = 100;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path root;
+
+	private List<File> expected;
+
+	@Before
+	public void createImages() throws Exception {
+		root = folder.getRoot().toPath();
+		for (int d = 0; d < DIRECTORIES; d++) {
+			Path dir = Files.createDirectories(root.resolve("dir" + d));
+			for (int i = 0; i < IMAGES_PER_DIRECTORY; i++) {
+				TestJpeg.write(dir.resolve(String.format("IMG_%04d.jpg", i)).toFile(),
+						ByteOrder.BIG_ENDIAN, 1, MODELS[i % MODELS.length], String.format(
+								"2014:08:%02d 12:%02d:00", d + 1, i % 60));
+			}
+		}
+		ImageFileVisitor visitor = new ImageFileVisitor(true);
+		Files.walkFileTree(root, visitor);
+		expected = visitor.getFiles();
+	}
+
+	@Test
+	public void readImageFiles_batch() throws Exception {
+		ImageMetadataReader.Settings settings = new ImageMetadataReader.Settings();
+		settings.setThreads(32);
+		assertImages(new ImageMetadataReader(true, settings));
+	}
+
+	@Test
+	public void readImageFiles_streaming() throws Exception {
+		ImageMetadataReader.Settings settings = new ImageMetadataReader.Settings();
+		settings.setThreads(32);
+		settings.setStreaming(true);
+		settings.setQueueCapacity(16);
+		assertImages(new ImageMetadataReader(true, settings));
+	}
+
+	@Test
+	public void readImageFiles_parallelWalk() throws Exception {
+		ImageMetadataReader.Settings settings = new ImageMetadataReader.Settings();
+		settings.setThreads(32);
+		settings.setParallelWalk(true);
+		assertImages(new ImageMetadataReader(true, settings));
+	}
+
+	@Test
+	public void readImageFiles_ioMode() throws Exception {
+		ImageMetadataReader.Settings settings = new ImageMetadataReader.Settings();
+		settings.setExecutionMode(ImageMetadataReader.ExecutionMode.IO);
+		settings.setMaxOpenFiles(48);
+		settings.setStreaming(true);
+		assertImages(new ImageMetadataReader(true, settings));
+	}
+
+	@Test
+	public void readImageFiles_localityScheduling() throws Exception {
+		ImageMetadataReader.Settings settings = new ImageMetadataReader.Settings();
+		settings.setThreads(32);
+		settings.setLocalityScheduling(true);
+		settings.setPerDeviceConcurrency(2);
+		assertImages(new ImageMetadataReader(true, settings));
+	}
+
+	@Test
+	public void readImageFiles_adaptiveConcurrency() throws Exception {
+		ImageMetadataReader.Settings settings = new ImageMetadataReader.Settings();
+		settings.setAdaptiveConcurrency(true);
+		settings.setMaxOpenFiles(32);
+		assertImages(new ImageMetadataReader(true, settings));
+	}
+
+	@Test
+	public void readImageFiles_imageModifiers() throws Exception {
+		ImageMetadataReader.Settings settings = new ImageMetadataReader.Settings();
+		settings.setThreads(8);
+		settings.setStreaming(true);
+		ImageMetadataReader target = new ImageMetadataReader(true, settings);
+		AbsorptionTimeCorrection correction = new AbsorptionTimeCorrection();
+		correction.addCorrection(MODELS[1], 0, 0, 0, 1, 0, 0);
+		target.addImageModifier(correction);
+		assertImages(target);
+
+		for (ImageFile image : target.getImages()) {
+			if (MODELS[1].equals(image.getCameraModel())) {
+				assertThat(image.getModifiedAbsorptionTime().getTime()
+						- image.getOriginalAbsorptionTime().getTime(), is(equalTo(3600000L)));
+			} else {
+				assertThat(image.getModifiedAbsorptionTime(), is(nullValue()));
+			}
+		}
+	}
+
+	@Test
+	public void readImageFiles_sink() throws Exception {
+		ImageMetadataReader.Settings settings = new ImageMetadataReader.Settings();
+		settings.setThreads(32);
+		assertSink(new ImageMetadataReader(true, settings));
+	}
+
+	@Test
+	public void readImageFiles_sinkStreaming() throws Exception {
+		ImageMetadataReader.Settings settings = new ImageMetadataReader.Settings();
+		settings.setThreads(32);
+		settings.setStreaming(true);
+		settings.setQueueCapacity(16);
+		assertSink(new ImageMetadataReader(true, settings));
+	}
+
+	@Test
+	public void readImageFiles_sinkLocalityScheduling() throws Exception {
+		ImageMetadataReader.Settings settings = new ImageMetadataReader.Settings();
+		settings.setThreads(32);
+		settings.setLocalityScheduling(true);
+		assertSink(new ImageMetadataReader(true, settings));
+	}
+
+	@Test(timeout = 60000)
+	public void readImageFiles_sinkStreamingError() throws Exception {
+		// the workers survive the errors of the sink, so the walk never blocks on the full queue
+		ImageMetadataReader.Settings settings = new ImageMetadataReader.Settings();
+		settings.setThreads(2);
+		settings.setStreaming(true);
+		settings.setQueueCapacity(4);
+		ImageMetadataReader target = new ImageMetadataReader(true, settings);
+		final AtomicInteger accepted = new AtomicInteger();
+		try {
+			target.readImageFiles(root.toString(), new ImageMetadataReader.ImageSink() {
+
+				@Override
+				public void accept(ImageFile image) {
+					if (accepted.incrementAndGet() % 2 == 0) {
+						throw new StackOverflowError();
+					}
+				}
+			});
+			fail("Expected exception was not thrown!");
+		} catch (IOException e) {
+		}
+	}
+
+	/**
+	 * The images are handed over one at a time in the order of the walk and not collected.
+	 */
+	private void assertSink(ImageMetadataReader target) throws Exception {
+		final List<File> actual = new ArrayList<>();
+		final AtomicInteger concurrent = new AtomicInteger();
+		List<ImageFile> images = target.readImageFiles(root.toString(),
+				new ImageMetadataReader.ImageSink() {
+
+					@Override
+					public void accept(ImageFile image) {
+						assertThat(concurrent.incrementAndGet(), is(equalTo(1)));
+						actual.add(image.getFile());
+						concurrent.decrementAndGet();
+					}
+				});
+		assertThat(images.isEmpty(), is(true));
+		assertThat(actual, is(equalTo(expected)));
+		Set<String> models = new HashSet<>(Arrays.asList(MODELS));
+		assertThat(target.getCameraModels(), is(equalTo(models)));
+	}
+
+	private void assertImages(ImageMetadataReader target) throws Exception {
+		List<ImageFile> images = target.readImageFiles(root.toString());
+		assertThat(images.size(), is(DIRECTORIES * IMAGES_PER_DIRECTORY));
+
+		List<File> actual = new ArrayList<>();
+		for (ImageFile image : images) {
+			actual.add(image.getFile());
+		}
+		assertThat(actual, is(equalTo(expected)));
+		Set<String> models = new HashSet<>(Arrays.asList(MODELS));
+		assertThat(target.getCameraModels(), is(equalTo(models)));
+	}
+}
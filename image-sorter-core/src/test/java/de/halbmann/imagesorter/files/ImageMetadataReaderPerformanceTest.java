@@ -0,0 +1,77 @@
+package de.halbmann.imagesorter.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.drew.imaging.jpeg.JpegProcessingException;
+import com.drew.metadata.MetadataException;
+
+import de.halbmann.imagesorter.files.ImageMetadataReader.ExecutionMode;
+import de.halbmann.imagesorter.model.ImageFile;
+
+/**
+ * Benchmark of the execution modes of the {@link ImageMetadataReader}. A network mount is
+ * simulated by a local filesystem with an injected latency for each file read.
+ * 
+ * @author fabian
+ * 
+ */
+@Ignore
+public class ImageMetadataReaderPerformanceTest {
+
+	private static final int IMAGES = 2000;
+	private static final long LATENCY_MS = 5;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void compareExecutionModes() throws IOException {
+		Path root = folder.getRoot().toPath();
+		for (int i = 0; i < IMAGES; i++) {
+			Path dir = Files.createDirectories(root.resolve("dir" + i / 100));
+			TestJpeg.write(dir.resolve(String.format("IMG_%04d.jpg", i)).toFile(),
+					ByteOrder.BIG_ENDIAN, 1, "Canon EOS 5D", "2014:08:27 12:00:00");
+		}
+
+		for (ExecutionMode mode : ExecutionMode.values()) {
+			ImageMetadataReader.Settings settings = new ImageMetadataReader.Settings();
+			settings.setExecutionMode(mode);
+			long startTime = System.currentTimeMillis();
+			int images = new LatencyImageMetadataReader(settings).readImageFiles(root.toString())
+					.size();
+			long endTime = System.currentTimeMillis();
+			System.out.println(String.format("%s mode: %d images in %d ms", mode, images,
+					endTime - startTime));
+		}
+	}
+
+	/**
+	 * ImageMetadataReader with an injected latency for each file read.
+	 */
+	private static class LatencyImageMetadataReader extends ImageMetadataReader {
+
+		LatencyImageMetadataReader(Settings settings) {
+			super(true, settings);
+		}
+
+		@Override
+		protected ImageFile readMetaData(File f) throws JpegProcessingException, IOException,
+				MetadataException {
+			try {
+				Thread.sleep(LATENCY_MS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return super.readMetaData(f);
+		}
+	}
+}
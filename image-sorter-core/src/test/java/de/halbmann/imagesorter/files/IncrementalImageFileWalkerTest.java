@@ -0,0 +1,229 @@
+package de.halbmann.imagesorter.files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.drew.imaging.jpeg.JpegProcessingException;
+import com.drew.metadata.MetadataException;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+public class IncrementalImageFileWalkerTest {
+
+	private static final String CONFIGURATION = "test";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path root;
+	private Path fingerprintFile;
+
+	@Before
+	public void createImages() throws Exception {
+		root = folder.newFolder("images").toPath();
+		fingerprintFile = folder.getRoot().toPath().resolve("fingerprints");
+		for (int d = 0; d < 3; d++) {
+			Path dir = Files.createDirectories(root.resolve("dir" + d).resolve("sub"));
+			for (int i = 0; i < 5; i++) {
+				writeImage(dir.getParent().resolve("IMG_" + i + ".jpg"), i);
+				writeImage(dir.resolve("IMG_" + i + ".jpg"), i);
+			}
+			Files.createFile(dir.resolve("IMG_0.xmp"));
+		}
+	}
+
+	@Test
+	public void type() throws Exception {
+		assertThat(IncrementalImageFileWalker.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		IncrementalImageFileWalker target = new IncrementalImageFileWalker(
+				new DirectoryFingerprints(fingerprintFile, CONFIGURATION), true,
+				new ImageFileFilter());
+		assertThat(target, notNullValue());
+	}
+
+	@Test
+	public void walk_A$Path_firstRun() throws Exception {
+		IncrementalImageFileWalker target = newWalker();
+		List<File> actual = target.walk(root);
+
+		ImageFileVisitor visitor = new ImageFileVisitor(true);
+		assertThat(actual, is(equalTo(visitor.walk(root))));
+		for (ImageFile image : target.getReusedImages()) {
+			assertThat(image, is(nullValue()));
+		}
+		assertThat(target.getListedDirectories(), is(equalTo(7)));
+	}
+
+	@Test
+	public void walk_A$Path_unchanged() throws Exception {
+		run();
+		IncrementalImageFileWalker target = newWalker();
+		List<File> actual = target.walk(root);
+
+		assertThat(actual.size(), is(equalTo(30)));
+		assertThat(target.getListedDirectories(), is(equalTo(0)));
+		for (int i = 0; i < actual.size(); i++) {
+			ImageFile image = target.getReusedImages().get(i);
+			assertThat(image.getFile(), is(equalTo(actual.get(i))));
+			assertThat(image.getCameraModel(), is(equalTo("Camera")));
+			assertThat(image.getOrientation(), is(equalTo(1)));
+			assertThat(image.getOriginalAbsorptionTime(), notNullValue());
+		}
+	}
+
+	@Test
+	public void walk_A$Path_changed() throws Exception {
+		run();
+		writeImage(root.resolve("dir1").resolve("IMG_9.jpg"), 9);
+		IncrementalImageFileWalker target = newWalker();
+		List<File> actual = target.walk(root);
+
+		assertThat(actual.size(), is(equalTo(31)));
+		assertThat(target.getListedDirectories(), is(equalTo(1)));
+		int toRead = 0;
+		for (ImageFile image : target.getReusedImages()) {
+			if (image == null) {
+				toRead++;
+			}
+		}
+		assertThat(toRead, is(equalTo(6)));
+	}
+
+	@Test
+	public void readImageFiles_fingerprints() throws Exception {
+		ImageMetadataReader.Settings settings = new ImageMetadataReader.Settings();
+		settings.setFingerprintFile(fingerprintFile.toString());
+		final AtomicInteger reads = new AtomicInteger();
+		ImageMetadataReader reader = new ImageMetadataReader(true, settings) {
+
+			@Override
+			protected ImageFile readMetaData(File f) throws JpegProcessingException,
+					IOException, MetadataException {
+				reads.incrementAndGet();
+				return super.readMetaData(f);
+			}
+		};
+		List<File> expected = files(reader.readImageFiles(root.toString()));
+		assertThat(reads.get(), is(equalTo(30)));
+
+		reader.clear();
+		reads.set(0);
+		assertThat(files(reader.readImageFiles(root.toString())), is(equalTo(expected)));
+		assertThat(reads.get(), is(equalTo(0)));
+	}
+
+	@Test
+	public void readImageFiles_fingerprintsOfSubdirectory() throws Exception {
+		ImageMetadataReader.Settings settings = new ImageMetadataReader.Settings();
+		settings.setFingerprintFile(fingerprintFile.toString());
+		final AtomicInteger reads = new AtomicInteger();
+		ImageMetadataReader reader = new ImageMetadataReader(true, settings) {
+
+			@Override
+			protected ImageFile readMetaData(File f) throws JpegProcessingException,
+					IOException, MetadataException {
+				reads.incrementAndGet();
+				return super.readMetaData(f);
+			}
+		};
+		reader.readImageFiles(root.toString());
+		reader.clear();
+		// a run on a subdirectory keeps the fingerprints of the other directories
+		assertThat(reader.readImageFiles(root.resolve("dir1").toString()).size(),
+				is(equalTo(10)));
+
+		reader.clear();
+		reads.set(0);
+		assertThat(reader.readImageFiles(root.toString()).size(), is(equalTo(30)));
+		assertThat(reads.get(), is(equalTo(0)));
+	}
+
+	@Test
+	public void walk_A$Path_relativePath() throws Exception {
+		Path relative = Paths.get("").toAbsolutePath().relativize(root);
+		run(relative);
+		// a directory within the walk is moved away
+		Files.move(root.resolve("dir2"), folder.getRoot().toPath().resolve("dir2"));
+		run(relative);
+
+		// the fingerprints of the moved directory and its subdirectory are dropped
+		DirectoryFingerprints fingerprints = new DirectoryFingerprints(fingerprintFile,
+				CONFIGURATION);
+		fingerprints.load();
+		assertThat(fingerprints.size(), is(equalTo(5)));
+	}
+
+	private IncrementalImageFileWalker newWalker() throws Exception {
+		DirectoryFingerprints fingerprints = new DirectoryFingerprints(fingerprintFile,
+				CONFIGURATION);
+		fingerprints.load();
+		return new IncrementalImageFileWalker(fingerprints, true, new ImageFileFilter());
+	}
+
+	/**
+	 * Run the walk, read the images and save the fingerprints.
+	 */
+	private void run() throws Exception {
+		run(null);
+	}
+
+	/**
+	 * Run the walk of the given path (or the root), read the images and save the fingerprints of
+	 * the walk.
+	 */
+	private void run(Path path) throws Exception {
+		DirectoryFingerprints fingerprints = new DirectoryFingerprints(fingerprintFile,
+				CONFIGURATION);
+		fingerprints.load();
+		IncrementalImageFileWalker target = new IncrementalImageFileWalker(fingerprints, true,
+				new ImageFileFilter());
+		List<File> files = target.walk(path == null ? root : path);
+		ImageFile[] images = new ImageFile[files.size()];
+		ExifHeaderReader reader = new ExifHeaderReader();
+		for (int i = 0; i < images.length; i++) {
+			images[i] = ImageMetadataReader.createImageFile(files.get(i));
+			reader.read(files.get(i), images[i]);
+		}
+		target.update(images);
+		if (path == null) {
+			fingerprints.save();
+		} else {
+			fingerprints.save(path, true);
+		}
+	}
+
+	private static List<File> files(List<ImageFile> images) {
+		List<File> files = new ArrayList<>();
+		for (ImageFile image : images) {
+			files.add(image.getFile());
+		}
+		return files;
+	}
+
+	private static void writeImage(Path path, int i) throws Exception {
+		TestJpeg.write(path.toFile(), ByteOrder.LITTLE_ENDIAN, 1, "Camera", String.format(
+				"2014:08:0%d 12:00:00", i + 1));
+	}
+}
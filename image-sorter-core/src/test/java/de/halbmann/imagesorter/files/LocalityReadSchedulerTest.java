@@ -0,0 +1,151 @@
+package de.halbmann.imagesorter.files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LocalityReadSchedulerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void type() throws Exception {
+		assertThat(LocalityReadScheduler.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		LocalityReadScheduler target = new LocalityReadScheduler(2);
+		assertThat(target, notNullValue());
+	}
+
+	@Test
+	public void instantiation_minimumConcurrency() throws Exception {
+		LocalityReadScheduler target = new LocalityReadScheduler(0);
+		assertThat(target.getPerDeviceConcurrency(), is(equalTo(1)));
+	}
+
+	@Test
+	public void schedule_A$List() throws Exception {
+		List<File> files = new ArrayList<>();
+		for (int d = 0; d < 3; d++) {
+			Path dir = Files.createDirectories(folder.getRoot().toPath().resolve("dir" + d));
+			for (int i = 0; i < 10; i++) {
+				files.add(Files.createFile(dir.resolve("IMG_" + i + ".jpg")).toFile());
+			}
+		}
+		LocalityReadScheduler target = new LocalityReadScheduler(2);
+		List<LocalityReadScheduler.ScheduledRead> actual = target.schedule(files);
+
+		// every file is scheduled exactly once with its original index
+		assertThat(actual.size(), is(equalTo(files.size())));
+		Set<Integer> indexes = new HashSet<>();
+		for (LocalityReadScheduler.ScheduledRead read : actual) {
+			assertThat(read.getFile(), is(equalTo(files.get(read.getIndex()))));
+			indexes.add(read.getIndex());
+		}
+		assertThat(indexes.size(), is(equalTo(files.size())));
+	}
+
+	@Test
+	public void schedule_A$List$List() throws Exception {
+		Path dir = folder.getRoot().toPath();
+		Path first = Files.createFile(dir.resolve("IMG_1.jpg"));
+		Path second = Files.createFile(dir.resolve("IMG_2.jpg"));
+		// a hard link of the first file
+		Path link = Files.createLink(dir.resolve("IMG_3.jpg"), first);
+		List<File> files = new ArrayList<>();
+		List<Object> fileKeys = new ArrayList<>();
+		for (Path path : new Path[] { first, second, link }) {
+			files.add(path.toFile());
+			fileKeys.add(Files.readAttributes(path, BasicFileAttributes.class).fileKey());
+		}
+		LocalityReadScheduler target = new LocalityReadScheduler(2);
+		List<LocalityReadScheduler.ScheduledRead> actual = target.schedule(files, fileKeys);
+
+		// the reads of the same file are scheduled together (the keys are null on some platforms)
+		assertThat(actual.size(), is(equalTo(3)));
+		assumeTrue(fileKeys.get(0) != null);
+		int firstPosition = -1;
+		int linkPosition = -1;
+		for (int i = 0; i < actual.size(); i++) {
+			if (actual.get(i).getIndex() == 0) {
+				firstPosition = i;
+			} else if (actual.get(i).getIndex() == 2) {
+				linkPosition = i;
+			}
+		}
+		assertThat(linkPosition, is(equalTo(firstPosition + 1)));
+	}
+
+	@Test
+	public void schedule_A$List$List_inodeOrder() throws Exception {
+		Path dir = folder.getRoot().toPath();
+		assumeTrue(dir.getFileSystem().supportedFileAttributeViews().contains("unix"));
+		final Map<File, Long> inodes = new HashMap<>();
+		List<File> files = new ArrayList<>();
+		List<Object> fileKeys = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			Path path = Files.createFile(dir.resolve("IMG_" + i + ".jpg"));
+			files.add(path.toFile());
+			fileKeys.add(Files.readAttributes(path, BasicFileAttributes.class).fileKey());
+			inodes.put(path.toFile(), ((Number) Files.getAttribute(path, "unix:ino"))
+					.longValue());
+		}
+		// the walk returns the files against the order of their inodes
+		List<File> walk = new ArrayList<>(files);
+		Collections.sort(walk, new Comparator<File>() {
+
+			@Override
+			public int compare(File o1, File o2) {
+				return Long.compare(inodes.get(o2), inodes.get(o1));
+			}
+		});
+		List<Object> walkKeys = new ArrayList<>();
+		for (File f : walk) {
+			walkKeys.add(fileKeys.get(files.indexOf(f)));
+		}
+		LocalityReadScheduler target = new LocalityReadScheduler(2);
+		List<LocalityReadScheduler.ScheduledRead> actual = target.schedule(walk, walkKeys);
+
+		// the reads are reordered by inode
+		assertThat(actual.size(), is(equalTo(walk.size())));
+		for (int i = 0; i < actual.size(); i++) {
+			assertThat(actual.get(i).getIndex(), is(equalTo(walk.size() - 1 - i)));
+		}
+	}
+
+	@Test
+	public void schedule_A$List_T$Exception() throws Exception {
+		List<File> files = new ArrayList<>();
+		// the file store of a missing directory can't be looked up
+		files.add(new File(new File(folder.getRoot(), "missing"), "missing.jpg"));
+		LocalityReadScheduler target = new LocalityReadScheduler(2);
+		try {
+			target.schedule(files);
+			fail("Expected exception was not thrown!");
+		} catch (Exception e) {
+		}
+	}
+}
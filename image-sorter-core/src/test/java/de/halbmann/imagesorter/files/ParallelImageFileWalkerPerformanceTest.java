@@ -0,0 +1,68 @@
+package de.halbmann.imagesorter.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Benchmark of the {@link ParallelImageFileWalker} against the {@link ImageFileVisitor} on a
+ * generated tree with 100k files (1000 folders per day, 100 images and 20 sidecar files each).
+ * 
+ * @author fabian
+ * 
+ */
+@Ignore
+public class ParallelImageFileWalkerPerformanceTest {
+
+	private static final int DIRECTORIES = 1000;
+	private static final int IMAGES_PER_DIRECTORY = 100;
+	private static final int RUNS = 3;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void compareWithFileVisitor() throws IOException {
+		Path root = folder.getRoot().toPath();
+		createTree(root);
+
+		for (int run = 0; run < RUNS; run++) {
+			long startTime = System.currentTimeMillis();
+			ImageFileVisitor visitor = new ImageFileVisitor(true);
+			Files.walkFileTree(root, visitor);
+			long endTime = System.currentTimeMillis();
+			System.out.println(String.format("ImageFileVisitor: %d files in %d ms", visitor
+					.getFiles().size(), endTime - startTime));
+
+			startTime = System.currentTimeMillis();
+			List<File> files = new ParallelImageFileWalker(true).walk(root);
+			endTime = System.currentTimeMillis();
+			System.out.println(String.format("ParallelImageFileWalker: %d files in %d ms",
+					files.size(), endTime - startTime));
+		}
+	}
+
+	private void createTree(Path root) throws IOException {
+		long startTime = System.currentTimeMillis();
+		for (int d = 0; d < DIRECTORIES; d++) {
+			Path dir = Files.createDirectories(root.resolve(String.format("%04d", d / 100))
+					.resolve(String.format("day-%04d", d)));
+			for (int i = 0; i < IMAGES_PER_DIRECTORY; i++) {
+				Files.createFile(dir.resolve(String.format("DSC_%04d.JPG", i)));
+				if (i % 5 == 0) {
+					Files.createFile(dir.resolve(String.format("DSC_%04d.xmp", i)));
+				}
+			}
+		}
+		long endTime = System.currentTimeMillis();
+		System.out.println(String.format("created %d files in %d ms", DIRECTORIES
+				* IMAGES_PER_DIRECTORY, endTime - startTime));
+	}
+}
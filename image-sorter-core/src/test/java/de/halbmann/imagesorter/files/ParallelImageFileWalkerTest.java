@@ -0,0 +1,79 @@
+package de.halbmann.imagesorter.files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelImageFileWalkerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void type() throws Exception {
+		assertThat(ParallelImageFileWalker.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		ParallelImageFileWalker target = new ParallelImageFileWalker();
+		assertThat(target, notNullValue());
+	}
+
+	@Test
+	public void walk_A$Path() throws Exception {
+		ParallelImageFileWalker target = new ParallelImageFileWalker();
+		Path pathFile = FileSystems.getDefault().getPath("./src/test/resources/images");
+		List<File> actual = target.walk(pathFile);
+		assertThat(actual.size(), is(equalTo(1)));
+	}
+
+	@Test
+	public void walk_A$Path_recursive() throws Exception {
+		ParallelImageFileWalker target = new ParallelImageFileWalker(true);
+		Path pathFile = FileSystems.getDefault().getPath("./src/test/resources/images");
+		List<File> actual = target.walk(pathFile);
+		assertThat(actual.size(), is(equalTo(2)));
+	}
+
+	@Test
+	public void walk_A$Path_T$Exception() throws Exception {
+		ParallelImageFileWalker target = new ParallelImageFileWalker(true);
+		try {
+			target.walk(folder.getRoot().toPath().resolve("missing"));
+			fail("Expected exception was not thrown!");
+		} catch (Exception e) {
+		}
+	}
+
+	@Test
+	public void walk_sameOrderAsFileVisitor() throws Exception {
+		Path root = folder.getRoot().toPath();
+		for (int d = 0; d < 5; d++) {
+			Path dir = Files.createDirectories(root.resolve("2014-08-0" + d).resolve("sub"));
+			for (int f = 0; f < 10; f++) {
+				Files.createFile(dir.getParent().resolve("IMG_" + f + ".JPG"));
+				Files.createFile(dir.resolve("DSC_" + f + ".jpeg"));
+				Files.createFile(dir.resolve("DSC_" + f + ".xmp"));
+			}
+		}
+
+		ImageFileVisitor visitor = new ImageFileVisitor(true);
+		Files.walkFileTree(root, visitor);
+		List<File> actual = new ParallelImageFileWalker(true).walk(root);
+		assertThat(actual.size(), is(100));
+		assertThat(actual, is(equalTo(visitor.getFiles())));
+	}
+}
@@ -0,0 +1,124 @@
+package de.halbmann.imagesorter.files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+public class RenamePlannerTest {
+
+	private static final File DIR = new File("images");
+
+	@Test
+	public void type() throws Exception {
+		assertThat(RenamePlanner.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		RenamePlanner target = new RenamePlanner();
+		assertThat(target, notNullValue());
+	}
+
+	@Test
+	public void plan_A$List_unchanged() throws Exception {
+		List<ImageFile> images = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			images.add(image("img_" + i, "img_" + i));
+		}
+		images.add(null);
+		RenamePlanner target = new RenamePlanner();
+		assertThat(target.plan(images).size(), is(equalTo(0)));
+		assertThat(target.getSkipped(), is(equalTo(100)));
+	}
+
+	@Test
+	public void plan_A$List_insertedImages() throws Exception {
+		// a sorted directory img_0..img_99 with two new images sorted in at 10 and 50
+		List<ImageFile> images = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			images.add(image("img_" + i, "img_" + (i < 10 ? i : i < 49 ? i + 1 : i + 2)));
+		}
+		images.add(image("new_0", "img_10"));
+		images.add(image("new_1", "img_50"));
+		RenamePlanner target = new RenamePlanner();
+		List<RenamePlanner.Rename> plan = target.plan(images);
+
+		assertThat(plan.size(), is(equalTo(92)));
+		assertThat(target.getSkipped(), is(equalTo(10)));
+		assertThat(target.getTemporaryNames(), is(equalTo(0)));
+		assertPlan(images, plan);
+	}
+
+	@Test
+	public void plan_A$List_cycles() throws Exception {
+		List<ImageFile> images = new ArrayList<>();
+		// a swap and a rotation of three
+		images.add(image("a", "b"));
+		images.add(image("b", "a"));
+		images.add(image("c", "d"));
+		images.add(image("d", "e"));
+		images.add(image("e", "c"));
+		// a temporary name, that is already used
+		images.add(image(".a" + RenamePlanner.TEMPORARY_SUFFIX + ".jpg", "f"));
+		RenamePlanner target = new RenamePlanner();
+		List<RenamePlanner.Rename> plan = target.plan(images);
+
+		assertThat(target.getTemporaryNames(), is(equalTo(2)));
+		assertThat(plan.size(), is(equalTo(8)));
+		assertPlan(images, plan);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void plan_A$List_sameTarget() throws Exception {
+		List<ImageFile> images = new ArrayList<>();
+		images.add(image("a", "c"));
+		images.add(image("b", "c"));
+		new RenamePlanner().plan(images);
+	}
+
+	/**
+	 * Simulate the plan: no rename may overwrite an existing name and each image ends at its
+	 * target.
+	 */
+	private static void assertPlan(List<ImageFile> images, List<RenamePlanner.Rename> plan) {
+		Map<Path, ImageFile> files = new HashMap<>();
+		for (ImageFile image : images) {
+			if (image != null) {
+				files.put(image.getFile().toPath(), image);
+			}
+		}
+		for (RenamePlanner.Rename rename : plan) {
+			assertThat(files.containsKey(rename.getTarget()), is(false));
+			ImageFile image = files.remove(rename.getSource());
+			assertThat(image, notNullValue());
+			files.put(rename.getTarget(), image);
+		}
+		for (ImageFile image : images) {
+			if (image != null) {
+				Path expected = image.getFile().toPath().resolveSibling(
+						image.getCalculatedFilename() + ".jpg");
+				assertThat(files.get(expected), is(image));
+			}
+		}
+	}
+
+	private static ImageFile image(String name, String calculatedFilename) {
+		ImageFile image = new ImageFile();
+		image.setFile(new File(DIR, name.endsWith(".jpg") ? name : name + ".jpg"));
+		image.setFileExtension("jpg");
+		image.setCalculatedFilename(calculatedFilename);
+		return image;
+	}
+}
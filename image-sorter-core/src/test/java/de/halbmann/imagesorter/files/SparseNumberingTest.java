@@ -0,0 +1,110 @@
+package de.halbmann.imagesorter.files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SparseNumberingTest {
+
+	private static final int NO = SparseNumbering.NO_NUMBER;
+
+	@Test
+	public void type() throws Exception {
+		assertThat(SparseNumbering.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		SparseNumbering target = new SparseNumbering(SparseNumbering.DEFAULT_GAP);
+		assertThat(target, notNullValue());
+	}
+
+	@Test
+	public void number_A$intArray$int_new() throws Exception {
+		int[] current = new int[5];
+		Arrays.fill(current, NO);
+		int[] actual = new SparseNumbering(10).number(current, 1);
+		assertThat(actual, is(equalTo(new int[] { 1, 11, 21, 31, 41 })));
+	}
+
+	@Test
+	public void number_A$intArray$int_inserted() throws Exception {
+		// new images at the start, between two images and at the end
+		int[] current = { NO, 1, 11, NO, NO, 21, 31, NO };
+		SparseNumbering target = new SparseNumbering(10);
+		int[] actual = target.number(current, 0);
+		assertThat(actual, is(equalTo(new int[] { 0, 1, 11, 14, 17, 21, 31, 41 })));
+		assertThat(target.getKept(), is(equalTo(4)));
+		assertThat(target.getRebalanced(), is(equalTo(0)));
+	}
+
+	@Test
+	public void number_A$intArray$int_outOfOrder() throws Exception {
+		// the image with 50 was moved (i.e. its time was corrected)
+		int[] current = { 10, 50, 20, 30, 40 };
+		SparseNumbering target = new SparseNumbering(10);
+		int[] actual = target.number(current, 1);
+		assertThat(actual, is(equalTo(new int[] { 10, 15, 20, 30, 40 })));
+		assertThat(target.getKept(), is(equalTo(4)));
+	}
+
+	@Test
+	public void number_A$intArray$int_rebalance() throws Exception {
+		int[] current = new int[100];
+		for (int i = 0; i < current.length; i++) {
+			current[i] = 1 + i * 10;
+		}
+		// 20 images inserted between 500 and 510 (no room for them)
+		int[] inserted = new int[120];
+		Arrays.fill(inserted, NO);
+		System.arraycopy(current, 0, inserted, 0, 50);
+		System.arraycopy(current, 50, inserted, 70, 50);
+		SparseNumbering target = new SparseNumbering(10);
+		int[] actual = target.number(inserted, 1);
+
+		assertIncreasing(actual, 1);
+		int unchanged = 0;
+		for (int i = 0; i < actual.length; i++) {
+			if (actual[i] == inserted[i]) {
+				unchanged++;
+			}
+		}
+		// only a local window was renumbered
+		assertThat(target.getRebalanced() > 0, is(true));
+		assertThat(unchanged, is(equalTo(100 - target.getRebalanced())));
+		assertThat(target.getRebalanced() < 30, is(true));
+	}
+
+	@Test
+	public void number_A$intArray$int_random() throws Exception {
+		Random random = new Random(1);
+		SparseNumbering target = new SparseNumbering(4);
+		int[] numbers = new int[0];
+		// repeated imports: the numbers of the last run are the current numbers
+		for (int run = 0; run < 50; run++) {
+			int[] current = new int[numbers.length + random.nextInt(20)];
+			Arrays.fill(current, NO);
+			int j = 0;
+			for (int i = 0; i < current.length; i++) {
+				int remaining = current.length - i;
+				if (j < numbers.length && random.nextInt(remaining) < numbers.length - j) {
+					current[i] = numbers[j++];
+				}
+			}
+			numbers = target.number(current, 1);
+			assertIncreasing(numbers, 1);
+		}
+	}
+
+	private static void assertIncreasing(int[] numbers, int offset) {
+		for (int i = 0; i < numbers.length; i++) {
+			assertThat(numbers[i] >= (i == 0 ? offset : numbers[i - 1] + 1), is(true));
+		}
+	}
+}
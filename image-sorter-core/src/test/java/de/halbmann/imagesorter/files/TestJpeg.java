@@ -0,0 +1,84 @@
+package de.halbmann.imagesorter.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Helper for writing minimal JPEG files with an exif header (orientation, camera model and the
+ * original absorption time) for the tests.
+ * 
+ * @author fabian
+ * 
+ */
+public class TestJpeg {
+
+	/**
+	 * Write a minimal JPEG file with an exif header.
+	 * 
+	 * @param file
+	 *            the file to write
+	 * @param order
+	 *            the byte order of the TIFF block
+	 * @param orientation
+	 *            the orientation
+	 * @param model
+	 *            the camera model (or null)
+	 * @param dateTimeOriginal
+	 *            the absorption time as "yyyy:MM:dd HH:mm:ss"
+	 * @throws IOException
+	 */
+	public static void write(File file, ByteOrder order, int orientation, String model,
+			String dateTimeOriginal) throws IOException {
+		byte[] modelBytes = model == null ? new byte[0] : (model + "\0")
+				.getBytes(StandardCharsets.US_ASCII);
+		byte[] dateBytes = (dateTimeOriginal + "\0").getBytes(StandardCharsets.US_ASCII);
+		int ifd0Entries = model == null ? 2 : 3;
+		int ifd0Size = 2 + ifd0Entries * 12 + 4;
+		int subIfdOffset = 8 + ifd0Size;
+		int subIfdSize = 2 + 12 + 4;
+		int dataOffset = subIfdOffset + subIfdSize;
+
+		ByteBuffer tiff = ByteBuffer.allocate(dataOffset + modelBytes.length + dateBytes.length);
+		tiff.order(order);
+		tiff.put((byte) (order == ByteOrder.LITTLE_ENDIAN ? 'I' : 'M'));
+		tiff.put((byte) (order == ByteOrder.LITTLE_ENDIAN ? 'I' : 'M'));
+		tiff.putShort((short) 0x2A);
+		tiff.putInt(8);
+		// IFD0
+		tiff.putShort((short) ifd0Entries);
+		if (model != null) {
+			tiff.putShort((short) 0x0110).putShort((short) 2).putInt(modelBytes.length)
+					.putInt(dataOffset + dateBytes.length);
+		}
+		tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation)
+				.putShort((short) 0);
+		tiff.putShort((short) 0x8769).putShort((short) 4).putInt(1).putInt(subIfdOffset);
+		tiff.putInt(0);
+		// exif sub IFD
+		tiff.putShort((short) 1);
+		tiff.putShort((short) 0x9003).putShort((short) 2).putInt(dateBytes.length)
+				.putInt(dataOffset);
+		tiff.putInt(0);
+		tiff.put(dateBytes);
+		tiff.put(modelBytes);
+
+		ByteBuffer jpeg = ByteBuffer.allocate(tiff.capacity() + 64);
+		jpeg.put((byte) 0xFF).put((byte) 0xD8);
+		// APP0 (JFIF)
+		jpeg.put((byte) 0xFF).put((byte) 0xE0).putShort((short) 7);
+		jpeg.put("JFIF\0".getBytes(StandardCharsets.US_ASCII));
+		// APP1 (exif)
+		jpeg.put((byte) 0xFF).put((byte) 0xE1).putShort((short) (2 + 6 + tiff.capacity()));
+		jpeg.put("Exif\0\0".getBytes(StandardCharsets.US_ASCII));
+		jpeg.put(tiff.array());
+		// SOS and EOI
+		jpeg.put((byte) 0xFF).put((byte) 0xDA).putShort((short) 2);
+		jpeg.put((byte) 0xFF).put((byte) 0xD9);
+
+		Files.write(file.toPath(), java.util.Arrays.copyOf(jpeg.array(), jpeg.position()));
+	}
+}
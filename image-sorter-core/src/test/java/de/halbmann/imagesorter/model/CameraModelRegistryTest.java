@@ -0,0 +1,125 @@
+package de.halbmann.imagesorter.model;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import de.halbmann.imagesorter.modifier.AbsorptionTimeModifier;
+
+public class CameraModelRegistryTest {
+
+	@Test
+	public void type() throws Exception {
+		assertThat(CameraModelRegistry.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		CameraModelRegistry target = new CameraModelRegistry();
+		assertThat(target, notNullValue());
+		assertThat(target.size(), is(equalTo(0)));
+	}
+
+	@Test
+	public void intern_A$String() throws Exception {
+		CameraModelRegistry target = new CameraModelRegistry();
+		assertThat(target.intern("A"), is(equalTo(0)));
+		assertThat(target.intern("B"), is(equalTo(1)));
+		assertThat(target.intern(new String("A")), is(equalTo(0)));
+		assertThat(target.intern(null), is(equalTo(CameraModelRegistry.NO_MODEL)));
+		assertThat(target.getId("C"), is(equalTo(CameraModelRegistry.NO_MODEL)));
+		assertThat(target.getModel(1), is(equalTo("B")));
+		assertThat(target.getModel(CameraModelRegistry.NO_MODEL), is(nullValue()));
+		assertThat(target.size(), is(equalTo(2)));
+	}
+
+	@Test
+	public void intern_A$String_concurrent() throws Exception {
+		final CameraModelRegistry target = new CameraModelRegistry();
+		final CameraModelRegistry.Statistics statistics = target.newStatistics();
+		ExecutorService es = Executors.newFixedThreadPool(8);
+		List<Future<Void>> futures = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			final int thread = t;
+			futures.add(es.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					for (int i = 0; i < 10000; i++) {
+						int id = target.intern("Model" + (i % 50));
+						statistics.record(id, thread * 10000L + i);
+					}
+					return null;
+				}
+			}));
+		}
+		for (Future<Void> future : futures) {
+			future.get();
+		}
+		es.shutdown();
+
+		assertThat(target.size(), is(equalTo(50)));
+		assertThat(new HashSet<>(target.getModels()).size(), is(equalTo(50)));
+		long total = 0;
+		for (int id = 0; id < target.size(); id++) {
+			total += statistics.getImageCount(id);
+		}
+		assertThat(total, is(equalTo(80000L)));
+		int id = target.getId("Model0");
+		assertThat(statistics.getImageCount(id), is(equalTo(1600L)));
+		assertThat(statistics.getMinTime(id), is(equalTo(0L)));
+		assertThat(statistics.getMaxTime(id), is(equalTo(79950L)));
+	}
+
+	@Test
+	public void statistics() throws Exception {
+		CameraModelRegistry target = new CameraModelRegistry();
+		CameraModelRegistry.Statistics statistics = target.newStatistics();
+		statistics.record(target.intern("A"), CameraModelRegistry.NO_TIME);
+		statistics.record(CameraModelRegistry.NO_MODEL, 5);
+
+		assertThat(statistics.getImageCount(0), is(equalTo(1L)));
+		assertThat(statistics.getMinTime(0), is(equalTo(CameraModelRegistry.NO_TIME)));
+		assertThat(statistics.getImageCount(CameraModelRegistry.NO_MODEL), is(equalTo(1L)));
+		assertThat(statistics.getCameraModels().size(), is(equalTo(2)));
+
+		statistics.reset();
+		assertThat(statistics.getImageCount(0), is(equalTo(0L)));
+		assertThat(statistics.getCameraModels().isEmpty(), is(true));
+	}
+
+	@Test
+	public void imageFile_setCameraModel() throws Exception {
+		ImageFile image0 = new ImageFile();
+		image0.setCameraModel(new String("Model X"));
+		ImageFile image1 = new ImageFile();
+		image1.setCameraModel(new String("Model X"));
+
+		assertThat(image0.getCameraModelId(), is(equalTo(image1.getCameraModelId())));
+		assertThat(image0.getCameraModel(), is(sameInstance(image1.getCameraModel())));
+
+		image0.setOriginalAbsorptionTime(new Date(0));
+		image1.setOriginalAbsorptionTime(new Date(0));
+		image1.setCameraModel("Model Y");
+		List<ImageFile> images = new ArrayList<>();
+		images.add(image0);
+		images.add(image1);
+		new AbsorptionTimeModifier("Model X", 0, 0, 0, 0, 0, 1).modify(images);
+		assertThat(image0.getModifiedAbsorptionTime(), is(equalTo(new Date(1000))));
+		assertThat(image1.getModifiedAbsorptionTime(), is(nullValue()));
+	}
+}
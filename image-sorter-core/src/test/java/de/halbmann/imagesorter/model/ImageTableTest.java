@@ -0,0 +1,166 @@
+package de.halbmann.imagesorter.model;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import de.halbmann.imagesorter.ImageSorterSettings;
+import de.halbmann.imagesorter.files.DefaultFilenameCalculator;
+import de.halbmann.imagesorter.modifier.AbsorptionTimeModifier;
+import de.halbmann.imagesorter.modifier.ImageModifierExecutor;
+import de.halbmann.imagesorter.sorting.ImageAbsorptionTimeComparator;
+
+public class ImageTableTest {
+
+	@Test
+	public void type() throws Exception {
+		assertThat(ImageTable.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		ImageTable target = new ImageTable();
+		assertThat(target, notNullValue());
+		assertThat(target.size(), is(equalTo(0)));
+	}
+
+	@Test
+	public void fromImageFiles_A$List() throws Exception {
+		List<ImageFile> images = images(3000);
+		images.get(1).setOriginalAbsorptionTime(null);
+		images.get(2).setCameraModel(null);
+		images.get(3).setModifiedAbsorptionTime(new Date(42));
+		ImageTable target = ImageTable.fromImageFiles(images);
+
+		assertThat(target.size(), is(equalTo(3000)));
+		assertThat(target.getStatistics().getImageCount(target.getCameraModelId("Camera1")),
+				is(equalTo(1000L)));
+		assertThat(target.getOriginalTime(1), is(equalTo(ImageTable.NO_TIME)));
+		assertThat(target.getCameraModelId(2), is(equalTo(ImageTable.NO_CAMERA_MODEL)));
+		assertThat(target.getAbsorptionTime(3), is(equalTo(42L)));
+		assertThat(target.getFileExtension(5), is(equalTo("jpg")));
+
+		List<ImageFile> actual = target.toImageFiles();
+		for (int i = 0; i < images.size(); i++) {
+			assertEqual(actual.get(i), images.get(i));
+			assertEqual(target.asList().get(i), images.get(i));
+		}
+	}
+
+	@Test
+	public void sort_A$Comparator() throws Exception {
+		List<ImageFile> images = images(500);
+		ImageTable target = ImageTable.fromImageFiles(images);
+
+		target.sort(new ImageAbsorptionTimeComparator());
+		List<ImageFile> expected = new ArrayList<>(images);
+		Collections.sort(expected, new ImageAbsorptionTimeComparator());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEqual(target.asList().get(i), expected.get(i));
+		}
+	}
+
+	@Test
+	public void asList_modifierAndCalculator() throws Exception {
+		ImageTable target = ImageTable.fromImageFiles(images(20));
+		List<ImageFile> rows = target.asList();
+
+		new AbsorptionTimeModifier("Camera1", 0, 0, 0, 1, 0, 0).modify(rows);
+		for (int i = 0; i < target.size(); i++) {
+			long expected = target.getCameraModelId(i) == target.getCameraModelId("Camera1") ? target
+					.getOriginalTime(i) + 3600000 : ImageTable.NO_TIME;
+			assertThat(target.getModifiedTime(i), is(equalTo(expected)));
+		}
+
+		new DefaultFilenameCalculator(new ImageSorterSettings(null, "img_", ".jpg", 1))
+				.calculate(rows);
+		assertThat(target.getCalculatedFilename(0), is(equalTo("img_01.jpg")));
+		assertThat(target.getCalculatedFilename(19), is(equalTo("img_20.jpg")));
+	}
+
+	@Test
+	public void asList_parallelCalculator() throws Exception {
+		// more rows than the parallel threshold: the filenames are set by several workers
+		ImageTable target = ImageTable.fromImageFiles(images(12000));
+		DefaultFilenameCalculator calculator = new DefaultFilenameCalculator(
+				new ImageSorterSettings(null, "img_", ".jpg", 1));
+		ImageModifierExecutor executor = new ImageModifierExecutor();
+		executor.setParallelism(8);
+		calculator.setExecutor(executor);
+		assertThat(target.size() > executor.getParallelThreshold(), is(true));
+
+		calculator.calculate(target.asList());
+
+		Set<String> filenames = new HashSet<>();
+		for (int i = 0; i < target.size(); i++) {
+			String filename = target.getCalculatedFilename(i);
+			assertThat(filename.startsWith("img_"), is(true));
+			filenames.add(filename);
+		}
+		assertThat(filenames.size(), is(equalTo(target.size())));
+	}
+
+	@Test
+	public void row_A$int_setters() throws Exception {
+		ImageTable target = ImageTable.fromImageFiles(images(2));
+		ImageFile row = target.row(1);
+		row.setOrientation(6);
+		row.setCameraModel("Other");
+		row.setFile(new File("/other/dir", "x.jpeg"));
+
+		assertThat(target.getOrientation(1), is(equalTo(6)));
+		assertThat(target.getCameraModel(1), is(equalTo("Other")));
+		assertThat(target.getFile(1), is(equalTo(new File("/other/dir", "x.jpeg"))));
+		assertThat(target.getFilename(0), is(equalTo("IMG_0.jpg")));
+		assertThat(row.getFileExtension(), is(equalTo("jpeg")));
+		assertThat(row.getModifiedAbsorptionTime(), is(nullValue()));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void asList_sortIsNotSupported() throws Exception {
+		ImageTable target = ImageTable.fromImageFiles(images(2));
+		Collections.sort(target.asList(), new ImageAbsorptionTimeComparator());
+	}
+
+	private static void assertEqual(ImageFile actual, ImageFile expected) {
+		assertThat(actual.getFile(), is(equalTo(expected.getFile())));
+		assertThat(actual.getOriginalFilename(), is(equalTo(expected.getOriginalFilename())));
+		assertThat(actual.getOrientation(), is(equalTo(expected.getOrientation())));
+		assertThat(actual.getCameraModel(), is(equalTo(expected.getCameraModel())));
+		assertThat(actual.getOriginalAbsorptionTime(),
+				is(equalTo(expected.getOriginalAbsorptionTime())));
+		assertThat(actual.getModifiedAbsorptionTime(),
+				is(equalTo(expected.getModifiedAbsorptionTime())));
+	}
+
+	private static List<ImageFile> images(int count) {
+		List<String> models = Arrays.asList("Camera0", "Camera1", "Camera2");
+		List<ImageFile> images = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			ImageFile image = new ImageFile();
+			File f = new File("/images/dir" + (i % 7), "IMG_" + i + ".jpg");
+			image.setFile(f);
+			image.setOriginalFilename(f.getName());
+			image.setFileExtension("jpg");
+			image.setOrientation(1 + i % 8);
+			image.setCameraModel(models.get(i % models.size()));
+			// not in order of the index, with duplicates
+			image.setOriginalAbsorptionTime(new Date(1400000000000L + (i * 7919L % 1000) * 1000));
+			images.add(image);
+		}
+		return images;
+	}
+}
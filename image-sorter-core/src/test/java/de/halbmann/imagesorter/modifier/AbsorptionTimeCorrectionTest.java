@@ -0,0 +1,148 @@
+package de.halbmann.imagesorter.modifier;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.halbmann.imagesorter.ImageSorterSettings.CameraSettings;
+import de.halbmann.imagesorter.model.ImageFile;
+import de.halbmann.imagesorter.model.ImageTable;
+
+public class AbsorptionTimeCorrectionTest {
+
+	private static final String[] MODELS = { "Cam A", "Cam B", "Cam C", "Cam D", null };
+
+	@Test
+	public void type() throws Exception {
+		assertThat(AbsorptionTimeCorrection.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		AbsorptionTimeCorrection target = new AbsorptionTimeCorrection();
+		assertThat(target, notNullValue());
+	}
+
+	@Test
+	public void modify_A$List_sameAsModifiers() throws Exception {
+		List<CameraSettings> settings = settings();
+		List<ImageFile> expected = images(2000);
+		for (CameraSettings cs : settings) {
+			new AbsorptionTimeModifier(cs).modify(expected);
+		}
+		List<ImageFile> actual = images(2000);
+		new AbsorptionTimeCorrection(settings).modify(actual);
+
+		assertModified(actual, expected);
+	}
+
+	@Test
+	public void modify_A$List_parallel() throws Exception {
+		List<CameraSettings> settings = settings();
+		List<ImageFile> expected = images(50000);
+		for (CameraSettings cs : settings) {
+			new AbsorptionTimeModifier(cs).modify(expected);
+		}
+		List<ImageFile> actual = new LinkedList<>(images(50000));
+		AbsorptionTimeCorrection target = new AbsorptionTimeCorrection(settings);
+		target.setParallelism(4);
+		target.setParallelThreshold(1000);
+		target.modify(actual);
+
+		assertModified(actual, expected);
+	}
+
+	@Test
+	public void modify_A$ImageTable() throws Exception {
+		List<CameraSettings> settings = settings();
+		List<ImageFile> expected = images(2000);
+		for (CameraSettings cs : settings) {
+			new AbsorptionTimeModifier(cs).modify(expected);
+		}
+		ImageTable actual = ImageTable.fromImageFiles(images(2000));
+		new AbsorptionTimeCorrection(settings).modify(actual);
+
+		assertModified(actual.asList(), expected);
+	}
+
+	@Test
+	public void modify_A$List_withoutTime() throws Exception {
+		ImageFile image = new ImageFile();
+		image.setCameraModel("Cam A");
+		List<ImageFile> images = new ArrayList<>();
+		images.add(image);
+		images.add(null);
+		AbsorptionTimeCorrection target = new AbsorptionTimeCorrection();
+		target.addCorrection("Cam A", 0, 0, 1, 0, 0, 0);
+		target.modify(images);
+
+		assertThat(image.getModifiedAbsorptionTime(), is(nullValue()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void addCorrection_withoutModel() throws Exception {
+		new AbsorptionTimeCorrection().addCorrection(null, 0, 0, 0, 1, 0, 0);
+	}
+
+	private static void assertModified(List<ImageFile> actual, List<ImageFile> expected) {
+		assertThat(actual.size(), is(equalTo(expected.size())));
+		for (int i = 0; i < expected.size(); i++) {
+			assertThat(actual.get(i).getModifiedAbsorptionTime(), is(equalTo(expected.get(i)
+					.getModifiedAbsorptionTime())));
+		}
+	}
+
+	private static List<CameraSettings> settings() {
+		List<CameraSettings> settings = new ArrayList<>();
+		settings.add(cameraSettings("Cam A", 0, 0, 0, 1, -30, 15));
+		settings.add(cameraSettings("Cam B", 0, 0, 3, -2, 0, 0));
+		settings.add(cameraSettings("Cam C", 1, -1, 2, 0, 5, 0));
+		// the last one wins
+		settings.add(cameraSettings("Cam A", 0, 0, -40, 0, 0, 59));
+		return settings;
+	}
+
+	private static CameraSettings cameraSettings(String model, int years, int months, int days,
+			int hours, int minutes, int seconds) {
+		CameraSettings cs = new CameraSettings();
+		cs.setCameraModel(model);
+		cs.setYears(years);
+		cs.setMonths(months);
+		cs.setDays(days);
+		cs.setHours(hours);
+		cs.setMinutes(minutes);
+		cs.setSeconds(seconds);
+		return cs;
+	}
+
+	/**
+	 * Create images taken around noon (away from the daylight saving changes) on random days.
+	 */
+	private static List<ImageFile> images(int count) {
+		Random random = new Random(count);
+		Calendar cal = Calendar.getInstance();
+		List<ImageFile> images = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			cal.clear();
+			cal.set(2000 + random.nextInt(20), random.nextInt(12), 1 + random.nextInt(31), 10
+					+ random.nextInt(4), random.nextInt(60), random.nextInt(60));
+			ImageFile image = new ImageFile();
+			image.setFile(new File("IMG_" + i + ".jpg"));
+			image.setCameraModel(MODELS[i % MODELS.length]);
+			image.setOriginalAbsorptionTime(cal.getTime());
+			images.add(image);
+		}
+		return images;
+	}
+}
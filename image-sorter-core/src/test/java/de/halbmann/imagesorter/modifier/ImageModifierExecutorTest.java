@@ -0,0 +1,124 @@
+package de.halbmann.imagesorter.modifier;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+public class ImageModifierExecutorTest {
+
+	@Test
+	public void type() throws Exception {
+		assertThat(ImageModifierExecutor.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		ImageModifierExecutor target = new ImageModifierExecutor();
+		assertThat(target, notNullValue());
+	}
+
+	@Test
+	public void execute_A$List_parallel() throws Exception {
+		List<ImageFile> images = images(100000);
+		ImageModifierExecutor target = new ImageModifierExecutor();
+		target.setParallelism(4);
+		target.setParallelThreshold(1000);
+		AppendModifier a = new AppendModifier("a");
+		target.execute(images, a, new AppendModifier("b"));
+
+		for (ImageFile image : images) {
+			assertThat(image.getCalculatedFilename(), is(equalTo("ab")));
+		}
+		assertThat(a.partitions.get() > 1, is(true));
+	}
+
+	@Test
+	public void execute_A$List_bridge() throws Exception {
+		List<ImageFile> images = new LinkedList<>(images(20000));
+		ImageModifierExecutor target = new ImageModifierExecutor();
+		target.setParallelism(4);
+		target.setParallelThreshold(1000);
+		ImageModifier bridged = new ImageModifier() {
+
+			@Override
+			public void modify(List<ImageFile> images) {
+				for (ImageFile image : images) {
+					image.setCalculatedFilename(image.getCalculatedFilename() + "-");
+				}
+			}
+		};
+		target.execute(images, new AppendModifier("a"), bridged, new AppendModifier("b"));
+
+		for (ImageFile image : images) {
+			assertThat(image.getCalculatedFilename(), is(equalTo("a-b")));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void execute_A$List_exception() throws Exception {
+		ImageModifierExecutor target = new ImageModifierExecutor();
+		target.setParallelism(4);
+		target.setParallelThreshold(1000);
+		target.execute(images(5000), new PartitionedImageModifier() {
+
+			@Override
+			public void modify(List<ImageFile> images) {
+				modify(images, 0, images.size());
+			}
+
+			@Override
+			public void modify(List<ImageFile> images, int from, int to) {
+				throw new IllegalStateException("failed");
+			}
+		});
+	}
+
+	private static List<ImageFile> images(int count) {
+		List<ImageFile> images = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			ImageFile image = new ImageFile();
+			image.setFile(new File("IMG_" + i + ".jpg"));
+			image.setOriginalFilename("");
+			images.add(image);
+		}
+		return images;
+	}
+
+	/**
+	 * Modifier appending a string to the calculated filename.
+	 */
+	private static class AppendModifier implements PartitionedImageModifier {
+
+		private final String s;
+		private final AtomicInteger partitions = new AtomicInteger();
+
+		AppendModifier(String s) {
+			this.s = s;
+		}
+
+		@Override
+		public void modify(List<ImageFile> images) {
+			modify(images, 0, images.size());
+		}
+
+		@Override
+		public void modify(List<ImageFile> images, int from, int to) {
+			partitions.incrementAndGet();
+			for (int i = from; i < to; i++) {
+				ImageFile image = images.get(i);
+				image.setCalculatedFilename(image.getCalculatedFilename() + s);
+			}
+		}
+	}
+}
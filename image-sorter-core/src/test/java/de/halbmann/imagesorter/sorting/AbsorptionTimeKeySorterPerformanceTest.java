@@ -0,0 +1,45 @@
+package de.halbmann.imagesorter.sorting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+/**
+ * Benchmark of the {@link AbsorptionTimeKeySorter} against sorting with the
+ * {@link GenericComparator} and the {@link ImageAbsorptionTimeComparator} (5M images).
+ * 
+ * @author fabian
+ * 
+ */
+@Ignore
+public class AbsorptionTimeKeySorterPerformanceTest {
+
+	private static final int IMAGES = 5000000;
+	private static final int RUNS = 3;
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void compareWithComparator() throws Exception {
+		List<ImageFile> images = AbsorptionTimeKeySorterTest.images(IMAGES);
+		for (int run = 0; run < RUNS; run++) {
+			List<ImageFile> list = new ArrayList<>(images);
+			long startTime = System.currentTimeMillis();
+			Collections.sort(list, new GenericComparator<>(new ImageAbsorptionTimeComparator()));
+			long endTime = System.currentTimeMillis();
+			System.out.println(String.format("GenericComparator: %d images in %d ms",
+					list.size(), endTime - startTime));
+
+			list = new ArrayList<>(images);
+			startTime = System.currentTimeMillis();
+			new AbsorptionTimeKeySorter().sort(list);
+			endTime = System.currentTimeMillis();
+			System.out.println(String.format("AbsorptionTimeKeySorter: %d images in %d ms",
+					list.size(), endTime - startTime));
+		}
+	}
+}
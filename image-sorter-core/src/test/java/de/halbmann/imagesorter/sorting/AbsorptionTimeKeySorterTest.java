@@ -0,0 +1,113 @@
+package de.halbmann.imagesorter.sorting;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.halbmann.imagesorter.model.ImageFile;
+import de.halbmann.imagesorter.model.ImageTable;
+
+public class AbsorptionTimeKeySorterTest {
+
+	@Test
+	public void type() throws Exception {
+		assertThat(AbsorptionTimeKeySorter.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		AbsorptionTimeKeySorter target = new AbsorptionTimeKeySorter();
+		assertThat(target, notNullValue());
+	}
+
+	@Test
+	public void sort_A$long$array() throws Exception {
+		Random random = new Random(1);
+		long[] keys = new long[10000];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = i % 3 == 0 ? random.nextLong() : random.nextInt(100) - 50;
+		}
+		long[] expected = keys.clone();
+		Arrays.sort(expected);
+		long[] actual = keys.clone();
+		int[] order = AbsorptionTimeKeySorter.sort(actual);
+
+		assertThat(actual, is(equalTo(expected)));
+		for (int i = 0; i < order.length; i++) {
+			assertThat(keys[order[i]], is(equalTo(actual[i])));
+			if (i > 0 && actual[i] == actual[i - 1]) {
+				// stable
+				assertThat(order[i] > order[i - 1], is(true));
+			}
+		}
+	}
+
+	@Test
+	public void sort_A$List_sameAsComparator() throws Exception {
+		List<ImageFile> expected = images(5000);
+		List<ImageFile> actual = new LinkedList<>(expected);
+		Collections.sort(expected, new ImageAbsorptionTimeComparator());
+		new AbsorptionTimeKeySorter().sort(actual);
+
+		for (int i = 0; i < expected.size(); i++) {
+			assertThat(actual.get(i), is(sameInstance(expected.get(i))));
+		}
+	}
+
+	@Test
+	public void sort_A$List_withoutTime() throws Exception {
+		List<ImageFile> images = images(3);
+		images.get(0).setOriginalAbsorptionTime(null);
+		images.get(0).setModifiedAbsorptionTime(null);
+		images.add(0, null);
+		new AbsorptionTimeKeySorter().sort(images);
+
+		assertThat(images.get(2).getOriginalAbsorptionTime(), is(nullValue()));
+		assertThat(images.get(3), is(nullValue()));
+	}
+
+	@Test
+	public void sort_A$ImageTable() throws Exception {
+		List<ImageFile> expected = images(5000);
+		ImageTable actual = ImageTable.fromImageFiles(expected);
+		Collections.sort(expected, new ImageAbsorptionTimeComparator());
+		new AbsorptionTimeKeySorter().sort(actual);
+
+		for (int i = 0; i < expected.size(); i++) {
+			assertThat(actual.getFile(i), is(equalTo(expected.get(i).getFile())));
+		}
+	}
+
+	/**
+	 * Create images with many equal absorption times (some of them modified).
+	 */
+	static List<ImageFile> images(int count) {
+		Random random = new Random(count);
+		List<ImageFile> images = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			ImageFile image = new ImageFile();
+			image.setFile(new File("IMG_" + i + ".jpg"));
+			long time = 1400000000000L + random.nextInt(count / 2) * 1000L;
+			image.setOriginalAbsorptionTime(new Date(time));
+			if (i % 7 == 0) {
+				image.setModifiedAbsorptionTime(new Date(time - 3600000));
+			}
+			images.add(image);
+		}
+		return images;
+	}
+}
@@ -0,0 +1,140 @@
+package de.halbmann.imagesorter.sorting;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+public class CompositeKeySorterTest {
+
+	private static final String[] MODELS = { "NIKON D90", "Canon EOS 5D", "Canon", null };
+
+	@Test
+	public void type() throws Exception {
+		assertThat(CompositeKeySorter.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		CompositeKeySorter target = new CompositeKeySorter(new ArrayList<Comparator<ImageFile>>());
+		assertThat(target, notNullValue());
+	}
+
+	@Test
+	public void compare_strings() throws Exception {
+		Random random = new Random(1);
+		SortKeyBuilder builder = new SortKeyBuilder();
+		String alphabet = "aAbä中😀_";
+		for (int i = 0; i < 10000; i++) {
+			String s0 = randomString(random, alphabet);
+			String s1 = randomString(random, alphabet);
+			builder.reset();
+			builder.writeString(s0);
+			builder.writeLong(random.nextLong());
+			long[] key0 = builder.toWords();
+			builder.reset();
+			builder.writeString(s1);
+			builder.writeLong(random.nextLong());
+			long[] key1 = builder.toWords();
+			if (!s0.equals(s1)) {
+				assertThat(Integer.signum(SortKeyBuilder.compare(key0, key1)), is(equalTo(Integer
+						.signum(s0.compareTo(s1)))));
+			}
+		}
+	}
+
+	@Test
+	public void compare_numbers() throws Exception {
+		long[] values = { Long.MIN_VALUE, -5, -1, 0, 1, 42, Long.MAX_VALUE };
+		SortKeyBuilder builder = new SortKeyBuilder();
+		for (int i = 0; i < values.length; i++) {
+			for (int j = 0; j < values.length; j++) {
+				builder.reset();
+				builder.writeLong(values[i]);
+				long[] key0 = builder.toWords();
+				builder.reset();
+				builder.writeLong(values[j]);
+				long[] key1 = builder.toWords();
+				assertThat(Integer.signum(SortKeyBuilder.compare(key0, key1)), is(equalTo(Integer
+						.signum(Long.compare(values[i], values[j])))));
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void sort_A$List_sameAsGenericComparator() throws Exception {
+		List<Comparator<ImageFile>> comparators = new ArrayList<>();
+		comparators.add(new ImageCameraModelComparator());
+		comparators.add(new ImageAbsorptionTimeComparator());
+		comparators.add(new ImageOriginalFilenameComparator());
+		assertSameOrder(comparators);
+	}
+
+	@Test
+	public void sort_A$List_fallback() throws Exception {
+		List<Comparator<ImageFile>> comparators = new ArrayList<>();
+		comparators.add(new ImageCameraModelComparator());
+		// can't be encoded
+		comparators.add(new Comparator<ImageFile>() {
+
+			@Override
+			public int compare(ImageFile image0, ImageFile image1) {
+				return Integer.compare(image1.getOrientation(), image0.getOrientation());
+			}
+		});
+		comparators.add(new ImageOriginalFilenameComparator());
+		CompositeKeySorter target = new CompositeKeySorter(comparators);
+		assertThat(target.getEncoders().size(), is(equalTo(1)));
+		assertSameOrder(comparators);
+	}
+
+	private static void assertSameOrder(List<Comparator<ImageFile>> comparators) {
+		List<ImageFile> expected = images(3000);
+		List<ImageFile> actual = new ArrayList<>(expected);
+		Collections.sort(expected, new GenericComparator<>(comparators));
+		new CompositeKeySorter(comparators).sort(actual);
+
+		for (int i = 0; i < expected.size(); i++) {
+			assertThat(actual.get(i), is(sameInstance(expected.get(i))));
+		}
+	}
+
+	private static String randomString(Random random, String alphabet) {
+		StringBuilder sb = new StringBuilder();
+		int length = random.nextInt(5);
+		for (int i = 0; i < length; i++) {
+			sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		return sb.toString();
+	}
+
+	private static List<ImageFile> images(int count) {
+		Random random = new Random(count);
+		List<ImageFile> images = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			ImageFile image = new ImageFile();
+			String name = "IMG_" + random.nextInt(count / 3) + ".jpg";
+			image.setFile(new File(name));
+			image.setOriginalFilename(name);
+			image.setCameraModel(MODELS[random.nextInt(MODELS.length)]);
+			image.setOrientation(random.nextInt(3));
+			image.setOriginalAbsorptionTime(new Date(1400000000000L + random.nextInt(20) * 1000L));
+			images.add(image);
+		}
+		return images;
+	}
+}
@@ -0,0 +1,152 @@
+package de.halbmann.imagesorter.sorting;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+public class ExternalImageSorterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void type() throws Exception {
+		assertThat(ExternalImageSorter.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		ExternalImageSorter target = new ExternalImageSorter(new ImageAbsorptionTimeComparator(),
+				1024, folder.getRoot().toPath());
+		assertThat(target, notNullValue());
+		target.close();
+	}
+
+	@Test
+	public void iterator_A$_inMemory() throws Exception {
+		List<ImageFile> images = images(100);
+		try (ExternalImageSorter target = new ExternalImageSorter(
+				new ImageAbsorptionTimeComparator(), Long.MAX_VALUE, folder.getRoot().toPath())) {
+			target.addAll(images);
+			assertThat(target.getRuns(), is(equalTo(0)));
+			assertThat(files(target.iterator()), is(equalTo(sorted(images,
+					new ImageAbsorptionTimeComparator()))));
+		}
+	}
+
+	@Test
+	public void iterator_A$_runs() throws Exception {
+		List<ImageFile> images = images(1000);
+		try (ExternalImageSorter target = new ExternalImageSorter(
+				new ImageAbsorptionTimeComparator(), 16 * 1024, folder.getRoot().toPath())) {
+			target.addAll(images);
+			assertThat(target.getRuns() > 5, is(true));
+			assertThat(target.size(), is(equalTo(1000)));
+			// stable like Collections.sort
+			assertThat(files(target.iterator()), is(equalTo(sorted(images,
+					new ImageAbsorptionTimeComparator()))));
+			// a second pass over the runs
+			assertThat(files(target.iterator()), is(equalTo(sorted(images,
+					new ImageAbsorptionTimeComparator()))));
+		}
+	}
+
+	@Test
+	public void iterator_A$_comparator() throws Exception {
+		List<ImageFile> images = images(500);
+		ImageCameraModelComparator comparator = new ImageCameraModelComparator();
+		try (ExternalImageSorter target = new ExternalImageSorter(comparator, 8 * 1024, folder
+				.getRoot().toPath())) {
+			target.addAll(images);
+			assertThat(files(target.iterator()), is(equalTo(sorted(images, comparator))));
+		}
+	}
+
+	@Test
+	public void iterator_A$_restoresImages() throws Exception {
+		ImageFile image = new ImageFile();
+		image.setFile(new File("dir", "IMG_1.JPG"));
+		image.setOriginalFilename("IMG_1");
+		image.setFileExtension(".JPG");
+		image.setCameraModel("Camera");
+		image.setOrientation(6);
+		image.setOriginalAbsorptionTime(new Date(1000));
+		try (ExternalImageSorter target = new ExternalImageSorter(
+				new ImageAbsorptionTimeComparator(), 1, folder.getRoot().toPath())) {
+			target.add(image);
+			assertThat(target.getRuns(), is(equalTo(1)));
+			ImageFile actual = target.iterator().next();
+			assertThat(actual.getFile(), is(equalTo(image.getFile())));
+			assertThat(actual.getOriginalFilename(), is(equalTo("IMG_1")));
+			assertThat(actual.getFileExtension(), is(equalTo(".JPG")));
+			assertThat(actual.getCameraModel(), is(equalTo("Camera")));
+			assertThat(actual.getOrientation(), is(equalTo(6)));
+			assertThat(actual.getOriginalAbsorptionTime(), is(equalTo(new Date(1000))));
+			assertThat(actual.getModifiedAbsorptionTime(), is(nullValue()));
+		}
+	}
+
+	@Test
+	public void close_A$_deletesRuns() throws Exception {
+		ExternalImageSorter target = new ExternalImageSorter(new ImageAbsorptionTimeComparator(),
+				4 * 1024, folder.getRoot().toPath());
+		target.addAll(images(200));
+		assertThat(folder.getRoot().list().length, is(equalTo(target.getRuns())));
+		target.iterator().next();
+		target.close();
+		assertThat(folder.getRoot().list().length, is(equalTo(0)));
+	}
+
+	private static List<ImageFile> images(int count) {
+		Random random = new Random(1);
+		List<ImageFile> images = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			ImageFile image = new ImageFile();
+			image.setFile(new File("dir", "IMG_" + i + ".jpg"));
+			image.setOriginalFilename("IMG_" + i);
+			image.setCameraModel(i % 5 == 0 ? null : "Camera " + random.nextInt(3));
+			if (i % 11 != 0) {
+				// few distinct times for ties
+				image.setOriginalAbsorptionTime(new Date(random.nextInt(50) * 1000L));
+			}
+			images.add(image);
+		}
+		return images;
+	}
+
+	private static List<File> sorted(List<ImageFile> images, ImageAbsorptionTimeComparator c) {
+		List<ImageFile> sorted = new ArrayList<>(images);
+		new AbsorptionTimeKeySorter().sort(sorted);
+		return files(sorted.iterator());
+	}
+
+	private static List<File> sorted(List<ImageFile> images, ImageCameraModelComparator c) {
+		List<ImageFile> sorted = new ArrayList<>(images);
+		Collections.sort(sorted, c);
+		return files(sorted.iterator());
+	}
+
+	private static List<File> files(Iterator<ImageFile> images) {
+		List<File> files = new ArrayList<>();
+		while (images.hasNext()) {
+			files.add(images.next().getFile());
+		}
+		return files;
+	}
+}
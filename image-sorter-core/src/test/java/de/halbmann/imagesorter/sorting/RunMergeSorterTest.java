@@ -0,0 +1,135 @@
+package de.halbmann.imagesorter.sorting;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+public class RunMergeSorterTest {
+
+	private static final String[] MODELS = { "NIKON D90", "Canon EOS 5D", null };
+
+	@Test
+	public void type() throws Exception {
+		assertThat(RunMergeSorter.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		RunMergeSorter target = new RunMergeSorter(times());
+		assertThat(target, notNullValue());
+	}
+
+	@Test
+	public void sort_A$List_presorted() throws Exception {
+		List<ImageFile> images = imports(new Random(1), 0);
+		List<ImageFile> expected = new ArrayList<>(images);
+		new AbsorptionTimeKeySorter().sort(expected);
+
+		RunMergeSorter target = new RunMergeSorter(times());
+		target.sort(images);
+		assertThat(images, is(equalTo(expected)));
+		// one run per directory and camera
+		assertThat(target.getRuns(), is(equalTo(12)));
+		assertThat(target.getRemainder(), is(equalTo(0)));
+	}
+
+	@Test
+	public void sort_A$List_outOfOrder() throws Exception {
+		Random random = new Random(2);
+		List<ImageFile> images = imports(random, 40);
+		List<ImageFile> expected = new ArrayList<>(images);
+		new AbsorptionTimeKeySorter().sort(expected);
+
+		RunMergeSorter target = new RunMergeSorter(times());
+		target.sort(images);
+		assertThat(images, is(equalTo(expected)));
+		assertThat(target.getRuns() > 12, is(true));
+		assertThat(target.getRemainder() > 0, is(true));
+	}
+
+	@Test
+	public void sort_A$List_random() throws Exception {
+		Random random = new Random(3);
+		List<ImageFile> images = imports(random, 0);
+		Collections.shuffle(images, random);
+		List<ImageFile> expected = new ArrayList<>(images);
+		new AbsorptionTimeKeySorter().sort(expected);
+
+		RunMergeSorter target = new RunMergeSorter(times());
+		target.sort(images);
+		assertThat(images, is(equalTo(expected)));
+		// sorted completely
+		assertThat(target.getRuns(), is(equalTo(0)));
+		assertThat(target.getRemainder(), is(equalTo(images.size())));
+	}
+
+	@Test
+	public void sort_A$List_comparators() throws Exception {
+		Random random = new Random(4);
+		List<ImageFile> images = imports(random, 20);
+		List<Comparator<ImageFile>> comparators = Arrays.<Comparator<ImageFile>> asList(
+				new ImageCameraModelComparator(), new ImageAbsorptionTimeComparator());
+		List<ImageFile> expected = new ArrayList<>(images);
+		new CompositeKeySorter(comparators).sort(expected);
+
+		RunMergeSorter target = new RunMergeSorter(comparators);
+		target.sort(images);
+		assertThat(images, is(equalTo(expected)));
+	}
+
+	@Test
+	public void sort_A$List_nulls() throws Exception {
+		List<ImageFile> images = imports(new Random(5), 0);
+		images.add(3, null);
+		images.get(10).setOriginalAbsorptionTime(null);
+		images.add(null);
+		List<ImageFile> expected = new ArrayList<>(images);
+		new AbsorptionTimeKeySorter().sort(expected);
+
+		new RunMergeSorter(times()).sort(images);
+		assertThat(images, is(equalTo(expected)));
+	}
+
+	private static List<Comparator<ImageFile>> times() {
+		return Arrays.<Comparator<ImageFile>> asList(new ImageAbsorptionTimeComparator());
+	}
+
+	/**
+	 * Create the images of 4 directories with 3 cameras each: the images of a camera are in the
+	 * order of their absorption time (but for the given number of swaps), the cameras are
+	 * interleaved and there are equal times.
+	 */
+	private static List<ImageFile> imports(Random random, int swaps) {
+		List<ImageFile> images = new ArrayList<>();
+		for (int d = 0; d < 4; d++) {
+			long[] times = new long[MODELS.length];
+			for (int i = 0; i < 300; i++) {
+				int m = random.nextInt(MODELS.length);
+				times[m] += random.nextInt(3) * 1000L;
+				ImageFile image = new ImageFile();
+				image.setFile(new File("dir" + d, "IMG_" + i + ".jpg"));
+				image.setCameraModel(MODELS[m]);
+				image.setOriginalAbsorptionTime(new Date(d * 100000L + times[m]));
+				images.add(image);
+			}
+		}
+		for (int i = 0; i < swaps; i++) {
+			Collections.swap(images, random.nextInt(images.size()), random.nextInt(images.size()));
+		}
+		return images;
+	}
+}
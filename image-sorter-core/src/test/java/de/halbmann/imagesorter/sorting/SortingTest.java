@@ -5,13 +5,17 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
 
 import org.junit.Test;
 
+import de.halbmann.imagesorter.model.ImageFile;
+
 /**
  * 
  * @author fabian
@@ -91,4 +95,27 @@ public class SortingTest {
 		assertThat(list, is(equalTo(expected)));
 	}
 
+
+	@Test
+	public void compare_cameraModelAndTime() throws Exception {
+		List<ImageFile> images = new ArrayList<>();
+		String[] models = { "B", null, "A", "B", "A" };
+		for (int i = 0; i < models.length; i++) {
+			ImageFile image = new ImageFile();
+			image.setOriginalFilename(String.valueOf(i));
+			image.setCameraModel(models[i]);
+			image.setOriginalAbsorptionTime(new Date(10 - i));
+			images.add(image);
+		}
+		List<Comparator<ImageFile>> comparators = new ArrayList<>();
+		comparators.add(new ImageCameraModelComparator());
+		comparators.add(new ImageAbsorptionTimeComparator());
+		Collections.sort(images, new GenericComparator<>(comparators));
+
+		List<String> actual = new ArrayList<>();
+		for (ImageFile image : images) {
+			actual.add(image.getOriginalFilename());
+		}
+		assertThat(actual, is(equalTo(Arrays.asList("4", "2", "3", "0", "1"))));
+	}
 }
@@ -0,0 +1,127 @@
+package de.halbmann.imagesorter.sorting;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.halbmann.imagesorter.model.ImageFile;
+
+public class TimelineIndexTest {
+
+	@Test
+	public void type() throws Exception {
+		assertThat(TimelineIndex.class, notNullValue());
+	}
+
+	@Test
+	public void instantiation() throws Exception {
+		TimelineIndex target = new TimelineIndex();
+		assertThat(target, notNullValue());
+		assertThat(target.size(), is(equalTo(0)));
+		assertThat(target.iterator().hasNext(), is(false));
+	}
+
+	@Test
+	public void add_A$ImageFile() throws Exception {
+		Random random = new Random(1);
+		TimelineIndex target = new TimelineIndex();
+		List<ImageFile> expected = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			ImageFile image = image(i, random.nextInt(10) == 0 ? null : random.nextInt(500));
+			int position = target.add(image);
+			expected.add(image);
+			new AbsorptionTimeKeySorter().sort(expected);
+			assertThat(expected.get(position), is(sameInstance(image)));
+		}
+		assertThat(target.size(), is(equalTo(2000)));
+		assertThat(list(target.iterator()), is(equalTo(expected)));
+		for (int i = 0; i < expected.size(); i++) {
+			assertThat(target.get(i), is(sameInstance(expected.get(i))));
+			assertThat(target.rank(expected.get(i)), is(equalTo(i)));
+		}
+	}
+
+	@Test
+	public void remove_A$ImageFile() throws Exception {
+		Random random = new Random(2);
+		TimelineIndex target = new TimelineIndex();
+		List<ImageFile> expected = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			ImageFile image = image(i, random.nextInt(100));
+			target.add(image);
+			expected.add(image);
+		}
+		new AbsorptionTimeKeySorter().sort(expected);
+		for (int i = 0; i < 600; i++) {
+			ImageFile image = expected.get(random.nextInt(expected.size()));
+			int position = target.remove(image);
+			assertThat(position, is(equalTo(expected.indexOf(image))));
+			expected.remove(position);
+		}
+		assertThat(target.remove(image(0, 1)), is(equalTo(-1)));
+		assertThat(target.size(), is(equalTo(400)));
+		assertThat(list(target.iterator()), is(equalTo(expected)));
+		for (int i = 0; i < expected.size(); i++) {
+			assertThat(target.get(i), is(sameInstance(expected.get(i))));
+		}
+	}
+
+	@Test
+	public void range_A$Date$Date() throws Exception {
+		TimelineIndex target = new TimelineIndex();
+		for (int i = 99; i >= 0; i--) {
+			target.add(image(i, i));
+		}
+		target.add(image(100, null));
+		List<ImageFile> actual = list(target.range(new Date(10000), new Date(20000)).iterator());
+		assertThat(actual.size(), is(equalTo(10)));
+		assertThat(actual.get(0).getOriginalAbsorptionTime(), is(equalTo(new Date(10000))));
+		assertThat(actual.get(9).getOriginalAbsorptionTime(), is(equalTo(new Date(19000))));
+		assertThat(target.rank(10000L), is(equalTo(10)));
+		assertThat(list(target.iterator(95)).size(), is(equalTo(6)));
+	}
+
+	@Test
+	public void getFirstChange() throws Exception {
+		TimelineIndex target = new TimelineIndex();
+		for (int i = 0; i < 100; i++) {
+			target.add(image(i, i));
+		}
+		target.clearChanges();
+		assertThat(target.getFirstChange(), is(equalTo(100)));
+
+		target.add(image(100, 50));
+		target.add(image(101, 70));
+		assertThat(target.getFirstChange(), is(equalTo(51)));
+		target.remove(target.get(20));
+		assertThat(target.getFirstChange(), is(equalTo(20)));
+	}
+
+	private static ImageFile image(int i, Integer seconds) {
+		ImageFile image = new ImageFile();
+		image.setFile(new File("dir", "IMG_" + i + ".jpg"));
+		if (seconds != null) {
+			image.setOriginalAbsorptionTime(new Date(seconds * 1000L));
+		}
+		return image;
+	}
+
+	private static List<ImageFile> list(Iterator<ImageFile> it) {
+		List<ImageFile> list = new ArrayList<>();
+		while (it.hasNext()) {
+			list.add(it.next());
+		}
+		return list;
+	}
+}